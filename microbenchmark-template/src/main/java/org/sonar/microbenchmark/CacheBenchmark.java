@@ -0,0 +1,157 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.CoreProperties;
+import org.sonar.batch.bootstrap.BootstrapProperties;
+import org.sonar.batch.bootstrap.TempFolderProvider;
+import org.sonar.batch.index.Cache;
+import org.sonar.batch.index.Caches;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistit caches of batch, depending on size of buffer pool. Keys have the same shape
+ * than the keys of IssueCache: module key, component key and issue key.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+public class CacheBenchmark {
+
+  private static final int NB_FILES = 2000;
+  private static final int NB_ENTRIES_PER_FILE = 50;
+  private static final String MODULE_KEY = "org.codehaus.sonar:sonar-batch";
+
+  @Param({"4", "32", "128"})
+  public String memoryMb;
+
+  @Param({"true", "false"})
+  public String journal;
+
+  File workDir;
+  Caches caches;
+  Cache<String> filled;
+  String[] componentKeys;
+  String value;
+  int cacheCount = 0;
+
+  @Setup
+  public void setup() throws Exception {
+    workDir = Files.createTempDirectory("cache-benchmark").toFile();
+    BootstrapProperties props = new BootstrapProperties(ImmutableMap.of(
+      CoreProperties.WORKING_DIRECTORY, workDir.getAbsolutePath(),
+      Caches.MEMORY_PROPERTY, memoryMb,
+      Caches.JOURNAL_PROPERTY, journal));
+    caches = new Caches(new TempFolderProvider().provide(props), props);
+    caches.start();
+
+    componentKeys = new String[NB_FILES];
+    for (int i = 0; i < NB_FILES; i++) {
+      componentKeys[i] = MODULE_KEY + ":src/main/java/org/sonar/batch/index/Component" + i + ".java";
+    }
+    value = "Remove this unused private field, which is never read. Replace it by a local variable if needed. " +
+      "It is declared at line 42 of a file which is analyzed by the batch of SonarQube.";
+    filled = newFilledCache();
+  }
+
+  @TearDown
+  public void tearDown() {
+    caches.stop();
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  @Benchmark
+  public Cache<String> put() {
+    return newFilledCache();
+  }
+
+  @Benchmark
+  public int get() {
+    Random random = new Random(42L);
+    int length = 0;
+    for (int i = 0; i < NB_FILES * NB_ENTRIES_PER_FILE; i++) {
+      String componentKey = componentKeys[random.nextInt(NB_FILES)];
+      length += filled.get(MODULE_KEY, componentKey, issueKey(random.nextInt(NB_ENTRIES_PER_FILE))).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int values() {
+    int length = 0;
+    for (String componentKey : componentKeys) {
+      for (String v : filled.values(MODULE_KEY, componentKey)) {
+        length += v.length();
+      }
+    }
+    return length;
+  }
+
+  private Cache<String> newFilledCache() {
+    Cache<String> cache = caches.createCache("cache" + cacheCount);
+    cacheCount++;
+    for (String componentKey : componentKeys) {
+      for (int i = 0; i < NB_ENTRIES_PER_FILE; i++) {
+        cache.put(MODULE_KEY, componentKey, issueKey(i), value);
+      }
+    }
+    return cache;
+  }
+
+  private static String issueKey(int i) {
+    return "AU1Ly0Ii2mK3uEn0l_" + i;
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(CacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.StringReader;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full metadata pass of {@link FileMetadata} (line count, file hash, line offsets) and computation
+ * of line hashes for issue tracking. The method {@link #stringBuilderLineHashes()} is the reference
+ * implementation that allocates a String and a byte array per line.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.Throughput)
+public class FileMetadataBenchmark {
+
+  @Param({"100", "10000", "100000"})
+  public int lines;
+
+  @Param({"ascii", "utf8"})
+  public String charset;
+
+  File file;
+  String content;
+  FileMetadata fileMetadata = new FileMetadata();
+
+  @Setup
+  public void setup() throws Exception {
+    String line = "ascii".equals(charset) ? "    private final String foo = \"bar\"; // comment" : "    private final String f\u00f6o = \"b\u00e0r\"; // \u20ac \uD834\uDD1E";
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      sb.append(line).append(i % 10 == 0 ? "\r\n" : "\n");
+    }
+    content = sb.toString();
+    file = File.createTempFile("metadata-benchmark", ".java");
+    FileUtils.write(file, content, Charsets.UTF_8);
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtils.deleteQuietly(file);
+  }
+
+  @Benchmark
+  public FileMetadata.Metadata readMetadataFromFile() {
+    return fileMetadata.readMetadata(file, Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public FileMetadata.Metadata readMetadataFromContent() {
+    return fileMetadata.readMetadata(new StringReader(content), file, Charsets.UTF_8);
+  }
+
+  @Benchmark
+  public int lineHashes() {
+    final int[] count = new int[1];
+    FileMetadata.computeLineHashesForIssueTracking(new StringReader(content), new FileMetadata.LineHashConsumer() {
+      @Override
+      public void consume(int lineIdx, @Nullable byte[] hash) {
+        count[0] += hash == null ? 0 : hash.length;
+      }
+    });
+    return count[0];
+  }
+
+  @Benchmark
+  public int stringBuilderLineHashes() {
+    MessageDigest digest = DigestUtils.getMd5Digest();
+    StringBuilder sb = new StringBuilder();
+    int count = 0;
+    for (int i = 0; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (c == '\n') {
+        count += sb.length() > 0 ? digest.digest(sb.toString().getBytes(Charsets.UTF_8)).length : 0;
+        sb.setLength(0);
+      } else if (c != '\r' && !Character.isWhitespace(c)) {
+        sb.append(c);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(FileMetadataBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
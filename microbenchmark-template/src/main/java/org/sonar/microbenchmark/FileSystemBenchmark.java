@@ -0,0 +1,172 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of files in a module of 100'000 files, with the indices of {@link DefaultFileSystem}
+ * and by scanning all the files.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+public class FileSystemBenchmark {
+
+  private static final int NB_DIRS = 1000;
+  private static final int NB_FILES_PER_DIR = 100;
+  private static final String[] LANGUAGES = {"java", "js", "xml", "php", "cobol"};
+
+  DefaultFileSystem fs;
+  List<InputFile> allFiles;
+  FilePredicate language;
+  FilePredicate type;
+  FilePredicate status;
+  FilePredicate pattern;
+  FilePredicate languageAndType;
+
+  @Setup
+  public void setUp() throws Exception {
+    fs = new DefaultFileSystem(new File("."));
+    allFiles = new ArrayList<>();
+    for (int dir = 0; dir < NB_DIRS; dir++) {
+      for (int i = 0; i < NB_FILES_PER_DIR; i++) {
+        String language = LANGUAGES[i % LANGUAGES.length];
+        DefaultInputFile inputFile = new DefaultInputFile("foo", "src/dir" + dir + "/File" + i + "." + language)
+          .setLanguage(language)
+          .setType(i % 10 == 0 ? InputFile.Type.TEST : InputFile.Type.MAIN)
+          .setStatus(i % 50 == 0 ? InputFile.Status.CHANGED : InputFile.Status.SAME);
+        fs.add(inputFile);
+        allFiles.add(inputFile);
+      }
+    }
+    FilePredicates p = fs.predicates();
+    language = p.hasLanguage("cobol");
+    type = p.hasType(InputFile.Type.TEST);
+    status = p.hasStatus(InputFile.Status.CHANGED);
+    pattern = p.matchesPathPattern("src/dir42/**/*.java");
+    languageAndType = p.and(p.hasLanguage("java"), p.hasType(InputFile.Type.MAIN), p.hasStatus(InputFile.Status.CHANGED));
+  }
+
+  @Benchmark
+  public int language_indexed() {
+    return count(fs.inputFiles(language));
+  }
+
+  @Benchmark
+  public int language_scan() {
+    return scan(language);
+  }
+
+  @Benchmark
+  public int type_indexed() {
+    return count(fs.inputFiles(type));
+  }
+
+  @Benchmark
+  public int type_scan() {
+    return scan(type);
+  }
+
+  @Benchmark
+  public int status_indexed() {
+    return count(fs.inputFiles(status));
+  }
+
+  @Benchmark
+  public int status_scan() {
+    return scan(status);
+  }
+
+  @Benchmark
+  public int path_pattern_indexed() {
+    return count(fs.inputFiles(pattern));
+  }
+
+  @Benchmark
+  public int path_pattern_scan() {
+    return scan(pattern);
+  }
+
+  @Benchmark
+  public int and_indexed() {
+    return count(fs.inputFiles(languageAndType));
+  }
+
+  @Benchmark
+  public int and_scan() {
+    return scan(languageAndType);
+  }
+
+  private int scan(FilePredicate predicate) {
+    int count = 0;
+    for (InputFile inputFile : allFiles) {
+      if (predicate.apply(inputFile)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int count(Iterable<InputFile> files) {
+    int count = 0;
+    for (InputFile ignored : files) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(FileSystemBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.IssueChangeContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.server.computation.issue.IssueCodec;
+import org.sonar.server.util.CloseableIterator;
+import org.sonar.server.util.cache.DiskCache;
+import org.sonar.server.util.cache.DiskCacheCodec;
+import org.sonar.server.util.cache.JavaSerializationCodec;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the formats of the compute engine issue cache: Java serialization and {@link IssueCodec}.
+ * Issues are written then read, as done by ParseReportStep then PersistIssuesStep.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+public class IssueCacheBenchmark {
+
+  private static final int NB_ISSUES = 100000;
+
+  @Param({"java", "compact"})
+  public String codec;
+
+  File workDir;
+  List<DefaultIssue> issues;
+  DiskCache<DefaultIssue> written;
+
+  @Setup
+  public void setup() throws Exception {
+    workDir = Files.createTempDirectory("issue-cache-benchmark").toFile();
+    issues = new ArrayList<>(NB_ISSUES);
+    Date now = new Date();
+    for (int i = 0; i < NB_ISSUES; i++) {
+      DefaultIssue issue = new DefaultIssue()
+        .setKey("AU1Ly0Ii2mK3uEn0l_" + i)
+        .setComponentUuid("AU1Ly0Ii2mK3uEn0lFILE" + (i / 20))
+        .setComponentKey("org.codehaus.sonar:sonar-server:src/main/java/org/sonar/server/Foo" + (i / 20) + ".java")
+        .setModuleUuid("AU1Ly0Ii2mK3uEn0lMODULE")
+        .setModuleUuidPath(".AU1Ly0Ii2mK3uEn0lPROJECT.AU1Ly0Ii2mK3uEn0lMODULE.")
+        .setProjectUuid("AU1Ly0Ii2mK3uEn0lPROJECT")
+        .setProjectKey("org.codehaus.sonar:sonar")
+        .setRuleKey(RuleKey.of("squid", "S" + (i % 200)))
+        .setLanguage("java")
+        .setSeverity(Severity.MAJOR)
+        .setMessage("Remove this unused private field " + i)
+        .setLine(1 + i % 1000)
+        .setDebt(Duration.create(10L))
+        .setStatus(Issue.STATUS_OPEN)
+        .setChecksum("6f8b9e3a25c7d1f0" + i)
+        .setAuthorLogin("developer" + (i % 10))
+        .setCreationDate(now)
+        .setUpdateDate(now);
+      if (i % 10 == 0) {
+        issue.setFieldChange(IssueChangeContext.createScan(now), "severity", Severity.MINOR, Severity.MAJOR);
+      }
+      issues.add(issue);
+    }
+    written = newCache();
+    write(written);
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  @Benchmark
+  public DiskCache<DefaultIssue> write_issues() throws Exception {
+    DiskCache<DefaultIssue> cache = newCache();
+    write(cache);
+    return cache;
+  }
+
+  @Benchmark
+  public int read_issues() {
+    int count = 0;
+    try (CloseableIterator<DefaultIssue> it = written.traverse()) {
+      while (it.hasNext()) {
+        count += it.next().line();
+      }
+    }
+    return count;
+  }
+
+  private DiskCache<DefaultIssue> newCache() throws Exception {
+    DiskCacheCodec<DefaultIssue> diskCacheCodec = "java".equals(codec) ? new JavaSerializationCodec<DefaultIssue>() : new IssueCodec();
+    return new DiskCache<>(File.createTempFile("issues", ".dat", workDir), System2.INSTANCE, diskCacheCodec);
+  }
+
+  private void write(DiskCache<DefaultIssue> cache) {
+    DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender();
+    for (DefaultIssue issue : issues) {
+      appender.append(issue);
+    }
+    appender.close();
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(IssueCacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
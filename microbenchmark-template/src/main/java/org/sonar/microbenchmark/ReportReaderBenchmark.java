@@ -0,0 +1,146 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.ZipUtils;
+import org.sonar.batch.protocol.Constants;
+import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.batch.protocol.output.BatchReportReader;
+import org.sonar.batch.protocol.output.BatchReportWriter;
+import org.sonar.batch.protocol.output.ZipReportEntries;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways of reading an analysis report on server side:
+ * <ul>
+ *   <li>extracting the zip file in a temp directory, then reading one file per component and domain</li>
+ *   <li>reading the entries straight from the zip file</li>
+ * </ul>
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+public class ReportReaderBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int nbFiles;
+
+  File workDir;
+  File zip;
+
+  @Setup
+  public void setup() throws Exception {
+    workDir = Files.createTempDirectory("report-benchmark").toFile();
+    File reportDir = new File(workDir, "report");
+    BatchReportWriter writer = new BatchReportWriter(reportDir);
+    writer.writeMetadata(BatchReport.Metadata.newBuilder().setRootComponentRef(1).setProjectKey("PROJECT").build());
+
+    BatchReport.Component.Builder project = BatchReport.Component.newBuilder()
+      .setRef(1)
+      .setType(Constants.ComponentType.PROJECT);
+    for (int ref = 2; ref < nbFiles + 2; ref++) {
+      project.addChildRef(ref);
+      writer.writeComponent(BatchReport.Component.newBuilder()
+        .setRef(ref)
+        .setType(Constants.ComponentType.FILE)
+        .setPath("src/main/java/Foo" + ref + ".java")
+        .setUuid("UUID_" + ref)
+        .build());
+      writer.writeComponentMeasures(ref, Arrays.asList(
+        BatchReport.Measure.newBuilder().setMetricKey("ncloc").setDoubleValue(ref).build(),
+        BatchReport.Measure.newBuilder().setMetricKey("complexity").setDoubleValue(ref).build()));
+      writer.writeComponentIssues(ref, Arrays.asList(
+        BatchReport.Issue.newBuilder().setRuleRepository("squid").setRuleKey("S001").setLine(ref).setMsg("message").build()));
+    }
+    writer.writeComponent(project.build());
+
+    zip = new File(workDir, "report.zip");
+    ZipUtils.zipDir(reportDir, zip);
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  @Benchmark
+  public int unzip_then_read_files() throws Exception {
+    File dir = Files.createTempDirectory(workDir.toPath(), "extracted").toFile();
+    try {
+      ZipUtils.unzip(zip, dir);
+      return readAll(new BatchReportReader(dir));
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  @Benchmark
+  public int read_zip_entries() throws Exception {
+    try (BatchReportReader reader = new BatchReportReader(new ZipReportEntries(zip))) {
+      return readAll(reader);
+    }
+  }
+
+  private static int readAll(BatchReportReader reader) {
+    int count = 0;
+    BatchReport.Component project = reader.readComponent(reader.readMetadata().getRootComponentRef());
+    for (Integer ref : project.getChildRefList()) {
+      count += reader.readComponent(ref).getRef();
+      count += reader.readComponentMeasures(ref).size();
+      count += reader.readComponentIssues(ref).size();
+    }
+    return count;
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(ReportReaderBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
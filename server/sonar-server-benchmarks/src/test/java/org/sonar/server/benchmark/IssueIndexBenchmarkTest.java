@@ -20,12 +20,17 @@
 
 package org.sonar.server.benchmark;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.math.RandomUtils;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -37,10 +42,12 @@ import org.sonar.server.es.EsClient;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.es.SearchResult;
 import org.sonar.server.issue.IssueQuery;
+import org.sonar.server.issue.index.IssueAuthorizationCache;
 import org.sonar.server.issue.index.IssueAuthorizationDao;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.issue.index.IssueIndex;
+import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.issue.index.IssueIndexer;
 import org.sonar.server.tester.ServerTester;
 import org.sonar.server.user.MockUserSession;
@@ -49,6 +56,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.Timer;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -76,6 +84,9 @@ public class IssueIndexBenchmarkTest {
 
     // execute some queries
     benchmarkQueries();
+
+    // compare authorization filters
+    benchmarkAuthorizationFilter();
   }
 
   private void indexAuthorizations() {
@@ -134,6 +145,45 @@ public class IssueIndexBenchmarkTest {
     // TODO assertions
   }
 
+  private void benchmarkAuthorizationFilter() {
+    Set<String> groups = ImmutableSet.of("sonar-users");
+    IssueAuthorizationCache cache = tester.get(IssueAuthorizationCache.class);
+    cache.clear();
+    long start = System.currentTimeMillis();
+    Set<String> projectUuids = cache.authorizedProjectUuids(null, groups);
+    long period = System.currentTimeMillis() - start;
+    LOGGER.info(String.format("%d authorized projects loaded in %d ms", projectUuids.size(), period));
+    benchmark.expectBetween("Time to load authorized projects", period, 0L, 200L);
+
+    // join with parent documents, as done before IssueAuthorizationCache
+    FilterBuilder joinFilter = FilterBuilders.hasParentFilter(IssueIndexDefinition.TYPE_AUTHORIZATION,
+      QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), FilterBuilders.termFilter(IssueIndexDefinition.FIELD_AUTHORIZATION_GROUPS, "sonar-users")));
+    FilterBuilder termsFilter = FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_PROJECT_UUID, projectUuids);
+    long joinPeriod = benchmarkFilter("join on authorization", joinFilter);
+    long termsPeriod = benchmarkFilter("terms on project uuids", termsFilter);
+    benchmark.expectBetween("Time of terms filter compared to join (%)", 100L * termsPeriod / Math.max(1L, joinPeriod), 0L, 50L);
+  }
+
+  /**
+   * @return the total duration in ms of 10 executions of the filter
+   */
+  private long benchmarkFilter(String label, FilterBuilder filter) {
+    EsClient client = tester.get(EsClient.class);
+    long total = 0L;
+    for (int i = 0; i < 10; i++) {
+      long start = System.currentTimeMillis();
+      SearchResponse response = client.prepareSearch(IssueIndexDefinition.INDEX)
+        .setTypes(IssueIndexDefinition.TYPE_ISSUE)
+        .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), filter))
+        .setSize(0)
+        .get();
+      long period = System.currentTimeMillis() - start;
+      total += period;
+      LOGGER.info("Filter (" + label + "): {} docs in {} ms", response.getHits().getTotalHits(), period);
+    }
+    return total;
+  }
+
   private void benchmarkQuery(String label, IssueQuery query) {
     IssueIndex index = tester.get(IssueIndex.class);
     for (int i = 0; i < 10; i++) {
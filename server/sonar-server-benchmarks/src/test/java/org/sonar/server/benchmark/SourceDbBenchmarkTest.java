@@ -76,7 +76,7 @@ public class SourceDbBenchmarkTest {
       SourceFileResultSetIterator it = SourceFileResultSetIterator.create(dbClient, connection, 0L);
       while (it.hasNext()) {
         SourceFileResultSetIterator.Row row = it.next();
-        assertThat(row.getLineUpdateRequests().size()).isEqualTo(NUMBER_OF_LINES);
+        assertThat(row.getLineCount()).isEqualTo(NUMBER_OF_LINES);
         assertThat(row.getFileUuid()).isNotEmpty();
         counter.incrementAndGet();
       }
@@ -155,7 +155,8 @@ public class SourceIndexBenchmarkTest {
       if (count.get() % 500 == 0) {
         currentProject++;
       }
-      return SourceFileResultSetIterator.toRow(projectUuid, fileUuid, new Date(), dataBuilder.build());
+      // files are new, no lines to delete from index
+      return SourceFileResultSetIterator.toRow(projectUuid, fileUuid, new Date(), dataBuilder.build(), 0);
     }
 
     @Override
@@ -36,12 +36,15 @@ public class BatchWs implements WebService {
   private final GlobalRepositoryAction globalRepositoryAction;
   private final ProjectRepositoryAction projectRepositoryAction;
   private final IssuesAction issuesAction;
+  private final IssuesVersionAction issuesVersionAction;
 
-  public BatchWs(BatchIndex batchIndex, GlobalRepositoryAction globalRepositoryAction, ProjectRepositoryAction projectRepositoryAction, IssuesAction issuesAction) {
+  public BatchWs(BatchIndex batchIndex, GlobalRepositoryAction globalRepositoryAction, ProjectRepositoryAction projectRepositoryAction, IssuesAction issuesAction,
+    IssuesVersionAction issuesVersionAction) {
     this.batchIndex = batchIndex;
     this.globalRepositoryAction = globalRepositoryAction;
     this.projectRepositoryAction = projectRepositoryAction;
     this.issuesAction = issuesAction;
+    this.issuesVersionAction = issuesVersionAction;
   }
 
   @Override
@@ -55,6 +58,7 @@ public class BatchWs implements WebService {
     globalRepositoryAction.define(controller);
     projectRepositoryAction.define(controller);
     issuesAction.define(controller);
+    issuesVersionAction.define(controller);
 
     controller.done();
   }
@@ -47,6 +47,7 @@ import static com.google.common.collect.Maps.newHashMap;
 public class IssuesAction implements RequestHandler {
 
   private static final String PARAM_KEY = "key";
+  private static final String PARAM_CHANGED_SINCE = "changedSince";
 
   private final DbClient dbClient;
 
@@ -69,12 +70,18 @@ public class IssuesAction implements RequestHandler {
       .setRequired(true)
       .setDescription("Project, module or file key")
       .setExampleValue("org.codehaus.sonar:sonar");
+
+    action
+      .createParam(PARAM_CHANGED_SINCE)
+      .setDescription("Return only the issues indexed since this version, including the closed ones. See action issues_version")
+      .setExampleValue("1427730000000");
   }
 
   @Override
   public void handle(Request request, Response response) throws Exception {
     UserSession.get().checkGlobalPermission(GlobalPermissions.PREVIEW_EXECUTION);
     final String moduleKey = request.mandatoryParam(PARAM_KEY);
+    Long changedSince = request.paramAsLong(PARAM_CHANGED_SINCE);
 
     response.stream().setMediaType(MimeTypes.PROTOBUF);
     DbSession session = dbClient.openSession(false);
@@ -83,7 +90,7 @@ public class IssuesAction implements RequestHandler {
       Map<String, String> keysByUUid = keysByUUid(session, component);
 
       BatchInput.ServerIssue.Builder issueBuilder = BatchInput.ServerIssue.newBuilder();
-      for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component); issueDocIterator.hasNext();) {
+      for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component, changedSince); issueDocIterator.hasNext();) {
         handleIssue(issueDocIterator.next(), issueBuilder, keysByUUid, response.stream().output());
       }
     } finally {
@@ -66,9 +66,11 @@ public class ComponentCleanerService implements ServerComponent {
   }
 
   private void deleteFromIndices(String projectUuid) {
-    // optimization : index "issues" is refreshed once at the end
-    issueAuthorizationIndexer.deleteProject(projectUuid, false);
-    issueIndexer.deleteProject(projectUuid, true);
+    // optimization : index "issues" is refreshed once at the end. Authorizations are deleted last,
+    // so that the authorization cache is cleared once the deletion is visible. Issues are in the same shard
+    // as their parent authorization, so they are refreshed too.
+    issueIndexer.deleteProject(projectUuid, false);
+    issueAuthorizationIndexer.deleteProject(projectUuid, true);
     sourceLineIndexer.deleteByProject(projectUuid);
   }
 
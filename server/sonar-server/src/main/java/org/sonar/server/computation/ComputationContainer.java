@@ -23,6 +23,7 @@ import org.sonar.api.platform.ComponentContainer;
 import org.sonar.core.issue.db.UpdateConflictResolver;
 import org.sonar.server.computation.issue.*;
 import org.sonar.server.computation.measure.MetricCache;
+import org.sonar.server.computation.step.ComputationStepExecutor;
 import org.sonar.server.computation.step.ComputationSteps;
 import org.sonar.server.platform.Platform;
 import org.sonar.server.view.index.ViewIndex;
@@ -40,6 +41,7 @@ public class ComputationContainer {
     return Arrays.asList(
       ComputationService.class,
       ComputationSteps.class,
+      ComputationStepExecutor.class,
 
       // issues
       ScmAccountCacheLoader.class,
@@ -58,17 +60,36 @@ public class ComputationContainer {
 
   public void execute(ReportQueue.Item item) {
     ComponentContainer container = Platform.getInstance().getContainer();
-    ComponentContainer child = container.createChild();
+    ComponentContainer child = createChild(container);
     child.addSingletons(componentClasses());
     child.addSingletons(ComputationSteps.orderedStepClasses());
     child.startComponents();
     try {
       child.getComponentByType(ComputationService.class).process(item);
     } finally {
-      child.stopComponents();
-      // TODO not possible to have multiple children -> will be
-      // a problem when we will have multiple concurrent computation workers
-      container.removeChild();
+      stopChild(container, child);
+    }
+  }
+
+  /**
+   * {@link ComponentContainer} keeps a reference to a single child only, whereas each worker
+   * has its own child. Creation and removal of children are synchronized on the parent container, like
+   * {@link ComponentContainer#stopComponents()} when it iterates on children, and the pico container of
+   * the worker is explicitly removed from the parent, which may reference the child of another worker.
+   */
+  private static ComponentContainer createChild(ComponentContainer container) {
+    synchronized (container) {
+      return container.createChild();
+    }
+  }
+
+  private static void stopChild(ComponentContainer container, ComponentContainer child) {
+    synchronized (container) {
+      try {
+        child.stopComponents();
+      } finally {
+        container.getPicoContainer().removeChildContainer(child.getPicoContainer());
+      }
     }
   }
 }
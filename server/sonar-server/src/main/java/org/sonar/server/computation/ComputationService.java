@@ -21,16 +21,14 @@
 package org.sonar.server.computation;
 
 import com.google.common.base.Throwables;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.io.IOUtils;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.utils.System2;
-import org.sonar.api.utils.TempFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.batch.protocol.output.BatchReportReader;
+import org.sonar.batch.protocol.output.ZipReportEntries;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.core.component.SnapshotDto;
 import org.sonar.core.computation.db.AnalysisReportDto;
@@ -38,14 +36,11 @@ import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.activity.Activity;
 import org.sonar.server.activity.ActivityService;
-import org.sonar.server.computation.step.ComputationStep;
-import org.sonar.server.computation.step.ComputationSteps;
+import org.sonar.server.computation.step.ComputationStepExecutor;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.properties.ProjectSettingsFactory;
 
 import javax.annotation.Nullable;
-import java.io.File;
-import java.io.IOException;
 
 import static org.sonar.api.utils.DateUtils.formatDateTimeNullSafe;
 import static org.sonar.api.utils.DateUtils.longToDate;
@@ -56,19 +51,17 @@ public class ComputationService implements ServerComponent {
   private static final Logger LOG = Loggers.get(ComputationService.class);
 
   private final DbClient dbClient;
-  private final ComputationSteps steps;
+  private final ComputationStepExecutor stepExecutor;
   private final ActivityService activityService;
   private final ProjectSettingsFactory projectSettingsFactory;
-  private final TempFolder tempFolder;
   private final System2 system;
 
-  public ComputationService(DbClient dbClient, ComputationSteps steps, ActivityService activityService, 
-                            ProjectSettingsFactory projectSettingsFactory, TempFolder tempFolder, System2 system) {
+  public ComputationService(DbClient dbClient, ComputationStepExecutor stepExecutor, ActivityService activityService,
+                            ProjectSettingsFactory projectSettingsFactory, System2 system) {
     this.dbClient = dbClient;
-    this.steps = steps;
+    this.stepExecutor = stepExecutor;
     this.activityService = activityService;
     this.projectSettingsFactory = projectSettingsFactory;
-    this.tempFolder = tempFolder;
     this.system = system;
   }
 
@@ -77,48 +70,34 @@ public class ComputationService implements ServerComponent {
       "Analysis of project %s (report %d)", item.dto.getProjectKey(), item.dto.getId()));
 
     ComponentDto project = null;
+    BatchReportReader reader = null;
 
     try {
       project = loadProject(item);
-      File reportDir = extractReportInDir(item);
-      BatchReportReader reader = new BatchReportReader(reportDir);
+      reader = openReport(item);
       if (isSnapshotMissing(item, reader.readMetadata().getSnapshotId())) {
         return;
       }
       ComputationContext context = new ComputationContext(reader, project);
       context.setProjectSettings(projectSettingsFactory.newProjectSettings(project.getId()));
-      for (ComputationStep step : steps.orderedSteps()) {
-        if (ArrayUtils.contains(step.supportedProjectQualifiers(), context.getProject().qualifier())) {
-          Profiler stepProfiler = Profiler.createIfDebug(LOG).startDebug(step.getDescription());
-          step.execute(context);
-          stepProfiler.stopDebug();
-        }
-      }
+      stepExecutor.execute(context);
       item.dto.setStatus(SUCCESS);
     } catch (Throwable e) {
       item.dto.setStatus(FAILED);
       throw Throwables.propagate(e);
     } finally {
+      IOUtils.closeQuietly(reader);
       item.dto.setFinishedAt(system.now());
       saveActivity(item.dto, project);
       profiler.stopInfo();
     }
   }
 
-  private File extractReportInDir(ReportQueue.Item item) {
-    File dir = tempFolder.newDir();
-    try {
-      Profiler profiler = Profiler.createIfDebug(LOG).start();
-      ZipUtils.unzip(item.zipFile, dir);
-      if (profiler.isDebugEnabled()) {
-        String message = String.format("Report extracted | size=%s | project=%s",
-          FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(dir)), item.dto.getProjectKey());
-        profiler.stopDebug(message);
-      }
-      return dir;
-    } catch (IOException e) {
-      throw new IllegalStateException(String.format("Fail to unzip %s into %s", item.zipFile, dir), e);
-    }
+  /**
+   * Entries are read straight from the zip file, which is not extracted on disk
+   */
+  private BatchReportReader openReport(ReportQueue.Item item) {
+    return new BatchReportReader(new ZipReportEntries(item.zipFile));
   }
 
   private ComponentDto loadProject(ReportQueue.Item item) {
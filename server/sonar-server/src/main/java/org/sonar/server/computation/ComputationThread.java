@@ -24,8 +24,11 @@ import com.google.common.annotations.VisibleForTesting;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
+import javax.annotation.CheckForNull;
+
 /**
- * This thread pops a report from the queue and integrate it.
+ * This thread pops the reports from the queue and integrate them, until the queue
+ * has no more available reports.
  */
 public class ComputationThread implements Runnable {
 
@@ -47,21 +50,31 @@ public class ComputationThread implements Runnable {
 
   @Override
   public void run() {
-    ReportQueue.Item item = null;
+    ReportQueue.Item item = popSilently();
+    while (item != null) {
+      process(item);
+      item = popSilently();
+    }
+  }
+
+  @CheckForNull
+  private ReportQueue.Item popSilently() {
     try {
-      item = queue.pop();
+      return queue.pop();
     } catch (Exception e) {
       LOG.error("Failed to pop the queue of analysis reports", e);
+      return null;
     }
-    if (item != null) {
-      try {
-        container.execute(item);
-      } catch (Throwable e) {
-        LOG.error(String.format(
-          "Failed to process analysis report %d of project %s", item.dto.getId(), item.dto.getProjectKey()), e);
-      } finally {
-        removeSilentlyFromQueue(item);
-      }
+  }
+
+  private void process(ReportQueue.Item item) {
+    try {
+      container.execute(item);
+    } catch (Throwable e) {
+      LOG.error(String.format(
+        "Failed to process analysis report %d of project %s", item.dto.getId(), item.dto.getProjectKey()), e);
+    } finally {
+      removeSilentlyFromQueue(item);
     }
   }
 
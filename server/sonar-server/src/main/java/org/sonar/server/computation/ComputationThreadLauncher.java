@@ -23,41 +23,57 @@ package org.sonar.server.computation;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.platform.ServerStartHandler;
+import org.sonar.api.utils.log.Loggers;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Starts the pool of workers that process the queue of analysis reports. Reports
+ * of different projects are processed concurrently, but two reports of the same project
+ * are never processed at the same time (see {@link ReportQueue#pop()}).
+ * <p/>
+ * Idle workers do not poll the database. They are woken up by {@link ReportQueueSignal} when a report
+ * is submitted or when the processing of a project ends. The queue is polled every
+ * {@link #FALLBACK_DELAY_PROPERTY} seconds in case a signal would have been missed, for example
+ * if a report was reset to PENDING.
+ */
 public class ComputationThreadLauncher implements Startable, ServerStartHandler {
 
   public static final String THREAD_NAME_PREFIX = "computation-";
+  public static final String WORKERS_PROPERTY = "sonar.computation.workers";
+  public static final String FALLBACK_DELAY_PROPERTY = "sonar.computation.fallbackPollDelay";
+  static final int DEFAULT_WORKERS = 1;
+  static final long DEFAULT_FALLBACK_DELAY_IN_SECONDS = 300L;
 
   private final ReportQueue queue;
-  private final ScheduledExecutorService executorService;
+  private final ReportQueueSignal signal;
+  private final int workers;
+  private final ExecutorService executorService;
+  private final List<Worker> runningWorkers = new CopyOnWriteArrayList<>();
 
-  private final long delayBetweenTasks;
-  private final long delayForFirstStart;
+  private final long fallbackDelay;
   private final TimeUnit timeUnit;
 
-  public ComputationThreadLauncher(ReportQueue queue) {
-    this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(newThreadFactory());
-
-    this.delayBetweenTasks = 10;
-    this.delayForFirstStart = 0;
-    this.timeUnit = TimeUnit.SECONDS;
+  public ComputationThreadLauncher(ReportQueue queue, ReportQueueSignal signal, Settings settings) {
+    this(queue, signal, settings, fallbackDelayInSeconds(settings), TimeUnit.SECONDS);
   }
 
   @VisibleForTesting
-  ComputationThreadLauncher(ReportQueue queue, long delayForFirstStart, long delayBetweenTasks, TimeUnit timeUnit) {
+  ComputationThreadLauncher(ReportQueue queue, ReportQueueSignal signal, Settings settings, long fallbackDelay, TimeUnit timeUnit) {
     this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(newThreadFactory());
+    this.signal = signal;
+    this.workers = numberOfWorkers(settings);
+    this.executorService = Executors.newFixedThreadPool(workers, newThreadFactory());
 
-    this.delayBetweenTasks = delayBetweenTasks;
-    this.delayForFirstStart = delayForFirstStart;
+    this.fallbackDelay = fallbackDelay;
     this.timeUnit = timeUnit;
   }
 
@@ -68,20 +84,75 @@ public class ComputationThreadLauncher implements Startable, ServerStartHandler
 
   @Override
   public void stop() {
+    for (Worker worker : runningWorkers) {
+      worker.stopped = true;
+    }
+    // wake up the idle workers so that they terminate
+    signal.signal();
     executorService.shutdown();
   }
 
-  public void startAnalysisTaskNow() {
-    executorService.execute(new ComputationThread(queue));
-  }
-
   @Override
   public void onServerStart(Server server) {
-    executorService.scheduleAtFixedRate(new ComputationThread(queue), delayForFirstStart, delayBetweenTasks, timeUnit);
+    for (int i = 0; i < workers; i++) {
+      Worker worker = new Worker(new ComputationThread(queue));
+      runningWorkers.add(worker);
+      executorService.execute(worker);
+    }
+  }
+
+  int getWorkers() {
+    return workers;
+  }
+
+  private static int numberOfWorkers(Settings settings) {
+    int workers = settings.getInt(WORKERS_PROPERTY);
+    if (workers < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", WORKERS_PROPERTY, workers));
+    }
+    return workers == 0 ? DEFAULT_WORKERS : workers;
+  }
+
+  private static long fallbackDelayInSeconds(Settings settings) {
+    long delay = settings.getLong(FALLBACK_DELAY_PROPERTY);
+    if (delay < 0L) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", FALLBACK_DELAY_PROPERTY, delay));
+    }
+    return delay == 0L ? DEFAULT_FALLBACK_DELAY_IN_SECONDS : delay;
   }
 
   private ThreadFactory newThreadFactory() {
     return new ThreadFactoryBuilder()
       .setNameFormat(THREAD_NAME_PREFIX + "%d").setPriority(Thread.MIN_PRIORITY).build();
   }
+
+  /**
+   * Processes the available reports, then sleeps until the next signal.
+   */
+  private class Worker implements Runnable {
+    private final ComputationThread thread;
+    private volatile boolean stopped = false;
+
+    Worker(ComputationThread thread) {
+      this.thread = thread;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!stopped) {
+          long signalCount = signal.count();
+          thread.run();
+          if (!stopped) {
+            signal.await(signalCount, fallbackDelay, timeUnit);
+          }
+        }
+      } catch (InterruptedException e) {
+        Loggers.get(ComputationThreadLauncher.class).debug("Computation worker interrupted", e);
+        Thread.currentThread().interrupt();
+      } finally {
+        runningWorkers.remove(this);
+      }
+    }
+  }
 }
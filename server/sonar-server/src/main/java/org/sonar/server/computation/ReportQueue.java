@@ -44,10 +44,12 @@ import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
 public class ReportQueue implements ServerComponent {
   private final DbClient dbClient;
   private final Settings settings;
+  private final ReportQueueSignal signal;
 
-  public ReportQueue(DbClient dbClient, Settings settings) {
+  public ReportQueue(DbClient dbClient, Settings settings, ReportQueueSignal signal) {
     this.dbClient = dbClient;
     this.settings = settings;
+    this.signal = signal;
   }
 
   public Item add(String projectKey, InputStream reportData) {
@@ -60,6 +62,7 @@ public class ReportQueue implements ServerComponent {
 
       saveReportOnDisk(reportData, file);
       AnalysisReportDto dto = saveReportMetadataInDatabase(projectKey, uuid, session);
+      signal.signal();
 
       return new Item(dto, file);
     } catch (Exception e) {
@@ -98,13 +101,20 @@ public class ReportQueue implements ServerComponent {
       FileUtils.deleteQuietly(item.zipFile);
       dao().delete(session, item.dto.getId());
       session.commit();
+      // the other pending reports of the project are now available
+      signal.signal();
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
+  /**
+   * Books the next report to be processed. Calls are serialized so that the workers of this server never
+   * book two reports of the same project: a report is booked only if no other report of its project
+   * is in status WORKING, and the booking is committed before the next call.
+   */
   @CheckForNull
-  public Item pop() {
+  public synchronized Item pop() {
     DbSession session = dbClient.openSession(false);
     try {
       AnalysisReportDto dto = dao().pop(session);
@@ -157,6 +167,7 @@ public class ReportQueue implements ServerComponent {
     try {
       dao().resetAllToPendingStatus(session);
       session.commit();
+      signal.signal();
     } finally {
       MyBatis.closeQuietly(session);
     }
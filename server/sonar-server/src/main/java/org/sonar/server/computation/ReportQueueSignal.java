@@ -0,0 +1,63 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation;
+
+import org.sonar.api.ServerComponent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wakes up the idle compute workers when a report may have become available, for example
+ * when a report is added to the queue or when the processing of a project is finished.
+ * Workers read {@link #count()} before polling the queue, then block on {@link #await(long, long, TimeUnit)},
+ * so that a signal sent in-between is never missed.
+ */
+public class ReportQueueSignal implements ServerComponent {
+
+  private long count = 0L;
+
+  public synchronized long count() {
+    return count;
+  }
+
+  public synchronized void signal() {
+    count++;
+    notifyAll();
+  }
+
+  /**
+   * Blocks until a signal is sent after the given count, or until timeout.
+   *
+   * @return false if the timeout elapsed without signal
+   */
+  public synchronized boolean await(long lastCount, long timeout, TimeUnit unit) throws InterruptedException {
+    long remainingNanos = unit.toNanos(timeout);
+    long deadline = System.nanoTime() + remainingNanos;
+    while (count == lastCount) {
+      if (remainingNanos <= 0L) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+      remainingNanos = deadline - System.nanoTime();
+    }
+    return true;
+  }
+}
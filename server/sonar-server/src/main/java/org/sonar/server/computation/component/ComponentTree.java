@@ -0,0 +1,223 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.component;
+
+import org.sonar.batch.protocol.Constants;
+import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.batch.protocol.output.BatchReportReader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tree of the components of an analysis report, loaded once so that computation steps
+ * do not parse the component files of the report again and again.
+ * <p/>
+ * Components are stored in compact arrays in depth-first pre-order, which is the order of the former
+ * recursive traversals of the report. Components are identified by their ref, as in the report.
+ * Only the components of type PROJECT and MODULE are kept as full protobuf messages, for their
+ * links, events and version.
+ */
+public class ComponentTree {
+
+  private static final int UNDEFINED = -1;
+
+  private final int[] refs;
+  private final Constants.ComponentType[] types;
+  private final String[] uuids;
+  private final String[] keys;
+  private final String[] paths;
+  private final long[] ids;
+  private final long[] snapshotIds;
+  private final int[] moduleIndexes;
+  // children of component at index i are childIndexes[childOffsets[i]] to childIndexes[childOffsets[i + 1] - 1]
+  private final int[] childOffsets;
+  private final int[] childIndexes;
+  // index of component by ref, -1 if ref does not exist
+  private final int[] indexByRef;
+  private final Map<Integer, BatchReport.Component> projectAndModules;
+
+  private ComponentTree(List<BatchReport.Component> components) {
+    int size = components.size();
+    refs = new int[size];
+    types = new Constants.ComponentType[size];
+    uuids = new String[size];
+    keys = new String[size];
+    paths = new String[size];
+    ids = new long[size];
+    snapshotIds = new long[size];
+    moduleIndexes = new int[size];
+    childOffsets = new int[size + 1];
+    projectAndModules = new HashMap<>();
+
+    int maxRef = 0;
+    int nbChildren = 0;
+    for (int index = 0; index < size; index++) {
+      BatchReport.Component component = components.get(index);
+      refs[index] = component.getRef();
+      types[index] = component.getType();
+      uuids[index] = component.getUuid();
+      keys[index] = component.getKey();
+      paths[index] = component.getPath();
+      ids[index] = component.getId();
+      snapshotIds[index] = component.getSnapshotId();
+      maxRef = Math.max(maxRef, component.getRef());
+      childOffsets[index] = nbChildren;
+      nbChildren += component.getChildRefCount();
+      if (isProjectOrModule(component.getType())) {
+        projectAndModules.put(component.getRef(), component);
+      }
+    }
+    childOffsets[size] = nbChildren;
+
+    indexByRef = new int[maxRef + 1];
+    Arrays.fill(indexByRef, UNDEFINED);
+    for (int index = 0; index < size; index++) {
+      indexByRef[refs[index]] = index;
+    }
+
+    childIndexes = new int[nbChildren];
+    Arrays.fill(moduleIndexes, UNDEFINED);
+    for (int index = 0; index < size; index++) {
+      BatchReport.Component component = components.get(index);
+      int childOffset = childOffsets[index];
+      // the root is its own module. Children of directories belong to the module of the directory.
+      int moduleIndex = moduleIndexes[index] == UNDEFINED ? index : moduleIndexes[index];
+      int moduleOfChildren = isProjectOrModule(types[index]) ? index : moduleIndex;
+      moduleIndexes[index] = moduleIndex;
+      for (int childRef : component.getChildRefList()) {
+        int childIndex = indexByRef[childRef];
+        childIndexes[childOffset] = childIndex;
+        moduleIndexes[childIndex] = moduleOfChildren;
+        childOffset++;
+      }
+    }
+  }
+
+  /**
+   * Reads all the components of the report, starting from the given root
+   */
+  public static ComponentTree load(BatchReportReader reader, int rootRef) {
+    List<BatchReport.Component> components = new ArrayList<>();
+    Deque<Integer> stack = new ArrayDeque<>();
+    stack.push(rootRef);
+    while (!stack.isEmpty()) {
+      BatchReport.Component component = reader.readComponent(stack.pop());
+      components.add(component);
+      List<Integer> childRefs = component.getChildRefList();
+      for (int i = childRefs.size() - 1; i >= 0; i--) {
+        stack.push(childRefs.get(i));
+      }
+    }
+    return new ComponentTree(components);
+  }
+
+  public int size() {
+    return refs.length;
+  }
+
+  /**
+   * Ref of the component at the given position in depth-first pre-order. Position 0 is the root.
+   */
+  public int refAt(int index) {
+    return refs[index];
+  }
+
+  public int rootRef() {
+    return refs[0];
+  }
+
+  public boolean contains(int ref) {
+    return ref >= 0 && ref < indexByRef.length && indexByRef[ref] != UNDEFINED;
+  }
+
+  public Constants.ComponentType type(int ref) {
+    return types[indexOf(ref)];
+  }
+
+  public String uuid(int ref) {
+    return uuids[indexOf(ref)];
+  }
+
+  /**
+   * Empty on directories and files, see {@link BatchReport.Component#getKey()}
+   */
+  public String key(int ref) {
+    return keys[indexOf(ref)];
+  }
+
+  public String path(int ref) {
+    return paths[indexOf(ref)];
+  }
+
+  public long id(int ref) {
+    return ids[indexOf(ref)];
+  }
+
+  public long snapshotId(int ref) {
+    return snapshotIds[indexOf(ref)];
+  }
+
+  public int[] childRefs(int ref) {
+    int index = indexOf(ref);
+    int from = childOffsets[index];
+    int[] result = new int[childOffsets[index + 1] - from];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = refs[childIndexes[from + i]];
+    }
+    return result;
+  }
+
+  /**
+   * Ref of the closest ancestor of type PROJECT or MODULE. The root is its own module.
+   */
+  public int moduleRef(int ref) {
+    return refs[moduleIndexes[indexOf(ref)]];
+  }
+
+  /**
+   * Full message of a component of type PROJECT or MODULE
+   *
+   * @throws IllegalArgumentException if the component is not a project or a module
+   */
+  public BatchReport.Component projectOrModule(int ref) {
+    BatchReport.Component component = projectAndModules.get(ref);
+    if (component == null) {
+      throw new IllegalArgumentException("Component #" + ref + " is not a project or a module");
+    }
+    return component;
+  }
+
+  public static boolean isProjectOrModule(Constants.ComponentType type) {
+    return type == Constants.ComponentType.PROJECT || type == Constants.ComponentType.MODULE;
+  }
+
+  private int indexOf(int ref) {
+    if (!contains(ref)) {
+      throw new IllegalArgumentException("Component #" + ref + " does not exist in report");
+    }
+    return indexByRef[ref];
+  }
+}
@@ -66,15 +66,26 @@ public class AnalysisReportDao implements DaoComponent {
     return mapper(session).selectById(id);
   }
 
+  /**
+   * Books the oldest available report. A report is available if it is PENDING and if no other report
+   * of the same project is being processed. Booking is a conditional update on the status, so that
+   * concurrent callers never get the same report. When the booking is lost to another caller, the available
+   * reports are selected again, as the project of the lost report is not available anymore. The transaction
+   * is ended before, otherwise the databases which isolate transactions with repeatable reads (MySQL InnoDB
+   * by default) would return again the report booked by the other caller.
+   */
   @CheckForNull
   public AnalysisReportDto pop(DbSession session) {
     List<Long> reportIds = mapper(session).selectAvailables(PENDING, WORKING);
-    if (reportIds.isEmpty()) {
-      return null;
+    while (!reportIds.isEmpty()) {
+      AnalysisReportDto report = tryToPop(session, reportIds.get(0));
+      if (report != null) {
+        return report;
+      }
+      session.rollback(true);
+      reportIds = mapper(session).selectAvailables(PENDING, WORKING);
     }
-
-    long reportId = reportIds.get(0);
-    return tryToPop(session, reportId);
+    return null;
   }
 
   @VisibleForTesting
@@ -30,16 +30,17 @@ import java.io.IOException;
 /**
  * Cache of all the issues involved in the analysis. Their state is as it will be
  * persisted in database (after issue tracking, auto-assignment, ...)
- *
+ * <p/>
+ * Issues are stored with the compact {@link IssueCodec}.
  */
 public class IssueCache extends DiskCache<DefaultIssue> {
 
   // this constructor is used by picocontainer
   public IssueCache(TempFolder tempFolder, System2 system2) throws IOException {
-    super(tempFolder.newFile("issues", ".dat"), system2);
+    super(tempFolder.newFile("issues", ".dat"), system2, new IssueCodec());
   }
 
   public IssueCache(File file, System2 system2) {
-    super(file, system2);
+    super(file, system2, new IssueCodec());
   }
 }
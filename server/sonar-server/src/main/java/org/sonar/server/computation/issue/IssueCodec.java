@@ -0,0 +1,560 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.server.util.CloseableIterator;
+import org.sonar.server.util.cache.DiskCacheCodec;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary format of {@link DefaultIssue}, much faster than Java serialization.
+ * <p/>
+ * Values which are shared by many issues (rule keys, component uuids and keys, statuses, logins, ...) are
+ * interned: they are written once, then referenced by their index. Interned strings are also shared
+ * in memory by the decoded issues. The table of interned strings is reset by each encoder, so that
+ * a file can be written by successive encoders.
+ * <p/>
+ * Integers are written as variable-length quantities. Values of field diffs which are not strings or
+ * numbers are written with Java serialization.
+ */
+public class IssueCodec implements DiskCacheCodec<DefaultIssue> {
+
+  // first byte of each entry
+  private static final int TABLE_RESET = 1;
+  private static final int ISSUE = 2;
+
+  // references to interned strings
+  private static final int NULL_STRING = 0;
+  private static final int NEW_STRING = 1;
+  private static final int FIRST_STRING_INDEX = 2;
+
+  // types of values of field diffs
+  private static final int NULL_VALUE = 0;
+  private static final int STRING_VALUE = 1;
+  private static final int LONG_VALUE = 2;
+  private static final int INTEGER_VALUE = 3;
+  private static final int DOUBLE_VALUE = 4;
+  private static final int SERIALIZED_VALUE = 5;
+
+  // references to the changes of issue
+  private static final int NULL_CHANGE = -1;
+  private static final int NEW_CHANGE = -2;
+
+  // bits of boolean flags
+  private static final int MANUAL_SEVERITY = 1;
+  private static final int NEW = 1 << 1;
+  private static final int END_OF_LIFE = 1 << 2;
+  private static final int ON_DISABLED_RULE = 1 << 3;
+  private static final int CHANGED = 1 << 4;
+  private static final int SEND_NOTIFICATIONS = 1 << 5;
+
+  @Override
+  public void writeHeader(OutputStream output) {
+    // no header
+  }
+
+  @Override
+  public Encoder<DefaultIssue> newEncoder(OutputStream output) throws IOException {
+    return new IssueEncoder(output);
+  }
+
+  @Override
+  public CloseableIterator<DefaultIssue> newIterator(InputStream input) {
+    return new IssueIterator(input);
+  }
+
+  private static class IssueEncoder implements Encoder<DefaultIssue> {
+    private final DataOutputStream output;
+    private final Map<String, Integer> internedStrings = new HashMap<>();
+
+    IssueEncoder(OutputStream output) throws IOException {
+      this.output = new DataOutputStream(output);
+      this.output.writeByte(TABLE_RESET);
+    }
+
+    @Override
+    public void encode(DefaultIssue issue) throws IOException {
+      output.writeByte(ISSUE);
+      writeString(issue.key());
+      writeInterned(issue.componentUuid());
+      writeInterned(issue.componentKey());
+      writeInterned(issue.moduleUuid());
+      writeInterned(issue.moduleUuidPath());
+      writeInterned(issue.projectUuid());
+      writeInterned(issue.projectKey());
+      RuleKey ruleKey = issue.ruleKey();
+      writeInterned(ruleKey == null ? null : ruleKey.repository());
+      writeInterned(ruleKey == null ? null : ruleKey.rule());
+      writeInterned(issue.language());
+      writeInterned(issue.severity());
+      writeString(issue.message());
+      writeNullableLong(issue.line() == null ? null : issue.line().longValue());
+      Double effortToFix = issue.effortToFix();
+      output.writeBoolean(effortToFix != null);
+      if (effortToFix != null) {
+        output.writeDouble(effortToFix);
+      }
+      writeNullableLong(issue.debtInMinutes());
+      writeInterned(issue.status());
+      writeInterned(issue.resolution());
+      writeInterned(issue.reporter());
+      writeInterned(issue.assignee());
+      writeString(issue.checksum());
+      writeInterned(issue.authorLogin());
+      writeInterned(issue.actionPlanKey());
+      writeDate(issue.creationDate());
+      writeDate(issue.updateDate());
+      writeDate(issue.closeDate());
+      writeNullableLong(issue.selectedAt());
+      writeVarLong(flags(issue));
+      writeAttributes(issue.attributes());
+      writeTags(issue.tags());
+      writeComments(issue.comments());
+      writeChanges(issue);
+    }
+
+    private static int flags(DefaultIssue issue) {
+      int flags = 0;
+      flags |= issue.manualSeverity() ? MANUAL_SEVERITY : 0;
+      flags |= issue.isNew() ? NEW : 0;
+      flags |= issue.isEndOfLife() ? END_OF_LIFE : 0;
+      flags |= issue.isOnDisabledRule() ? ON_DISABLED_RULE : 0;
+      flags |= issue.isChanged() ? CHANGED : 0;
+      flags |= issue.mustSendNotifications() ? SEND_NOTIFICATIONS : 0;
+      return flags;
+    }
+
+    private void writeAttributes(Map<String, String> attributes) throws IOException {
+      writeVarLong(attributes.size());
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        writeInterned(attribute.getKey());
+        writeString(attribute.getValue());
+      }
+    }
+
+    private void writeTags(Collection<String> tags) throws IOException {
+      writeVarLong(tags.size());
+      for (String tag : tags) {
+        writeInterned(tag);
+      }
+    }
+
+    private void writeComments(List<IssueComment> comments) throws IOException {
+      writeVarLong(comments.size());
+      for (IssueComment comment : comments) {
+        writeString(comment.key());
+        writeInterned(comment.issueKey());
+        writeInterned(comment.userLogin());
+        writeString(comment.markdownText());
+        writeDate(comment.createdAt());
+        writeDate(comment.updatedAt());
+        output.writeBoolean(((DefaultIssueComment) comment).isNew());
+      }
+    }
+
+    /**
+     * The current change is usually also referenced by the list of changes, sometimes several times.
+     * References between the current change and the list are kept.
+     */
+    private void writeChanges(DefaultIssue issue) throws IOException {
+      List<FieldDiffs> changes = issue.changes();
+      writeVarLong(changes.size());
+      for (int i = 0; i < changes.size(); i++) {
+        int previousIndex = indexOf(changes, changes.get(i), i);
+        writeVarLong(previousIndex + 2L);
+        if (previousIndex == NEW_CHANGE) {
+          writeFieldDiffs(changes.get(i));
+        }
+      }
+      FieldDiffs currentChange = issue.currentChange();
+      if (currentChange == null) {
+        writeVarLong(NULL_CHANGE + 2L);
+      } else {
+        int index = indexOf(changes, currentChange, changes.size());
+        writeVarLong(index + 2L);
+        if (index == NEW_CHANGE) {
+          writeFieldDiffs(currentChange);
+        }
+      }
+    }
+
+    /**
+     * Index of the given instance in the first elements of the list, else {@link #NEW_CHANGE}
+     */
+    private static int indexOf(List<FieldDiffs> changes, FieldDiffs change, int limit) {
+      for (int i = 0; i < limit; i++) {
+        if (changes.get(i) == change) {
+          return i;
+        }
+      }
+      return NEW_CHANGE;
+    }
+
+    private void writeFieldDiffs(FieldDiffs diffs) throws IOException {
+      writeInterned(diffs.issueKey());
+      writeInterned(diffs.userLogin());
+      writeDate(diffs.creationDate());
+      writeVarLong(diffs.diffs().size());
+      for (Map.Entry<String, FieldDiffs.Diff> diff : diffs.diffs().entrySet()) {
+        writeInterned(diff.getKey());
+        writeValue(diff.getValue().oldValue());
+        writeValue(diff.getValue().newValue());
+      }
+    }
+
+    private void writeValue(@Nullable Serializable value) throws IOException {
+      if (value == null) {
+        output.writeByte(NULL_VALUE);
+      } else if (value instanceof String) {
+        output.writeByte(STRING_VALUE);
+        writeInterned((String) value);
+      } else if (value instanceof Long) {
+        output.writeByte(LONG_VALUE);
+        output.writeLong((Long) value);
+      } else if (value instanceof Integer) {
+        output.writeByte(INTEGER_VALUE);
+        output.writeInt((Integer) value);
+      } else if (value instanceof Double) {
+        output.writeByte(DOUBLE_VALUE);
+        output.writeDouble((Double) value);
+      } else {
+        output.writeByte(SERIALIZED_VALUE);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+          objectOutput.writeObject(value);
+        }
+        writeVarLong(bytes.size());
+        bytes.writeTo(output);
+      }
+    }
+
+    private void writeInterned(@Nullable String s) throws IOException {
+      if (s == null) {
+        writeVarLong(NULL_STRING);
+        return;
+      }
+      Integer index = internedStrings.get(s);
+      if (index == null) {
+        internedStrings.put(s, internedStrings.size());
+        writeVarLong(NEW_STRING);
+        writeString(s);
+      } else {
+        writeVarLong(index + (long) FIRST_STRING_INDEX);
+      }
+    }
+
+    private void writeString(@Nullable String s) throws IOException {
+      if (s == null) {
+        writeVarLong(0L);
+      } else {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        output.write(bytes);
+      }
+    }
+
+    private void writeDate(@Nullable Date date) throws IOException {
+      writeNullableLong(date == null ? null : date.getTime());
+    }
+
+    private void writeNullableLong(@Nullable Long l) throws IOException {
+      output.writeBoolean(l != null);
+      if (l != null) {
+        writeVarLong(l);
+      }
+    }
+
+    /**
+     * Variable-length quantity, 7 bits per byte. Negative values are written on 10 bytes.
+     */
+    private void writeVarLong(long l) throws IOException {
+      long value = l;
+      while ((value & ~0x7FL) != 0L) {
+        output.writeByte((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      output.writeByte((int) value);
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+
+  private static class IssueIterator extends CloseableIterator<DefaultIssue> {
+    private final DataInputStream input;
+    private final List<String> internedStrings = new ArrayList<>();
+
+    IssueIterator(InputStream input) {
+      this.input = new DataInputStream(input);
+    }
+
+    @Override
+    @CheckForNull
+    protected DefaultIssue doNext() {
+      try {
+        int entryType = input.read();
+        while (entryType == TABLE_RESET) {
+          internedStrings.clear();
+          entryType = input.read();
+        }
+        if (entryType == -1) {
+          return null;
+        }
+        if (entryType != ISSUE) {
+          throw new IllegalStateException("Unexpected entry type: " + entryType);
+        }
+        return readIssue();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read issue", e);
+      }
+    }
+
+    private DefaultIssue readIssue() throws IOException {
+      DefaultIssue issue = new DefaultIssue();
+      issue.setKey(readString());
+      issue.setComponentUuid(readInterned());
+      issue.setComponentKey(readInterned());
+      issue.setModuleUuid(readInterned());
+      issue.setModuleUuidPath(readInterned());
+      issue.setProjectUuid(readInterned());
+      issue.setProjectKey(readInterned());
+      String repository = readInterned();
+      String rule = readInterned();
+      if (repository != null && rule != null) {
+        issue.setRuleKey(RuleKey.of(repository, rule));
+      }
+      issue.setLanguage(readInterned());
+      issue.setSeverity(readInterned());
+      issue.setMessage(readString());
+      Long line = readNullableLong();
+      issue.setLine(line == null ? null : line.intValue());
+      if (input.readBoolean()) {
+        issue.setEffortToFix(input.readDouble());
+      }
+      Long debt = readNullableLong();
+      issue.setDebt(debt == null ? null : Duration.create(debt));
+      String status = readInterned();
+      if (status != null) {
+        issue.setStatus(status);
+      }
+      issue.setResolution(readInterned());
+      issue.setReporter(readInterned());
+      issue.setAssignee(readInterned());
+      issue.setChecksum(readString());
+      issue.setAuthorLogin(readInterned());
+      issue.setActionPlanKey(readInterned());
+      issue.setCreationDate(readDate());
+      issue.setUpdateDate(readDate());
+      issue.setCloseDate(readDate());
+      issue.setSelectedAt(readNullableLong());
+      int flags = (int) readVarLong();
+      issue.setManualSeverity((flags & MANUAL_SEVERITY) != 0);
+      issue.setNew((flags & NEW) != 0);
+      issue.setEndOfLife((flags & END_OF_LIFE) != 0);
+      issue.setOnDisabledRule((flags & ON_DISABLED_RULE) != 0);
+      issue.setChanged((flags & CHANGED) != 0);
+      issue.setSendNotifications((flags & SEND_NOTIFICATIONS) != 0);
+      readAttributes(issue);
+      readTags(issue);
+      readComments(issue);
+      readChanges(issue);
+      return issue;
+    }
+
+    private void readAttributes(DefaultIssue issue) throws IOException {
+      int size = (int) readVarLong();
+      if (size > 0) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+          attributes.put(readInterned(), readString());
+        }
+        issue.setAttributes(attributes);
+      }
+    }
+
+    private void readTags(DefaultIssue issue) throws IOException {
+      int size = (int) readVarLong();
+      if (size > 0) {
+        Set<String> tags = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+          tags.add(readInterned());
+        }
+        issue.setTags(tags);
+      }
+    }
+
+    private void readComments(DefaultIssue issue) throws IOException {
+      int size = (int) readVarLong();
+      for (int i = 0; i < size; i++) {
+        DefaultIssueComment comment = new DefaultIssueComment()
+          .setKey(readString())
+          .setIssueKey(readInterned())
+          .setUserLogin(readInterned())
+          .setMarkdownText(readString())
+          .setCreatedAt(readDate())
+          .setUpdatedAt(readDate())
+          .setNew(input.readBoolean());
+        issue.addComment(comment);
+      }
+    }
+
+    private void readChanges(DefaultIssue issue) throws IOException {
+      int size = (int) readVarLong();
+      List<FieldDiffs> changes = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        int index = (int) readVarLong() - 2;
+        changes.add(index == NEW_CHANGE ? readFieldDiffs() : changes.get(index));
+      }
+      int currentIndex = (int) readVarLong() - 2;
+      if (currentIndex != NULL_CHANGE) {
+        // adds the current change to the list of changes, which is then replaced
+        issue.setCurrentChange(currentIndex == NEW_CHANGE ? readFieldDiffs() : changes.get(currentIndex));
+      }
+      if (size > 0 || currentIndex != NULL_CHANGE) {
+        issue.setChanges(changes);
+      }
+    }
+
+    private FieldDiffs readFieldDiffs() throws IOException {
+      FieldDiffs diffs = new FieldDiffs();
+      diffs.setIssueKey(readInterned());
+      diffs.setUserLogin(readInterned());
+      diffs.setCreationDate(readDate());
+      int size = (int) readVarLong();
+      for (int i = 0; i < size; i++) {
+        diffs.setDiff(readInterned(), readValue(), readValue());
+      }
+      return diffs;
+    }
+
+    @CheckForNull
+    private Serializable readValue() throws IOException {
+      int type = input.readByte();
+      switch (type) {
+        case NULL_VALUE:
+          return null;
+        case STRING_VALUE:
+          return readInterned();
+        case LONG_VALUE:
+          return input.readLong();
+        case INTEGER_VALUE:
+          return input.readInt();
+        case DOUBLE_VALUE:
+          return input.readDouble();
+        case SERIALIZED_VALUE:
+          byte[] bytes = new byte[(int) readVarLong()];
+          input.readFully(bytes);
+          try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Serializable) objectInput.readObject();
+          } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Fail to read value of field diff", e);
+          }
+        default:
+          throw new IllegalStateException("Unexpected type of value: " + type);
+      }
+    }
+
+    @CheckForNull
+    private String readInterned() throws IOException {
+      int ref = (int) readVarLong();
+      if (ref == NULL_STRING) {
+        return null;
+      }
+      if (ref == NEW_STRING) {
+        String s = readString();
+        internedStrings.add(s);
+        return s;
+      }
+      return internedStrings.get(ref - FIRST_STRING_INDEX);
+    }
+
+    @CheckForNull
+    private String readString() throws IOException {
+      int length = (int) readVarLong();
+      if (length == 0) {
+        return null;
+      }
+      byte[] bytes = new byte[length - 1];
+      input.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @CheckForNull
+    private Date readDate() throws IOException {
+      Long time = readNullableLong();
+      return time == null ? null : new Date(time);
+    }
+
+    @CheckForNull
+    private Long readNullableLong() throws IOException {
+      return input.readBoolean() ? readVarLong() : null;
+    }
+
+    private long readVarLong() throws IOException {
+      long result = 0L;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = input.readByte();
+        result |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+      throw new EOFException("Malformed variable-length quantity");
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+}
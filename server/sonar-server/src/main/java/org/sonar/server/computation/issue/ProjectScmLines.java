@@ -0,0 +1,148 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import org.apache.commons.lang.StringUtils;
+import org.sonar.server.source.index.SourceLineDoc;
+import org.sonar.server.source.index.SourceLineIndex;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * SCM authors of the lines of all the files of a project, as stored in the source line index.
+ * Data is loaded by a few routed scroll requests that fetch only the SCM fields, instead of
+ * one search per file.
+ * <p/>
+ * Only the author of each line and the last committer of each file are kept. Authors are
+ * shared between all the lines and files of the project.
+ */
+class ProjectScmLines {
+
+  private final Map<String, FileScmLines> byFileUuid;
+
+  private ProjectScmLines(Map<String, FileScmLines> byFileUuid) {
+    this.byFileUuid = byFileUuid;
+  }
+
+  /**
+   * @return null if the file has no lines in index
+   */
+  @CheckForNull
+  FileScmLines get(String fileUuid) {
+    return byFileUuid.get(fileUuid);
+  }
+
+  static ProjectScmLines load(SourceLineIndex index, String projectUuid) {
+    Map<String, FileBuilder> builders = new HashMap<>();
+    Map<String, String> authors = new HashMap<>();
+    Iterator<SourceLineDoc> lines = index.scrollScmLinesOfProject(projectUuid);
+    while (lines.hasNext()) {
+      SourceLineDoc line = lines.next();
+      String fileUuid = line.fileUuid();
+      FileBuilder builder = builders.get(fileUuid);
+      if (builder == null) {
+        builder = new FileBuilder();
+        builders.put(fileUuid, builder);
+      }
+      builder.add(line.line(), intern(authors, line.scmAuthor()), line.scmDate());
+    }
+
+    Map<String, FileScmLines> byFileUuid = new HashMap<>(builders.size());
+    for (Map.Entry<String, FileBuilder> entry : builders.entrySet()) {
+      byFileUuid.put(entry.getKey(), entry.getValue().build());
+    }
+    return new ProjectScmLines(byFileUuid);
+  }
+
+  @CheckForNull
+  private static String intern(Map<String, String> authors, @Nullable String author) {
+    if (StringUtils.isEmpty(author)) {
+      return null;
+    }
+    String interned = authors.get(author);
+    if (interned == null) {
+      authors.put(author, author);
+      interned = author;
+    }
+    return interned;
+  }
+
+  static class FileScmLines {
+    private final String[] authorByLineIndex;
+    private final String lastCommitAuthor;
+
+    private FileScmLines(String[] authorByLineIndex, String lastCommitAuthor) {
+      this.authorByLineIndex = authorByLineIndex;
+      this.lastCommitAuthor = lastCommitAuthor;
+    }
+
+    /**
+     * @param lineIndex starts at 0
+     */
+    @CheckForNull
+    String lineAuthor(int lineIndex) {
+      if (lineIndex >= 0 && lineIndex < authorByLineIndex.length) {
+        return authorByLineIndex[lineIndex];
+      }
+      return null;
+    }
+
+    /**
+     * Author of the most recent commit of the file
+     */
+    @CheckForNull
+    String lastCommitAuthor() {
+      return lastCommitAuthor;
+    }
+  }
+
+  /**
+   * Lines are not sorted by the scroll requests
+   */
+  private static class FileBuilder {
+    private String[] authorByLineIndex = new String[64];
+    private int lineCount = 0;
+    private long lastCommitDate = 0L;
+    private String lastCommitAuthor = null;
+
+    void add(int line, @Nullable String author, @Nullable Date date) {
+      if (line > authorByLineIndex.length) {
+        authorByLineIndex = Arrays.copyOf(authorByLineIndex, Math.max(line, authorByLineIndex.length * 2));
+      }
+      authorByLineIndex[line - 1] = author;
+      lineCount = Math.max(lineCount, line);
+      if (author != null && date != null && date.getTime() > lastCommitDate) {
+        lastCommitDate = date.getTime();
+        lastCommitAuthor = author;
+      }
+    }
+
+    FileScmLines build() {
+      return new FileScmLines(Arrays.copyOf(authorByLineIndex, lineCount), lastCommitAuthor);
+    }
+  }
+}
@@ -21,20 +21,12 @@ package org.sonar.server.computation.issue;
 
 import org.apache.commons.lang.StringUtils;
 import org.sonar.batch.protocol.output.BatchReport;
-import org.sonar.batch.protocol.output.BatchReport.Scm.Changeset;
-import org.sonar.batch.protocol.output.BatchReport.Scm.Changeset.Builder;
 import org.sonar.batch.protocol.output.BatchReportReader;
-import org.sonar.server.source.index.SourceLineDoc;
 import org.sonar.server.source.index.SourceLineIndex;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 /**
  * Cache of the lines of the currently processed file. Only a <strong>single</strong> file
  * is kept in memory at a time. Data is loaded <strong>on demand</strong> (to avoid non necessary
@@ -42,7 +34,8 @@ import java.util.Map;
  * It relies on:
  * <ul>
  *   <li>the SCM information sent in the report for modified files</li>
- *   <li>the source line index for non-modified files</li>
+ *   <li>the source line index for non-modified files. The authors of the lines of all the files of
+ *   the project are loaded at once, the first time a non-modified file is processed.</li>
  * </ul>
  *
  */
@@ -53,12 +46,17 @@ public class SourceLinesCache {
 
   private boolean loaded = false;
   private BatchReport.Scm scm;
+  private ProjectScmLines.FileScmLines indexedScm;
+  private String currentProjectUuid;
   private String currentFileUuid;
   private Integer currentFileReportRef;
 
   private long lastCommitDate = 0L;
   private String lastCommitAuthor = null;
 
+  private String loadedProjectUuid;
+  private ProjectScmLines projectScmLines;
+
   public SourceLinesCache(SourceLineIndex index) {
     this.index = index;
   }
@@ -66,8 +64,9 @@ public class SourceLinesCache {
   /**
    * Marks the currently processed component
    */
-  void init(String fileUuid, @Nullable Integer fileReportRef, BatchReportReader thisReportReader) {
+  void init(String projectUuid, String fileUuid, @Nullable Integer fileReportRef, BatchReportReader thisReportReader) {
     loaded = false;
+    currentProjectUuid = projectUuid;
     currentFileUuid = fileUuid;
     currentFileReportRef = fileReportRef;
     lastCommitDate = 0L;
@@ -89,9 +88,13 @@ public class SourceLinesCache {
       return lastCommitAuthor;
     }
     String author = null;
-    if (lineIndex < scm.getChangesetIndexByLineCount()) {
-      BatchReport.Scm.Changeset changeset = scm.getChangeset(scm.getChangesetIndexByLine(lineIndex));
-      author = changeset.hasAuthor() ? changeset.getAuthor() : null;
+    if (scm != null) {
+      if (lineIndex < scm.getChangesetIndexByLineCount()) {
+        BatchReport.Scm.Changeset changeset = scm.getChangeset(scm.getChangesetIndexByLine(lineIndex));
+        author = changeset.hasAuthor() ? changeset.getAuthor() : null;
+      }
+    } else if (indexedScm != null) {
+      author = indexedScm.lineAuthor(lineIndex);
     }
 
     return StringUtils.defaultIfEmpty(author, lastCommitAuthor);
@@ -102,53 +105,27 @@ public class SourceLinesCache {
 
     if (!loaded) {
       scm = loadScmFromReport();
-      loaded = scm != null;
-    }
-
-    if (!loaded) {
-      scm = loadLinesFromIndexAndBuildScm();
+      if (scm != null) {
+        computeLastCommitDateAndAuthor();
+      } else {
+        indexedScm = loadScmFromIndex();
+        lastCommitAuthor = indexedScm != null ? indexedScm.lastCommitAuthor() : null;
+      }
       loaded = true;
     }
-
-    computeLastCommitDateAndAuthor();
   }
 
   private BatchReport.Scm loadScmFromReport() {
     return reportReader.readComponentScm(currentFileReportRef);
   }
 
-  private BatchReport.Scm loadLinesFromIndexAndBuildScm() {
-    List<SourceLineDoc> lines = index.getLines(currentFileUuid);
-    Map<String, BatchReport.Scm.Changeset> changesetByRevision = new HashMap<>();
-    BatchReport.Scm.Builder scmBuilder = BatchReport.Scm.newBuilder()
-      .setComponentRef(currentFileReportRef);
-    for (SourceLineDoc sourceLine : lines) {
-      String scmRevision = sourceLine.scmRevision();
-      if (scmRevision == null || changesetByRevision.get(scmRevision) == null) {
-        Builder changeSetBuilder = BatchReport.Scm.Changeset.newBuilder();
-        String scmAuthor = sourceLine.scmAuthor();
-        if (scmAuthor != null) {
-          changeSetBuilder.setAuthor(scmAuthor);
-        }
-        Date scmDate = sourceLine.scmDate();
-        if (scmDate != null) {
-          changeSetBuilder.setDate(scmDate.getTime());
-        }
-        if (scmRevision != null) {
-          changeSetBuilder.setRevision(scmRevision);
-        }
-
-        Changeset changeset = changeSetBuilder.build();
-        scmBuilder.addChangeset(changeset);
-        scmBuilder.addChangesetIndexByLine(scmBuilder.getChangesetCount() - 1);
-        if (scmRevision != null) {
-          changesetByRevision.put(scmRevision, changeset);
-        }
-      } else {
-        scmBuilder.addChangesetIndexByLine(scmBuilder.getChangesetList().indexOf(changesetByRevision.get(scmRevision)));
-      }
+  @CheckForNull
+  private ProjectScmLines.FileScmLines loadScmFromIndex() {
+    if (projectScmLines == null || !currentProjectUuid.equals(loadedProjectUuid)) {
+      projectScmLines = ProjectScmLines.load(index, currentProjectUuid);
+      loadedProjectUuid = currentProjectUuid;
     }
-    return scmBuilder.build();
+    return projectScmLines.get(currentFileUuid);
   }
 
   private void computeLastCommitDateAndAuthor() {
@@ -167,9 +144,11 @@ public class SourceLinesCache {
   }
 
   /**
-   * Makes cache eligible to GC
+   * Makes cache of current file eligible to GC. The SCM lines loaded from index for the
+   * whole project are kept until the end of the report processing.
    */
   public void clear() {
     scm = null;
+    indexedScm = null;
   }
 }
@@ -0,0 +1,190 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation.measure;
+
+import com.google.common.base.Charsets;
+import org.sonar.api.rule.Severity;
+import org.sonar.batch.protocol.output.BatchReport;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Inserts rows of table project_measures straight from the measures of the analysis report, without
+ * MyBatis nor {@link org.sonar.core.measure.db.MeasureDto}. A single prepared statement is
+ * reused and rows are sent by JDBC batches. The caller is responsible for committing the connection.
+ * <p/>
+ * Columns are the same as in MeasureMapper.xml.
+ */
+public class BulkMeasureInserter implements AutoCloseable {
+
+  static final String INSERT_SQL = "INSERT INTO project_measures (" +
+    "value, metric_id, snapshot_id, rule_id, text_value, tendency, project_id, alert_status, alert_text, description, " +
+    "rule_priority, characteristic_id, person_id, variation_value_1, variation_value_2, variation_value_3, variation_value_4, " +
+    "variation_value_5, measure_data) " +
+    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  /**
+   * Longer values are stored in the column measure_data, see {@link org.sonar.core.measure.db.MeasureDto#setData(String)}
+   */
+  private static final int MAX_TEXT_VALUE_LENGTH = 4000;
+
+  private final PreparedStatement stmt;
+  private final int batchSize;
+  private int pendingRows = 0;
+  private long insertedRows = 0L;
+
+  public BulkMeasureInserter(Connection connection, int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be strictly positive: " + batchSize);
+    }
+    this.batchSize = batchSize;
+    try {
+      this.stmt = connection.prepareStatement(INSERT_SQL);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request: " + INSERT_SQL, e);
+    }
+  }
+
+  /**
+   * Adds a row to the current JDBC batch, which is executed as soon as it reaches the batch size.
+   */
+  public BulkMeasureInserter insert(BatchReport.Measure measure, long componentId, long snapshotId, int metricId, @Nullable Integer ruleId) {
+    try {
+      setDouble(1, valueAsDouble(measure));
+      stmt.setInt(2, metricId);
+      stmt.setLong(3, snapshotId);
+      setInteger(4, ruleId);
+      String data = measure.hasStringValue() ? measure.getStringValue() : null;
+      boolean isLongData = data != null && data.length() > MAX_TEXT_VALUE_LENGTH;
+      setString(5, isLongData ? null : data);
+      setInteger(6, measure.hasTendency() ? measure.getTendency() : null);
+      stmt.setLong(7, componentId);
+      setString(8, measure.hasAlertStatus() ? measure.getAlertStatus() : null);
+      setString(9, measure.hasAlertText() ? measure.getAlertText() : null);
+      setString(10, measure.hasDescription() ? measure.getDescription() : null);
+      setInteger(11, measure.hasSeverity() ? Severity.ALL.indexOf(measure.getSeverity().name()) : null);
+      setInteger(12, measure.hasCharactericId() ? measure.getCharactericId() : null);
+      setInteger(13, measure.hasPersonId() ? measure.getPersonId() : null);
+      setDouble(14, measure.hasVariationValue1() ? measure.getVariationValue1() : null);
+      setDouble(15, measure.hasVariationValue2() ? measure.getVariationValue2() : null);
+      setDouble(16, measure.hasVariationValue3() ? measure.getVariationValue3() : null);
+      setDouble(17, measure.hasVariationValue4() ? measure.getVariationValue4() : null);
+      setDouble(18, measure.hasVariationValue5() ? measure.getVariationValue5() : null);
+      if (isLongData) {
+        stmt.setBytes(19, data.getBytes(Charsets.UTF_8));
+      } else {
+        stmt.setNull(19, Types.BINARY);
+      }
+      stmt.addBatch();
+      pendingRows++;
+      if (pendingRows >= batchSize) {
+        flush();
+      }
+      return this;
+    } catch (SQLException e) {
+      throw new IllegalStateException(String.format("Fail to insert measure %s", measure), e);
+    }
+  }
+
+  /**
+   * Executes the pending rows
+   */
+  public void flush() {
+    if (pendingRows > 0) {
+      try {
+        stmt.executeBatch();
+        insertedRows += pendingRows;
+        pendingRows = 0;
+      } catch (SQLException e) {
+        throw new IllegalStateException("Fail to insert measures", e);
+      }
+    }
+  }
+
+  /**
+   * Number of rows sent to database, excluding the pending rows
+   */
+  public long insertedRows() {
+    return insertedRows;
+  }
+
+  /**
+   * Pending rows are not executed
+   */
+  @Override
+  public void close() {
+    try {
+      stmt.close();
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to close SQL statement", e);
+    }
+  }
+
+  /**
+   * return the numerical value as a double. It's the type used in db.
+   * Returns null if no numerical value found
+   */
+  @CheckForNull
+  static Double valueAsDouble(BatchReport.Measure measure) {
+    switch (measure.getValueType()) {
+      case BOOLEAN:
+        return measure.hasBooleanValue() ? (measure.getBooleanValue() ? 1.0d : 0.0d) : null;
+      case INT:
+        return measure.hasIntValue() ? (double) measure.getIntValue() : null;
+      case LONG:
+        return measure.hasLongValue() ? (double) measure.getLongValue() : null;
+      case DOUBLE:
+        return measure.hasDoubleValue() ? measure.getDoubleValue() : null;
+      default:
+        return null;
+    }
+  }
+
+  private void setDouble(int index, @Nullable Double value) throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, Types.DOUBLE);
+    } else {
+      stmt.setDouble(index, value);
+    }
+  }
+
+  private void setInteger(int index, @Nullable Integer value) throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, Types.INTEGER);
+    } else {
+      stmt.setInt(index, value);
+    }
+  }
+
+  private void setString(int index, @Nullable String value) throws SQLException {
+    if (value == null) {
+      stmt.setNull(index, Types.VARCHAR);
+    } else {
+      stmt.setString(index, value);
+    }
+  }
+}
@@ -23,7 +23,8 @@ package org.sonar.server.computation.step;
 import org.sonar.server.computation.ComputationContext;
 
 /**
- * Implementations must be declared into {@link org.sonar.server.computation.step.ComputationSteps#orderedStepClasses()}
+ * Implementations must be declared into {@link org.sonar.server.computation.step.ComputationSteps#orderedStepClasses()}.
+ * Steps may be executed concurrently, see {@link org.sonar.server.computation.step.ComputationSteps#stepDependencies()}.
  */
 public interface ComputationStep {
 
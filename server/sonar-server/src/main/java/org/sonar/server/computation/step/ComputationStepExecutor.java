@@ -0,0 +1,258 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation.step;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.ArrayUtils;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.server.computation.ComputationContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes the {@link ComputationSteps} of a report. A step is started as soon as all its
+ * dependencies (see {@link ComputationSteps#stepDependencies()}) are completed, so independent steps run
+ * concurrently on a pool of {@link #THREADS_PROPERTY} threads. With a single thread, steps are executed in
+ * the order of {@link ComputationSteps#orderedStepClasses()}.
+ * <p/>
+ * The first failure stops the scheduling of new steps. It is thrown once the running steps are completed.
+ * <p/>
+ * Duration of each step is logged in DEBUG level, with the critical path of the execution, i.e. the chain
+ * of dependent steps with the greatest total duration.
+ */
+public class ComputationStepExecutor implements ServerComponent {
+
+  public static final String THREADS_PROPERTY = "sonar.computation.stepThreads";
+  static final int DEFAULT_THREADS = 4;
+  private static final String THREAD_NAME_PREFIX = "computation-step-";
+
+  private static final Logger LOG = Loggers.get(ComputationStepExecutor.class);
+
+  private final ComputationSteps steps;
+  private final int threads;
+
+  public ComputationStepExecutor(ComputationSteps steps, Settings settings) {
+    this.steps = steps;
+    this.threads = numberOfThreads(settings);
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  public void execute(ComputationContext context) {
+    Map<ComputationStep, Long> durations = Collections.synchronizedMap(new IdentityHashMap<ComputationStep, Long>());
+    if (threads == 1) {
+      executeSequentially(context, durations);
+    } else {
+      executeConcurrently(context, durations);
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Critical path: {}", criticalPath(durations));
+    }
+  }
+
+  private void executeSequentially(ComputationContext context, Map<ComputationStep, Long> durations) {
+    for (ComputationStep step : steps.orderedSteps()) {
+      if (isSupported(step, context)) {
+        executeStep(step, context, durations);
+      }
+    }
+  }
+
+  private void executeConcurrently(ComputationContext context, Map<ComputationStep, Long> durations) {
+    List<ComputationStep> orderedSteps = steps.orderedSteps();
+    Map<ComputationStep, Integer> remainingDependencies = new IdentityHashMap<>();
+    Map<ComputationStep, List<ComputationStep>> dependents = new IdentityHashMap<>();
+    Deque<ComputationStep> ready = new ArrayDeque<>();
+    for (ComputationStep step : orderedSteps) {
+      remainingDependencies.put(step, steps.dependencies(step).size());
+      for (ComputationStep dependency : steps.dependencies(step)) {
+        List<ComputationStep> list = dependents.get(dependency);
+        if (list == null) {
+          list = new ArrayList<>();
+          dependents.put(dependency, list);
+        }
+        list.add(step);
+      }
+      if (steps.dependencies(step).isEmpty()) {
+        ready.add(step);
+      }
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat(THREAD_NAME_PREFIX + "%d").setPriority(Thread.MIN_PRIORITY).build());
+    CompletionService<ComputationStep> completionService = new ExecutorCompletionService<>(executorService);
+    Throwable failure = null;
+    int running = 0;
+    try {
+      while (!ready.isEmpty() || running > 0) {
+        while (failure == null && !ready.isEmpty()) {
+          ComputationStep step = ready.poll();
+          if (isSupported(step, context)) {
+            completionService.submit(new StepTask(step, context, durations));
+            running++;
+          } else {
+            complete(step, remainingDependencies, dependents, ready);
+          }
+        }
+        if (running == 0) {
+          break;
+        }
+        Future<ComputationStep> done = completionService.take();
+        running--;
+        try {
+          complete(done.get(), remainingDependencies, dependents, ready);
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing computation steps", e);
+    } finally {
+      executorService.shutdownNow();
+    }
+    if (failure != null) {
+      throw Throwables.propagate(failure);
+    }
+  }
+
+  private static void complete(ComputationStep step, Map<ComputationStep, Integer> remainingDependencies,
+    Map<ComputationStep, List<ComputationStep>> dependents, Deque<ComputationStep> ready) {
+    List<ComputationStep> stepDependents = dependents.get(step);
+    if (stepDependents != null) {
+      for (ComputationStep dependent : stepDependents) {
+        int remaining = remainingDependencies.get(dependent) - 1;
+        remainingDependencies.put(dependent, remaining);
+        if (remaining == 0) {
+          ready.add(dependent);
+        }
+      }
+    }
+  }
+
+  private static boolean isSupported(ComputationStep step, ComputationContext context) {
+    return ArrayUtils.contains(step.supportedProjectQualifiers(), context.getProject().qualifier());
+  }
+
+  private static void executeStep(ComputationStep step, ComputationContext context, Map<ComputationStep, Long> durations) {
+    Profiler stepProfiler = Profiler.createIfDebug(LOG).startDebug(step.getDescription());
+    long start = System.currentTimeMillis();
+    step.execute(context);
+    durations.put(step, System.currentTimeMillis() - start);
+    stepProfiler.stopDebug();
+  }
+
+  /**
+   * Chain of executed steps with the greatest total duration, for example
+   * "ParseReportStep (1200ms) > PersistIssuesStep (800ms) > SwitchSnapshotStep (10ms) | time=2010ms".
+   * Steps which were not executed have no duration.
+   */
+  String criticalPath(Map<ComputationStep, Long> durations) {
+    Map<ComputationStep, Long> pathDurations = new IdentityHashMap<>();
+    Map<ComputationStep, ComputationStep> previous = new IdentityHashMap<>();
+    ComputationStep last = null;
+    for (ComputationStep step : steps.orderedSteps()) {
+      long pathDuration = 0L;
+      for (ComputationStep dependency : steps.dependencies(step)) {
+        Long dependencyPathDuration = pathDurations.get(dependency);
+        if (dependencyPathDuration != null && dependencyPathDuration >= pathDuration) {
+          pathDuration = dependencyPathDuration;
+          previous.put(step, dependency);
+        }
+      }
+      pathDuration += duration(durations, step);
+      pathDurations.put(step, pathDuration);
+      if (last == null || pathDuration >= pathDurations.get(last)) {
+        last = step;
+      }
+    }
+
+    List<String> path = new ArrayList<>();
+    for (ComputationStep step = last; step != null; step = previous.get(step)) {
+      Long duration = durations.get(step);
+      if (duration != null) {
+        path.add(String.format("%s (%dms)", step.getClass().getSimpleName(), duration));
+      }
+    }
+    Collections.reverse(path);
+    StringBuilder sb = new StringBuilder();
+    for (String s : path) {
+      if (sb.length() > 0) {
+        sb.append(" > ");
+      }
+      sb.append(s);
+    }
+    return sb.append(" | time=").append(last == null ? 0L : pathDurations.get(last)).append("ms").toString();
+  }
+
+  private static long duration(Map<ComputationStep, Long> durations, ComputationStep step) {
+    Long duration = durations.get(step);
+    return duration == null ? 0L : duration;
+  }
+
+  private static int numberOfThreads(Settings settings) {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", THREADS_PROPERTY, threads));
+    }
+    return threads == 0 ? DEFAULT_THREADS : threads;
+  }
+
+  private static class StepTask implements Callable<ComputationStep> {
+    private final ComputationStep step;
+    private final ComputationContext context;
+    private final Map<ComputationStep, Long> durations;
+
+    StepTask(ComputationStep step, ComputationContext context, Map<ComputationStep, Long> durations) {
+      this.step = step;
+      this.context = context;
+      this.durations = durations;
+    }
+
+    @Override
+    public ComputationStep call() {
+      executeStep(step, context, durations);
+      return step;
+    }
+  }
+}
@@ -20,14 +20,19 @@
 
 package org.sonar.server.computation.step;
 
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.SetMultimap;
 import org.sonar.server.computation.ComputationContainer;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Ordered list of steps to be executed
+ * Ordered list of steps to be executed, and dependencies between steps. Steps
+ * which do not depend on each other may be executed concurrently, see {@link ComputationStepExecutor}.
  */
 public class ComputationSteps {
 
@@ -65,16 +70,60 @@ public class ComputationSteps {
       SendIssueNotificationsStep.class);
   }
 
+  /**
+   * Steps that must be completed before a step is started. Each step must be declared
+   * after its dependencies in {@link #orderedStepClasses()}.
+   */
+  public static SetMultimap<Class<? extends ComputationStep>, Class<? extends ComputationStep>> stepDependencies() {
+    return ImmutableSetMultimap.<Class<? extends ComputationStep>, Class<? extends ComputationStep>>builder()
+      // Persist data. Steps only insert rows and write to different tables, except PersistMeasuresStep and
+      // PersistDuplicationMeasuresStep which both insert into PROJECT_MEASURES. They can still run concurrently,
+      // in distinct transactions, as they insert different metrics (PersistMeasuresStep ignores duplications_data),
+      // neither reads the rows of the other and the table has no unique constraint.
+      .put(PersistMeasuresStep.class, ParseReportStep.class)
+      .put(PersistIssuesStep.class, ParseReportStep.class)
+      .put(PersistComponentLinksStep.class, ParseReportStep.class)
+      .put(PersistEventsStep.class, ParseReportStep.class)
+      .put(PersistDuplicationMeasuresStep.class, ParseReportStep.class)
+
+      // all db writes are done before switching snapshot
+      .putAll(SwitchSnapshotStep.class, PersistMeasuresStep.class, PersistIssuesStep.class, PersistComponentLinksStep.class,
+        PersistEventsStep.class, PersistDuplicationMeasuresStep.class)
+      .put(IndexComponentsStep.class, SwitchSnapshotStep.class)
+      // purge may delete the resource index of removed components
+      .put(PurgeDatastoresStep.class, IndexComponentsStep.class)
+
+      // ES indexing is done after all db changes. Indices are different.
+      .put(ApplyPermissionsStep.class, PurgeDatastoresStep.class)
+      // issues are children of the authorization documents
+      .put(IndexIssuesStep.class, ApplyPermissionsStep.class)
+      .put(IndexSourceLinesStep.class, PurgeDatastoresStep.class)
+      .put(IndexViewsStep.class, PurgeDatastoresStep.class)
+      .put(PurgeRemovedViewsStep.class, IndexViewsStep.class)
+
+      .putAll(SendIssueNotificationsStep.class, IndexIssuesStep.class, IndexSourceLinesStep.class, PurgeRemovedViewsStep.class)
+      .build();
+  }
+
   private final List<ComputationStep> orderedSteps;
+  private final SetMultimap<ComputationStep, ComputationStep> dependencies;
 
   public ComputationSteps(ComputationStep... s) {
     this.orderedSteps = order(s);
+    this.dependencies = dependencies(s);
   }
 
   public List<ComputationStep> orderedSteps() {
     return orderedSteps;
   }
 
+  /**
+   * Steps that must be completed before the given step is started
+   */
+  public Set<ComputationStep> dependencies(ComputationStep step) {
+    return dependencies.get(step);
+  }
+
   private static List<ComputationStep> order(ComputationStep[] steps) {
     List<ComputationStep> result = Lists.newArrayList();
     for (Class<? extends ComputationStep> clazz : orderedStepClasses()) {
@@ -83,6 +132,18 @@ public class ComputationSteps {
     return result;
   }
 
+  private static SetMultimap<ComputationStep, ComputationStep> dependencies(ComputationStep[] steps) {
+    List<Class<? extends ComputationStep>> orderedClasses = orderedStepClasses();
+    ImmutableSetMultimap.Builder<ComputationStep, ComputationStep> result = ImmutableSetMultimap.builder();
+    for (Map.Entry<Class<? extends ComputationStep>, Class<? extends ComputationStep>> dependency : stepDependencies().entries()) {
+      if (orderedClasses.indexOf(dependency.getValue()) >= orderedClasses.indexOf(dependency.getKey())) {
+        throw new IllegalStateException(String.format("Step %s must be declared before %s", dependency.getValue(), dependency.getKey()));
+      }
+      result.put(find(steps, dependency.getKey()), find(steps, dependency.getValue()));
+    }
+    return result.build();
+  }
+
   private static ComputationStep find(ComputationStep[] steps, Class<? extends ComputationStep> clazz) {
     for (ComputationStep step : steps) {
       if (clazz.isInstance(step)) {
@@ -24,6 +24,7 @@ import org.sonar.api.resources.Qualifiers;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 import org.sonar.server.computation.issue.IssueComputation;
 
 import java.util.List;
@@ -43,19 +44,18 @@ public class ParseReportStep implements ComputationStep {
 
   @Override
   public void execute(ComputationContext context) {
-    int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-    recursivelyProcessComponent(context, rootComponentRef);
+    processComponents(context);
     processDeletedComponents(context);
     issueComputation.afterReportProcessing();
   }
 
-  private void recursivelyProcessComponent(ComputationContext context, int componentRef) {
+  private void processComponents(ComputationContext context) {
     BatchReportReader reportReader = context.getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
-    List<BatchReport.Issue> issues = reportReader.readComponentIssues(componentRef);
-    issueComputation.processComponentIssues(context, issues, component.getUuid(), componentRef);
-    for (Integer childRef : component.getChildRefList()) {
-      recursivelyProcessComponent(context, childRef);
+    ComponentTree tree = context.getComponentTree();
+    for (int i = 0; i < tree.size(); i++) {
+      int componentRef = tree.refAt(i);
+      List<BatchReport.Issue> issues = reportReader.readComponentIssues(componentRef);
+      issueComputation.processComponentIssues(context, issues, tree.uuid(componentRef), componentRef);
     }
   }
 
@@ -27,11 +27,11 @@ import org.sonar.api.i18n.I18n;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.batch.protocol.Constants;
 import org.sonar.batch.protocol.output.BatchReport;
-import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.core.component.ComponentLinkDto;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 import org.sonar.server.db.DbClient;
 
 import javax.annotation.Nullable;
@@ -70,30 +70,23 @@ public class PersistComponentLinksStep implements ComputationStep {
   public void execute(ComputationContext context) {
     DbSession session = dbClient.openSession(false);
     try {
-      int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-      recursivelyProcessComponent(session, context, rootComponentRef);
+      ComponentTree tree = context.getComponentTree();
+      for (int i = 0; i < tree.size(); i++) {
+        int componentRef = tree.refAt(i);
+        if (ComponentTree.isProjectOrModule(tree.type(componentRef))) {
+          processLinks(session, tree.projectOrModule(componentRef));
+        }
+      }
       session.commit();
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
-  private void recursivelyProcessComponent(DbSession session, ComputationContext context, int componentRef) {
-    BatchReportReader reportReader = context.getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
-    processLinks(session, component);
-
-    for (Integer childRef : component.getChildRefList()) {
-      recursivelyProcessComponent(session, context, childRef);
-    }
-  }
-
   private void processLinks(DbSession session, BatchReport.Component component) {
-    if (component.getType().equals(Constants.ComponentType.PROJECT) || component.getType().equals(Constants.ComponentType.MODULE)) {
-      List<BatchReport.ComponentLink> links = component.getLinkList();
-      List<ComponentLinkDto> previousLinks = dbClient.componentLinkDao().selectByComponentUuid(session, component.getUuid());
-      mergeLinks(session, component.getUuid(), links, previousLinks);
-    }
+    List<BatchReport.ComponentLink> links = component.getLinkList();
+    List<ComponentLinkDto> previousLinks = dbClient.componentLinkDao().selectByComponentUuid(session, component.getUuid());
+    mergeLinks(session, component.getUuid(), links, previousLinks);
   }
 
   private void mergeLinks(DbSession session, String componentUuid, List<BatchReport.ComponentLink> links, List<ComponentLinkDto> previousLinks) {
@@ -26,10 +26,11 @@ import org.sonar.batch.protocol.Constants;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 import org.sonar.server.computation.source.ReportIterator;
 import org.sonar.server.source.db.FileSourceDb;
 
-import java.io.File;
+import java.io.InputStream;
 
 /**
  * Nothing is persist for the moment. Only Coverage are read and not persist for the moment
@@ -46,27 +47,28 @@ public class PersistCoverageStep implements ComputationStep {
 
   @Override
   public void execute(ComputationContext context) {
-    int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-    recursivelyProcessComponent(context, rootComponentRef);
+    ComponentTree tree = context.getComponentTree();
+    for (int i = 0; i < tree.size(); i++) {
+      processComponent(context, tree.refAt(i));
+    }
   }
 
-  private void recursivelyProcessComponent(ComputationContext context, int componentRef) {
+  private void processComponent(ComputationContext context, int componentRef) {
     BatchReportReader reportReader = context.getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
-    if (component.getType().equals(Constants.ComponentType.FILE)) {
-      File coverageFile = reportReader.readFileCoverage(componentRef);
-      if (coverageFile != null) {
-        ReportIterator<BatchReport.Coverage> coverageReport = new ReportIterator<>(coverageFile, BatchReport.Coverage.PARSER);
-        processCoverage(component, coverageReport);
+    if (context.getComponentTree().type(componentRef).equals(Constants.ComponentType.FILE)) {
+      InputStream coverageStream = reportReader.openFileCoverage(componentRef);
+      if (coverageStream != null) {
+        ReportIterator<BatchReport.Coverage> coverageReport = new ReportIterator<>(coverageStream, BatchReport.Coverage.PARSER);
+        try {
+          processCoverage(coverageReport);
+        } finally {
+          coverageReport.close();
+        }
       }
     }
-
-    for (Integer childRef : component.getChildRefList()) {
-      recursivelyProcessComponent(context, childRef);
-    }
   }
 
-  private void processCoverage(BatchReport.Component component, ReportIterator<BatchReport.Coverage> coverageReport) {
+  private void processCoverage(ReportIterator<BatchReport.Coverage> coverageReport) {
     fileSourceData = null;
     FileSourceDb.Data.Builder dataBuilder = FileSourceDb.Data.newBuilder();
     while (coverageReport.hasNext()) {
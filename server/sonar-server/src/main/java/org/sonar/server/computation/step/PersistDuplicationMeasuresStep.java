@@ -23,7 +23,6 @@ package org.sonar.server.computation.step;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Qualifiers;
-import org.sonar.batch.protocol.Constants;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReport.Range;
 import org.sonar.batch.protocol.output.BatchReportReader;
@@ -33,6 +32,7 @@ import org.sonar.core.measure.db.MetricDto;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 import org.sonar.server.db.DbClient;
 
 import java.util.List;
@@ -56,53 +56,48 @@ public class PersistDuplicationMeasuresStep implements ComputationStep {
     try {
       MetricDto duplicationMetric = dbClient.metricDao().selectByKey(session, CoreMetrics.DUPLICATIONS_DATA_KEY);
       DuplicationContext duplicationContext = new DuplicationContext(context, duplicationMetric, session);
-      int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-      recursivelyProcessComponent(duplicationContext, rootComponentRef, rootComponentRef);
+      ComponentTree tree = context.getComponentTree();
+      for (int i = 0; i < tree.size(); i++) {
+        processComponent(duplicationContext, tree.refAt(i));
+      }
       session.commit();
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
-  private void recursivelyProcessComponent(DuplicationContext duplicationContext, int parentModuleRef, int componentRef) {
+  private void processComponent(DuplicationContext duplicationContext, int componentRef) {
     BatchReportReader reportReader = duplicationContext.context().getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
     List<BatchReport.Duplication> duplications = reportReader.readComponentDuplications(componentRef);
     if (!duplications.isEmpty()) {
-      saveDuplications(duplicationContext, reportReader.readComponent(parentModuleRef), component, duplications);
-    }
-
-    for (Integer childRef : component.getChildRefList()) {
-      // If current component is a folder, we need to keep the parent reference to module parent
-      int nextParent = !component.getType().equals(Constants.ComponentType.PROJECT) && !component.getType().equals(Constants.ComponentType.MODULE) ?
-        parentModuleRef : componentRef;
-      recursivelyProcessComponent(duplicationContext, nextParent, childRef);
+      saveDuplications(duplicationContext, componentRef, duplications);
     }
   }
 
-  private void saveDuplications(DuplicationContext duplicationContext, BatchReport.Component parentComponent, BatchReport.Component component,
-    List<BatchReport.Duplication> duplications) {
-
-    String duplicationXml = createXmlDuplications(duplicationContext, parentComponent, component.getPath(), duplications);
+  private void saveDuplications(DuplicationContext duplicationContext, int componentRef, List<BatchReport.Duplication> duplications) {
+    ComponentTree tree = duplicationContext.context().getComponentTree();
+    // the key of the parent module is used, as the key is not set on directories and files
+    String parentModuleKey = tree.key(tree.moduleRef(componentRef));
+    String duplicationXml = createXmlDuplications(duplicationContext, parentModuleKey, tree.path(componentRef), duplications);
     MeasureDto measureDto = new MeasureDto()
       .setMetricId(duplicationContext.metric().getId())
       .setData(duplicationXml)
-      .setComponentId(component.getId())
-      .setSnapshotId(component.getSnapshotId());
+      .setComponentId(tree.id(componentRef))
+      .setSnapshotId(tree.snapshotId(componentRef));
     dbClient.measureDao().insert(duplicationContext.session(), measureDto);
   }
 
-  private String createXmlDuplications(DuplicationContext duplicationContext, BatchReport.Component parentComponent, String componentPath,
+  private String createXmlDuplications(DuplicationContext duplicationContext, String parentModuleKey, String componentPath,
     Iterable<BatchReport.Duplication> duplications) {
 
     StringBuilder xml = new StringBuilder();
     xml.append("<duplications>");
     for (BatchReport.Duplication duplication : duplications) {
       xml.append("<g>");
-      appendDuplication(xml, ComponentKeys.createKey(parentComponent.getKey(), componentPath, duplicationContext.context().getReportMetadata().getBranch()),
+      appendDuplication(xml, ComponentKeys.createKey(parentModuleKey, componentPath, duplicationContext.context().getReportMetadata().getBranch()),
         duplication.getOriginPosition());
       for (BatchReport.Duplicate duplicationBlock : duplication.getDuplicateList()) {
-        processDuplicationBlock(duplicationContext, xml, duplicationBlock, parentComponent.getKey(), componentPath);
+        processDuplicationBlock(duplicationContext, xml, duplicationBlock, parentModuleKey, componentPath);
       }
       xml.append("</g>");
     }
@@ -121,8 +116,8 @@ public class PersistDuplicationMeasuresStep implements ComputationStep {
       String branch = duplicationContext.context().getReportMetadata().getBranch();
       if (duplicate.hasOtherFileRef()) {
         // Duplication is on a different file
-        BatchReport.Component duplicationComponent = duplicationContext.context().getReportReader().readComponent(duplicate.getOtherFileRef());
-        appendDuplication(xml, ComponentKeys.createKey(parentComponentKey, duplicationComponent.getPath(), branch), duplicate);
+        String otherFilePath = duplicationContext.context().getComponentTree().path(duplicate.getOtherFileRef());
+        appendDuplication(xml, ComponentKeys.createKey(parentComponentKey, otherFilePath, branch), duplicate);
       } else {
         // Duplication is on a the same file
         appendDuplication(xml, ComponentKeys.createKey(parentComponentKey, componentPath, branch), duplicate);
@@ -24,11 +24,11 @@ import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.Constants;
 import org.sonar.batch.protocol.output.BatchReport;
-import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.core.event.EventDto;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 import org.sonar.server.db.DbClient;
 
 import java.util.List;
@@ -52,25 +52,23 @@ public class PersistEventsStep implements ComputationStep {
   public void execute(ComputationContext context) {
     DbSession session = dbClient.openSession(false);
     try {
-      int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-      recursivelyProcessComponent(session, context, rootComponentRef);
+      long analysisDate = context.getReportMetadata().getAnalysisDate();
+      ComponentTree tree = context.getComponentTree();
+      for (int i = 0; i < tree.size(); i++) {
+        int componentRef = tree.refAt(i);
+        // events and version are available only on projects and modules
+        if (ComponentTree.isProjectOrModule(tree.type(componentRef))) {
+          BatchReport.Component component = tree.projectOrModule(componentRef);
+          processEvents(session, component, analysisDate);
+          saveVersionEvent(session, component, analysisDate);
+        }
+      }
       session.commit();
     } finally {
       MyBatis.closeQuietly(session);
     }
   }
 
-  private void recursivelyProcessComponent(DbSession session, ComputationContext context, int componentRef) {
-    BatchReportReader reportReader = context.getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
-    processEvents(session, component, context.getReportMetadata().getAnalysisDate());
-    saveVersionEvent(session, component, context.getReportMetadata().getAnalysisDate());
-
-    for (Integer childRef : component.getChildRefList()) {
-      recursivelyProcessComponent(session, context, childRef);
-    }
-  }
-
   private void processEvents(DbSession session, BatchReport.Component component, Long analysisDate) {
     List<BatchReport.Event> events = component.getEventList();
     if (!events.isEmpty()) {
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.step;
 
+import org.apache.ibatis.executor.BatchResult;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.issue.internal.DefaultIssue;
@@ -27,6 +28,7 @@ import org.sonar.api.issue.internal.FieldDiffs;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.db.*;
+import org.sonar.core.persistence.BatchSession;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.computation.ComputationContext;
@@ -35,8 +37,28 @@ import org.sonar.server.computation.issue.RuleCache;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.util.CloseableIterator;
 
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Issues are persisted by chunks of {@link #CHUNK_SIZE}. The inserts, the updates, the conditional updates
+ * and the inserts of changes of a chunk are sent in distinct JDBC batches.
+ * <p/>
+ * Update counts of the batch of conditional updates tell the issues which were changed by end-users
+ * since they were loaded by the analysis. Only these issues are given to {@link UpdateConflictResolver}.
+ */
 public class PersistIssuesStep implements ComputationStep {
 
+  /**
+   * Must be lower than {@link BatchSession#MAX_BATCH_SIZE}. The session commits by itself as soon as
+   * it counts {@link BatchSession#MAX_BATCH_SIZE} statements, so the update counts of the conditional
+   * updates flushed by this commit would be lost and their conflicts would not be resolved.
+   */
+  static final int CHUNK_SIZE = BatchSession.MAX_BATCH_SIZE - 1;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final UpdateConflictResolver conflictResolver;
@@ -60,38 +82,32 @@ public class PersistIssuesStep implements ComputationStep {
   @Override
   public void execute(ComputationContext context) {
     DbSession session = dbClient.openSession(true);
-    IssueMapper mapper = session.getMapper(IssueMapper.class);
-    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
-
     CloseableIterator<DefaultIssue> issues = issueCache.traverse();
     try {
+      Chunk chunk = new Chunk();
       while (issues.hasNext()) {
         DefaultIssue issue = issues.next();
-        boolean saved = false;
         if (issue.isNew()) {
           Integer ruleId = ruleCache.get(issue.ruleKey()).getId();
-          mapper.insert(IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now()));
-          saved = true;
+          chunk.inserts.add(IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now()));
+          chunk.saved.add(issue);
         } else if (issue.isChanged()) {
           IssueDto dto = IssueDto.toDtoForUpdate(issue, system2.now());
           if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
             // Issue is closed by scan or changed by end-user
-            mapper.update(dto);
+            chunk.updates.add(dto);
           } else {
-            int updateCount = mapper.updateIfBeforeSelectedDate(dto);
-            if (updateCount == 0) {
-              // End-user and scan changed the issue at the same time.
-              // See https://jira.codehaus.org/browse/SONAR-4309
-              conflictResolver.resolve(issue, mapper);
-            }
+            chunk.conditionalUpdates.put(issue.key(), dto);
+            chunk.conditionallyUpdatedIssues.put(issue.key(), issue);
           }
-          saved = true;
+          chunk.saved.add(issue);
         }
-        if (saved) {
-          insertChanges(changeMapper, issue);
+        if (chunk.saved.size() >= CHUNK_SIZE) {
+          persist(session, chunk);
+          chunk = new Chunk();
         }
       }
-      session.flushStatements();
+      persist(session, chunk);
       session.commit();
     } finally {
       MyBatis.closeQuietly(session);
@@ -99,6 +115,54 @@ public class PersistIssuesStep implements ComputationStep {
     }
   }
 
+  private void persist(DbSession session, Chunk chunk) {
+    IssueMapper mapper = session.getMapper(IssueMapper.class);
+    for (IssueDto dto : chunk.inserts) {
+      mapper.insert(dto);
+    }
+    session.flushStatements();
+
+    for (IssueDto dto : chunk.updates) {
+      mapper.update(dto);
+    }
+    session.flushStatements();
+
+    for (IssueDto dto : chunk.conditionalUpdates.values()) {
+      mapper.updateIfBeforeSelectedDate(dto);
+    }
+    for (String conflictingKey : conflictingKeys(session.flushStatements())) {
+      // End-user and scan changed the issue at the same time.
+      // See https://jira.codehaus.org/browse/SONAR-4309
+      conflictResolver.resolve(chunk.conditionallyUpdatedIssues.get(conflictingKey), mapper);
+    }
+    session.flushStatements();
+
+    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
+    for (DefaultIssue issue : chunk.saved) {
+      insertChanges(changeMapper, issue);
+    }
+    session.flushStatements();
+  }
+
+  /**
+   * Keys of the issues which were not updated. Drivers which do not return the update counts of batches
+   * (for example old Oracle drivers) return {@link Statement#SUCCESS_NO_INFO}. Such issues are considered as conflicting,
+   * which is safe as the resolver merges the issue with its state in database.
+   */
+  private static List<String> conflictingKeys(List<BatchResult> results) {
+    List<String> keys = new ArrayList<>();
+    for (BatchResult result : results) {
+      int[] updateCounts = result.getUpdateCounts();
+      List<Object> parameters = result.getParameterObjects();
+      for (int i = 0; i < updateCounts.length; i++) {
+        if (updateCounts[i] == 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+          keys.add(((IssueDto) parameters.get(i)).getKee());
+        }
+      }
+    }
+    return keys;
+  }
+
   private void insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
     for (IssueComment comment : issue.comments()) {
       DefaultIssueComment c = (DefaultIssueComment) comment;
@@ -118,4 +182,12 @@ public class PersistIssuesStep implements ComputationStep {
   public String getDescription() {
     return "Persist issues";
   }
+
+  private static class Chunk {
+    private final List<IssueDto> inserts = new ArrayList<>();
+    private final List<IssueDto> updates = new ArrayList<>();
+    private final Map<String, IssueDto> conditionalUpdates = new HashMap<>();
+    private final Map<String, DefaultIssue> conditionallyUpdatedIssues = new HashMap<>();
+    private final List<DefaultIssue> saved = new ArrayList<>();
+  }
 }
@@ -20,27 +20,32 @@
 
 package org.sonar.server.computation.step;
 
-import com.google.common.annotations.VisibleForTesting;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportReader;
-import org.sonar.core.measure.db.MeasureDto;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 import org.sonar.server.computation.issue.RuleCache;
+import org.sonar.server.computation.measure.BulkMeasureInserter;
 import org.sonar.server.computation.measure.MetricCache;
 import org.sonar.server.db.DbClient;
 
-import javax.annotation.CheckForNull;
-
 import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
 
+/**
+ * Measures are inserted by JDBC batches of {@link #BATCH_SIZE_PROPERTY} rows, see {@link BulkMeasureInserter}.
+ */
 public class PersistMeasuresStep implements ComputationStep {
 
+  public static final String BATCH_SIZE_PROPERTY = "sonar.computation.measuresBatchSize";
+  static final int DEFAULT_BATCH_SIZE = 1000;
+
   /**
    * List of metrics that should not be received from the report, as they should only by fed by the compute engine
    */
@@ -49,11 +54,13 @@ public class PersistMeasuresStep implements ComputationStep {
   private final DbClient dbClient;
   private final RuleCache ruleCache;
   private final MetricCache metricCache;
+  private final int batchSize;
 
-  public PersistMeasuresStep(DbClient dbClient, RuleCache ruleCache, MetricCache metricCache) {
+  public PersistMeasuresStep(DbClient dbClient, RuleCache ruleCache, MetricCache metricCache, Settings settings) {
     this.dbClient = dbClient;
     this.ruleCache = ruleCache;
     this.metricCache = metricCache;
+    this.batchSize = batchSize(settings);
   }
 
   @Override
@@ -68,88 +75,55 @@ public class PersistMeasuresStep implements ComputationStep {
 
   @Override
   public void execute(ComputationContext context) {
-    int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-    try (DbSession dbSession = dbClient.openSession(true)) {
-      recursivelyProcessComponent(dbSession, context, rootComponentRef);
-      dbSession.commit();
+    BatchReportReader reportReader = context.getReportReader();
+    ComponentTree tree = context.getComponentTree();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      try (BulkMeasureInserter inserter = new BulkMeasureInserter(dbSession.getConnection(), batchSize)) {
+        for (int i = 0; i < tree.size(); i++) {
+          int componentRef = tree.refAt(i);
+          List<BatchReport.Measure> measures = reportReader.readComponentMeasures(componentRef);
+          persistMeasures(inserter, measures, tree.id(componentRef), tree.snapshotId(componentRef));
+        }
+        inserter.flush();
+        // statements are not executed by MyBatis, so commit must be forced
+        dbSession.commit(true);
+      } catch (RuntimeException e) {
+        // MyBatis is not aware of the pending rows
+        dbSession.rollback(true);
+        throw e;
+      }
     }
   }
 
-  private void recursivelyProcessComponent(DbSession dbSession, ComputationContext context, int componentRef) {
-    BatchReportReader reportReader = context.getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
-    List<BatchReport.Measure> measures = reportReader.readComponentMeasures(componentRef);
-    persistMeasures(dbSession, measures, component);
-    for (Integer childRef : component.getChildRefList()) {
-      recursivelyProcessComponent(dbSession, context, childRef);
-    }
+  int getBatchSize() {
+    return batchSize;
   }
 
-  private void persistMeasures(DbSession dbSession, List<BatchReport.Measure> batchReportMeasures, final BatchReport.Component component) {
+  private void persistMeasures(BulkMeasureInserter inserter, List<BatchReport.Measure> batchReportMeasures, long componentId, long snapshotId) {
     for (BatchReport.Measure measure : batchReportMeasures) {
-      if (FORBIDDEN_METRIC_KEYS.contains(measure.getMetricKey())) {
-        throw new IllegalStateException(String.format("Measures on metric '%s' cannot be send in the report", measure.getMetricKey()));
-      }
-      dbClient.measureDao().insert(dbSession, toMeasureDto(measure, component));
+      checkMeasure(measure);
+      Integer ruleId = measure.hasRuleKey() ? ruleCache.get(RuleKey.parse(measure.getRuleKey())).getId() : null;
+      inserter.insert(measure, componentId, snapshotId, metricCache.get(measure.getMetricKey()).getId(), ruleId);
     }
   }
 
-  @VisibleForTesting
-  MeasureDto toMeasureDto(BatchReport.Measure in, BatchReport.Component component) {
-    if (!in.hasValueType()) {
-      throw new IllegalStateException(String.format("Measure %s does not have value type", in));
+  private static void checkMeasure(BatchReport.Measure measure) {
+    if (FORBIDDEN_METRIC_KEYS.contains(measure.getMetricKey())) {
+      throw new IllegalStateException(String.format("Measures on metric '%s' cannot be send in the report", measure.getMetricKey()));
     }
-    if (!in.hasMetricKey()) {
-      throw new IllegalStateException(String.format("Measure %s does not have metric key", in));
+    if (!measure.hasValueType()) {
+      throw new IllegalStateException(String.format("Measure %s does not have value type", measure));
     }
-
-    MeasureDto out = new MeasureDto();
-    out.setTendency(in.hasTendency() ? in.getTendency() : null);
-    out.setVariation(1, in.hasVariationValue1() ? in.getVariationValue1() : null);
-    out.setVariation(2, in.hasVariationValue2() ? in.getVariationValue2() : null);
-    out.setVariation(3, in.hasVariationValue3() ? in.getVariationValue3() : null);
-    out.setVariation(4, in.hasVariationValue4() ? in.getVariationValue4() : null);
-    out.setVariation(5, in.hasVariationValue5() ? in.getVariationValue5() : null);
-    out.setAlertStatus(in.hasAlertStatus() ? in.getAlertStatus() : null);
-    out.setAlertText(in.hasAlertText() ? in.getAlertText() : null);
-    out.setDescription(in.hasDescription() ? in.getDescription() : null);
-    out.setSeverity(in.hasSeverity() ? in.getSeverity().name() : null);
-    out.setComponentId(component.getId());
-    out.setSnapshotId(component.getSnapshotId());
-    out.setMetricId(metricCache.get(in.getMetricKey()).getId());
-    out.setRuleId(in.hasRuleKey() ? ruleCache.get(RuleKey.parse(in.getRuleKey())).getId() : null);
-    out.setCharacteristicId(in.hasCharactericId() ? in.getCharactericId() : null);
-    out.setPersonId(in.hasPersonId() ? in.getPersonId() : null);
-    out.setValue(valueAsDouble(in));
-    setData(in, out);
-    return out;
-  }
-
-  /**
-   * return the numerical value as a double. It's the type used in db.
-   * Returns null if no numerical value found
-   */
-  @CheckForNull
-  private static Double valueAsDouble(BatchReport.Measure measure) {
-    switch (measure.getValueType()) {
-      case BOOLEAN:
-        return measure.hasBooleanValue() ? (measure.getBooleanValue() ? 1.0d : 0.0d) : null;
-      case INT:
-        return measure.hasIntValue() ? (double) measure.getIntValue() : null;
-      case LONG:
-        return measure.hasLongValue() ? (double) measure.getLongValue() : null;
-      case DOUBLE:
-        return measure.hasDoubleValue() ? measure.getDoubleValue() : null;
-      default:
-        return null;
+    if (!measure.hasMetricKey()) {
+      throw new IllegalStateException(String.format("Measure %s does not have metric key", measure));
     }
   }
 
-  private MeasureDto setData(BatchReport.Measure in, MeasureDto out) {
-    if (in.hasStringValue()) {
-      out.setData(in.getStringValue());
+  private static int batchSize(Settings settings) {
+    int size = settings.getInt(BATCH_SIZE_PROPERTY);
+    if (size < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", BATCH_SIZE_PROPERTY, size));
     }
-
-    return out;
+    return size == 0 ? DEFAULT_BATCH_SIZE : size;
   }
 }
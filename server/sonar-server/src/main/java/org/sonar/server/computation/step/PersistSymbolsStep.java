@@ -25,6 +25,7 @@ import org.sonar.api.resources.Qualifiers;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 
 import java.util.List;
 import java.util.Map;
@@ -49,22 +50,19 @@ public class PersistSymbolsStep implements ComputationStep {
 
   @Override
   public void execute(ComputationContext context) {
-    int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-    recursivelyProcessComponent(context, rootComponentRef);
+    ComponentTree tree = context.getComponentTree();
+    for (int i = 0; i < tree.size(); i++) {
+      processComponent(context, tree.refAt(i));
+    }
   }
 
-  private void recursivelyProcessComponent(ComputationContext context, int componentRef) {
+  private void processComponent(ComputationContext context, int componentRef) {
     BatchReportReader reportReader = context.getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
     List<BatchReport.Symbols.Symbol> symbols = reportReader.readComponentSymbols(componentRef);
-    processSymbols(component, symbols);
-
-    for (Integer childRef : component.getChildRefList()) {
-      recursivelyProcessComponent(context, childRef);
-    }
+    processSymbols(symbols);
   }
 
-  private void processSymbols(BatchReport.Component component, List<BatchReport.Symbols.Symbol> symbols) {
+  private void processSymbols(List<BatchReport.Symbols.Symbol> symbols) {
     symbolsByLineForLastProcessedFile = newHashMap();
     if (!symbols.isEmpty()) {
       int symbolId = 1;
@@ -25,6 +25,7 @@ import org.sonar.api.resources.Qualifiers;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.server.computation.ComputationContext;
+import org.sonar.server.computation.component.ComponentTree;
 
 import java.util.List;
 import java.util.Map;
@@ -49,22 +50,19 @@ public class PersistSyntaxHighLightingStep implements ComputationStep {
 
   @Override
   public void execute(ComputationContext context) {
-    int rootComponentRef = context.getReportMetadata().getRootComponentRef();
-    recursivelyProcessComponent(context, rootComponentRef);
+    ComponentTree tree = context.getComponentTree();
+    for (int i = 0; i < tree.size(); i++) {
+      processComponent(context, tree.refAt(i));
+    }
   }
 
-  private void recursivelyProcessComponent(ComputationContext context, int componentRef) {
+  private void processComponent(ComputationContext context, int componentRef) {
     BatchReportReader reportReader = context.getReportReader();
-    BatchReport.Component component = reportReader.readComponent(componentRef);
     List<BatchReport.SyntaxHighlighting.HighlightingRule> highlightingRules = reportReader.readComponentSyntaxHighlighting(componentRef);
-    processSyntaxHightlighting(component, highlightingRules);
-
-    for (Integer childRef : component.getChildRefList()) {
-      recursivelyProcessComponent(context, childRef);
-    }
+    processSyntaxHightlighting(highlightingRules);
   }
 
-  private void processSyntaxHightlighting(BatchReport.Component component, List<BatchReport.SyntaxHighlighting.HighlightingRule> highlightingRules) {
+  private void processSyntaxHightlighting(List<BatchReport.SyntaxHighlighting.HighlightingRule> highlightingRules) {
     syntaxHighlightingByLineForLastProcessedFile = newHashMap();
     if (!highlightingRules.isEmpty()) {
       for (BatchReport.SyntaxHighlighting.HighlightingRule highlightingRule : highlightingRules) {
@@ -26,7 +26,6 @@ import org.sonar.api.server.ws.RequestHandler;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.core.permission.GlobalPermissions;
-import org.sonar.server.computation.ComputationThreadLauncher;
 import org.sonar.server.computation.ReportQueue;
 import org.sonar.server.user.UserSession;
 
@@ -39,11 +38,9 @@ public class SubmitReportWsAction implements ComputationWsAction, RequestHandler
   public static final String PARAM_REPORT_DATA = "report";
 
   private final ReportQueue queue;
-  private final ComputationThreadLauncher workerLauncher;
 
-  public SubmitReportWsAction(ReportQueue queue, ComputationThreadLauncher workerLauncher) {
+  public SubmitReportWsAction(ReportQueue queue) {
     this.queue = queue;
-    this.workerLauncher = workerLauncher;
   }
 
   @Override
@@ -72,8 +69,8 @@ public class SubmitReportWsAction implements ComputationWsAction, RequestHandler
     String projectKey = request.mandatoryParam(PARAM_PROJECT_KEY);
     InputStream reportData = request.paramAsInputStream(PARAM_REPORT_DATA);
     try {
+      // idle workers are woken up by the queue
       ReportQueue.Item item = queue.add(projectKey, reportData);
-      workerLauncher.startAnalysisTaskNow();
       response.newJsonWriter()
         .beginObject()
         // do not write integer for forward-compatibility, for example
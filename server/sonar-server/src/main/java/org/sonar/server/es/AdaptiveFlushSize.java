@@ -0,0 +1,54 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+/**
+ * Size of bulk requests adapted to the capacity of Elasticsearch, with an additive increase and
+ * multiplicative decrease policy:
+ * <ul>
+ *   <li>size is increased while responses are fast and no documents are rejected</li>
+ *   <li>size is halved as soon as documents are rejected or responses are slow</li>
+ * </ul>
+ */
+class AdaptiveFlushSize {
+
+  static final long MIN_BYTE_SIZE = 256L * 1024;
+  static final long MAX_BYTE_SIZE = 16L * 1024 * 1024;
+  static final long INCREMENT_BYTE_SIZE = 512L * 1024;
+  static final long TARGET_LATENCY_MS = 1000L;
+
+  private long byteSize;
+
+  AdaptiveFlushSize(long initialByteSize) {
+    this.byteSize = initialByteSize;
+  }
+
+  synchronized long get() {
+    return byteSize;
+  }
+
+  synchronized void onResponse(long latencyMs, int rejections) {
+    if (rejections > 0 || latencyMs > 2 * TARGET_LATENCY_MS) {
+      byteSize = Math.max(MIN_BYTE_SIZE, byteSize / 2);
+    } else if (latencyMs < TARGET_LATENCY_MS) {
+      byteSize = Math.min(MAX_BYTE_SIZE, byteSize + INCREMENT_BYTE_SIZE);
+    }
+  }
+}
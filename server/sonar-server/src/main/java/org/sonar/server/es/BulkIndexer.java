@@ -21,6 +21,9 @@ package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionFuture;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -31,28 +34,38 @@ import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.search.SearchHit;
 import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.util.ProgressLogger;
 
+import javax.annotation.Nullable;
+
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than a threshold, which adapts to the
+ *   latency and to the rejections of Elasticsearch (see {@link AdaptiveFlushSize})</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>deletions by query are scrolled asynchronously</li>
  * </ul>
+ * Statistics are available through {@link EsClient#bulkStats(String)}.
  */
 public class BulkIndexer implements Startable {
 
@@ -65,22 +78,32 @@ public class BulkIndexer implements Startable {
   private final String indexName;
   private boolean large = false;
   private long flushByteSize = FLUSH_BYTE_SIZE;
+  // null if flush size is fixed
+  private AdaptiveFlushSize adaptiveFlushSize = new AdaptiveFlushSize(FLUSH_BYTE_SIZE);
   private boolean disableRefresh = false;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
+  private final AtomicLong failedRequests = new AtomicLong(0L);
   private final int concurrentRequests;
   private final Semaphore semaphore;
+  private final Semaphore deletionSemaphore;
+  private final AtomicReference<Throwable> deletionFailure = new AtomicReference<>();
+  private ExecutorService deletionExecutor = null;
   private final ProgressLogger progress;
+  private final BulkIndexerStats stats;
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
     this.indexName = indexName;
+    this.stats = client.bulkStats(indexName);
     this.progress = new ProgressLogger(String.format("Progress[BulkIndexer[%s]]", indexName), counter, LOGGER)
       .setPluralLabel("requests");
 
     this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
-    this.semaphore = new Semaphore(concurrentRequests);
+    // fair, so that flush() is not starved by concurrent calls to add()
+    this.semaphore = new Semaphore(concurrentRequests, true);
+    this.deletionSemaphore = new Semaphore(concurrentRequests, true);
   }
 
   /**
@@ -93,8 +116,12 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Fixes the size of bulk requests. By default size is adapted to the responsiveness of Elasticsearch.
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
     this.flushByteSize = flushByteSize;
+    this.adaptiveFlushSize = null;
     return this;
   }
 
@@ -131,16 +158,40 @@ public class BulkIndexer implements Startable {
     }
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    failedRequests.set(0L);
     progress.start();
   }
 
-  public void add(ActionRequest request) {
+  public synchronized void add(ActionRequest request) {
     bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+    if (bulkRequest.request().estimatedSizeInBytes() >= currentFlushByteSize()) {
       executeBulk();
     }
   }
 
+  /**
+   * Wait for the completion of the deletions by query in progress, then send the pending requests and wait
+   * for the completion of the bulk requests in progress.
+   * @return true if all the requests completed in time and if none of the requests sent since {@link #start()} failed
+   */
+  public boolean flush() {
+    boolean completed = waitFor(deletionSemaphore, "Elasticsearch deletions still being executed after 10 minutes");
+    synchronized (this) {
+      if (bulkRequest.numberOfActions() > 0) {
+        executeBulk();
+      }
+    }
+    completed &= waitFor(semaphore, "Elasticsearch bulk requests still being executed after 10 minutes");
+    return completed && failedRequests.get() == 0L && deletionFailure.get() == null;
+  }
+
+  /**
+   * Delete the documents matching the search request. This method is non-blocking as long as
+   * the number of deletions in progress is lower than the number of concurrent bulk requests. Documents are scrolled in a
+   * dedicated thread, which fetches the next page while deleting the current one. Deletion requests
+   * are sent in the same bulk requests as the other requests. Method {@link #stop()} waits
+   * for completion of deletions.
+   */
   public void addDeletion(SearchRequestBuilder searchRequest) {
     searchRequest
       .setScroll(TimeValue.timeValueMinutes(5))
@@ -149,24 +200,25 @@ public class BulkIndexer implements Startable {
       // load only doc ids, not _source fields
       .setFetchSource(false);
 
-    // this search is synchronous. An optimization would be to be non-blocking,
-    // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
-    // two locks)
-    SearchResponse searchResponse = searchRequest.get();
+    // Deletions have their own permits. Bulk permits can't be reused because of potential deadlock:
+    // scrolling threads acquire bulk permits when flushing bulk requests.
+    deletionSemaphore.acquireUninterruptibly();
+    try {
+      deletionExecutor().execute(new DeletionScan(searchRequest));
+    } catch (RuntimeException e) {
+      deletionSemaphore.release();
+      throw e;
+    }
+  }
 
-    while (true) {
-      searchResponse = client.prepareSearchScroll(searchResponse.getScrollId())
-        .setScroll(TimeValue.timeValueMinutes(5))
-        .get();
-      SearchHit[] hits = searchResponse.getHits().getHits();
-      for (SearchHit hit : hits) {
-        add(client.prepareDelete(hit.index(), hit.type(), hit.getId()).request());
-      }
-      if (hits.length == 0) {
-        break;
-      }
+  private synchronized ExecutorService deletionExecutor() {
+    if (deletionExecutor == null) {
+      deletionExecutor = Executors.newFixedThreadPool(concurrentRequests, new ThreadFactoryBuilder()
+        .setNameFormat("BulkIndexer[" + indexName + "]-deletion-%d")
+        .setDaemon(true)
+        .build());
     }
+    return deletionExecutor;
   }
 
   /**
@@ -182,16 +234,14 @@ public class BulkIndexer implements Startable {
 
   @Override
   public void stop() {
-    if (bulkRequest.numberOfActions() > 0) {
-      executeBulk();
-    }
-    try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
+    waitFor(deletionSemaphore, "Elasticsearch deletions still being executed after 10 minutes");
+    shutdownDeletionExecutor();
+    synchronized (this) {
+      if (bulkRequest.numberOfActions() > 0) {
+        executeBulk();
       }
-    } catch (InterruptedException e) {
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
     }
+    waitFor(semaphore, "Elasticsearch bulk requests still being executed after 10 minutes");
     progress.stop();
 
     if (!disableRefresh) {
@@ -206,6 +256,34 @@ public class BulkIndexer implements Startable {
       updateSettings(largeInitialSettings);
     }
     bulkRequest = null;
+
+    Throwable failure = deletionFailure.getAndSet(null);
+    if (failure != null) {
+      throw new IllegalStateException("Fail to delete documents from index " + indexName, failure);
+    }
+  }
+
+  /**
+   * @return false if permits are still in use after timeout
+   */
+  private boolean waitFor(Semaphore permits, String timeoutMessage) {
+    try {
+      if (permits.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
+        permits.release(concurrentRequests);
+        return true;
+      }
+      LOGGER.warn(timeoutMessage);
+      return false;
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(timeoutMessage, e);
+    }
+  }
+
+  private synchronized void shutdownDeletionExecutor() {
+    if (deletionExecutor != null) {
+      deletionExecutor.shutdown();
+      deletionExecutor = null;
+    }
   }
 
   private void updateSettings(Map<String, Object> settings) {
@@ -214,15 +292,83 @@ public class BulkIndexer implements Startable {
     req.get();
   }
 
+  private long currentFlushByteSize() {
+    return adaptiveFlushSize == null ? flushByteSize : adaptiveFlushSize.get();
+  }
+
+  /**
+   * Must be called when holding the lock on this
+   */
   private void executeBulk() {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
+    long waitStart = System.currentTimeMillis();
     semaphore.acquireUninterruptibly();
+    stats.onQueueWait(System.currentTimeMillis() - waitStart);
+    stats.setFlushByteSize(currentFlushByteSize());
     req.execute(new BulkResponseActionListener(req));
   }
 
+  private void onBulkCompleted(BulkRequestBuilder req, long startedAt, int failures, int rejections) {
+    long latency = System.currentTimeMillis() - startedAt;
+    stats.onBulkCompleted(req.numberOfActions(), req.request().estimatedSizeInBytes(), latency, failures, rejections);
+    AdaptiveFlushSize adaptive = adaptiveFlushSize;
+    if (adaptive != null) {
+      adaptive.onResponse(latency, rejections);
+    }
+  }
+
+  private static boolean isRejection(@Nullable String failureMessage) {
+    return failureMessage != null && failureMessage.contains(EsRejectedExecutionException.class.getSimpleName());
+  }
+
+  /**
+   * Scrolls the documents to be deleted. The next page is requested before deleting
+   * the documents of the current page.
+   */
+  private class DeletionScan implements Runnable {
+    private final SearchRequestBuilder searchRequest;
+
+    DeletionScan(SearchRequestBuilder searchRequest) {
+      this.searchRequest = searchRequest;
+    }
+
+    @Override
+    public void run() {
+      try {
+        SearchResponse searchResponse = searchRequest.get();
+        ActionFuture<SearchResponse> nextPage = prefetch(searchResponse.getScrollId());
+        while (true) {
+          searchResponse = nextPage.actionGet();
+          SearchHit[] hits = searchResponse.getHits().getHits();
+          if (hits.length == 0) {
+            break;
+          }
+          nextPage = prefetch(searchResponse.getScrollId());
+          for (SearchHit hit : hits) {
+            add(client.prepareDelete(hit.index(), hit.type(), hit.getId()).request());
+          }
+        }
+      } catch (Exception e) {
+        LOGGER.error("Fail to delete documents matching " + searchRequest, e);
+        deletionFailure.compareAndSet(null, e);
+      } finally {
+        deletionSemaphore.release();
+      }
+    }
+
+    private ActionFuture<SearchResponse> prefetch(String scrollId) {
+      PlainActionFuture<SearchResponse> future = PlainActionFuture.newFuture();
+      client.prepareSearchScroll(scrollId)
+        .setScroll(TimeValue.timeValueMinutes(5))
+        .execute(future);
+      return future;
+    }
+  }
+
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final long startedAt = System.currentTimeMillis();
 
     public BulkResponseActionListener(BulkRequestBuilder req) {
       this.req = req;
@@ -233,8 +379,14 @@ public class BulkIndexer implements Startable {
       semaphore.release();
       counter.addAndGet(response.getItems().length);
 
+      int failures = 0;
+      int rejections = 0;
       for (BulkItemResponse item : response.getItems()) {
         if (item.isFailed()) {
+          failures++;
+          if (isRejection(item.getFailureMessage())) {
+            rejections++;
+          }
           StringBuilder sb = new StringBuilder();
           String msg = sb
             .append("index [").append(item.getIndex()).append("], type [").append(item.getType()).append("], id [").append(item.getId())
@@ -242,11 +394,17 @@ public class BulkIndexer implements Startable {
           LOGGER.error(msg);
         }
       }
+      failedRequests.addAndGet(failures);
+      onBulkCompleted(req, startedAt, failures, rejections);
     }
 
     @Override
     public void onFailure(Throwable e) {
       semaphore.release();
+      int actions = req.numberOfActions();
+      failedRequests.addAndGet(actions);
+      boolean rejected = ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+      onBulkCompleted(req, startedAt, actions, rejected ? actions : 0);
       LOGGER.error("Fail to execute bulk index request: " + req, e);
     }
   }
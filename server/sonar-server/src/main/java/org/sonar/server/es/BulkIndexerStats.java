@@ -0,0 +1,114 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the bulk requests sent by {@link BulkIndexer} to an index since server startup.
+ * Thread-safe.
+ */
+public class BulkIndexerStats {
+
+  private final AtomicLong bulkRequests = new AtomicLong(0L);
+  private final AtomicLong documents = new AtomicLong(0L);
+  private final AtomicLong bytes = new AtomicLong(0L);
+  private final AtomicLong failures = new AtomicLong(0L);
+  private final AtomicLong rejections = new AtomicLong(0L);
+  private final AtomicLong latencyMs = new AtomicLong(0L);
+  private final AtomicLong queueWaitMs = new AtomicLong(0L);
+  private volatile long flushByteSize = 0L;
+
+  void onBulkCompleted(int documentCount, long byteCount, long bulkLatencyMs, int failureCount, int rejectionCount) {
+    bulkRequests.incrementAndGet();
+    documents.addAndGet(documentCount);
+    bytes.addAndGet(byteCount);
+    latencyMs.addAndGet(bulkLatencyMs);
+    failures.addAndGet(failureCount);
+    rejections.addAndGet(rejectionCount);
+  }
+
+  void onQueueWait(long waitMs) {
+    queueWaitMs.addAndGet(waitMs);
+  }
+
+  void setFlushByteSize(long l) {
+    this.flushByteSize = l;
+  }
+
+  public long getBulkRequests() {
+    return bulkRequests.get();
+  }
+
+  /**
+   * Number of documents indexed or deleted, including failures
+   */
+  public long getDocuments() {
+    return documents.get();
+  }
+
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  /**
+   * Number of documents that failed to be indexed or deleted, including rejections
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * Number of documents rejected because the bulk queue of Elasticsearch was full
+   */
+  public long getRejections() {
+    return rejections.get();
+  }
+
+  /**
+   * Cumulated time between sending of bulk requests and reception of responses
+   */
+  public long getLatencyMs() {
+    return latencyMs.get();
+  }
+
+  /**
+   * Cumulated time spent by indexers waiting for a bulk request to complete before sending
+   * a new one
+   */
+  public long getQueueWaitMs() {
+    return queueWaitMs.get();
+  }
+
+  /**
+   * Last flush size of bulk requests, in bytes
+   */
+  public long getFlushByteSize() {
+    return flushByteSize;
+  }
+
+  /**
+   * Number of documents processed per second of bulk request
+   */
+  public long getThroughput() {
+    long latency = latencyMs.get();
+    return latency == 0L ? 0L : (1000L * documents.get() / latency);
+  }
+}
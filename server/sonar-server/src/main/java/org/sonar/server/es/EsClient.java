@@ -71,6 +71,11 @@ import org.sonar.server.es.request.ProxySearchRequestBuilder;
 import org.sonar.server.es.request.ProxySearchScrollRequestBuilder;
 import org.sonar.server.search.SearchClient;
 
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Facade to connect to Elasticsearch node. Handles correctly errors (logging + exceptions
  * with context) and profiling of requests.
@@ -79,6 +84,7 @@ public class EsClient implements Startable {
 
   public static final Logger LOGGER = Loggers.get("es");
   private final Client client;
+  private final ConcurrentMap<String, BulkIndexerStats> bulkStats = new ConcurrentHashMap<>();
 
   public EsClient(SearchClient deprecatedClient) {
     this.client = deprecatedClient;
@@ -183,6 +189,9 @@ public class EsClient implements Startable {
     return new ProxyClearCacheRequestBuilder(client).setIndices(indices);
   }
 
+  /**
+   * @return the greatest value of the field, 0 if no document has a value, for example when the index is empty
+   */
   public long getMaxFieldValue(String indexName, String typeName, String fieldName) {
     SearchRequestBuilder request = prepareSearch(indexName)
       .setTypes(typeName)
@@ -191,7 +200,30 @@ public class EsClient implements Startable {
       .addAggregation(AggregationBuilders.max("latest").field(fieldName));
 
     Max max = request.get().getAggregations().get("latest");
-    return (long) max.getValue();
+    // -Infinity if there is no value
+    return Double.isInfinite(max.getValue()) ? 0L : (long) max.getValue();
+  }
+
+  /**
+   * Statistics of bulk indexing of the given index. Never null.
+   */
+  public BulkIndexerStats bulkStats(String indexName) {
+    BulkIndexerStats stats = bulkStats.get(indexName);
+    if (stats == null) {
+      BulkIndexerStats newStats = new BulkIndexerStats();
+      stats = bulkStats.putIfAbsent(indexName, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Statistics of bulk indexing, sorted by index name
+   */
+  public SortedMap<String, BulkIndexerStats> bulkStats() {
+    return new TreeMap<>(bulkStats);
   }
 
   @Override
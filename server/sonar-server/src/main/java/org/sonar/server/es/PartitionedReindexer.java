@@ -0,0 +1,338 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.properties.PropertyDto;
+import org.sonar.server.db.DbClient;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Full reindexing of a db table, split into ranges of project uuids. Ranges are read and converted
+ * to index requests in parallel, each one with its own db connection. All of them feed the same
+ * {@link BulkIndexer}. The rows without project uuid are indexed by a last partition.
+ * <p/>
+ * The greatest project uuid of the ranges that are completely indexed is stored in the global
+ * property {@code sonar.internal.es.reindex.<index>}. A reindexing interrupted by a crash is resumed
+ * after this project. The property is dropped when reindexing is done.
+ * <p/>
+ * The number of threads is defined by the property {@link #THREADS_PROPERTY}, half of the processors by default.
+ */
+public class PartitionedReindexer {
+
+  public interface PartitionIndexer {
+    /**
+     * Add to bulk the rows whose project uuid is between the two bounds, both included. Bounds
+     * are null for the rows without project uuid.
+     * @return the greatest update date of the indexed rows
+     */
+    long index(BulkIndexer bulk, Connection connection, @Nullable String fromProjectUuid, @Nullable String toProjectUuid);
+  }
+
+  public static final String THREADS_PROPERTY = "sonar.search.reindex.threads";
+  static final String PROPERTY_PREFIX = "sonar.internal.es.reindex.";
+  private static final Logger LOGGER = Loggers.get(PartitionedReindexer.class);
+  private static final int PARTITIONS_PER_THREAD = 4;
+
+  private final DbClient dbClient;
+  private final String indexName;
+  private final String table;
+  private final String projectUuidColumn;
+  private final int threads;
+
+  /**
+   * Whether a reindexing is not completed. The checkpoint is read only by the first call to {@link #isInterrupted()},
+   * which is executed at server startup by {@link org.sonar.server.search.IndexSynchronizer}, then the status
+   * is maintained by {@link #reindex(BulkIndexer, PartitionIndexer)}.
+   */
+  private Boolean interrupted = null;
+
+  public PartitionedReindexer(DbClient dbClient, Settings settings, String indexName, String table, String projectUuidColumn) {
+    this.dbClient = dbClient;
+    this.threads = threads(settings);
+    this.indexName = indexName;
+    this.table = table;
+    this.projectUuidColumn = projectUuidColumn;
+  }
+
+  private static int threads(Settings settings) {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads < 0) {
+      throw new IllegalArgumentException(String.format("Bad value of %s: %d", THREADS_PROPERTY, threads));
+    }
+    return threads == 0 ? Math.max(1, Runtime.getRuntime().availableProcessors() / 2) : threads;
+  }
+
+  int getThreads() {
+    return threads;
+  }
+
+  /**
+   * @return true if a previous reindexing has been interrupted before being completed
+   */
+  public synchronized boolean isInterrupted() {
+    if (interrupted == null) {
+      interrupted = dbClient.propertiesDao().selectGlobalProperty(propertyKey()) != null;
+    }
+    return interrupted;
+  }
+
+  /**
+   * Starts and stops the bulk indexer.
+   * @return the greatest update date of the indexed rows
+   */
+  public long reindex(BulkIndexer bulk, PartitionIndexer partitionIndexer) {
+    PropertyDto checkpoint = dbClient.propertiesDao().selectGlobalProperty(propertyKey());
+    String lastIndexedProjectUuid = null;
+    if (checkpoint == null) {
+      saveCheckpoint(null);
+    } else {
+      lastIndexedProjectUuid = StringUtils.defaultIfEmpty(checkpoint.getValue(), null);
+      LOGGER.info("Resume interrupted reindexing of {}", indexName);
+    }
+    // resumed by next indexing if this one fails
+    setInterrupted(true);
+    List<Partition> partitions = split(selectProjectUuids(lastIndexedProjectUuid), threads * PARTITIONS_PER_THREAD);
+    partitions.add(new Partition(null, null));
+    LOGGER.info("Reindex {} in {} partitions, threads: {}", indexName, partitions.size(), threads);
+
+    bulk.start();
+    long maxUpdatedAt = reindex(bulk, partitionIndexer, partitions);
+    bulk.stop();
+
+    dbClient.propertiesDao().deleteGlobalProperty(propertyKey());
+    setInterrupted(false);
+    return maxUpdatedAt;
+  }
+
+  private long reindex(BulkIndexer bulk, PartitionIndexer partitionIndexer, List<Partition> partitions) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("PartitionedReindexer[" + indexName + "]-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      Checkpoints checkpoints = new Checkpoints(bulk, partitions);
+      List<Future<Long>> futures = Lists.newArrayList();
+      for (Partition partition : partitions) {
+        futures.add(executor.submit(new PartitionTask(bulk, partitionIndexer, partition, checkpoints)));
+      }
+      long maxUpdatedAt = 0L;
+      for (Future<Long> future : futures) {
+        maxUpdatedAt = Math.max(maxUpdatedAt, Uninterruptibles.getUninterruptibly(future));
+      }
+      return maxUpdatedAt;
+
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<String> selectProjectUuids(@Nullable String afterProjectUuid) {
+    String sql = "select distinct " + projectUuidColumn + " from " + table + " where " + projectUuidColumn + " is not null";
+    if (afterProjectUuid != null) {
+      sql += " and " + projectUuidColumn + ">?";
+    }
+    // uuids are sorted by db, so that ranges are consistent with its collation
+    sql += " order by " + projectUuidColumn;
+
+    DbSession dbSession = dbClient.openSession(false);
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      stmt = dbClient.newScrollingSelectStatement(dbSession.getConnection(), sql);
+      if (afterProjectUuid != null) {
+        stmt.setString(1, afterProjectUuid);
+      }
+      rs = stmt.executeQuery();
+      List<String> uuids = Lists.newArrayList();
+      while (rs.next()) {
+        uuids.add(rs.getString(1));
+      }
+      return uuids;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to select project uuids: " + sql, e);
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(stmt);
+      dbSession.close();
+    }
+  }
+
+  /**
+   * Split the sorted uuids in ranges of similar number of projects
+   */
+  static List<Partition> split(List<String> sortedProjectUuids, int maxPartitions) {
+    List<Partition> partitions = Lists.newArrayList();
+    int size = sortedProjectUuids.size();
+    int count = Math.min(size, maxPartitions);
+    int from = 0;
+    for (int i = 0; i < count; i++) {
+      int to = (int) ((long) size * (i + 1) / count) - 1;
+      partitions.add(new Partition(sortedProjectUuids.get(from), sortedProjectUuids.get(to)));
+      from = to + 1;
+    }
+    return partitions;
+  }
+
+  private synchronized void setInterrupted(boolean b) {
+    interrupted = b;
+  }
+
+  private void saveCheckpoint(@Nullable String lastIndexedProjectUuid) {
+    dbClient.propertiesDao().setProperty(new PropertyDto().setKey(propertyKey()).setValue(lastIndexedProjectUuid));
+  }
+
+  private String propertyKey() {
+    return PROPERTY_PREFIX + indexName;
+  }
+
+  /**
+   * Range of project uuids, both bounds being null for the rows without project uuid
+   */
+  static class Partition {
+    private final String fromProjectUuid;
+    private final String toProjectUuid;
+
+    Partition(@Nullable String fromProjectUuid, @Nullable String toProjectUuid) {
+      this.fromProjectUuid = fromProjectUuid;
+      this.toProjectUuid = toProjectUuid;
+    }
+
+    @CheckForNull
+    String getFromProjectUuid() {
+      return fromProjectUuid;
+    }
+
+    @CheckForNull
+    String getToProjectUuid() {
+      return toProjectUuid;
+    }
+
+    @Override
+    public String toString() {
+      return "[" + fromProjectUuid + ", " + toProjectUuid + "]";
+    }
+  }
+
+  private class PartitionTask implements Callable<Long> {
+    private final BulkIndexer bulk;
+    private final PartitionIndexer partitionIndexer;
+    private final Partition partition;
+    private final Checkpoints checkpoints;
+
+    PartitionTask(BulkIndexer bulk, PartitionIndexer partitionIndexer, Partition partition, Checkpoints checkpoints) {
+      this.bulk = bulk;
+      this.partitionIndexer = partitionIndexer;
+      this.partition = partition;
+      this.checkpoints = checkpoints;
+    }
+
+    @Override
+    public Long call() {
+      DbSession dbSession = dbClient.openSession(false);
+      try {
+        long maxUpdatedAt = partitionIndexer.index(bulk, dbSession.getConnection(), partition.getFromProjectUuid(), partition.getToProjectUuid());
+        checkpoints.onCompleted(partition);
+        return maxUpdatedAt;
+      } finally {
+        dbSession.close();
+      }
+    }
+  }
+
+  /**
+   * Partitions are completed in any order. The checkpoint is moved to the end of the greatest range
+   * preceded only by completed ranges, once their documents are acknowledged by Elasticsearch, including
+   * the deletions by query. As failed requests can't be related to their partitions, the checkpoint
+   * is not moved anymore after a failure, so that a resumed reindexing starts again from the last
+   * range known to be completely indexed.
+   * <p/>
+   * Elasticsearch is flushed outside the lock, so that the other partitions are not blocked meanwhile.
+   * As flushes can then complete in any order, a checkpoint is saved only if it is after the last saved one.
+   */
+  private class Checkpoints {
+    private final BulkIndexer bulk;
+    private final List<Partition> partitions;
+    private final boolean[] completed;
+    private int nextToCheckpoint = 0;
+    private int nextSaved = 0;
+    private boolean failed = false;
+
+    Checkpoints(BulkIndexer bulk, List<Partition> partitions) {
+      this.bulk = bulk;
+      this.partitions = partitions;
+      this.completed = new boolean[partitions.size()];
+    }
+
+    void onCompleted(Partition partition) {
+      String checkpoint = null;
+      int checkpointedUpTo;
+      synchronized (this) {
+        completed[partitions.indexOf(partition)] = true;
+        while (nextToCheckpoint < completed.length && completed[nextToCheckpoint]) {
+          // the partition of rows without project uuid is not checkpointed. It's indexed again when resuming.
+          checkpoint = StringUtils.defaultString(partitions.get(nextToCheckpoint).getToProjectUuid(), checkpoint);
+          nextToCheckpoint++;
+        }
+        checkpointedUpTo = nextToCheckpoint;
+        if (checkpoint == null || failed) {
+          return;
+        }
+      }
+      boolean flushed = bulk.flush();
+      synchronized (this) {
+        if (!flushed) {
+          if (!failed) {
+            failed = true;
+            LOGGER.warn("Reindexing of {} is not checkpointed anymore because of failed requests", indexName);
+          }
+        } else if (!failed && checkpointedUpTo > nextSaved) {
+          saveCheckpoint(checkpoint);
+          nextSaved = checkpointedUpTo;
+          LOGGER.debug("Reindexing of {} completed up to project {}", indexName, checkpoint);
+        }
+      }
+    }
+  }
+}
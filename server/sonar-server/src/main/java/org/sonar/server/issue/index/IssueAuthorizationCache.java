@@ -0,0 +1,180 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.OrFilterBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.sonar.api.ServerComponent;
+import org.sonar.server.es.EsClient;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uuids of the projects that can be browsed by a user, as indexed in type issues/authorization.
+ * Issue requests filter on these uuids instead of joining issues with their parent authorization
+ * document. The cache is cleared by {@link IssueAuthorizationIndexer} each time permissions are indexed.
+ * <p/>
+ * Users that have the same permissions share the same set of uuids, and uuids are shared between sets. The cache
+ * is bounded by the total number of uuids it references rather than by its number of entries, as a single
+ * entry can reference all the projects of the instance.
+ */
+public class IssueAuthorizationCache implements ServerComponent {
+
+  private static final int SCROLL_TIME_IN_MINUTES = 1;
+  private static final int SCROLL_SIZE = 1000;
+
+  /**
+   * The cache is dropped when the uuids referenced by its entries exceed this weight, in order to bound memory.
+   * Each entry weighs one plus its number of uuids, so that entries without uuids are bounded too.
+   */
+  static final long MAX_WEIGHT = 1000000L;
+
+  private final EsClient client;
+  private final long maxWeight;
+  private final ConcurrentMap<List<Object>, Entry> projectUuidsByUser = new ConcurrentHashMap<>();
+  private final Interner<String> projectUuidInterner = Interners.newWeakInterner();
+  private final Interner<Set<String>> projectUuidsInterner = Interners.newWeakInterner();
+  private long weight = 0L;
+
+  /**
+   * Incremented on each invalidation. Entries are stamped with the generation read before loading
+   * their uuids and are ignored if the generation changed since, so that a lookup started before
+   * a permission change does not serve outdated uuids.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  public IssueAuthorizationCache(EsClient client) {
+    this(client, MAX_WEIGHT);
+  }
+
+  @VisibleForTesting
+  IssueAuthorizationCache(EsClient client, long maxWeight) {
+    this.client = client;
+    this.maxWeight = maxWeight;
+  }
+
+  public Set<String> authorizedProjectUuids(@Nullable String userLogin, Set<String> userGroups) {
+    List<Object> key = cacheKey(userLogin, userGroups);
+    long currentGeneration = generation.get();
+    Entry entry = projectUuidsByUser.get(key);
+    if (entry != null && entry.generation == currentGeneration) {
+      return entry.projectUuids;
+    }
+    Set<String> projectUuids = projectUuidsInterner.intern(loadProjectUuids(userLogin, userGroups));
+    put(key, new Entry(currentGeneration, projectUuids));
+    return projectUuids;
+  }
+
+  private synchronized void put(List<Object> key, Entry entry) {
+    long entryWeight = 1L + entry.projectUuids.size();
+    if (weight + entryWeight > maxWeight) {
+      projectUuidsByUser.clear();
+      weight = 0L;
+    }
+    Entry previous = projectUuidsByUser.put(key, entry);
+    weight += entryWeight - (previous != null ? 1L + previous.projectUuids.size() : 0L);
+  }
+
+  /**
+   * Must be called when permissions of projects are changed
+   */
+  public synchronized void clear() {
+    generation.incrementAndGet();
+    projectUuidsByUser.clear();
+    weight = 0L;
+  }
+
+  int size() {
+    return projectUuidsByUser.size();
+  }
+
+  @VisibleForTesting
+  Set<String> loadProjectUuids(@Nullable String userLogin, Set<String> userGroups) {
+    if (userLogin == null && userGroups.isEmpty()) {
+      return ImmutableSet.of();
+    }
+    OrFilterBuilder groupsAndUser = FilterBuilders.orFilter();
+    if (userLogin != null) {
+      groupsAndUser.add(FilterBuilders.termFilter(IssueIndexDefinition.FIELD_AUTHORIZATION_USERS, userLogin));
+    }
+    for (String group : userGroups) {
+      groupsAndUser.add(FilterBuilders.termFilter(IssueIndexDefinition.FIELD_AUTHORIZATION_GROUPS, group));
+    }
+    SearchResponse response = client.prepareSearch(IssueIndexDefinition.INDEX)
+      .setTypes(IssueIndexDefinition.TYPE_AUTHORIZATION)
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(SCROLL_TIME_IN_MINUTES))
+      .setSize(SCROLL_SIZE)
+      .setNoFields()
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), groupsAndUser))
+      .get();
+
+    ImmutableSet.Builder<String> projectUuids = ImmutableSet.builder();
+    while (true) {
+      response = client.prepareSearchScroll(response.getScrollId())
+        .setScroll(TimeValue.timeValueMinutes(SCROLL_TIME_IN_MINUTES))
+        .get();
+      SearchHit[] hits = response.getHits().getHits();
+      if (hits.length == 0) {
+        break;
+      }
+      for (SearchHit hit : hits) {
+        // id of authorization document is the project uuid
+        projectUuids.add(projectUuidInterner.intern(hit.getId()));
+      }
+    }
+    return projectUuids.build();
+  }
+
+  private static class Entry {
+    private final long generation;
+    private final Set<String> projectUuids;
+
+    Entry(long generation, Set<String> projectUuids) {
+      this.generation = generation;
+      this.projectUuids = projectUuids;
+    }
+  }
+
+  /**
+   * Group names are free text, so they are not joined into a string that could be the same for different
+   * groups, for example "a,b" and "a" + "b"
+   */
+  private static List<Object> cacheKey(@Nullable String userLogin, Set<String> userGroups) {
+    return Arrays.<Object>asList(userLogin, ImmutableSortedSet.copyOf(userGroups));
+  }
+}
@@ -40,15 +40,18 @@ import java.util.Map;
  * <ul>
  *   <li>index the projects with recent permission changes</li>
  *   <li>delete project orphans from index</li>
+ *   <li>invalidate the {@link IssueAuthorizationCache}</li>
  * </ul>
  */
 public class IssueAuthorizationIndexer extends BaseIndexer {
 
   private final DbClient dbClient;
+  private final IssueAuthorizationCache cache;
 
-  public IssueAuthorizationIndexer(DbClient dbClient, EsClient esClient) {
+  public IssueAuthorizationIndexer(DbClient dbClient, EsClient esClient, IssueAuthorizationCache cache) {
     super(esClient, 0L, IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_AUTHORIZATION, IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT);
     this.dbClient = dbClient;
+    this.cache = cache;
   }
 
   @Override
@@ -84,14 +87,24 @@ public class IssueAuthorizationIndexer extends BaseIndexer {
       maxDate = Math.max(maxDate, authorization.getUpdatedAt());
     }
     bulk.stop();
+    if (!authorizations.isEmpty()) {
+      cache.clear();
+    }
     return maxDate;
   }
 
+  /**
+   * The {@link IssueAuthorizationCache} is cleared only if refresh is enabled, as the deletion would not be
+   * visible yet. Otherwise it is up to caller to refresh the index and to clear the cache.
+   */
   public void deleteProject(String uuid, boolean refresh) {
     esClient
       .prepareDelete(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_AUTHORIZATION, uuid)
       .setRefresh(refresh)
       .get();
+    if (refresh) {
+      cache.clear();
+    }
   }
 
   private ActionRequest newUpdateRequest(IssueAuthorizationDao.Dto dto) {
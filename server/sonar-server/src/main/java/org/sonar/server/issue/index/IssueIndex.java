@@ -119,11 +119,13 @@ public class IssueIndex extends BaseIndex {
 
   private final Sorting sorting;
   private final System2 system;
+  private final IssueAuthorizationCache authorizationCache;
 
-  public IssueIndex(EsClient client, System2 system) {
+  public IssueIndex(EsClient client, System2 system, IssueAuthorizationCache authorizationCache) {
     super(client);
 
     this.system = system;
+    this.authorizationCache = authorizationCache;
     this.sorting = new Sorting();
     this.sorting.add(IssueQuery.SORT_BY_ASSIGNEE, IssueIndexDefinition.FIELD_ISSUE_ASSIGNEE);
     this.sorting.add(IssueQuery.SORT_BY_STATUS, IssueIndexDefinition.FIELD_ISSUE_STATUS);
@@ -302,22 +304,14 @@ public class IssueIndex extends BaseIndex {
     return String.format("%s%s%s", IssueIndexDefinition.TYPE_ISSUE, viewUuid, ViewIndexDefinition.TYPE_VIEW);
   }
 
+  /**
+   * Projects that can be browsed by the user are loaded from {@link IssueAuthorizationCache}, which
+   * is much cheaper than joining issues with their parent document of type "authorization".
+   */
   private FilterBuilder createAuthorizationFilter(boolean checkAuthorization, @Nullable String userLogin, Set<String> userGroups) {
     if (checkAuthorization) {
-      OrFilterBuilder groupsAndUser = FilterBuilders.orFilter();
-      if (userLogin != null) {
-        groupsAndUser.add(FilterBuilders.termFilter(IssueIndexDefinition.FIELD_AUTHORIZATION_USERS, userLogin));
-      }
-      for (String group : userGroups) {
-        groupsAndUser.add(FilterBuilders.termFilter(IssueIndexDefinition.FIELD_AUTHORIZATION_GROUPS, group));
-      }
-      return FilterBuilders.hasParentFilter(IssueIndexDefinition.TYPE_AUTHORIZATION,
-        QueryBuilders.filteredQuery(
-          QueryBuilders.matchAllQuery(),
-          FilterBuilders.boolFilter()
-            .must(groupsAndUser)
-            .cache(true))
-        );
+      Set<String> projectUuids = authorizationCache.authorizedProjectUuids(userLogin, userGroups);
+      return FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_PROJECT_UUID, projectUuids).cache(true);
     } else {
       return FilterBuilders.matchAllFilter();
     }
@@ -695,9 +689,22 @@ public class IssueIndex extends BaseIndex {
    * Only fields needed for the batch are returned.
    */
   public Iterator<IssueDoc> selectIssuesForBatch(ComponentDto component) {
+    return selectIssuesForBatch(component, null);
+  }
+
+  /**
+   * Same as {@link #selectIssuesForBatch(ComponentDto)}, but when a version is set only the issues indexed since
+   * this version are returned, including the closed ones, so that the batch can update a local copy of issues.
+   * See {@link #getIssuesVersion()}.
+   */
+  public Iterator<IssueDoc> selectIssuesForBatch(ComponentDto component, @Nullable Long changedSince) {
     BoolFilterBuilder filter = FilterBuilders.boolFilter()
-      .must(createAuthorizationFilter(true, UserSession.get().login(), UserSession.get().userGroups()))
-      .mustNot(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+      .must(createAuthorizationFilter(true, UserSession.get().login(), UserSession.get().userGroups()));
+    if (changedSince == null) {
+      filter.mustNot(FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+    } else {
+      filter.must(FilterBuilders.rangeFilter(IssueIndexDefinition.FIELD_ISSUE_INDEXED_AT).gte(changedSince));
+    }
 
     switch (component.scope()) {
       case Scopes.PROJECT:
@@ -729,6 +736,16 @@ public class IssueIndex extends BaseIndex {
     return scroll(response.getScrollId());
   }
 
+  /**
+   * Stamp of the last indexing of issues, 0 if the index is empty. Issues indexed later have a greater stamp,
+   * so it can be used as version of the issues loaded by the batch. Issues of the last indexing may not be
+   * all searchable yet, that's why they are returned again when requesting the changes since this version.
+   */
+  public long getIssuesVersion() {
+    return Math.max(0L, getClient().getMaxFieldValue(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE,
+      IssueIndexDefinition.FIELD_ISSUE_INDEXED_AT));
+  }
+
   // Scrolling within the index
   private Iterator<IssueDoc> scroll(final String scrollId) {
     return new Iterator<IssueDoc>() {
@@ -82,6 +82,11 @@ public class IssueIndexDefinition implements IndexDefinition {
    * Technical date
    */
   public static final String FIELD_ISSUE_TECHNICAL_UPDATED_AT = "updatedAt";
+  /**
+   * Stamp of the indexing which wrote the document, greater than the stamps of the previous indexings. Unlike
+   * technical dates, which are set when issues are persisted, it increases in the order issues become searchable.
+   */
+  public static final String FIELD_ISSUE_INDEXED_AT = "indexedAt";
 
   private final Settings settings;
 
@@ -144,5 +149,6 @@ public class IssueIndexDefinition implements IndexDefinition {
     issueMapping.stringFieldBuilder(FIELD_ISSUE_STATUS).enableSorting().build();
     issueMapping.stringFieldBuilder(FIELD_ISSUE_TAGS).build();
     issueMapping.createDateTimeField(FIELD_ISSUE_TECHNICAL_UPDATED_AT);
+    issueMapping.createLongField(FIELD_ISSUE_INDEXED_AT);
   }
 }
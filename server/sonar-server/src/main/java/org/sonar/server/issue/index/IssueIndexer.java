@@ -24,11 +24,15 @@ import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.sonar.api.config.Settings;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedReindexer;
+
+import javax.annotation.Nullable;
 
 import java.sql.Connection;
 import java.util.Iterator;
@@ -36,19 +40,56 @@ import java.util.Iterator;
 public class IssueIndexer extends BaseIndexer {
 
   private final DbClient dbClient;
+  private final PartitionedReindexer reindexer;
+
+  /**
+   * Stamp of the last indexing, see {@link IssueIndexDefinition#FIELD_ISSUE_INDEXED_AT}
+   */
+  private long lastIndexedAt = 0L;
 
-  public IssueIndexer(DbClient dbClient, EsClient esClient) {
+  public IssueIndexer(DbClient dbClient, EsClient esClient, Settings settings) {
     super(esClient, 300, IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE, IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT);
     this.dbClient = dbClient;
+    this.reindexer = new PartitionedReindexer(dbClient, settings, IssueIndexDefinition.INDEX, "issues", "project_uuid");
+  }
+
+  @Override
+  public void start() {
+    super.start();
+    synchronized (this) {
+      lastIndexedAt = Math.max(lastIndexedAt, esClient.getMaxFieldValue(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE,
+        IssueIndexDefinition.FIELD_ISSUE_INDEXED_AT));
+    }
   }
 
   @Override
   protected long doIndex(long lastUpdatedAt) {
+    if (lastUpdatedAt == 0L || reindexer.isInterrupted()) {
+      return reindex(false);
+    }
     return doIndex(createBulkIndexer(false), lastUpdatedAt);
   }
 
   public void indexAll() {
-    doIndex(createBulkIndexer(true), 0L);
+    reindex(true);
+  }
+
+  /**
+   * Full reindexing, partitioned by projects
+   */
+  private long reindex(boolean large) {
+    final long indexedAt = nextIndexedAt();
+    return reindexer.reindex(createBulkIndexer(large), new PartitionedReindexer.PartitionIndexer() {
+      @Override
+      public long index(BulkIndexer bulk, Connection connection, @Nullable String fromProjectUuid, @Nullable String toProjectUuid) {
+        IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, connection, fromProjectUuid, toProjectUuid);
+        try {
+          return addIssues(bulk, rowIt, indexedAt);
+        } finally {
+          rowIt.close();
+        }
+      }
+    });
   }
 
   /**
@@ -75,16 +116,33 @@ public class IssueIndexer extends BaseIndexer {
   }
 
   private long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
+    long indexedAt = nextIndexedAt();
     bulk.start();
+    long maxDate = addIssues(bulk, issues, indexedAt);
+    bulk.stop();
+    return maxDate;
+  }
+
+  /**
+   * Indexings are executed one after another (see {@link BaseIndexer#index()}) and refresh the index when
+   * they are done, so the issues of previous stamps are searchable when a greater stamp is read from the index.
+   * The stamp is greater than the previous ones even if the clock goes back.
+   */
+  private synchronized long nextIndexedAt() {
+    lastIndexedAt = Math.max(System.currentTimeMillis(), lastIndexedAt + 1L);
+    return lastIndexedAt;
+  }
+
+  private long addIssues(BulkIndexer bulk, Iterator<IssueDoc> issues, long indexedAt) {
     long maxDate = 0L;
     while (issues.hasNext()) {
       IssueDoc issue = issues.next();
+      issue.setField(IssueIndexDefinition.FIELD_ISSUE_INDEXED_AT, indexedAt);
       bulk.add(newUpsertRequest(issue));
 
       // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
       maxDate = Math.max(maxDate, issue.getTechnicalUpdateDate().getTime());
     }
-    bulk.stop();
     return maxDate;
   }
 
@@ -92,6 +92,10 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
 
   private static final String SQL_AFTER_DATE = SQL_ALL + " where i.updated_at>?";
 
+  private static final String SQL_PROJECT_RANGE = SQL_ALL + " where i.project_uuid>=? and i.project_uuid<=?";
+
+  private static final String SQL_NO_PROJECT = SQL_ALL + " where i.project_uuid is null";
+
   private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
 
   private static final Splitter MODULE_PATH_SPLITTER = Splitter.on('.').trimResults().omitEmptyStrings();
@@ -113,6 +117,24 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
     }
   }
 
+  /**
+   * Issues of the projects whose uuid is between the two bounds, both included. Issues without
+   * project uuid if bounds are null.
+   */
+  static IssueResultSetIterator create(DbClient dbClient, Connection connection, @Nullable String fromProjectUuid, @Nullable String toProjectUuid) {
+    try {
+      if (fromProjectUuid == null || toProjectUuid == null) {
+        return new IssueResultSetIterator(dbClient.newScrollingSelectStatement(connection, SQL_NO_PROJECT));
+      }
+      PreparedStatement stmt = dbClient.newScrollingSelectStatement(connection, SQL_PROJECT_RANGE);
+      stmt.setString(1, fromProjectUuid);
+      stmt.setString(2, toProjectUuid);
+      return new IssueResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select issues of projects " + fromProjectUuid + " to " + toProjectUuid, e);
+    }
+  }
+
   @CheckForNull
   private static String extractDirPath(@Nullable String filePath, String scope) {
     if (filePath != null) {
@@ -27,6 +27,7 @@ import org.sonar.core.persistence.DatabaseVersion;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.issue.index.IssueAuthorizationCache;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.search.IndexDefinition;
 import org.sonar.server.source.index.SourceLineIndexDefinition;
@@ -47,10 +48,12 @@ public class BackendCleanup implements ServerComponent {
   };
   private final EsClient esClient;
   private final MyBatis myBatis;
+  private final IssueAuthorizationCache issueAuthorizationCache;
 
-  public BackendCleanup(EsClient esClient, MyBatis myBatis) {
+  public BackendCleanup(EsClient esClient, MyBatis myBatis, IssueAuthorizationCache issueAuthorizationCache) {
     this.esClient = esClient;
     this.myBatis = myBatis;
+    this.issueAuthorizationCache = issueAuthorizationCache;
   }
 
   public void clearAll() {
@@ -94,6 +97,7 @@ public class BackendCleanup implements ServerComponent {
       esClient.prepareFlush(esClient.prepareState().get()
         .getState().getMetaData().concreteAllIndices())
         .get();
+      issueAuthorizationCache.clear();
     } catch (Exception e) {
       throw new IllegalStateException("Unable to clear indexes", e);
     }
@@ -128,6 +132,7 @@ public class BackendCleanup implements ServerComponent {
 
       // Clear inspection indexes
       clearIndex(IssueIndexDefinition.INDEX);
+      issueAuthorizationCache.clear();
       clearIndex(SourceLineIndexDefinition.INDEX);
       clearIndex(ViewIndexDefinition.INDEX);
 
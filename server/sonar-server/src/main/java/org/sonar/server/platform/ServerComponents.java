@@ -92,6 +92,7 @@ import org.sonar.server.component.ws.*;
 import org.sonar.server.computation.ComputationThreadLauncher;
 import org.sonar.server.computation.ReportQueue;
 import org.sonar.server.computation.ReportQueueCleaner;
+import org.sonar.server.computation.ReportQueueSignal;
 import org.sonar.server.computation.db.AnalysisReportDao;
 import org.sonar.server.computation.ws.*;
 import org.sonar.server.config.ws.PropertiesWs;
@@ -122,6 +123,7 @@ import org.sonar.server.issue.filter.IssueFilterService;
 import org.sonar.server.issue.filter.IssueFilterWriter;
 import org.sonar.server.issue.filter.IssueFilterWs;
 import org.sonar.server.issue.filter.RegisterIssueFilters;
+import org.sonar.server.issue.index.IssueAuthorizationCache;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.issue.index.IssueIndexDefinition;
@@ -270,6 +272,7 @@ class ServerComponents {
 
       // issues
       IssueIndex.class,
+      IssueAuthorizationCache.class,
       IssueDao.class,
 
       // measures
@@ -362,6 +365,7 @@ class ServerComponents {
     pico.addSingleton(ProjectRepositoryLoader.class);
     pico.addSingleton(SubmitReportWsAction.class);
     pico.addSingleton(IssuesAction.class);
+    pico.addSingleton(IssuesVersionAction.class);
     pico.addSingleton(BatchWs.class);
 
     // update center
@@ -670,6 +674,7 @@ class ServerComponents {
       ));
 
     // Compute engine
+    pico.addSingleton(ReportQueueSignal.class);
     pico.addSingleton(ReportQueue.class);
     pico.addSingleton(ComputationThreadLauncher.class);
     pico.addSingleton(ComputationWebService.class);
@@ -26,6 +26,7 @@ import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
 import org.elasticsearch.action.admin.cluster.stats.ClusterStatsResponse;
 import org.elasticsearch.action.admin.indices.stats.IndexStats;
 import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.sonar.server.es.BulkIndexerStats;
 import org.sonar.server.es.EsClient;
 
 import java.util.LinkedHashMap;
@@ -64,6 +65,33 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
     return clusterStats().getNodesStats().getCounts().getTotal();
   }
 
+  @Override
+  public long getBulkIndexedDocuments() {
+    long total = 0L;
+    for (BulkIndexerStats stats : esClient.bulkStats().values()) {
+      total += stats.getDocuments();
+    }
+    return total;
+  }
+
+  @Override
+  public long getBulkFailures() {
+    long total = 0L;
+    for (BulkIndexerStats stats : esClient.bulkStats().values()) {
+      total += stats.getFailures();
+    }
+    return total;
+  }
+
+  @Override
+  public long getBulkRejections() {
+    long total = 0L;
+    for (BulkIndexerStats stats : esClient.bulkStats().values()) {
+      total += stats.getRejections();
+    }
+    return total;
+  }
+
   @Override
   public LinkedHashMap<String, Object> attributes() {
     LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
@@ -71,6 +99,7 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
     attributes.put("Indices", indexAttributes());
     attributes.put("Number of Nodes", getNumberOfNodes());
     attributes.put("Nodes", nodeAttributes());
+    attributes.put("Bulk Indexing", bulkAttributes());
     return attributes;
   }
 
@@ -117,6 +146,28 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
     return nodes;
   }
 
+  /**
+   * map of {index name -> bulk indexing attributes}
+   */
+  private LinkedHashMap<String, LinkedHashMap<String, Object>> bulkAttributes() {
+    LinkedHashMap<String, LinkedHashMap<String, Object>> indices = new LinkedHashMap<>();
+    for (Map.Entry<String, BulkIndexerStats> entry : esClient.bulkStats().entrySet()) {
+      LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+      indices.put(entry.getKey(), attributes);
+      BulkIndexerStats stats = entry.getValue();
+      long requests = stats.getBulkRequests();
+      attributes.put("Requests", requests);
+      attributes.put("Documents", stats.getDocuments());
+      attributes.put("Failures", stats.getFailures());
+      attributes.put("Rejections", stats.getRejections());
+      attributes.put("Throughput (docs/s)", stats.getThroughput());
+      attributes.put("Average Latency (ms)", requests == 0L ? 0L : (stats.getLatencyMs() / requests));
+      attributes.put("Average Queue Wait (ms)", requests == 0L ? 0L : (stats.getQueueWaitMs() / requests));
+      attributes.put("Flush Size", byteCountToDisplaySize(stats.getFlushByteSize()));
+    }
+    return indices;
+  }
+
   private ClusterStatsResponse clusterStats() {
     return esClient.prepareClusterStats().get();
   }
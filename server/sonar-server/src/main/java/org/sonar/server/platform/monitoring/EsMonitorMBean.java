@@ -27,4 +27,16 @@ package org.sonar.server.platform.monitoring;
 public interface EsMonitorMBean {
   String getState();
   int getNumberOfNodes();
+
+  /**
+   * Number of documents indexed or deleted by bulk requests since startup
+   */
+  long getBulkIndexedDocuments();
+
+  long getBulkFailures();
+
+  /**
+   * Number of documents rejected by Elasticsearch because its bulk queue was full
+   */
+  long getBulkRejections();
 }
@@ -19,25 +19,20 @@
  */
 package org.sonar.server.source.index;
 
-import org.apache.commons.io.Charsets;
 import org.apache.commons.lang.StringUtils;
-import org.elasticsearch.action.update.UpdateRequest;
-import org.sonar.api.utils.text.JsonWriter;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.db.ResultSetIterator;
-import org.sonar.server.es.EsUtils;
 import org.sonar.server.source.db.FileSourceDb;
 
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStreamWriter;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 
 /**
  * Scroll over table FILE_SOURCES and directly parse data required to
@@ -48,12 +43,15 @@ public class SourceFileResultSetIterator extends ResultSetIterator<SourceFileRes
   public static class Row {
     private final String fileUuid, projectUuid;
     private final long updatedAt;
-    private final List<UpdateRequest> lineUpdateRequests = new ArrayList<>();
+    private final FileSourceDb.Data data;
+    private final Integer previousLineCount;
 
-    public Row(String projectUuid, String fileUuid, long updatedAt) {
+    public Row(String projectUuid, String fileUuid, long updatedAt, FileSourceDb.Data data, @Nullable Integer previousLineCount) {
       this.projectUuid = projectUuid;
       this.fileUuid = fileUuid;
       this.updatedAt = updatedAt;
+      this.data = data;
+      this.previousLineCount = previousLineCount;
     }
 
     public String getProjectUuid() {
@@ -68,8 +66,21 @@ public class SourceFileResultSetIterator extends ResultSetIterator<SourceFileRes
       return updatedAt;
     }
 
-    public List<UpdateRequest> getLineUpdateRequests() {
-      return lineUpdateRequests;
+    public FileSourceDb.Data getData() {
+      return data;
+    }
+
+    public int getLineCount() {
+      return data.getLinesCount();
+    }
+
+    /**
+     * Number of lines of the file which are currently indexed, null if unknown.
+     * See column FILE_SOURCES.PREVIOUS_LINE_COUNT.
+     */
+    @CheckForNull
+    public Integer getPreviousLineCount() {
+      return previousLineCount;
     }
   }
 
@@ -77,10 +88,13 @@ public class SourceFileResultSetIterator extends ResultSetIterator<SourceFileRes
     "project_uuid",
     "file_uuid",
     "updated_at",
-    "binary_data"
+    "binary_data",
+    "previous_line_count"
   };
   private static final String SQL_ALL = "select " + StringUtils.join(FIELDS, ",") + " from file_sources";
   private static final String SQL_AFTER_DATE = SQL_ALL + " where updated_at>?";
+  private static final String SQL_PROJECT_RANGE = SQL_ALL + " where project_uuid>=? and project_uuid<=?";
+  private static final String SQL_NO_PROJECT = SQL_ALL + " where project_uuid is null";
 
   public static SourceFileResultSetIterator create(DbClient dbClient, Connection connection, long afterDate) {
     try {
@@ -96,6 +110,24 @@ public class SourceFileResultSetIterator extends ResultSetIterator<SourceFileRes
     }
   }
 
+  /**
+   * Rows of the projects whose uuid is between the two bounds, both included. Rows without project uuid
+   * if bounds are null.
+   */
+  public static SourceFileResultSetIterator create(DbClient dbClient, Connection connection, @Nullable String fromProjectUuid, @Nullable String toProjectUuid) {
+    try {
+      if (fromProjectUuid == null || toProjectUuid == null) {
+        return new SourceFileResultSetIterator(dbClient.newScrollingSingleRowSelectStatement(connection, SQL_NO_PROJECT));
+      }
+      PreparedStatement stmt = dbClient.newScrollingSingleRowSelectStatement(connection, SQL_PROJECT_RANGE);
+      stmt.setString(1, fromProjectUuid);
+      stmt.setString(2, toProjectUuid);
+      return new SourceFileResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select file sources of projects " + fromProjectUuid + " to " + toProjectUuid, e);
+    }
+  }
+
   private SourceFileResultSetIterator(PreparedStatement stmt) throws SQLException {
     super(stmt);
   }
@@ -106,105 +138,22 @@ public class SourceFileResultSetIterator extends ResultSetIterator<SourceFileRes
     String fileUuid = rs.getString(2);
     Date updatedAt = new Date(rs.getLong(3));
     FileSourceDb.Data data = FileSourceDto.decodeData(rs.getBinaryStream(4));
-    return toRow(projectUuid, fileUuid, updatedAt, data);
+    int previousLineCount = rs.getInt(5);
+    return toRow(projectUuid, fileUuid, updatedAt, data, rs.wasNull() ? null : previousLineCount);
   }
 
   /**
-   * Convert protobuf message to data required for Elasticsearch indexing
+   * Wrap the protobuf message. JSON documents are generated lazily, line by line,
+   * by {@link SourceLineIndexRequestFactory}.
    */
-  public static Row toRow(String projectUuid, String fileUuid, Date updatedAt, FileSourceDb.Data data) {
-    Row result = new Row(projectUuid, fileUuid, updatedAt.getTime());
-    for (FileSourceDb.Line line : data.getLinesList()) {
-      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-
-      // all the fields must be present, even if value is null
-      JsonWriter writer = JsonWriter.of(new OutputStreamWriter(bytes, Charsets.UTF_8)).setSerializeNulls(true);
-      writer.beginObject();
-      writer.prop(SourceLineIndexDefinition.FIELD_PROJECT_UUID, projectUuid);
-      writer.prop(SourceLineIndexDefinition.FIELD_FILE_UUID, fileUuid);
-      writer.prop(SourceLineIndexDefinition.FIELD_LINE, line.getLine());
-      writer.prop(SourceLineIndexDefinition.FIELD_UPDATED_AT, EsUtils.formatDateTime(updatedAt));
-      writer.prop(SourceLineIndexDefinition.FIELD_SCM_REVISION, line.getScmRevision());
-      writer.prop(SourceLineIndexDefinition.FIELD_SCM_AUTHOR, line.getScmAuthor());
-      writer.prop(SourceLineIndexDefinition.FIELD_SCM_DATE, EsUtils.formatDateTime(line.hasScmDate() ? new Date(line.getScmDate()) : null));
-
-      // unit tests
-      if (line.hasUtLineHits()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_UT_LINE_HITS,  line.getUtLineHits());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_UT_LINE_HITS).valueObject(null);
-      }
-      if (line.hasUtConditions()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_UT_CONDITIONS,  line.getUtConditions());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_UT_CONDITIONS).valueObject(null);
-      }
-      if (line.hasUtCoveredConditions()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_UT_COVERED_CONDITIONS,  line.getUtCoveredConditions());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_UT_COVERED_CONDITIONS).valueObject(null);
-      }
-
-      // IT
-      if (line.hasItLineHits()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_IT_LINE_HITS,  line.getItLineHits());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_IT_LINE_HITS).valueObject(null);
-      }
-      if (line.hasItConditions()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_IT_CONDITIONS,  line.getItConditions());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_IT_CONDITIONS).valueObject(null);
-      }
-      if (line.hasItCoveredConditions()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_IT_COVERED_CONDITIONS,  line.getItCoveredConditions());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_IT_COVERED_CONDITIONS).valueObject(null);
-      }
-
-      // Overall coverage
-      if (line.hasOverallLineHits()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_OVERALL_LINE_HITS,  line.getOverallLineHits());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_OVERALL_LINE_HITS).valueObject(null);
-      }
-      if (line.hasOverallConditions()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_OVERALL_CONDITIONS,  line.getOverallConditions());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_OVERALL_CONDITIONS).valueObject(null);
-      }
-      if (line.hasOverallCoveredConditions()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_OVERALL_COVERED_CONDITIONS,  line.getOverallCoveredConditions());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_OVERALL_COVERED_CONDITIONS).valueObject(null);
-      }
+  public static Row toRow(String projectUuid, String fileUuid, Date updatedAt, FileSourceDb.Data data, @Nullable Integer previousLineCount) {
+    return new Row(projectUuid, fileUuid, updatedAt.getTime(), data, previousLineCount);
+  }
 
-      if (line.hasHighlighting()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_HIGHLIGHTING,  line.getHighlighting());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_HIGHLIGHTING).valueObject(null);
-      }
-      if (line.hasSymbols()) {
-        writer.prop(SourceLineIndexDefinition.FIELD_SYMBOLS,  line.getSymbols());
-      } else {
-        writer.name(SourceLineIndexDefinition.FIELD_SYMBOLS).valueObject(null);
-      }
-      writer.name(SourceLineIndexDefinition.FIELD_DUPLICATIONS).valueObject(line.getDuplicationList());
-      writer.prop(SourceLineIndexDefinition.FIELD_SOURCE, line.hasSource() ? line.getSource() : null);
-      writer.endObject().close();
-
-      // This is an optimization to reduce memory consumption and multiple conversions from Map to JSON.
-      // UpdateRequest#doc() and #upsert() take the same parameter values, so:
-      // - passing the same Map would execute two JSON serializations
-      // - Map is a useless temporarily structure: read JDBC result set -> convert to map -> convert to JSON. Generating
-      // directly JSON from result set is more efficient.
-      byte[] jsonDoc = bytes.toByteArray();
-      UpdateRequest updateRequest = new UpdateRequest(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE, SourceLineIndexDefinition.docKey(fileUuid, line.getLine()))
-        .routing(projectUuid)
-        .doc(jsonDoc)
-        .upsert(jsonDoc);
-      result.lineUpdateRequests.add(updateRequest);
-    }
-    return result;
+  /**
+   * Row of a file whose number of indexed lines is unknown
+   */
+  public static Row toRow(String projectUuid, String fileUuid, Date updatedAt, FileSourceDb.Data data) {
+    return toRow(projectUuid, fileUuid, updatedAt, data, null);
   }
 }
@@ -21,6 +21,11 @@ package org.sonar.server.source.index;
 
 import com.google.common.collect.Lists;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequestBuilder;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.sort.SortOrder;
@@ -28,13 +33,22 @@ import org.sonar.server.es.BaseIndex;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.exceptions.NotFoundException;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
 public class SourceLineIndex extends BaseIndex {
 
   private static final int MAX_RESULT = 500000;
+  private static final int SCROLL_TIME_IN_MINUTES = 3;
+  private static final int SCROLL_SIZE_PER_SHARD = 2000;
+  private static final String[] SCM_FIELDS = {SourceLineIndexDefinition.FIELD_FILE_UUID, SourceLineIndexDefinition.FIELD_LINE,
+    SourceLineIndexDefinition.FIELD_SCM_REVISION, SourceLineIndexDefinition.FIELD_SCM_AUTHOR, SourceLineIndexDefinition.FIELD_SCM_DATE};
 
   public SourceLineIndex(EsClient esClient) {
     super(esClient);
@@ -94,6 +108,25 @@ public class SourceLineIndex extends BaseIndex {
     return lines;
   }
 
+  /**
+   * Scroll over the lines of all the files of the project. Only the fields file uuid, line and
+   * SCM revision, author and date are loaded. Lines are not sorted.
+   * Requests are routed to the shard of the project.
+   */
+  public Iterator<SourceLineDoc> scrollScmLinesOfProject(String projectUuid) {
+    SearchResponse response = getClient().prepareSearch(SourceLineIndexDefinition.INDEX)
+      .setTypes(SourceLineIndexDefinition.TYPE)
+      .setRouting(projectUuid)
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(SCROLL_TIME_IN_MINUTES))
+      .setSize(SCROLL_SIZE_PER_SHARD)
+      .setFetchSource(SCM_FIELDS, null)
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
+        FilterBuilders.termFilter(SourceLineIndexDefinition.FIELD_PROJECT_UUID, projectUuid).cache(false)))
+      .get();
+    return scroll(response.getScrollId());
+  }
+
   public SourceLineDoc getLine(String fileUuid, int line) {
     checkArgument(line > 0, "Line should be greater than 0");
     SearchRequestBuilder request = getClient().prepareSearch(SourceLineIndexDefinition.INDEX)
@@ -112,4 +145,35 @@ public class SourceLineIndex extends BaseIndex {
     }
     throw new NotFoundException(String.format("No source found on line %s for file '%s'", line, fileUuid));
   }
+
+  private Iterator<SourceLineDoc> scroll(final String scrollId) {
+    return new Iterator<SourceLineDoc>() {
+      private final Queue<SearchHit> hits = new ArrayDeque<>();
+      private boolean done = false;
+
+      @Override
+      public boolean hasNext() {
+        if (hits.isEmpty() && !done) {
+          SearchScrollRequestBuilder esRequest = getClient().prepareSearchScroll(scrollId)
+            .setScroll(TimeValue.timeValueMinutes(SCROLL_TIME_IN_MINUTES));
+          Collections.addAll(hits, esRequest.get().getHits().getHits());
+          done = hits.isEmpty();
+        }
+        return !hits.isEmpty();
+      }
+
+      @Override
+      public SourceLineDoc next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return new SourceLineDoc(hits.poll().getSource());
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("Cannot remove item when scrolling");
+      }
+    };
+  }
 }
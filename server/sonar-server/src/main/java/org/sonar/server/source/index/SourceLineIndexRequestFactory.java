@@ -0,0 +1,122 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source.index;
+
+import org.apache.commons.io.Charsets;
+import org.elasticsearch.action.index.IndexRequest;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.server.es.EsUtils;
+import org.sonar.server.source.db.FileSourceDb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Date;
+
+/**
+ * Converts the lines of a {@link SourceFileResultSetIterator.Row} to Elasticsearch index requests.
+ * <p/>
+ * All the lines of a file are replaced when the file is indexed, so plain index requests
+ * are used instead of update requests. The JSON document of each line is generated into a
+ * single buffer that is reused for all the lines. Only the final byte array is allocated
+ * per line.
+ * <p/>
+ * Not thread-safe.
+ */
+class SourceLineIndexRequestFactory {
+
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+  private final Writer writer = new NotClosingWriter(new OutputStreamWriter(bytes, Charsets.UTF_8));
+
+  private SourceFileResultSetIterator.Row currentRow = null;
+  private String currentUpdatedAt = null;
+
+  IndexRequest create(SourceFileResultSetIterator.Row row, FileSourceDb.Line line) {
+    if (row != currentRow) {
+      currentRow = row;
+      currentUpdatedAt = EsUtils.formatDateTime(new Date(row.getUpdatedAt()));
+    }
+    bytes.reset();
+    writeDoc(row, line);
+    return new IndexRequest(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE, SourceLineIndexDefinition.docKey(row.getFileUuid(), line.getLine()))
+      .routing(row.getProjectUuid())
+      .source(bytes.toByteArray());
+  }
+
+  private void writeDoc(SourceFileResultSetIterator.Row row, FileSourceDb.Line line) {
+    // all the fields must be present, even if value is null
+    JsonWriter json = JsonWriter.of(writer).setSerializeNulls(true);
+    json.beginObject();
+    json.prop(SourceLineIndexDefinition.FIELD_PROJECT_UUID, row.getProjectUuid());
+    json.prop(SourceLineIndexDefinition.FIELD_FILE_UUID, row.getFileUuid());
+    json.prop(SourceLineIndexDefinition.FIELD_LINE, line.getLine());
+    json.prop(SourceLineIndexDefinition.FIELD_UPDATED_AT, currentUpdatedAt);
+    json.prop(SourceLineIndexDefinition.FIELD_SCM_REVISION, line.getScmRevision());
+    json.prop(SourceLineIndexDefinition.FIELD_SCM_AUTHOR, line.getScmAuthor());
+    json.prop(SourceLineIndexDefinition.FIELD_SCM_DATE, EsUtils.formatDateTime(line.hasScmDate() ? new Date(line.getScmDate()) : null));
+
+    // unit tests
+    writeInt(json, SourceLineIndexDefinition.FIELD_UT_LINE_HITS, line.hasUtLineHits(), line.getUtLineHits());
+    writeInt(json, SourceLineIndexDefinition.FIELD_UT_CONDITIONS, line.hasUtConditions(), line.getUtConditions());
+    writeInt(json, SourceLineIndexDefinition.FIELD_UT_COVERED_CONDITIONS, line.hasUtCoveredConditions(), line.getUtCoveredConditions());
+
+    // IT
+    writeInt(json, SourceLineIndexDefinition.FIELD_IT_LINE_HITS, line.hasItLineHits(), line.getItLineHits());
+    writeInt(json, SourceLineIndexDefinition.FIELD_IT_CONDITIONS, line.hasItConditions(), line.getItConditions());
+    writeInt(json, SourceLineIndexDefinition.FIELD_IT_COVERED_CONDITIONS, line.hasItCoveredConditions(), line.getItCoveredConditions());
+
+    // Overall coverage
+    writeInt(json, SourceLineIndexDefinition.FIELD_OVERALL_LINE_HITS, line.hasOverallLineHits(), line.getOverallLineHits());
+    writeInt(json, SourceLineIndexDefinition.FIELD_OVERALL_CONDITIONS, line.hasOverallConditions(), line.getOverallConditions());
+    writeInt(json, SourceLineIndexDefinition.FIELD_OVERALL_COVERED_CONDITIONS, line.hasOverallCoveredConditions(), line.getOverallCoveredConditions());
+
+    json.prop(SourceLineIndexDefinition.FIELD_HIGHLIGHTING, line.hasHighlighting() ? line.getHighlighting() : null);
+    json.prop(SourceLineIndexDefinition.FIELD_SYMBOLS, line.hasSymbols() ? line.getSymbols() : null);
+    json.name(SourceLineIndexDefinition.FIELD_DUPLICATIONS).valueObject(line.getDuplicationList());
+    json.prop(SourceLineIndexDefinition.FIELD_SOURCE, line.hasSource() ? line.getSource() : null);
+    // flushes the writer without closing the reused buffer
+    json.endObject().close();
+  }
+
+  private static void writeInt(JsonWriter json, String field, boolean hasValue, int value) {
+    if (hasValue) {
+      json.prop(field, value);
+    } else {
+      json.name(field).valueObject(null);
+    }
+  }
+
+  /**
+   * {@link JsonWriter#close()} closes the underlying writer. The writer shared by all the
+   * lines must only be flushed.
+   */
+  private static class NotClosingWriter extends FilterWriter {
+    NotClosingWriter(Writer out) {
+      super(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -19,15 +19,20 @@
  */
 package org.sonar.server.source.index;
 
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
-import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.sonar.api.config.Settings;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedReindexer;
+import org.sonar.server.source.db.FileSourceDb;
+
+import javax.annotation.Nullable;
 
 import java.sql.Connection;
 import java.util.Iterator;
@@ -42,16 +47,20 @@ import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_PROJ
 public class SourceLineIndexer extends BaseIndexer {
 
   private final DbClient dbClient;
+  private final PartitionedReindexer reindexer;
 
-  public SourceLineIndexer(DbClient dbClient, EsClient esClient) {
+  public SourceLineIndexer(DbClient dbClient, EsClient esClient, Settings settings) {
     super(esClient, 0L, SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE, SourceLineIndexDefinition.FIELD_UPDATED_AT);
     this.dbClient = dbClient;
+    this.reindexer = new PartitionedReindexer(dbClient, settings, SourceLineIndexDefinition.INDEX, "file_sources", "project_uuid");
   }
 
   @Override
   protected long doIndex(long lastUpdatedAt) {
-    final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
-    bulk.setLarge(lastUpdatedAt == 0L);
+    if (lastUpdatedAt == 0L || reindexer.isInterrupted()) {
+      return reindex();
+    }
+    BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
 
     DbSession dbSession = dbClient.openSession(false);
     Connection dbConnection = dbSession.getConnection();
@@ -66,23 +75,49 @@ public class SourceLineIndexer extends BaseIndexer {
     }
   }
 
+  /**
+   * Full reindexing, partitioned by projects
+   */
+  private long reindex() {
+    BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
+    bulk.setLarge(true);
+    return reindexer.reindex(bulk, new PartitionedReindexer.PartitionIndexer() {
+      @Override
+      public long index(BulkIndexer bulk, Connection connection, @Nullable String fromProjectUuid, @Nullable String toProjectUuid) {
+        SourceFileResultSetIterator rowIt = SourceFileResultSetIterator.create(dbClient, connection, fromProjectUuid, toProjectUuid);
+        try {
+          return addRows(bulk, rowIt);
+        } finally {
+          rowIt.close();
+        }
+      }
+    });
+  }
+
   public long index(Iterator<SourceFileResultSetIterator.Row> dbRows) {
     BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
     return doIndex(bulk, dbRows);
   }
 
   private long doIndex(BulkIndexer bulk, Iterator<SourceFileResultSetIterator.Row> dbRows) {
-    long maxUpdatedAt = 0L;
     bulk.start();
+    long maxUpdatedAt = addRows(bulk, dbRows);
+    bulk.stop();
+    return maxUpdatedAt;
+  }
+
+  private long addRows(BulkIndexer bulk, Iterator<SourceFileResultSetIterator.Row> dbRows) {
+    long maxUpdatedAt = 0L;
+    SourceLineIndexRequestFactory requestFactory = new SourceLineIndexRequestFactory();
     while (dbRows.hasNext()) {
       SourceFileResultSetIterator.Row row = dbRows.next();
       addDeleteRequestsForLinesGreaterThan(bulk, row);
-      for (UpdateRequest updateRequest : row.getLineUpdateRequests()) {
-        bulk.add(updateRequest);
+      // requests are sent line by line, the JSON documents of a whole file are never loaded in memory
+      for (FileSourceDb.Line line : row.getData().getLinesList()) {
+        bulk.add(requestFactory.create(row, line));
       }
       maxUpdatedAt = Math.max(maxUpdatedAt, row.getUpdatedAt());
     }
-    bulk.stop();
     return maxUpdatedAt;
   }
 
@@ -91,9 +126,25 @@ public class SourceLineIndexer extends BaseIndexer {
    * - file had 10 lines in previous analysis
    * - same file has now 5 lines
    * Lines 6 to 10 must be removed from index.
+   * <p/>
+   * Ids of documents are computed from the number of lines which are currently indexed. These deletions
+   * are added to the bulk request like the index requests, so they do not cost any additional round trip.
+   * Elasticsearch is searched only if this number is unknown (rows not updated since the upgrade to 5.2).
    */
   private void addDeleteRequestsForLinesGreaterThan(BulkIndexer bulk, SourceFileResultSetIterator.Row fileRow) {
-    int numberOfLines = fileRow.getLineUpdateRequests().size();
+    int numberOfLines = fileRow.getLineCount();
+    Integer previousNumberOfLines = fileRow.getPreviousLineCount();
+    if (previousNumberOfLines == null) {
+      addSearchedDeleteRequestsForLinesGreaterThan(bulk, fileRow, numberOfLines);
+    } else {
+      for (int line = numberOfLines + 1; line <= previousNumberOfLines; line++) {
+        bulk.add(new DeleteRequest(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE, SourceLineIndexDefinition.docKey(fileRow.getFileUuid(), line))
+          .routing(fileRow.getProjectUuid()));
+      }
+    }
+  }
+
+  private void addSearchedDeleteRequestsForLinesGreaterThan(BulkIndexer bulk, SourceFileResultSetIterator.Row fileRow, int numberOfLines) {
     SearchRequestBuilder searchRequest = esClient.prepareSearch(SourceLineIndexDefinition.INDEX)
       .setTypes(SourceLineIndexDefinition.TYPE)
       .setRouting(fileRow.getProjectUuid())
@@ -19,30 +19,39 @@
  */
 package org.sonar.server.util.cache;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.server.util.CloseableIterator;
-import org.sonar.server.util.ObjectInputStreamIterator;
 
-import java.io.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * The format of objects is defined by a {@link DiskCacheCodec}.
  */
-public class DiskCache<O extends Serializable> {
+public class DiskCache<O> {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
 
   private final File file;
   private final System2 system2;
+  private final DiskCacheCodec<O> codec;
 
-  public DiskCache(File file, System2 system2) {
+  public DiskCache(File file, System2 system2, DiskCacheCodec<O> codec) {
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
     OutputStream output = null;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
+      output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+      codec.writeHeader(output);
       output.flush();
 
       // raise an exception if can't close
@@ -59,33 +68,33 @@ public class DiskCache<O extends Serializable> {
   }
 
   public CloseableIterator<O> traverse() {
+    InputStream input = null;
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+      return codec.newIterator(input);
     } catch (IOException e) {
+      IOUtils.closeQuietly(input);
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final DiskCacheCodec.Encoder<O> encoder;
 
     private DiskAppender() {
+      OutputStream output = null;
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        output = new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+        this.encoder = codec.newEncoder(output);
       } catch (IOException e) {
+        IOUtils.closeQuietly(output);
         throw new IllegalStateException("Fail to open file " + file, e);
       }
     }
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        encoder.encode(object);
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -94,7 +103,7 @@ public class DiskCache<O extends Serializable> {
 
     @Override
     public void close() {
-      system2.close(output);
+      system2.close(encoder);
     }
   }
 }
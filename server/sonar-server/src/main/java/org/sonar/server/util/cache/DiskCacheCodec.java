@@ -0,0 +1,49 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import org.sonar.server.util.CloseableIterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Format of the objects stored by {@link DiskCache}. Streams given to the codec are buffered.
+ * <p/>
+ * Objects are appended by one or more successive {@link Encoder}. The iterator returned by
+ * {@link #newIterator(InputStream)} must read the whole file, including the data written by all the encoders.
+ */
+public interface DiskCacheCodec<O> {
+
+  /**
+   * Called once, when the file is created.
+   */
+  void writeHeader(OutputStream output) throws IOException;
+
+  Encoder<O> newEncoder(OutputStream output) throws IOException;
+
+  CloseableIterator<O> newIterator(InputStream input) throws IOException;
+
+  interface Encoder<O> extends Closeable {
+    void encode(O object) throws IOException;
+  }
+}
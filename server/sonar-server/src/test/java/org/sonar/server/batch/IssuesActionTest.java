@@ -26,8 +26,10 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issue;
 import org.sonar.api.platform.Server;
 import org.sonar.api.security.DefaultGroups;
+import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.Constants.Severity;
 import org.sonar.batch.protocol.input.BatchInput.ServerIssue;
@@ -51,7 +53,9 @@ import org.sonar.test.DbTests;
 import javax.annotation.Nullable;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -88,9 +92,10 @@ public class IssuesActionTest {
     this.session = db.myBatis().openSession(false);
 
     DbClient dbClient = new DbClient(db.database(), db.myBatis(), new IssueDao(db.myBatis()), new ComponentDao());
-    issueIndex = new IssueIndex(es.client(), System2.INSTANCE);
-    issueIndexer = new IssueIndexer(null, es.client());
-    issueAuthorizationIndexer = new IssueAuthorizationIndexer(null, es.client());
+    IssueAuthorizationCache authorizationCache = new IssueAuthorizationCache(es.client());
+    issueIndex = new IssueIndex(es.client(), System2.INSTANCE, authorizationCache);
+    issueIndexer = new IssueIndexer(null, es.client(), new Settings());
+    issueAuthorizationIndexer = new IssueAuthorizationIndexer(null, es.client(), authorizationCache);
     issuesAction = new IssuesAction(dbClient, issueIndex);
     componentDao = new ComponentDao();
 
@@ -98,7 +103,8 @@ public class IssuesActionTest {
       new BatchIndex(mock(Server.class)),
       new GlobalRepositoryAction(mock(DbClient.class), mock(PropertiesDao.class)),
       new ProjectRepositoryAction(mock(ProjectRepositoryLoader.class)),
-      issuesAction)
+      issuesAction,
+      new IssuesVersionAction(issueIndex))
       );
   }
 
@@ -327,6 +333,70 @@ public class IssuesActionTest {
     assertThat(serverIssue.getModuleKey()).isEqualTo(MODULE_KEY);
   }
 
+  @Test
+  public void issues_changed_since_version() throws Exception {
+    ComponentDto project = ComponentTesting.newProjectDto("ABCD").setKey(PROJECT_KEY);
+    ComponentDto module = ComponentTesting.newModuleDto("BCDE", project).setKey(MODULE_KEY);
+    ComponentDto file = ComponentTesting.newFileDto(module, "CDEF").setKey(FILE_KEY).setPath("src/org/struts/Action.java");
+    componentDao.insert(session, project, module, file);
+    session.commit();
+
+    MockUserSession.set().setLogin("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION);
+
+    indexIssues(IssueTesting.newDoc("OLD", file).setTechnicalUpdateDate(DateUtils.parseDate("2015-01-01")));
+    String firstVersion = tester.newGetRequest("batch", "issues_version").execute().outputAsString();
+
+    indexIssues(
+      IssueTesting.newDoc("NEW", file).setTechnicalUpdateDate(DateUtils.parseDate("2015-03-01")),
+      IssueTesting.newDoc("CLOSED", file).setTechnicalUpdateDate(DateUtils.parseDate("2015-03-01")).setStatus(Issue.STATUS_CLOSED));
+    String secondVersion = tester.newGetRequest("batch", "issues_version").execute().outputAsString();
+    assertThat(Long.parseLong(secondVersion)).isGreaterThan(Long.parseLong(firstVersion));
+
+    // closed issues are returned, so that batch can drop them from its local copy. Issues of the last indexing
+    // are returned again, as they may not have been all searchable when the version was requested.
+    WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setParam("changedSince", firstVersion);
+    assertThat(issueKeys(request.execute().output())).containsOnly("OLD", "NEW", "CLOSED");
+
+    request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setParam("changedSince", secondVersion);
+    assertThat(issueKeys(request.execute().output())).containsOnly("NEW", "CLOSED");
+
+    request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY).setParam("changedSince", String.valueOf(Long.parseLong(secondVersion) + 1L));
+    assertThat(issueKeys(request.execute().output())).isEmpty();
+
+    request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY);
+    assertThat(issueKeys(request.execute().output())).containsOnly("OLD", "NEW");
+  }
+
+  @Test
+  public void issues_indexed_late_are_changed_since_version() throws Exception {
+    ComponentDto project = ComponentTesting.newProjectDto("ABCD").setKey(PROJECT_KEY);
+    ComponentDto module = ComponentTesting.newModuleDto("BCDE", project).setKey(MODULE_KEY);
+    ComponentDto file = ComponentTesting.newFileDto(module, "CDEF").setKey(FILE_KEY).setPath("src/org/struts/Action.java");
+    componentDao.insert(session, project, module, file);
+    session.commit();
+
+    MockUserSession.set().setLogin("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION);
+
+    indexIssues(IssueTesting.newDoc("RECENT", file).setTechnicalUpdateDate(DateUtils.parseDate("2015-03-01")));
+    String version = tester.newGetRequest("batch", "issues_version").execute().outputAsString();
+
+    // persisted long before the version was requested, for example by compute engine, but indexed after
+    indexIssues(IssueTesting.newDoc("LATE", file).setTechnicalUpdateDate(DateUtils.parseDate("2015-01-01")));
+    String nextVersion = tester.newGetRequest("batch", "issues_version").execute().outputAsString();
+
+    WsTester.TestRequest request = tester.newGetRequest("batch", "issues").setParam("key", PROJECT_KEY)
+      .setParam("changedSince", String.valueOf(Long.parseLong(version) + 1L));
+    assertThat(issueKeys(request.execute().output())).containsOnly("LATE");
+    assertThat(Long.parseLong(nextVersion)).isGreaterThan(Long.parseLong(version));
+  }
+
+  @Test
+  public void issues_version_of_empty_index() throws Exception {
+    MockUserSession.set().setLogin("henry").setGlobalPermissions(GlobalPermissions.PREVIEW_EXECUTION);
+
+    assertThat(tester.newGetRequest("batch", "issues_version").execute().outputAsString()).isEqualTo("0");
+  }
+
   @Test(expected = ForbiddenException.class)
   public void fail_without_preview_permission() throws Exception {
     MockUserSession.set().setLogin("henry").setGlobalPermissions(GlobalPermissions.PROVISIONING);
@@ -335,6 +405,17 @@ public class IssuesActionTest {
     request.execute();
   }
 
+  private static List<String> issueKeys(byte[] output) throws IOException {
+    List<String> keys = newArrayList();
+    ByteArrayInputStream input = new ByteArrayInputStream(output);
+    ServerIssue serverIssue = ServerIssue.parseDelimitedFrom(input);
+    while (serverIssue != null) {
+      keys.add(serverIssue.getKey());
+      serverIssue = ServerIssue.parseDelimitedFrom(input);
+    }
+    return keys;
+  }
+
   private void indexIssues(IssueDoc... issues) {
     issueIndexer.index(Arrays.asList(issues).iterator());
     for (IssueDoc issue : issues) {
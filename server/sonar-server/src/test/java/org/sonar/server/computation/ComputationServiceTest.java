@@ -26,6 +26,7 @@ import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.ZipUtils;
@@ -42,6 +43,7 @@ import org.sonar.server.activity.ActivityService;
 import org.sonar.server.component.db.ComponentDao;
 import org.sonar.server.component.db.SnapshotDao;
 import org.sonar.server.computation.step.ComputationStep;
+import org.sonar.server.computation.step.ComputationStepExecutor;
 import org.sonar.server.computation.step.ComputationSteps;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.properties.ProjectSettingsFactory;
@@ -76,7 +78,7 @@ public class ComputationServiceTest {
   @Before
   public void setUp() throws Exception {
     DbClient dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), new ComponentDao(), new SnapshotDao(system));
-    sut = new ComputationService(dbClient, steps, activityService, settingsFactory, tempFolder, system);
+    sut = new ComputationService(dbClient, new ComputationStepExecutor(steps, new Settings()), activityService, settingsFactory, system);
 
     // db contains project with key "P1"
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -133,7 +135,7 @@ public class ComputationServiceTest {
       sut.process(new ReportQueue.Item(dto, zip));
       fail();
     } catch (IllegalStateException e) {
-      assertThat(e.getMessage()).startsWith("Fail to unzip " + zip.getAbsolutePath() + " into ");
+      assertThat(e.getMessage()).isEqualTo("Fail to open analysis report " + zip);
       assertThat(dto.getStatus()).isEqualTo(Status.FAILED);
       assertThat(dto.getFinishedAt()).isNotNull();
     }
@@ -27,10 +27,13 @@ import org.junit.Test;
 import org.junit.rules.DisableOnDebug;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 
 import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class ComputationThreadLauncherTest {
@@ -40,44 +43,107 @@ public class ComputationThreadLauncherTest {
 
   ComputationThreadLauncher sut;
   ReportQueue queue;
+  ReportQueueSignal signal;
+  Settings settings;
 
   @Before
   public void before() {
     this.queue = mock(ReportQueue.class);
+    this.signal = new ReportQueueSignal();
+    this.settings = new Settings();
   }
 
   @After
   public void after() {
-    sut.stop();
+    if (sut != null) {
+      sut.stop();
+    }
   }
 
   @Test
-  public void call_findAndBook_when_launching_a_recurrent_task() throws Exception {
-    sut = new ComputationThreadLauncher(queue, 0, 1, TimeUnit.MILLISECONDS);
+  public void call_findAndBook_when_server_starts() throws Exception {
+    sut = new ComputationThreadLauncher(queue, signal, settings, 1, TimeUnit.HOURS);
 
     sut.onServerStart(mock(Server.class));
 
     sleep();
 
-    verify(queue, atLeastOnce()).pop();
+    verify(queue).pop();
   }
 
   @Test
-  public void call_findAndBook_when_executing_task_immediately() throws Exception {
-    sut = new ComputationThreadLauncher(queue, 1, 1, TimeUnit.HOURS);
-    sut.start();
+  public void call_findAndBook_when_fallback_delay_elapsed() throws Exception {
+    sut = new ComputationThreadLauncher(queue, signal, settings, 1, TimeUnit.MILLISECONDS);
 
-    sut.startAnalysisTaskNow();
+    sut.onServerStart(mock(Server.class));
 
     sleep();
 
-    verify(queue, atLeastOnce()).pop();
+    verify(queue, atLeast(2)).pop();
+  }
+
+  @Test
+  public void call_findAndBook_when_signaled() throws Exception {
+    sut = new ComputationThreadLauncher(queue, signal, settings, 1, TimeUnit.HOURS);
+    sut.onServerStart(mock(Server.class));
+    sleep();
+
+    signal.signal();
+
+    sleep();
+
+    verify(queue, times(2)).pop();
+  }
+
+  @Test
+  public void call_findAndBook_from_every_worker() throws Exception {
+    settings.setProperty(ComputationThreadLauncher.WORKERS_PROPERTY, 3);
+    sut = new ComputationThreadLauncher(queue, signal, settings, 1, TimeUnit.HOURS);
+
+    sut.onServerStart(mock(Server.class));
+
+    sleep();
+
+    verify(queue, times(3)).pop();
+  }
+
+  @Test
+  public void idle_workers_do_not_poll_queue_after_stop() throws Exception {
+    sut = new ComputationThreadLauncher(queue, signal, settings, 1, TimeUnit.HOURS);
+    sut.onServerStart(mock(Server.class));
+    sleep();
+
+    sut.stop();
+    sleep();
+
+    verify(queue).pop();
+  }
+
+  @Test
+  public void one_worker_by_default() throws Exception {
+    sut = new ComputationThreadLauncher(queue, signal, settings);
+
+    assertThat(sut.getWorkers()).isEqualTo(1);
+  }
+
+  @Test
+  public void fail_if_negative_number_of_workers() throws Exception {
+    settings.setProperty(ComputationThreadLauncher.WORKERS_PROPERTY, -2);
+    try {
+      new ComputationThreadLauncher(queue, signal, settings);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Bad value of sonar.computation.workers: -2");
+    }
   }
 
   @Test
   public void test_real_constructor() throws Exception {
-    sut = new ComputationThreadLauncher(queue);
+    settings.setProperty(ComputationThreadLauncher.WORKERS_PROPERTY, 4);
+    sut = new ComputationThreadLauncher(queue, signal, settings);
     sut.start();
+
+    assertThat(sut.getWorkers()).isEqualTo(4);
   }
 
   private void sleep() throws InterruptedException {
@@ -0,0 +1,75 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportQueueSignalTest {
+
+  ReportQueueSignal sut = new ReportQueueSignal();
+
+  @Test
+  public void timeout_if_no_signal() throws Exception {
+    long count = sut.count();
+
+    assertThat(sut.await(count, 10, TimeUnit.MILLISECONDS)).isFalse();
+  }
+
+  @Test
+  public void do_not_wait_if_signal_was_sent_after_count() throws Exception {
+    long count = sut.count();
+    sut.signal();
+
+    assertThat(sut.count()).isEqualTo(count + 1);
+    assertThat(sut.await(count, 1, TimeUnit.HOURS)).isTrue();
+  }
+
+  @Test
+  public void wake_up_waiting_thread() throws Exception {
+    final long count = sut.count();
+    final CountDownLatch waiting = new CountDownLatch(1);
+    final boolean[] signaled = new boolean[1];
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          waiting.countDown();
+          signaled[0] = sut.await(count, 1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+    thread.start();
+    waiting.await();
+
+    sut.signal();
+    thread.join(5000L);
+
+    assertThat(thread.isAlive()).isFalse();
+    assertThat(signaled[0]).isTrue();
+  }
+}
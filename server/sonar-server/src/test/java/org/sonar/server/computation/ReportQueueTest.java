@@ -63,6 +63,7 @@ public class ReportQueueTest {
   Settings settings = new Settings();
   File dataDir;
   System2 system = mock(System2.class);
+  ReportQueueSignal signal = new ReportQueueSignal();
   ReportQueue sut;
 
   @Before
@@ -72,7 +73,7 @@ public class ReportQueueTest {
     when(system.now()).thenReturn(NOW);
 
     DbClient dbClient = new DbClient(db.database(), db.myBatis(), new ComponentDao(), new AnalysisReportDao(system));
-    sut = new ReportQueue(dbClient, settings);
+    sut = new ReportQueue(dbClient, settings, signal);
 
     try (DbSession session = dbClient.openSession(false)) {
       dbClient.componentDao().insert(session, ComponentTesting.newProjectDto().setKey("P1"));
@@ -111,6 +112,15 @@ public class ReportQueueTest {
     assertThat(FileUtils.listFiles(analysisDir(), new String[] {"zip"}, false)).hasSize(1);
   }
 
+  @Test
+  public void signal_workers_when_report_is_added_or_removed() throws Exception {
+    ReportQueue.Item item = sut.add("P1", generateData());
+    assertThat(signal.count()).isEqualTo(1L);
+
+    sut.remove(item);
+    assertThat(signal.count()).isEqualTo(2L);
+  }
+
   @Test
   public void find_by_project_key() throws Exception {
     sut.add("P1", generateData());
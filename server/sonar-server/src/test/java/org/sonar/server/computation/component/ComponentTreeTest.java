@@ -0,0 +1,144 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.component;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.batch.protocol.Constants;
+import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.batch.protocol.output.BatchReportReader;
+import org.sonar.batch.protocol.output.BatchReportWriter;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ComponentTreeTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File reportDir;
+
+  @Before
+  public void setUp() throws Exception {
+    reportDir = temp.newFolder();
+    BatchReportWriter writer = new BatchReportWriter(reportDir);
+    // project(1) -> module(2) -> directory(3) -> file(4), file(5)
+    //            -> directory(6) -> file(7)
+    writer.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(1).setType(Constants.ComponentType.PROJECT).setKey("PROJECT_KEY").setUuid("PROJECT").setSnapshotId(10L).setId(100L)
+      .addChildRef(2).addChildRef(6).setVersion("1.0").build());
+    writer.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(2).setType(Constants.ComponentType.MODULE).setKey("MODULE_KEY").setUuid("MODULE").setSnapshotId(20L).setId(200L)
+      .addChildRef(3).build());
+    writer.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(3).setType(Constants.ComponentType.DIRECTORY).setPath("src").setUuid("DIR").addChildRef(4).addChildRef(5).build());
+    writer.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(4).setType(Constants.ComponentType.FILE).setPath("src/Foo.java").setUuid("FOO").setSnapshotId(40L).setId(400L).build());
+    writer.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(5).setType(Constants.ComponentType.FILE).setPath("src/Bar.java").setUuid("BAR").build());
+    writer.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(6).setType(Constants.ComponentType.DIRECTORY).setPath("doc").setUuid("DOC").addChildRef(7).build());
+    writer.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(7).setType(Constants.ComponentType.FILE).setPath("doc/README").setUuid("README").build());
+  }
+
+  @Test
+  public void components_are_in_depth_first_pre_order() throws Exception {
+    ComponentTree tree = ComponentTree.load(new BatchReportReader(reportDir), 1);
+
+    assertThat(tree.size()).isEqualTo(7);
+    assertThat(tree.rootRef()).isEqualTo(1);
+    int[] refs = new int[tree.size()];
+    for (int i = 0; i < tree.size(); i++) {
+      refs[i] = tree.refAt(i);
+    }
+    assertThat(refs).containsExactly(1, 2, 3, 4, 5, 6, 7);
+    assertThat(tree.childRefs(1)).containsExactly(2, 6);
+    assertThat(tree.childRefs(3)).containsExactly(4, 5);
+    assertThat(tree.childRefs(4)).isEmpty();
+  }
+
+  @Test
+  public void component_fields() throws Exception {
+    ComponentTree tree = ComponentTree.load(new BatchReportReader(reportDir), 1);
+
+    assertThat(tree.type(4)).isEqualTo(Constants.ComponentType.FILE);
+    assertThat(tree.uuid(4)).isEqualTo("FOO");
+    assertThat(tree.path(4)).isEqualTo("src/Foo.java");
+    assertThat(tree.key(4)).isEmpty();
+    assertThat(tree.id(4)).isEqualTo(400L);
+    assertThat(tree.snapshotId(4)).isEqualTo(40L);
+    assertThat(tree.key(2)).isEqualTo("MODULE_KEY");
+    assertThat(tree.contains(7)).isTrue();
+    assertThat(tree.contains(8)).isFalse();
+  }
+
+  @Test
+  public void module_of_component() throws Exception {
+    ComponentTree tree = ComponentTree.load(new BatchReportReader(reportDir), 1);
+
+    assertThat(tree.moduleRef(1)).isEqualTo(1);
+    assertThat(tree.moduleRef(2)).isEqualTo(1);
+    assertThat(tree.moduleRef(3)).isEqualTo(2);
+    assertThat(tree.moduleRef(5)).isEqualTo(2);
+    assertThat(tree.moduleRef(6)).isEqualTo(1);
+    assertThat(tree.moduleRef(7)).isEqualTo(1);
+  }
+
+  @Test
+  public void keep_full_messages_of_projects_and_modules() throws Exception {
+    ComponentTree tree = ComponentTree.load(new BatchReportReader(reportDir), 1);
+
+    assertThat(tree.projectOrModule(1).getVersion()).isEqualTo("1.0");
+    assertThat(tree.projectOrModule(2).getUuid()).isEqualTo("MODULE");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void full_messages_of_files_are_not_kept() throws Exception {
+    ComponentTree tree = ComponentTree.load(new BatchReportReader(reportDir), 1);
+
+    tree.projectOrModule(4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_if_unknown_ref() throws Exception {
+    ComponentTree tree = ComponentTree.load(new BatchReportReader(reportDir), 1);
+
+    tree.uuid(8);
+  }
+
+  @Test
+  public void read_each_component_once() throws Exception {
+    BatchReportReader reader = spy(new BatchReportReader(reportDir));
+
+    ComponentTree.load(reader, 1);
+
+    for (int ref = 1; ref <= 7; ref++) {
+      verify(reader, times(1)).readComponent(ref);
+    }
+  }
+}
@@ -27,6 +27,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.utils.System2;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.core.persistence.DbSession;
@@ -37,7 +39,13 @@ import org.sonar.test.DbTests;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
 import static org.sonar.core.computation.db.AnalysisReportDto.Status.WORKING;
@@ -138,6 +146,40 @@ public class AnalysisReportDaoTest {
     assertThat(nextAvailableReport.getProjectKey()).isEqualTo("P2");
   }
 
+  @Test
+  public void pop_never_books_two_reports_of_the_same_project() {
+    db.prepareDbUnit(getClass(), "pop_oldest_pending.xml");
+
+    AnalysisReportDto nextAvailableReport = sut.pop(session);
+    assertThat(nextAvailableReport.getId()).isEqualTo(3);
+
+    // P1 and P2 are both being processed
+    assertThat(sut.pop(session)).isNull();
+  }
+
+  @Test
+  public void pop_selects_again_when_report_is_booked_by_another_caller() {
+    db.prepareDbUnit(getClass(), "pop_oldest_pending.xml");
+    AnalysisReportDao dao = spy(sut);
+    doAnswer(new Answer<AnalysisReportDto>() {
+      @Override
+      public AnalysisReportDto answer(InvocationOnMock invocation) throws Throwable {
+        // report 3 is booked by another server
+        DbSession otherSession = db.myBatis().openSession(false);
+        try {
+          assertThat(sut.tryToPop(otherSession, (Long) invocation.getArguments()[1])).isNotNull();
+        } finally {
+          MyBatis.closeQuietly(otherSession);
+        }
+        return null;
+      }
+    }).doCallRealMethod().when(dao).tryToPop(any(DbSession.class), anyLong());
+
+    // P1 and P2 are both being processed
+    assertThat(dao.pop(session)).isNull();
+    verify(dao).tryToPop(any(DbSession.class), eq(3L));
+  }
+
   @Test
   public void pop_null_if_no_pending_reports() {
     db.prepareDbUnit(getClass(), "pop_null_if_no_pending_reports.xml");
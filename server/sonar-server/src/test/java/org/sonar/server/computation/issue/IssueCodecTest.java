@@ -0,0 +1,213 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.issue.internal.IssueChangeContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.server.util.CloseableIterator;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class IssueCodecTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void empty_cache() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+
+    assertThat(readAll(cache)).isEmpty();
+  }
+
+  @Test
+  public void write_and_read_all_fields() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    DefaultIssue issue = newIssue("ISSUE1")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".PROJECT_UUID.MODULE_UUID.")
+      .setLanguage("java")
+      .setSeverity(Severity.BLOCKER)
+      .setManualSeverity(true)
+      .setMessage("message with accents: \u00e9\u00e0")
+      .setLine(42)
+      .setEffortToFix(2.5)
+      .setDebt(Duration.create(10L))
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setReporter("reporter")
+      .setAssignee("assignee")
+      .setChecksum("checksum")
+      .setAuthorLogin("author")
+      .setActionPlanKey("PLAN")
+      .setUpdateDate(new Date(2000L))
+      .setCloseDate(new Date(3000L))
+      .setSelectedAt(4000L)
+      .setNew(false)
+      .setEndOfLife(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setAttributes(ImmutableMap.of("jira", "FOO-123"))
+      .setTags(Arrays.asList("security", "bug"));
+    issue.addComment(new DefaultIssueComment().setKey("COMMENT1").setIssueKey("ISSUE1").setUserLogin("john")
+      .setMarkdownText("comment").setCreatedAt(new Date(5000L)).setUpdatedAt(new Date(6000L)).setNew(true));
+    issue.addChange(new FieldDiffs().setIssueKey("ISSUE1").setUserLogin("john").setCreationDate(new Date(7000L))
+      .setDiff("severity", Severity.MINOR, Severity.BLOCKER)
+      .setDiff("technicalDebt", 5L, 10L));
+    issue.setFieldChange(IssueChangeContext.createUser(new Date(8000L), "john"), "assignee", null, "assignee");
+    issue.setFieldChange(IssueChangeContext.createUser(new Date(8000L), "john"), "effortToFix", 1.0, 2.5);
+
+    cache.newAppender().append(issue).close();
+
+    List<DefaultIssue> issues = readAll(cache);
+    assertThat(issues).hasSize(1);
+    DefaultIssue read = issues.get(0);
+    assertThat(read.key()).isEqualTo("ISSUE1");
+    assertThat(read.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(read.componentKey()).isEqualTo("PROJECT:File.java");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(read.moduleUuidPath()).isEqualTo(".PROJECT_UUID.MODULE_UUID.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(read.projectKey()).isEqualTo("PROJECT");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("squid", "S001"));
+    assertThat(read.language()).isEqualTo("java");
+    assertThat(read.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("message with accents: \u00e9\u00e0");
+    assertThat(read.line()).isEqualTo(42);
+    assertThat(read.effortToFix()).isEqualTo(2.5);
+    assertThat(read.debtInMinutes()).isEqualTo(10L);
+    assertThat(read.status()).isEqualTo(Issue.STATUS_OPEN);
+    assertThat(read.resolution()).isEqualTo(Issue.RESOLUTION_FIXED);
+    assertThat(read.reporter()).isEqualTo("reporter");
+    assertThat(read.assignee()).isEqualTo("assignee");
+    assertThat(read.checksum()).isEqualTo("checksum");
+    assertThat(read.authorLogin()).isEqualTo("author");
+    assertThat(read.actionPlanKey()).isEqualTo("PLAN");
+    assertThat(read.creationDate()).isEqualTo(new Date(1000L));
+    assertThat(read.updateDate()).isEqualTo(new Date(2000L));
+    assertThat(read.closeDate()).isEqualTo(new Date(3000L));
+    assertThat(read.selectedAt()).isEqualTo(4000L);
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isEndOfLife()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.attributes()).containsOnly(entry("jira", "FOO-123"));
+    assertThat(read.tags()).containsExactly("security", "bug");
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT1");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE1");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("comment");
+    assertThat(comment.createdAt()).isEqualTo(new Date(5000L));
+    assertThat(comment.updatedAt()).isEqualTo(new Date(6000L));
+    assertThat(comment.isNew()).isTrue();
+
+    // current change is added twice to the list of changes by setFieldChange()
+    assertThat(read.changes()).hasSize(3);
+    assertThat(read.changes().get(0).toString()).isEqualTo("severity=MINOR|BLOCKER,technicalDebt=5|10");
+    assertThat(read.changes().get(1)).isSameAs(read.currentChange());
+    assertThat(read.changes().get(2)).isSameAs(read.currentChange());
+    assertThat(read.currentChange().userLogin()).isEqualTo("john");
+    assertThat(read.currentChange().creationDate()).isEqualTo(new Date(8000L));
+    assertThat(read.currentChange().get("assignee").oldValue()).isNull();
+    assertThat(read.currentChange().get("assignee").newValue()).isEqualTo("assignee");
+    assertThat(read.currentChange().get("effortToFix").oldValue()).isEqualTo(1.0);
+    assertThat(read.currentChange().get("effortToFix").newValue()).isEqualTo(2.5);
+  }
+
+  @Test
+  public void write_and_read_minimal_issue() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append(newIssue("ISSUE1")).close();
+
+    DefaultIssue read = readAll(cache).get(0);
+    assertThat(read.key()).isEqualTo("ISSUE1");
+    assertThat(read.line()).isNull();
+    assertThat(read.effortToFix()).isNull();
+    assertThat(read.debt()).isNull();
+    assertThat(read.isNew()).isTrue();
+    assertThat(read.attributes()).isEmpty();
+    assertThat(read.tags()).isEmpty();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.currentChange()).isNull();
+  }
+
+  @Test
+  public void strings_are_shared_by_decoded_issues() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append(newIssue("ISSUE1")).append(newIssue("ISSUE2")).close();
+
+    List<DefaultIssue> issues = readAll(cache);
+    assertThat(issues).hasSize(2);
+    assertThat(issues.get(1).componentUuid()).isSameAs(issues.get(0).componentUuid());
+    assertThat(issues.get(1).ruleKey().rule()).isSameAs(issues.get(0).ruleKey().rule());
+  }
+
+  @Test
+  public void append_with_successive_appenders() throws Exception {
+    IssueCache cache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append(newIssue("ISSUE1")).close();
+    cache.newAppender().append(newIssue("ISSUE2").setComponentUuid("OTHER_FILE_UUID")).append(newIssue("ISSUE3")).close();
+
+    List<DefaultIssue> issues = readAll(cache);
+    assertThat(issues).extracting("key").containsExactly("ISSUE1", "ISSUE2", "ISSUE3");
+    assertThat(issues).extracting("componentUuid").containsExactly("FILE_UUID", "OTHER_FILE_UUID", "FILE_UUID");
+  }
+
+  private static DefaultIssue newIssue(String key) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setComponentUuid("FILE_UUID")
+      .setComponentKey("PROJECT:File.java")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("squid", "S001"))
+      .setStatus(Issue.STATUS_OPEN)
+      .setCreationDate(new Date(1000L));
+  }
+
+  private static List<DefaultIssue> readAll(IssueCache cache) {
+    try (CloseableIterator<DefaultIssue> issues = cache.traverse()) {
+      return newArrayList(issues);
+    }
+  }
+}
@@ -39,6 +39,9 @@ import java.io.File;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @Category(DbTests.class)
 public class SourceLinesCacheTest {
@@ -49,13 +52,15 @@ public class SourceLinesCacheTest {
   public TemporaryFolder temp = new TemporaryFolder();
 
   File dir;
+  SourceLineIndex index;
   SourceLinesCache sut;
 
   @Before
   public void setUp() throws Exception {
     esTester.truncateIndices();
     dir = temp.newFolder();
-    sut = new SourceLinesCache(new SourceLineIndex(esTester.client()));
+    index = spy(new SourceLineIndex(esTester.client()));
+    sut = new SourceLinesCache(index);
   }
 
   @Test
@@ -70,7 +75,7 @@ public class SourceLinesCacheTest {
       .addChangesetIndexByLine(1)
       .build());
 
-    sut.init("ANY_UUID", 123_456_789, new BatchReportReader(dir));
+    sut.init("PROJECT_UUID", "ANY_UUID", 123_456_789, new BatchReportReader(dir));
 
     assertThat(sut.lineAuthor(0)).isEqualTo("charb");
     assertThat(sut.lineAuthor(1)).isEqualTo("charb");
@@ -90,7 +95,7 @@ public class SourceLinesCacheTest {
       newSourceLine("cabu", "123-456-789", 123_456_789, 5)
       );
 
-    sut.init("DEFAULT_UUID", 123, new BatchReportReader(dir));
+    sut.init("PROJECT_UUID", "DEFAULT_UUID", 123, new BatchReportReader(dir));
 
     assertThat(sut.lineAuthor(0)).isEqualTo("cabu");
     assertThat(sut.lineAuthor(1)).isEqualTo("cabu");
@@ -100,9 +105,35 @@ public class SourceLinesCacheTest {
     assertThat(sut.lineAuthor(5)).isEqualTo("wolinski");
   }
 
+  @Test
+  public void lines_of_project_are_loaded_once_from_index() throws Exception {
+    esTester.putDocuments(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE,
+      newSourceLine("cabu", "123-456-789", 123_456_789, 1).setFileUuid("FILE_1"),
+      newSourceLine("wolinski", "987-654-321", 987_654_321, 1).setFileUuid("FILE_2"),
+      newSourceLine("charb", "123-456-789", 123_456_789, 2).setFileUuid("FILE_2"),
+      newSourceLine("tignous", "123-456-789", 123_456_789, 1).setFileUuid("OTHER_FILE").setProjectUuid("OTHER_PROJECT")
+      );
+
+    sut.init("PROJECT_UUID", "FILE_1", 1, new BatchReportReader(dir));
+    assertThat(sut.lineAuthor(0)).isEqualTo("cabu");
+    sut.clear();
+
+    sut.init("PROJECT_UUID", "FILE_2", 2, new BatchReportReader(dir));
+    assertThat(sut.lineAuthor(0)).isEqualTo("wolinski");
+    assertThat(sut.lineAuthor(1)).isEqualTo("charb");
+    assertThat(sut.lineAuthor(null)).isEqualTo("wolinski");
+    sut.clear();
+
+    sut.init("PROJECT_UUID", "UNKNOWN_FILE", 3, new BatchReportReader(dir));
+    assertThat(sut.lineAuthor(0)).isNull();
+    assertThat(sut.lineAuthor(null)).isNull();
+
+    verify(index, times(1)).scrollScmLinesOfProject("PROJECT_UUID");
+  }
+
   @Test(expected = IllegalStateException.class)
   public void fail_when_component_ref_is_not_filled() throws Exception {
-    sut.init("ANY_UUID", null, new BatchReportReader(dir));
+    sut.init("PROJECT_UUID", "ANY_UUID", null, new BatchReportReader(dir));
     sut.lineAuthor(0);
   }
 
@@ -0,0 +1,196 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation.measure;
+
+import com.google.common.base.Strings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.sonar.batch.protocol.Constants;
+import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.core.persistence.DbTester;
+import org.sonar.test.DbTests;
+
+import java.sql.Connection;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@Category(DbTests.class)
+public class BulkMeasureInserterTest {
+
+  private static final String SELECT_MEASURE = "select value as \"value\", metric_id as \"metricId\", snapshot_id as \"snapshotId\", " +
+    "rule_id as \"ruleId\", text_value as \"textValue\", tendency as \"tendency\", project_id as \"componentId\", alert_status as \"alertStatus\", " +
+    "alert_text as \"alertText\", description as \"description\", rule_priority as \"severity\", characteristic_id as \"characteristicId\", " +
+    "person_id as \"personId\", variation_value_1 as \"variation1\", variation_value_5 as \"variation5\", measure_data as \"data\" " +
+    "from project_measures";
+
+  @ClassRule
+  public static DbTester dbTester = new DbTester();
+
+  Connection connection;
+
+  @Before
+  public void setUp() throws Exception {
+    dbTester.truncateTables();
+    connection = dbTester.openConnection();
+    connection.setAutoCommit(false);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    connection.close();
+  }
+
+  @Test
+  public void insert_full_measure() throws Exception {
+    BatchReport.Measure measure = BatchReport.Measure.newBuilder()
+      .setValueType(Constants.MeasureValueType.DOUBLE)
+      .setDoubleValue(123.123d)
+      .setTendency(2)
+      .setVariationValue1(1.1d)
+      .setVariationValue5(5.5d)
+      .setAlertStatus("ERROR")
+      .setAlertText("measure-alert-text")
+      .setDescription("measure-description")
+      .setSeverity(Constants.Severity.CRITICAL)
+      .setMetricKey("metric-key")
+      .setRuleKey("repo:rule-key")
+      .setCharactericId(123456)
+      .setPersonId(5432)
+      .build();
+
+    try (BulkMeasureInserter inserter = new BulkMeasureInserter(connection, 10)) {
+      inserter.insert(measure, 2L, 3L, 654, 987);
+      inserter.flush();
+    }
+    connection.commit();
+
+    Map<String, Object> row = dbTester.selectFirst(SELECT_MEASURE);
+    assertThat(row).containsEntry("value", 123.123d)
+      .containsEntry("metricId", 654L)
+      .containsEntry("snapshotId", 3L)
+      .containsEntry("ruleId", 987L)
+      .containsEntry("tendency", 2L)
+      .containsEntry("componentId", 2L)
+      .containsEntry("alertStatus", "ERROR")
+      .containsEntry("alertText", "measure-alert-text")
+      .containsEntry("description", "measure-description")
+      .containsEntry("severity", 3L)
+      .containsEntry("characteristicId", 123456L)
+      .containsEntry("personId", 5432L)
+      .containsEntry("variation1", 1.1d)
+      .containsEntry("variation5", 5.5d);
+    assertThat(row.get("textValue")).isNull();
+    assertThat(row.get("data")).isNull();
+  }
+
+  @Test
+  public void insert_minimal_measure() throws Exception {
+    BatchReport.Measure measure = BatchReport.Measure.newBuilder()
+      .setValueType(Constants.MeasureValueType.INT)
+      .setMetricKey("metric-key")
+      .build();
+
+    try (BulkMeasureInserter inserter = new BulkMeasureInserter(connection, 10)) {
+      inserter.insert(measure, 2L, 3L, 654, null);
+      inserter.flush();
+    }
+    connection.commit();
+
+    Map<String, Object> row = dbTester.selectFirst(SELECT_MEASURE);
+    assertThat(row).containsEntry("metricId", 654L).containsEntry("snapshotId", 3L).containsEntry("componentId", 2L);
+    for (String column : new String[] {"value", "ruleId", "textValue", "tendency", "alertStatus", "alertText", "description", "severity",
+      "characteristicId", "personId", "variation1", "variation5", "data"}) {
+      assertThat(row.get(column)).as(column).isNull();
+    }
+  }
+
+  @Test
+  public void long_text_values_are_stored_as_data() throws Exception {
+    String longText = Strings.repeat("a", 4001);
+    BatchReport.Measure measure = BatchReport.Measure.newBuilder()
+      .setValueType(Constants.MeasureValueType.STRING)
+      .setStringValue(longText)
+      .setMetricKey("metric-key")
+      .build();
+
+    try (BulkMeasureInserter inserter = new BulkMeasureInserter(connection, 10)) {
+      inserter.insert(measure, 2L, 3L, 654, null);
+      inserter.flush();
+    }
+    connection.commit();
+
+    Map<String, Object> row = dbTester.selectFirst(SELECT_MEASURE);
+    assertThat(row.get("textValue")).isNull();
+    assertThat(new String((byte[]) row.get("data"), "UTF-8")).isEqualTo(longText);
+  }
+
+  @Test
+  public void numerical_values() throws Exception {
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.BOOLEAN).setBooleanValue(true).build())).isEqualTo(1.0);
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.BOOLEAN).setBooleanValue(false).build())).isEqualTo(0.0);
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.BOOLEAN).build())).isNull();
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.INT).setIntValue(3).build())).isEqualTo(3.0);
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.INT).build())).isNull();
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.LONG).setLongValue(3L).build())).isEqualTo(3.0);
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.LONG).build())).isNull();
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.DOUBLE).setDoubleValue(3.2).build())).isEqualTo(3.2);
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.DOUBLE).build())).isNull();
+    assertThat(BulkMeasureInserter.valueAsDouble(newMeasure(Constants.MeasureValueType.STRING).setStringValue("foo").build())).isNull();
+  }
+
+  @Test
+  public void execute_batch_when_full() throws Exception {
+    BatchReport.Measure measure = newMeasure(Constants.MeasureValueType.INT).setIntValue(3).build();
+
+    try (BulkMeasureInserter inserter = new BulkMeasureInserter(connection, 2)) {
+      inserter.insert(measure, 2L, 3L, 654, null);
+      assertThat(inserter.insertedRows()).isEqualTo(0L);
+      inserter.insert(measure, 2L, 3L, 654, null);
+      assertThat(inserter.insertedRows()).isEqualTo(2L);
+      inserter.insert(measure, 2L, 3L, 654, null);
+      assertThat(inserter.insertedRows()).isEqualTo(2L);
+      inserter.flush();
+      assertThat(inserter.insertedRows()).isEqualTo(3L);
+    }
+    connection.commit();
+
+    assertThat(dbTester.countRowsOfTable("project_measures")).isEqualTo(3);
+  }
+
+  @Test
+  public void fail_if_bad_batch_size() throws Exception {
+    try {
+      new BulkMeasureInserter(connection, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Batch size must be strictly positive: 0");
+    }
+  }
+
+  private static BatchReport.Measure.Builder newMeasure(Constants.MeasureValueType type) {
+    return BatchReport.Measure.newBuilder().setValueType(type).setMetricKey("metric-key");
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+package org.sonar.server.computation.step;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.core.component.ComponentDto;
+import org.sonar.server.computation.ComputationContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ComputationStepExecutorTest {
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  ComputationSteps steps = mock(ComputationSteps.class);
+  ComputationContext context = mock(ComputationContext.class);
+  List<String> executed = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    when(context.getProject()).thenReturn(new ComponentDto().setQualifier(Qualifiers.PROJECT));
+  }
+
+  @Test
+  public void default_number_of_threads() throws Exception {
+    assertThat(new ComputationStepExecutor(steps, new Settings()).getThreads()).isEqualTo(ComputationStepExecutor.DEFAULT_THREADS);
+  }
+
+  @Test
+  public void configure_number_of_threads() throws Exception {
+    Settings settings = new Settings();
+    settings.setProperty(ComputationStepExecutor.THREADS_PROPERTY, "2");
+
+    assertThat(new ComputationStepExecutor(steps, settings).getThreads()).isEqualTo(2);
+  }
+
+  @Test
+  public void fail_if_negative_number_of_threads() throws Exception {
+    Settings settings = new Settings();
+    settings.setProperty(ComputationStepExecutor.THREADS_PROPERTY, "-1");
+
+    try {
+      new ComputationStepExecutor(steps, settings);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Bad value of sonar.computation.stepThreads: -1");
+    }
+  }
+
+  @Test
+  public void execute_steps_sequentially_with_single_thread() throws Exception {
+    ComputationStep first = new FakeStep("first", Qualifiers.PROJECT);
+    ComputationStep second = new FakeStep("second", Qualifiers.PROJECT);
+    ComputationStep third = new FakeStep("third", Qualifiers.PROJECT);
+    declare(first, second, third);
+
+    newExecutor(1).execute(context);
+
+    assertThat(executed).containsExactly("first", "second", "third");
+  }
+
+  @Test
+  public void execute_independent_steps_concurrently() throws Exception {
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    ComputationStep parse = new FakeStep("parse", Qualifiers.PROJECT);
+    ComputationStep persist1 = new AwaitingStep("persist1", bothStarted);
+    ComputationStep persist2 = new AwaitingStep("persist2", bothStarted);
+    ComputationStep switchSnapshot = new FakeStep("switch", Qualifiers.PROJECT);
+    declare(parse, persist1, persist2, switchSnapshot);
+    when(steps.dependencies(persist1)).thenReturn(ImmutableSet.of(parse));
+    when(steps.dependencies(persist2)).thenReturn(ImmutableSet.of(parse));
+    when(steps.dependencies(switchSnapshot)).thenReturn(ImmutableSet.of(persist1, persist2));
+
+    newExecutor(2).execute(context);
+
+    // persist steps would not complete if they were executed sequentially
+    assertThat(executed).hasSize(4);
+    assertThat(executed.get(0)).isEqualTo("parse");
+    assertThat(executed.subList(1, 3)).containsOnly("persist1", "persist2");
+    assertThat(executed.get(3)).isEqualTo("switch");
+  }
+
+  @Test
+  public void do_not_execute_unsupported_steps_but_execute_their_dependents() throws Exception {
+    ComputationStep first = new FakeStep("first", Qualifiers.PROJECT);
+    ComputationStep view = new FakeStep("view", Qualifiers.VIEW);
+    ComputationStep last = new FakeStep("last", Qualifiers.PROJECT);
+    declare(first, view, last);
+    when(steps.dependencies(view)).thenReturn(ImmutableSet.of(first));
+    when(steps.dependencies(last)).thenReturn(ImmutableSet.of(view));
+
+    newExecutor(2).execute(context);
+
+    assertThat(executed).containsExactly("first", "last");
+  }
+
+  @Test
+  public void stop_scheduling_steps_on_failure() throws Exception {
+    ComputationStep failing = new FakeStep("failing", Qualifiers.PROJECT) {
+      @Override
+      public void execute(ComputationContext context) {
+        throw new IllegalStateException("pb");
+      }
+    };
+    ComputationStep next = new FakeStep("next", Qualifiers.PROJECT);
+    declare(failing, next);
+    when(steps.dependencies(next)).thenReturn(ImmutableSet.of(failing));
+
+    try {
+      newExecutor(2).execute(context);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("pb");
+      assertThat(executed).isEmpty();
+    }
+  }
+
+  @Test
+  public void log_critical_path() throws Exception {
+    logTester.setLevel(LoggerLevel.DEBUG);
+    ComputationStep first = new FakeStep("first", Qualifiers.PROJECT);
+    ComputationStep second = new FakeStep("second", Qualifiers.PROJECT);
+    declare(first, second);
+    when(steps.dependencies(second)).thenReturn(ImmutableSet.of(first));
+
+    newExecutor(2).execute(context);
+
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("first", "second");
+    boolean found = false;
+    for (String log : logTester.logs(LoggerLevel.DEBUG)) {
+      if (log.matches("Critical path: FakeStep \\(\\d+ms\\) > FakeStep \\(\\d+ms\\) \\| time=\\d+ms")) {
+        found = true;
+      }
+    }
+    assertThat(found).isTrue();
+  }
+
+  private void declare(ComputationStep... orderedSteps) {
+    when(steps.orderedSteps()).thenReturn(Arrays.asList(orderedSteps));
+    for (ComputationStep step : orderedSteps) {
+      when(steps.dependencies(step)).thenReturn(Collections.<ComputationStep>emptySet());
+    }
+  }
+
+  private ComputationStepExecutor newExecutor(int threads) {
+    Settings settings = new Settings();
+    settings.setProperty(ComputationStepExecutor.THREADS_PROPERTY, String.valueOf(threads));
+    return new ComputationStepExecutor(steps, settings);
+  }
+
+  private class FakeStep implements ComputationStep {
+    private final String description;
+    private final String qualifier;
+
+    FakeStep(String description, String qualifier) {
+      this.description = description;
+      this.qualifier = qualifier;
+    }
+
+    @Override
+    public String[] supportedProjectQualifiers() {
+      return new String[] {qualifier};
+    }
+
+    @Override
+    public void execute(ComputationContext context) {
+      executed.add(description);
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
+
+  private class AwaitingStep extends FakeStep {
+    private final CountDownLatch latch;
+
+    AwaitingStep(String description, CountDownLatch latch) {
+      super(description, Qualifiers.PROJECT);
+      this.latch = latch;
+    }
+
+    @Override
+    public void execute(ComputationContext context) {
+      latch.countDown();
+      try {
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      super.execute(context);
+    }
+  }
+}
@@ -22,6 +22,9 @@ package org.sonar.server.computation.step;
 
 import org.junit.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -30,7 +33,38 @@ public class ComputationStepsTest {
 
   @Test
   public void ordered_steps() throws Exception {
-    ComputationSteps registry = new ComputationSteps(
+    ComputationSteps registry = newRegistry();
+
+    assertThat(registry.orderedSteps()).hasSize(15);
+    assertThat(registry.orderedSteps().get(0)).isInstanceOf(ParseReportStep.class);
+    assertThat(registry.orderedSteps().get(14)).isInstanceOf(SendIssueNotificationsStep.class);
+  }
+
+  @Test
+  public void dependencies() throws Exception {
+    ComputationSteps registry = newRegistry();
+
+    ComputationStep parse = registry.orderedSteps().get(0);
+    assertThat(registry.dependencies(parse)).isEmpty();
+    for (ComputationStep step : registry.orderedSteps().subList(1, 15)) {
+      assertThat(registry.dependencies(step)).isNotEmpty();
+    }
+    ComputationStep switchSnapshot = find(registry, SwitchSnapshotStep.class);
+    assertThat(registry.dependencies(switchSnapshot)).hasSize(5);
+    assertThat(registry.dependencies(find(registry, PersistEventsStep.class))).containsOnly(parse);
+    assertThat(registry.dependencies(find(registry, IndexViewsStep.class))).containsOnly(find(registry, PurgeDatastoresStep.class));
+  }
+
+  @Test
+  public void dependencies_are_declared_before_steps() throws Exception {
+    List<Class<? extends ComputationStep>> orderedClasses = ComputationSteps.orderedStepClasses();
+    for (Map.Entry<Class<? extends ComputationStep>, Class<? extends ComputationStep>> dependency : ComputationSteps.stepDependencies().entries()) {
+      assertThat(orderedClasses.indexOf(dependency.getValue())).isGreaterThanOrEqualTo(0).isLessThan(orderedClasses.indexOf(dependency.getKey()));
+    }
+  }
+
+  private ComputationSteps newRegistry() {
+    return new ComputationSteps(
       // unordered
       mock(ApplyPermissionsStep.class),
       mock(ParseReportStep.class),
@@ -48,10 +82,15 @@ public class ComputationStepsTest {
       mock(PersistEventsStep.class),
       mock(PersistDuplicationMeasuresStep.class)
       );
+  }
 
-    assertThat(registry.orderedSteps()).hasSize(15);
-    assertThat(registry.orderedSteps().get(0)).isInstanceOf(ParseReportStep.class);
-    assertThat(registry.orderedSteps().get(14)).isInstanceOf(SendIssueNotificationsStep.class);
+  private static ComputationStep find(ComputationSteps registry, Class<? extends ComputationStep> clazz) {
+    for (ComputationStep step : registry.orderedSteps()) {
+      if (clazz.isInstance(step)) {
+        return step;
+      }
+    }
+    throw new IllegalArgumentException("Step not found: " + clazz);
   }
 
   @Test
@@ -28,6 +28,7 @@ import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.core.persistence.DbTester;
+import org.sonar.core.properties.PropertiesDao;
 import org.sonar.core.source.db.FileSourceDao;
 import org.sonar.server.component.ComponentTesting;
 import org.sonar.server.computation.ComputationContext;
@@ -61,13 +62,13 @@ public class IndexSourceLinesStepTest extends BaseStepTest {
 
   @Before
   public void setUp() throws Exception {
-    dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), new FileSourceDao(null));
+    dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), new FileSourceDao(null), new PropertiesDao(dbTester.myBatis()));
     system2 = mock(System2.class);
   }
 
   @Override
   protected ComputationStep step() throws IOException {
-    SourceLineIndexer sourceLineIndexer = new SourceLineIndexer(dbClient, esTester.client());
+    SourceLineIndexer sourceLineIndexer = new SourceLineIndexer(dbClient, esTester.client(), new Settings());
     sourceLineIndexer.setEnabled(true);
     return new IndexSourceLinesStep(dbClient, system2, sourceLineIndexer);
   }
@@ -22,6 +22,7 @@ package org.sonar.server.computation.step;
 
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentMatcher;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.DefaultIssueComment;
@@ -29,6 +30,7 @@ import org.sonar.api.issue.internal.FieldDiffs;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
 import org.sonar.api.utils.System2;
+import org.sonar.core.issue.db.IssueMapper;
 import org.sonar.core.issue.db.UpdateConflictResolver;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.DbTester;
@@ -38,10 +40,17 @@ import org.sonar.server.computation.issue.RuleCacheLoader;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.issue.db.IssueDao;
 import org.sonar.server.rule.db.RuleDao;
+import org.sonar.server.util.cache.DiskCache;
 
 import java.io.IOException;
+import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PersistIssuesStepTest extends BaseStepTest {
@@ -60,6 +69,8 @@ public class PersistIssuesStepTest extends BaseStepTest {
 
   IssueCache issueCache;
 
+  UpdateConflictResolver conflictResolver;
+
   ComputationStep step;
 
   @Override
@@ -76,7 +87,8 @@ public class PersistIssuesStepTest extends BaseStepTest {
     issueCache = new IssueCache(temp.newFile(), System2.INSTANCE);
     system2 = mock(System2.class);
     when(system2.now()).thenReturn(1400000000000L);
-    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleCache(new RuleCacheLoader(dbClient)), issueCache);
+    conflictResolver = mock(UpdateConflictResolver.class);
+    step = new PersistIssuesStep(dbClient, system2, conflictResolver, new RuleCache(new RuleCacheLoader(dbClient)), issueCache);
   }
 
   @After
@@ -178,4 +190,136 @@ public class PersistIssuesStepTest extends BaseStepTest {
     dbTester.assertDbUnit(getClass(), "add_change-result.xml", new String[]{"id", "created_at", "updated_at"}, "issue_changes");
   }
 
+  @Test
+  public void insert_more_issues_than_chunk_size() throws Exception {
+    dbTester.prepareDbUnit(getClass(), "insert_new_issue.xml");
+
+    DiskCache<DefaultIssue>.DiskAppender appender = issueCache.newAppender();
+    int count = PersistIssuesStep.CHUNK_SIZE * 2 + 1;
+    for (int i = 0; i < count; i++) {
+      appender.append(new DefaultIssue()
+        .setKey("ISSUE_" + i)
+        .setRuleKey(RuleKey.of("xoo", "S01"))
+        .setComponentUuid("COMPONENT")
+        .setProjectUuid("PROJECT")
+        .setSeverity(Severity.BLOCKER)
+        .setStatus(Issue.STATUS_OPEN)
+        .setNew(true)
+        );
+    }
+    appender.close();
+
+    step.execute(null);
+
+    assertThat(dbTester.countRowsOfTable("issues")).isEqualTo(count);
+  }
+
+  @Test
+  public void update_issue_not_changed_since_selected() throws Exception {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    issueCache.newAppender().append(new DefaultIssue()
+        .setKey("ISSUE")
+        .setRuleKey(RuleKey.of("xoo", "S01"))
+        .setComponentUuid("COMPONENT")
+        .setProjectUuid("PROJECT")
+        .setSeverity(Severity.MAJOR)
+        .setStatus(Issue.STATUS_OPEN)
+        .setNew(false)
+        .setChanged(true)
+        .setSelectedAt(1200000000000L)
+    ).close();
+
+    step.execute(null);
+
+    Map<String, Object> row = dbTester.selectFirst("select severity as \"severity\" from issues where kee='ISSUE'");
+    assertThat(row.get("severity")).isEqualTo(Severity.MAJOR);
+    verify(conflictResolver, never()).resolve(any(DefaultIssue.class), any(IssueMapper.class));
+  }
+
+  @Test
+  public void resolve_conflict_of_issue_changed_since_selected() throws Exception {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    DiskCache<DefaultIssue>.DiskAppender appender = issueCache.newAppender();
+    appender.append(new DefaultIssue()
+      .setKey("ISSUE")
+      .setRuleKey(RuleKey.of("xoo", "S01"))
+      .setComponentUuid("COMPONENT")
+      .setProjectUuid("PROJECT")
+      .setSeverity(Severity.MAJOR)
+      .setStatus(Issue.STATUS_OPEN)
+      .setNew(false)
+      .setChanged(true)
+      // selected before the last update of the issue in db
+      .setSelectedAt(1000000000000L)
+      );
+    appender.append(new DefaultIssue()
+      .setKey("NEW_ISSUE")
+      .setRuleKey(RuleKey.of("xoo", "S01"))
+      .setComponentUuid("COMPONENT")
+      .setProjectUuid("PROJECT")
+      .setSeverity(Severity.BLOCKER)
+      .setStatus(Issue.STATUS_OPEN)
+      .setNew(true)
+      );
+    appender.close();
+
+    step.execute(null);
+
+    Map<String, Object> row = dbTester.selectFirst("select severity as \"severity\" from issues where kee='ISSUE'");
+    assertThat(row.get("severity")).isEqualTo(Severity.BLOCKER);
+    verify(conflictResolver).resolve(argThat(new ArgumentMatcher<DefaultIssue>() {
+      @Override
+      public boolean matches(Object o) {
+        return "ISSUE".equals(((DefaultIssue) o).key());
+      }
+    }), any(IssueMapper.class));
+  }
+
+  @Test
+  public void resolve_conflict_in_chunk_of_conditional_updates() throws Exception {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    DiskCache<DefaultIssue>.DiskAppender appender = issueCache.newAppender();
+    appender.append(new DefaultIssue()
+      .setKey("ISSUE")
+      .setRuleKey(RuleKey.of("xoo", "S01"))
+      .setComponentUuid("COMPONENT")
+      .setProjectUuid("PROJECT")
+      .setSeverity(Severity.MAJOR)
+      .setStatus(Issue.STATUS_OPEN)
+      .setNew(false)
+      .setChanged(true)
+      // selected before the last update of the issue in db
+      .setSelectedAt(1000000000000L)
+      );
+    // fill the chunk with conditional updates which are not conflicting
+    for (int i = 1; i < PersistIssuesStep.CHUNK_SIZE; i++) {
+      dbTester.executeUpdateSql("insert into issues (id, kee, component_uuid, project_uuid, rule_id, severity, manual_severity, status, created_at, updated_at) " +
+        "values (" + (i + 1) + ", 'ISSUE_" + i + "', 'COMPONENT', 'PROJECT', 1, 'BLOCKER', false, 'OPEN', 1100000000000, 1100000000000)");
+      appender.append(new DefaultIssue()
+        .setKey("ISSUE_" + i)
+        .setRuleKey(RuleKey.of("xoo", "S01"))
+        .setComponentUuid("COMPONENT")
+        .setProjectUuid("PROJECT")
+        .setSeverity(Severity.MAJOR)
+        .setStatus(Issue.STATUS_OPEN)
+        .setNew(false)
+        .setChanged(true)
+        .setSelectedAt(1200000000000L)
+        );
+    }
+    appender.close();
+
+    step.execute(null);
+
+    assertThat(dbTester.countSql("select count(*) from issues where severity='MAJOR'")).isEqualTo(PersistIssuesStep.CHUNK_SIZE - 1);
+    verify(conflictResolver).resolve(argThat(new ArgumentMatcher<DefaultIssue>() {
+      @Override
+      public boolean matches(Object o) {
+        return "ISSUE".equals(((DefaultIssue) o).key());
+      }
+    }), any(IssueMapper.class));
+  }
 }
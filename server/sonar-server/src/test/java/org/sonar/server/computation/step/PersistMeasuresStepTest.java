@@ -20,336 +20,198 @@
 
 package org.sonar.server.computation.step;
 
-import org.assertj.core.data.Offset;
 import org.junit.Before;
+import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
-import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.sonar.api.config.Settings;
 import org.sonar.api.rule.RuleKey;
-import org.sonar.api.rule.Severity;
 import org.sonar.batch.protocol.Constants;
 import org.sonar.batch.protocol.Constants.MeasureValueType;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.batch.protocol.output.BatchReportReader;
 import org.sonar.batch.protocol.output.BatchReportWriter;
 import org.sonar.core.component.ComponentDto;
-import org.sonar.core.measure.db.MeasureDto;
-import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.DbTester;
 import org.sonar.server.computation.ComputationContext;
 import org.sonar.server.computation.issue.RuleCache;
 import org.sonar.server.computation.measure.MetricCache;
 import org.sonar.server.db.DbClient;
-import org.sonar.server.measure.persistence.MeasureDao;
+import org.sonar.test.DbTests;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+@Category(DbTests.class)
 public class PersistMeasuresStepTest extends BaseStepTest {
 
+  @ClassRule
+  public static DbTester dbTester = new DbTester();
+
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
   DbClient dbClient;
   RuleCache ruleCache;
   MetricCache metricCache;
-  MeasureDao measureDao;
+  File reportDir;
 
   PersistMeasuresStep sut;
 
-  private BatchReport.Component component;
-
   @Before
   public void setUp() throws Exception {
-    dbClient = mock(DbClient.class, Mockito.RETURNS_DEEP_STUBS);
+    dbTester.truncateTables();
+    dbClient = new DbClient(dbTester.database(), dbTester.myBatis());
     ruleCache = mock(RuleCache.class, Mockito.RETURNS_DEEP_STUBS);
     metricCache = mock(MetricCache.class, Mockito.RETURNS_DEEP_STUBS);
     when(metricCache.get("metric-key").getId()).thenReturn(654);
-    measureDao = mock(MeasureDao.class);
     when(ruleCache.get(any(RuleKey.class)).getId()).thenReturn(987);
+    reportDir = temp.newFolder();
 
-    sut = new PersistMeasuresStep(dbClient, ruleCache, metricCache);
-
-    component = defaultComponent().build();
+    sut = new PersistMeasuresStep(dbClient, ruleCache, metricCache, new Settings());
   }
 
   @Test
   public void insert_measures_from_report() throws Exception {
-    File dir = temp.newFolder();
-    BatchReportWriter report = new BatchReportWriter(dir);
-
-    when(dbClient.measureDao()).thenReturn(measureDao);
-
-    report.writeMetadata(BatchReport.Metadata.newBuilder()
-      .setAnalysisDate(new Date().getTime())
-      .setRootComponentRef(1)
-      .setProjectKey("project-key")
-      .setSnapshotId(3)
-      .build());
-
-    report.writeComponent(defaultComponent()
-      .addChildRef(2)
-      .build());
-    report.writeComponent(
-      defaultComponent()
-        .setRef(2)
-        .build());
-
+    BatchReportWriter report = initReport();
     report.writeComponentMeasures(1, Arrays.asList(
       BatchReport.Measure.newBuilder()
         .setValueType(Constants.MeasureValueType.STRING)
         .setStringValue("measure-data")
-        .setTendency(2)
-        .setVariationValue1(1.1d)
-        .setVariationValue2(2.2d)
-        .setVariationValue3(3.3d)
-        .setVariationValue4(4.4d)
-        .setVariationValue5(5.5d)
-        .setAlertStatus("measure-alert-status")
-        .setAlertText("measure-alert-text")
-        .setDescription("measure-description")
         .setSeverity(Constants.Severity.INFO)
         .setMetricKey("metric-key")
         .setRuleKey("repo:rule-key")
-        .setCharactericId(123456)
         .build()));
-
     report.writeComponentMeasures(2, Arrays.asList(
       BatchReport.Measure.newBuilder()
         .setValueType(Constants.MeasureValueType.DOUBLE)
         .setDoubleValue(123.123d)
-        .setTendency(2)
-        .setVariationValue1(1.1d)
-        .setVariationValue2(2.2d)
-        .setVariationValue3(3.3d)
-        .setVariationValue4(4.4d)
-        .setVariationValue5(5.5d)
-        .setAlertStatus("measure-alert-status")
-        .setAlertText("measure-alert-text")
-        .setDescription("measure-description")
         .setSeverity(Constants.Severity.BLOCKER)
         .setMetricKey("metric-key")
         .setRuleKey("repo:rule-key")
-        .setCharactericId(123456)
         .build()));
 
-    sut.execute(new ComputationContext(new BatchReportReader(dir), mock(ComponentDto.class)));
-
-    ArgumentCaptor<MeasureDto> argument = ArgumentCaptor.forClass(MeasureDto.class);
-    verify(measureDao, times(2)).insert(any(DbSession.class), argument.capture());
-    assertThat(argument.getValue().getValue()).isEqualTo(123.123d, Offset.offset(0.0001d));
-    assertThat(argument.getValue().getMetricId()).isEqualTo(654);
-    assertThat(argument.getValue().getRuleId()).isEqualTo(987);
-    assertThat(argument.getValue().getSeverity()).isEqualTo(Severity.BLOCKER);
-  }
-
-  private BatchReport.Component.Builder defaultComponent() {
-    return BatchReport.Component.newBuilder()
-      .setRef(1)
-      .setId(2)
-      .setSnapshotId(3);
-  }
-
-  @Test
-  public void map_full_batch_measure() throws Exception {
-    BatchReport.Measure batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.DOUBLE)
-      .setDoubleValue(123.123d)
-      .setTendency(2)
-      .setVariationValue1(1.1d)
-      .setVariationValue2(2.2d)
-      .setVariationValue3(3.3d)
-      .setVariationValue4(4.4d)
-      .setVariationValue5(5.5d)
-      .setAlertStatus("measure-alert-status")
-      .setAlertText("measure-alert-text")
-      .setDescription("measure-description")
-      .setSeverity(Constants.Severity.CRITICAL)
-      .setMetricKey("metric-key")
-      .setRuleKey("repo:rule-key")
-      .setCharactericId(123456)
-      .setPersonId(5432)
-      .build();
-
-    MeasureDto measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure).isEqualToComparingFieldByField(expectedFullMeasure());
-  }
-
-  @Test
-  public void map_minimal_batch_measure() throws Exception {
-    BatchReport.Measure batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.INT)
-      .setMetricKey("metric-key")
-      .build();
-
-    MeasureDto measure = sut.toMeasureDto(batchMeasure, component);
+    sut.execute(newContext());
 
-    assertThat(measure).isEqualToComparingFieldByField(expectedMinimalistMeasure());
+    List<Map<String, Object>> rows = dbTester.select("select project_id as \"componentId\", snapshot_id as \"snapshotId\", metric_id as \"metricId\", " +
+      "rule_id as \"ruleId\", value as \"value\", text_value as \"textValue\", rule_priority as \"severity\" from project_measures order by project_id");
+    assertThat(rows).hasSize(2);
+    assertThat(rows.get(0)).containsEntry("componentId", 10L).containsEntry("snapshotId", 100L).containsEntry("metricId", 654L)
+      .containsEntry("ruleId", 987L).containsEntry("textValue", "measure-data").containsEntry("severity", 0L);
+    assertThat(rows.get(0).get("value")).isNull();
+    assertThat(rows.get(1)).containsEntry("componentId", 20L).containsEntry("snapshotId", 200L).containsEntry("value", 123.123d)
+      .containsEntry("severity", 4L);
   }
 
   @Test
-  public void map_boolean_batch_measure() throws Exception {
-    BatchReport.Measure batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.BOOLEAN)
-      .setBooleanValue(true)
-      .setMetricKey("metric-key")
-      .build();
-
-    MeasureDto measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isEqualTo(1.0);
-
-    batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.BOOLEAN)
-      .setBooleanValue(false)
-      .setMetricKey("metric-key")
-      .build();
-
-    measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isEqualTo(0.0);
-
-    batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.BOOLEAN)
+  public void insert_measures_by_batches() throws Exception {
+    Settings settings = new Settings();
+    settings.setProperty(PersistMeasuresStep.BATCH_SIZE_PROPERTY, "2");
+    sut = new PersistMeasuresStep(dbClient, ruleCache, metricCache, settings);
+    BatchReportWriter report = initReport();
+    BatchReport.Measure measure = BatchReport.Measure.newBuilder()
+      .setValueType(MeasureValueType.INT)
+      .setIntValue(3)
       .setMetricKey("metric-key")
       .build();
+    report.writeComponentMeasures(1, Arrays.asList(measure, measure, measure));
+    report.writeComponentMeasures(2, Arrays.asList(measure, measure));
 
-    measure = sut.toMeasureDto(batchMeasure, component);
+    sut.execute(newContext());
 
-    assertThat(measure.getValue()).isNull();
+    assertThat(dbTester.countRowsOfTable("project_measures")).isEqualTo(5);
   }
 
   @Test
-  public void map_double_batch_measure() throws Exception {
-    BatchReport.Measure batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.DOUBLE)
-      .setDoubleValue(3.2)
-      .setMetricKey("metric-key")
-      .build();
-
-    MeasureDto measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isEqualTo(3.2);
-
-    batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.DOUBLE)
-      .setMetricKey("metric-key")
-      .build();
-
-    measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isNull();
+  public void default_batch_size() throws Exception {
+    assertThat(sut.getBatchSize()).isEqualTo(PersistMeasuresStep.DEFAULT_BATCH_SIZE);
   }
 
   @Test
-  public void map_int_batch_measure() throws Exception {
-    BatchReport.Measure batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.INT)
-      .setIntValue(3)
-      .setMetricKey("metric-key")
-      .build();
-
-    MeasureDto measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isEqualTo(3.0);
-
-    batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.INT)
-      .setMetricKey("metric-key")
-      .build();
-
-    measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isNull();
+  public void fail_if_negative_batch_size() throws Exception {
+    Settings settings = new Settings();
+    settings.setProperty(PersistMeasuresStep.BATCH_SIZE_PROPERTY, "-1");
+    try {
+      new PersistMeasuresStep(dbClient, ruleCache, metricCache, settings);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Bad value of sonar.computation.measuresBatchSize: -1");
+    }
   }
 
   @Test
-  public void map_long_batch_measure() throws Exception {
-    BatchReport.Measure batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.LONG)
-      .setLongValue(3L)
-      .setMetricKey("metric-key")
-      .build();
-
-    MeasureDto measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isEqualTo(3.0);
-
-    batchMeasure = BatchReport.Measure.newBuilder()
-      .setValueType(Constants.MeasureValueType.LONG)
-      .setMetricKey("metric-key")
-      .build();
-
-    measure = sut.toMeasureDto(batchMeasure, component);
-
-    assertThat(measure.getValue()).isNull();
-  }
-
-  @Test(expected = IllegalStateException.class)
   public void fail_when_no_metric_key() throws Exception {
-    BatchReport.Measure measure = BatchReport.Measure.newBuilder()
+    assertFailure(BatchReport.Measure.newBuilder()
       .setValueType(MeasureValueType.STRING)
       .setStringValue("string-value")
-      .build();
-    BatchReport.Component component = defaultComponent()
-      .build();
-    sut.toMeasureDto(measure, component);
+      .build(), "does not have metric key");
   }
 
-  @Test(expected = IllegalStateException.class)
+  @Test
   public void fail_when_no_value() throws Exception {
-    BatchReport.Measure measure = BatchReport.Measure.newBuilder()
+    assertFailure(BatchReport.Measure.newBuilder()
       .setMetricKey("repo:metric-key")
-      .build();
-    BatchReport.Component component = defaultComponent()
-      .build();
-    sut.toMeasureDto(measure, component);
+      .build(), "does not have value type");
   }
 
-  @Test(expected = IllegalStateException.class)
+  @Test
   public void fail_when_forbid_metric() throws Exception {
-    BatchReport.Measure measure = BatchReport.Measure.newBuilder()
+    assertFailure(BatchReport.Measure.newBuilder()
       .setMetricKey("duplications_data")
-      .build();
-    BatchReport.Component component = defaultComponent()
-      .build();
-    sut.toMeasureDto(measure, component);
+      .build(), "Measures on metric 'duplications_data' cannot be send in the report");
+  }
+
+  private void assertFailure(BatchReport.Measure measure, String expectedMessage) throws IOException {
+    BatchReportWriter report = initReport();
+    report.writeComponentMeasures(2, Arrays.asList(measure));
+    try {
+      sut.execute(newContext());
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining(expectedMessage);
+    }
+    assertThat(dbTester.countRowsOfTable("project_measures")).isEqualTo(0);
   }
 
-  private MeasureDto expectedFullMeasure() {
-    return new MeasureDto()
-      .setComponentId(2L)
-      .setSnapshotId(3L)
-      .setCharacteristicId(123456)
-      .setPersonId(5432)
-      .setValue(123.123d)
-      .setTendency(2)
-      .setVariation(1, 1.1d)
-      .setVariation(2, 2.2d)
-      .setVariation(3, 3.3d)
-      .setVariation(4, 4.4d)
-      .setVariation(5, 5.5d)
-      .setAlertStatus("measure-alert-status")
-      .setAlertText("measure-alert-text")
-      .setDescription("measure-description")
-      .setSeverity(Severity.CRITICAL)
-      .setMetricId(654)
-      .setRuleId(987);
+  private BatchReportWriter initReport() {
+    BatchReportWriter report = new BatchReportWriter(reportDir);
+    report.writeMetadata(BatchReport.Metadata.newBuilder()
+      .setAnalysisDate(new Date().getTime())
+      .setRootComponentRef(1)
+      .setProjectKey("project-key")
+      .setSnapshotId(100)
+      .build());
+    report.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(1)
+      .setType(Constants.ComponentType.PROJECT)
+      .setId(10)
+      .setSnapshotId(100)
+      .addChildRef(2)
+      .build());
+    report.writeComponent(BatchReport.Component.newBuilder()
+      .setRef(2)
+      .setType(Constants.ComponentType.FILE)
+      .setId(20)
+      .setSnapshotId(200)
+      .build());
+    return report;
   }
 
-  private MeasureDto expectedMinimalistMeasure() {
-    return new MeasureDto()
-      .setComponentId(2L)
-      .setSnapshotId(3L)
-      .setMetricId(654);
+  private ComputationContext newContext() {
+    return new ComputationContext(new BatchReportReader(reportDir), mock(ComponentDto.class));
   }
 
   @Override
@@ -25,7 +25,6 @@ import org.junit.Test;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.core.permission.GlobalPermissions;
-import org.sonar.server.computation.ComputationThreadLauncher;
 import org.sonar.server.computation.ReportQueue;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.user.MockUserSession;
@@ -38,14 +37,13 @@ import static org.mockito.Mockito.*;
 
 public class SubmitReportWsActionTest {
 
-  ComputationThreadLauncher workerLauncher = mock(ComputationThreadLauncher.class);
   ReportQueue queue = mock(ReportQueue.class);
   WsTester wsTester;
   SubmitReportWsAction sut;
 
   @Before
   public void before() {
-    sut = new SubmitReportWsAction(queue, workerLauncher);
+    sut = new SubmitReportWsAction(queue);
     wsTester = new WsTester(new ComputationWebService(sut));
   }
 
@@ -62,7 +60,7 @@ public class SubmitReportWsActionTest {
   }
 
   @Test
-  public void add_element_to_queue_and_launch_analysis_task() throws Exception {
+  public void add_element_to_queue() throws Exception {
     MockUserSession.set().setGlobalPermissions(GlobalPermissions.SCAN_EXECUTION);
     AnalysisReportDto dto = mock(AnalysisReportDto.class);
     when(dto.getId()).thenReturn(42L);
@@ -75,7 +73,6 @@ public class SubmitReportWsActionTest {
     WsTester.Result response = request.execute();
 
     verify(queue).add(eq("P1"), any(InputStream.class));
-    verify(workerLauncher).startAnalysisTaskNow();
     assertThat(response.outputAsString()).isEqualTo("{\"key\":\"42\"}");
   }
 
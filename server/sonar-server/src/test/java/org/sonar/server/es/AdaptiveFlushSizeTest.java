@@ -0,0 +1,69 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveFlushSizeTest {
+
+  @Test
+  public void increase_size_when_responses_are_fast() throws Exception {
+    AdaptiveFlushSize size = new AdaptiveFlushSize(1024L * 1024);
+    size.onResponse(100L, 0);
+    assertThat(size.get()).isEqualTo(1024L * 1024 + AdaptiveFlushSize.INCREMENT_BYTE_SIZE);
+  }
+
+  @Test
+  public void keep_size_when_latency_is_close_to_target() throws Exception {
+    AdaptiveFlushSize size = new AdaptiveFlushSize(1024L * 1024);
+    size.onResponse(AdaptiveFlushSize.TARGET_LATENCY_MS + 500L, 0);
+    assertThat(size.get()).isEqualTo(1024L * 1024);
+  }
+
+  @Test
+  public void halve_size_when_responses_are_slow() throws Exception {
+    AdaptiveFlushSize size = new AdaptiveFlushSize(1024L * 1024);
+    size.onResponse(3 * AdaptiveFlushSize.TARGET_LATENCY_MS, 0);
+    assertThat(size.get()).isEqualTo(512L * 1024);
+  }
+
+  @Test
+  public void halve_size_when_documents_are_rejected() throws Exception {
+    AdaptiveFlushSize size = new AdaptiveFlushSize(1024L * 1024);
+    size.onResponse(10L, 3);
+    assertThat(size.get()).isEqualTo(512L * 1024);
+  }
+
+  @Test
+  public void size_is_bounded() throws Exception {
+    AdaptiveFlushSize size = new AdaptiveFlushSize(1024L * 1024);
+    for (int i = 0; i < 100; i++) {
+      size.onResponse(10L, 0);
+    }
+    assertThat(size.get()).isEqualTo(AdaptiveFlushSize.MAX_BYTE_SIZE);
+
+    for (int i = 0; i < 100; i++) {
+      size.onResponse(10L, 1);
+    }
+    assertThat(size.get()).isEqualTo(AdaptiveFlushSize.MIN_BYTE_SIZE);
+  }
+}
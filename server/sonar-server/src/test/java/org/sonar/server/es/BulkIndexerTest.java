@@ -32,6 +32,7 @@ import org.junit.Test;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class BulkIndexerTest {
 
@@ -109,6 +110,84 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(removeFrom);
   }
 
+  @Test
+  public void mix_asynchronous_deletions_and_indexing() throws Exception {
+    int max = 500;
+    Map[] docs = new Map[max];
+    for (int i = 0; i < max; i++) {
+      docs[i] = ImmutableMap.of(FakeIndexDefinition.INT_FIELD, i);
+    }
+    esTester.putDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, docs);
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    // delete all the documents by ranges of 50 documents
+    for (int from = 0; from < max; from += 50) {
+      indexer.addDeletion(esTester.client().prepareSearch(FakeIndexDefinition.INDEX)
+        .setTypes(FakeIndexDefinition.TYPE)
+        .setQuery(QueryBuilders.filteredQuery(
+          QueryBuilders.matchAllQuery(),
+          FilterBuilders.rangeFilter(FakeIndexDefinition.INT_FIELD).gte(from).lt(from + 50))));
+    }
+    indexer.add(newIndexRequest(max + 1));
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(1);
+  }
+
+  @Test
+  public void fail_on_stop_if_deletion_fails() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.addDeletion(esTester.client().prepareSearch("unknown_index")
+      .setQuery(QueryBuilders.matchAllQuery()));
+    try {
+      indexer.stop();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to delete documents from index " + FakeIndexDefinition.INDEX);
+    }
+  }
+
+  @Test
+  public void flush_waits_for_deletions() throws Exception {
+    int max = 500;
+    Map[] docs = new Map[max];
+    for (int i = 0; i < max; i++) {
+      docs[i] = ImmutableMap.of(FakeIndexDefinition.INT_FIELD, i);
+    }
+    esTester.putDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, docs);
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.addDeletion(esTester.client().prepareSearch(FakeIndexDefinition.INDEX)
+      .setTypes(FakeIndexDefinition.TYPE)
+      .setQuery(QueryBuilders.matchAllQuery()));
+    assertThat(indexer.flush()).isTrue();
+
+    esTester.client().prepareRefresh(FakeIndexDefinition.INDEX).get();
+    assertThat(count()).isEqualTo(0);
+    indexer.stop();
+  }
+
+  @Test
+  public void flush_reports_failed_deletions() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.addDeletion(esTester.client().prepareSearch("unknown_index")
+      .setQuery(QueryBuilders.matchAllQuery()));
+
+    assertThat(indexer.flush()).isFalse();
+    try {
+      indexer.stop();
+      fail();
+    } catch (IllegalStateException e) {
+      // failure is still raised when stopping
+    }
+  }
+
   @Test
   public void disable_refresh() throws Exception {
     BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
@@ -124,6 +203,40 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void record_bulk_stats() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.add(newIndexRequest(78));
+    indexer.stop();
+
+    BulkIndexerStats stats = esTester.client().bulkStats(FakeIndexDefinition.INDEX);
+    assertThat(stats.getBulkRequests()).isEqualTo(1);
+    assertThat(stats.getDocuments()).isEqualTo(2);
+    assertThat(stats.getBytes()).isGreaterThan(0);
+    assertThat(stats.getFailures()).isEqualTo(0);
+    assertThat(stats.getRejections()).isEqualTo(0);
+    assertThat(stats.getFlushByteSize()).isEqualTo(AdaptiveFlushSize.MIN_BYTE_SIZE * 4);
+    assertThat(esTester.client().bulkStats()).containsKey(FakeIndexDefinition.INDEX);
+  }
+
+  @Test
+  public void fixed_flush_size_is_recorded_in_stats() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    BulkIndexerStats stats = esTester.client().bulkStats(FakeIndexDefinition.INDEX);
+    assertThat(stats.getBulkRequests()).isGreaterThan(1);
+    assertThat(stats.getDocuments()).isEqualTo(10);
+    assertThat(stats.getFlushByteSize()).isEqualTo(500);
+    assertThat(count()).isEqualTo(10);
+  }
 
   private long count() {
     return esTester.countDocuments("fakes", "fake");
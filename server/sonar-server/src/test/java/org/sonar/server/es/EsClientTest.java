@@ -45,7 +45,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class EsClientTest {
 
   @Rule
-  public EsTester es = new EsTester();
+  public EsTester es = new EsTester().addDefinitions(new FakeIndexDefinition());
 
   @Test
   public void proxify_requests() throws Exception {
@@ -74,4 +74,9 @@ public class EsClientTest {
 
     client.stop();
   }
+
+  @Test
+  public void max_field_value_of_empty_index_is_zero() throws Exception {
+    assertThat(es.client().getMaxFieldValue(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, FakeIndexDefinition.INT_FIELD)).isEqualTo(0L);
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
+import org.sonar.server.db.DbClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PartitionedReindexerTest {
+
+  @Test
+  public void split_nothing() throws Exception {
+    assertThat(PartitionedReindexer.split(Collections.<String>emptyList(), 4)).isEmpty();
+  }
+
+  @Test
+  public void one_partition_per_project_if_few_projects() throws Exception {
+    List<PartitionedReindexer.Partition> partitions = PartitionedReindexer.split(Arrays.asList("A", "B"), 4);
+
+    assertThat(partitions).hasSize(2);
+    assertThat(partitions.get(0).toString()).isEqualTo("[A, A]");
+    assertThat(partitions.get(1).toString()).isEqualTo("[B, B]");
+  }
+
+  @Test
+  public void split_in_ranges_of_similar_sizes() throws Exception {
+    List<PartitionedReindexer.Partition> partitions = PartitionedReindexer.split(Arrays.asList("A", "B", "C", "D", "E", "F", "G"), 3);
+
+    assertThat(partitions).hasSize(3);
+    assertThat(partitions.get(0).toString()).isEqualTo("[A, B]");
+    assertThat(partitions.get(1).toString()).isEqualTo("[C, D]");
+    assertThat(partitions.get(2).toString()).isEqualTo("[E, G]");
+  }
+
+  @Test
+  public void read_number_of_threads_from_settings() throws Exception {
+    Settings settings = new Settings().setProperty(PartitionedReindexer.THREADS_PROPERTY, 3);
+
+    assertThat(new PartitionedReindexer(mock(DbClient.class), settings, "issues", "issues", "project_uuid").getThreads()).isEqualTo(3);
+    assertThat(new PartitionedReindexer(mock(DbClient.class), new Settings(), "issues", "issues", "project_uuid").getThreads()).isGreaterThan(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_if_bad_number_of_threads() throws Exception {
+    Settings settings = new Settings().setProperty(PartitionedReindexer.THREADS_PROPERTY, -1);
+
+    new PartitionedReindexer(mock(DbClient.class), settings, "issues", "issues", "project_uuid");
+  }
+
+  @Test
+  public void read_checkpoint_only_once() throws Exception {
+    DbClient dbClient = mock(DbClient.class);
+    PropertiesDao propertiesDao = mock(PropertiesDao.class);
+    when(dbClient.propertiesDao()).thenReturn(propertiesDao);
+    when(propertiesDao.selectGlobalProperty("sonar.internal.es.reindex.issues")).thenReturn(new PropertyDto());
+    PartitionedReindexer reindexer = new PartitionedReindexer(dbClient, new Settings(), "issues", "issues", "project_uuid");
+
+    assertThat(reindexer.isInterrupted()).isTrue();
+    assertThat(reindexer.isInterrupted()).isTrue();
+
+    verify(propertiesDao, times(1)).selectGlobalProperty("sonar.internal.es.reindex.issues");
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.config.Settings;
+import org.sonar.server.es.EsTester;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+public class IssueAuthorizationCacheTest {
+
+  @ClassRule
+  public static EsTester esTester = new EsTester().addDefinitions(new IssueIndexDefinition(new Settings()));
+
+  IssueAuthorizationCache cache;
+  IssueAuthorizationIndexer indexer;
+
+  @Before
+  public void setUp() throws Exception {
+    esTester.truncateIndices();
+    cache = new IssueAuthorizationCache(esTester.client());
+    indexer = new IssueAuthorizationIndexer(null, esTester.client(), cache);
+  }
+
+  @Test
+  public void load_projects_authorized_to_user_or_groups() throws Exception {
+    index("P1", "simon", "sonar-users");
+    index("P2", null, "sonar-admins");
+    index("P3", "marius", "sonar-users");
+    index("P4", "marius", null);
+
+    assertThat(cache.authorizedProjectUuids("simon", Collections.<String>emptySet())).containsOnly("P1");
+    assertThat(cache.authorizedProjectUuids("marius", ImmutableSet.of("sonar-users"))).containsOnly("P1", "P3", "P4");
+    assertThat(cache.authorizedProjectUuids(null, ImmutableSet.of("sonar-admins", "sonar-users"))).containsOnly("P1", "P2", "P3");
+    assertThat(cache.authorizedProjectUuids("unknown", ImmutableSet.of("unknown"))).isEmpty();
+    assertThat(cache.authorizedProjectUuids(null, Collections.<String>emptySet())).isEmpty();
+  }
+
+  @Test
+  public void cache_projects_per_user_and_groups() throws Exception {
+    index("P1", "simon", "sonar-users");
+
+    assertThat(cache.authorizedProjectUuids("simon", ImmutableSet.of("sonar-users", "Anyone"))).containsOnly("P1");
+    assertThat(cache.authorizedProjectUuids("simon", ImmutableSet.of("Anyone", "sonar-users"))).containsOnly("P1");
+    assertThat(cache.size()).isEqualTo(1);
+
+    // permission is removed from index without notifying the cache
+    esTester.truncateIndices();
+    assertThat(cache.authorizedProjectUuids("simon", ImmutableSet.of("sonar-users", "Anyone"))).containsOnly("P1");
+  }
+
+  @Test
+  public void do_not_mix_up_groups_whose_names_contain_separators() throws Exception {
+    index("P1", null, "a,b");
+    index("P2", null, "a");
+    index("P3", null, "b");
+    index("P4", "x|y", null);
+
+    assertThat(cache.authorizedProjectUuids(null, ImmutableSet.of("a,b"))).containsOnly("P1");
+    assertThat(cache.authorizedProjectUuids(null, ImmutableSet.of("a", "b"))).containsOnly("P2", "P3");
+    assertThat(cache.authorizedProjectUuids("x", ImmutableSet.of("y"))).isEmpty();
+    assertThat(cache.authorizedProjectUuids("x|y", Collections.<String>emptySet())).containsOnly("P4");
+    assertThat(cache.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void share_uuids_between_users_with_same_permissions() throws Exception {
+    index("P1", null, "sonar-users");
+    index("P2", null, "sonar-users");
+
+    Set<String> simonProjects = cache.authorizedProjectUuids("simon", ImmutableSet.of("sonar-users"));
+    Set<String> mariusProjects = cache.authorizedProjectUuids("marius", ImmutableSet.of("sonar-users"));
+
+    assertThat(simonProjects).containsOnly("P1", "P2");
+    assertThat(mariusProjects).isSameAs(simonProjects);
+  }
+
+  @Test
+  public void drop_cache_when_max_weight_is_reached() throws Exception {
+    cache = new IssueAuthorizationCache(esTester.client(), 4L);
+    index("P1", "simon", null);
+    index("P2", "simon", null);
+    index("P3", "marius", null);
+
+    // weight is 3
+    cache.authorizedProjectUuids("simon", Collections.<String>emptySet());
+    assertThat(cache.size()).isEqualTo(1);
+
+    // weight would be 5, so cache is dropped before adding marius
+    cache.authorizedProjectUuids("marius", Collections.<String>emptySet());
+    assertThat(cache.size()).isEqualTo(1);
+
+    // weight is 3
+    cache.authorizedProjectUuids("unknown", Collections.<String>emptySet());
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void ignore_uuids_loaded_before_cache_is_cleared() throws Exception {
+    index("P1", "simon", null);
+    final IssueAuthorizationCache spiedCache = spy(cache);
+    doAnswer(new Answer<Set<String>>() {
+      @Override
+      public Set<String> answer(InvocationOnMock invocation) throws Throwable {
+        Set<String> result = (Set<String>) invocation.callRealMethod();
+        // permissions are changed while uuids are being loaded
+        esTester.truncateIndices();
+        spiedCache.clear();
+        return result;
+      }
+    }).doCallRealMethod().when(spiedCache).loadProjectUuids(anyString(), anySetOf(String.class));
+
+    assertThat(spiedCache.authorizedProjectUuids("simon", Collections.<String>emptySet())).containsOnly("P1");
+    assertThat(spiedCache.authorizedProjectUuids("simon", Collections.<String>emptySet())).isEmpty();
+  }
+
+  @Test
+  public void clear_cache_when_permissions_are_indexed() throws Exception {
+    index("P1", "simon", null);
+    assertThat(cache.authorizedProjectUuids("simon", Collections.<String>emptySet())).containsOnly("P1");
+
+    index("P2", "simon", null);
+    assertThat(cache.size()).isZero();
+    assertThat(cache.authorizedProjectUuids("simon", Collections.<String>emptySet())).containsOnly("P1", "P2");
+
+    indexer.deleteProject("P1", true);
+    assertThat(cache.size()).isZero();
+    assertThat(cache.authorizedProjectUuids("simon", Collections.<String>emptySet())).containsOnly("P2");
+  }
+
+  @Test
+  public void do_not_clear_cache_when_deletion_of_project_is_not_refreshed() throws Exception {
+    index("P1", "simon", null);
+    assertThat(cache.authorizedProjectUuids("simon", Collections.<String>emptySet())).containsOnly("P1");
+
+    indexer.deleteProject("P1", false);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  private void index(String projectUuid, String user, String group) {
+    IssueAuthorizationDao.Dto authorization = new IssueAuthorizationDao.Dto(projectUuid, System.currentTimeMillis());
+    if (user != null) {
+      authorization.addUser(user);
+    }
+    if (group != null) {
+      authorization.addGroup(group);
+    }
+    indexer.index(Arrays.asList(authorization));
+  }
+}
@@ -108,6 +108,6 @@ public class IssueAuthorizationIndexerTest {
   }
 
   private IssueAuthorizationIndexer createIndexer() {
-    return new IssueAuthorizationIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client());
+    return new IssueAuthorizationIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client(), new IssueAuthorizationCache(esTester.client()));
   }
 }
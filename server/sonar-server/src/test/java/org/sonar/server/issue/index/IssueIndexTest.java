@@ -73,14 +73,15 @@ public class IssueIndexTest {
   @Before
   public void setUp() throws Exception {
     tester.truncateIndices();
-    issueIndexer = new IssueIndexer(null, tester.client());
-    issueAuthorizationIndexer = new IssueAuthorizationIndexer(null, tester.client());
+    issueIndexer = new IssueIndexer(null, tester.client(), new Settings());
+    IssueAuthorizationCache authorizationCache = new IssueAuthorizationCache(tester.client());
+    issueAuthorizationIndexer = new IssueAuthorizationIndexer(null, tester.client(), authorizationCache);
     viewIndexer = new ViewIndexer(null, tester.client());
     System2 system = mock(System2.class);
     when(system.getDefaultTimeZone()).thenReturn(TimeZone.getTimeZone("+01:00"));
     when(system.now()).thenReturn(System.currentTimeMillis());
 
-    index = new IssueIndex(tester.client(), system);
+    index = new IssueIndex(tester.client(), system, authorizationCache);
 
   }
 
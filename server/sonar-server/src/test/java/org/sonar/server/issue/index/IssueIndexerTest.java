@@ -27,6 +27,7 @@ import org.junit.experimental.categories.Category;
 import org.sonar.api.config.Settings;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.core.persistence.DbTester;
+import org.sonar.core.properties.PropertiesDao;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.EsTester;
 import org.sonar.test.DbTests;
@@ -97,7 +98,7 @@ public class IssueIndexerTest {
   }
 
   private IssueIndexer createIndexer() {
-    IssueIndexer indexer = new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client());
+    IssueIndexer indexer = new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis(), new PropertiesDao(dbTester.myBatis())), esTester.client(), new Settings());
     indexer.setEnabled(true);
     return indexer;
   }
@@ -28,6 +28,7 @@ import org.junit.experimental.categories.Category;
 import org.sonar.core.persistence.DbTester;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.issue.IssueTesting;
+import org.sonar.server.issue.index.IssueAuthorizationCache;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.rule.RuleTesting;
 import org.sonar.server.rule.index.RuleDoc;
@@ -55,7 +56,7 @@ public class BackendCleanupMediumTest {
 
   @Before
   public void setUp() throws Exception {
-    backendCleanup = new BackendCleanup(esTester.client(), dbTester.myBatis());
+    backendCleanup = new BackendCleanup(esTester.client(), dbTester.myBatis(), new IssueAuthorizationCache(esTester.client()));
   }
 
   @Test
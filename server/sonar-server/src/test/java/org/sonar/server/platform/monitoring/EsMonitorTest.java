@@ -23,6 +23,7 @@ import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.sonar.api.config.Settings;
+import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 
@@ -78,4 +79,22 @@ public class EsMonitorTest {
     assertThat(indexAttributes.get("Shards")).isEqualTo(1);
     assertThat(indexAttributes.get("Store Size")).isNotNull();
   }
+
+  @Test
+  public void bulk_attributes() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), IssueIndexDefinition.INDEX);
+    indexer.start();
+    indexer.stop();
+    EsMonitor monitor = new EsMonitor(esTester.client());
+    assertThat(monitor.getBulkIndexedDocuments()).isEqualTo(0L);
+    assertThat(monitor.getBulkFailures()).isEqualTo(0L);
+    assertThat(monitor.getBulkRejections()).isEqualTo(0L);
+
+    Map bulkAttributes = (Map) monitor.attributes().get("Bulk Indexing");
+    assertThat(bulkAttributes).containsKey(IssueIndexDefinition.INDEX);
+    Map indexAttributes = (Map) bulkAttributes.get(IssueIndexDefinition.INDEX);
+    assertThat(indexAttributes.get("Requests")).isEqualTo(0L);
+    assertThat(indexAttributes.get("Documents")).isEqualTo(0L);
+    assertThat(indexAttributes.get("Throughput (docs/s)")).isEqualTo(0L);
+  }
 }
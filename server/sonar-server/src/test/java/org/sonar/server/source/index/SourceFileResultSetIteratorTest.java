@@ -19,8 +19,6 @@
  */
 package org.sonar.server.source.index;
 
-import org.assertj.core.data.MapEntry;
-import org.elasticsearch.action.update.UpdateRequest;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -33,7 +31,6 @@ import org.sonar.server.source.db.FileSourceTesting;
 import org.sonar.test.DbTests;
 
 import java.sql.Connection;
-import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -70,28 +67,9 @@ public class SourceFileResultSetIteratorTest {
     assertThat(row.getProjectUuid()).isEqualTo("P1");
     assertThat(row.getFileUuid()).isEqualTo("F1");
     assertThat(row.getUpdatedAt()).isEqualTo(1416239042000L);
-    assertThat(row.getLineUpdateRequests()).hasSize(3);
-
-    UpdateRequest firstRequest = row.getLineUpdateRequests().get(0);
-    Map<String, Object> doc = firstRequest.doc().sourceAsMap();
-    assertThat(doc).contains(
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_PROJECT_UUID, "P1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_FILE_UUID, "F1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_LINE, 1),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_SCM_REVISION, "REVISION_1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_SCM_AUTHOR, "AUTHOR_1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_HIGHLIGHTING, "HIGHLIGHTING_1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_SYMBOLS, "SYMBOLS_1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_UT_LINE_HITS, 1),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_UT_CONDITIONS, 2),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_UT_COVERED_CONDITIONS, 3),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_IT_LINE_HITS, 4),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_IT_CONDITIONS, 5),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_IT_COVERED_CONDITIONS, 6),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_OVERALL_LINE_HITS, 7),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_OVERALL_CONDITIONS, 8),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_OVERALL_COVERED_CONDITIONS, 9)
-      );
+    assertThat(row.getLineCount()).isEqualTo(3);
+    assertThat(row.getPreviousLineCount()).isEqualTo(5);
+    assertThat(row.getData().getLines(0).getScmAuthor()).isEqualTo("AUTHOR_1");
     it.close();
   }
 
@@ -110,30 +88,8 @@ public class SourceFileResultSetIteratorTest {
     assertThat(row.getProjectUuid()).isEqualTo("P1");
     assertThat(row.getFileUuid()).isEqualTo("F1");
     assertThat(row.getUpdatedAt()).isEqualTo(1416239042000L);
-    assertThat(row.getLineUpdateRequests()).hasSize(1);
-    UpdateRequest firstRequest = row.getLineUpdateRequests().get(0);
-    Map<String, Object> doc = firstRequest.doc().sourceAsMap();
-    assertThat(doc).contains(
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_PROJECT_UUID, "P1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_FILE_UUID, "F1"),
-      MapEntry.entry(SourceLineIndexDefinition.FIELD_LINE, 1)
-      );
-    // null values
-    assertThat(doc).containsKeys(
-      SourceLineIndexDefinition.FIELD_SCM_REVISION,
-      SourceLineIndexDefinition.FIELD_SCM_AUTHOR,
-      SourceLineIndexDefinition.FIELD_HIGHLIGHTING,
-      SourceLineIndexDefinition.FIELD_SYMBOLS,
-      SourceLineIndexDefinition.FIELD_UT_LINE_HITS,
-      SourceLineIndexDefinition.FIELD_UT_CONDITIONS,
-      SourceLineIndexDefinition.FIELD_UT_COVERED_CONDITIONS,
-      SourceLineIndexDefinition.FIELD_IT_LINE_HITS,
-      SourceLineIndexDefinition.FIELD_IT_CONDITIONS,
-      SourceLineIndexDefinition.FIELD_IT_COVERED_CONDITIONS,
-      SourceLineIndexDefinition.FIELD_OVERALL_LINE_HITS,
-      SourceLineIndexDefinition.FIELD_OVERALL_CONDITIONS,
-      SourceLineIndexDefinition.FIELD_OVERALL_COVERED_CONDITIONS
-    );
+    assertThat(row.getLineCount()).isEqualTo(1);
+    assertThat(row.getData().getLines(0).hasScmAuthor()).isFalse();
     it.close();
   }
 
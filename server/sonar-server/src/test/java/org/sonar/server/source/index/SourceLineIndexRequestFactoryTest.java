@@ -0,0 +1,121 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source.index;
+
+import org.assertj.core.data.MapEntry;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Test;
+import org.sonar.server.source.db.FileSourceDb;
+import org.sonar.server.source.db.FileSourceTesting;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceLineIndexRequestFactoryTest {
+
+  SourceLineIndexRequestFactory factory = new SourceLineIndexRequestFactory();
+
+  @Test
+  public void create_index_request() throws Exception {
+    SourceFileResultSetIterator.Row row = SourceFileResultSetIterator.toRow("P1", "F1", new Date(1416239042000L), FileSourceTesting.newFakeData(3).build());
+
+    IndexRequest request = factory.create(row, row.getData().getLines(0));
+
+    assertThat(request.index()).isEqualTo(SourceLineIndexDefinition.INDEX);
+    assertThat(request.type()).isEqualTo(SourceLineIndexDefinition.TYPE);
+    assertThat(request.id()).isEqualTo(SourceLineIndexDefinition.docKey("F1", 1));
+    assertThat(request.routing()).isEqualTo("P1");
+    Map<String, Object> doc = request.sourceAsMap();
+    assertThat(doc).contains(
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_PROJECT_UUID, "P1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_FILE_UUID, "F1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_LINE, 1),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_SCM_REVISION, "REVISION_1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_SCM_AUTHOR, "AUTHOR_1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_HIGHLIGHTING, "HIGHLIGHTING_1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_SYMBOLS, "SYMBOLS_1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_UT_LINE_HITS, 1),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_UT_CONDITIONS, 2),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_UT_COVERED_CONDITIONS, 3),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_IT_LINE_HITS, 4),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_IT_CONDITIONS, 5),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_IT_COVERED_CONDITIONS, 6),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_OVERALL_LINE_HITS, 7),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_OVERALL_CONDITIONS, 8),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_OVERALL_COVERED_CONDITIONS, 9),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_SOURCE, "SOURCE_1")
+      );
+  }
+
+  /**
+   * Line without metadata
+   */
+  @Test
+  public void null_values_are_serialized() throws Exception {
+    FileSourceDb.Data.Builder dataBuilder = FileSourceDb.Data.newBuilder();
+    dataBuilder.addLinesBuilder().setLine(1).build();
+    SourceFileResultSetIterator.Row row = SourceFileResultSetIterator.toRow("P1", "F1", new Date(), dataBuilder.build());
+
+    Map<String, Object> doc = factory.create(row, row.getData().getLines(0)).sourceAsMap();
+
+    assertThat(doc).contains(
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_PROJECT_UUID, "P1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_FILE_UUID, "F1"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_LINE, 1)
+      );
+    assertThat(doc).containsKeys(
+      SourceLineIndexDefinition.FIELD_SCM_REVISION,
+      SourceLineIndexDefinition.FIELD_SCM_AUTHOR,
+      SourceLineIndexDefinition.FIELD_HIGHLIGHTING,
+      SourceLineIndexDefinition.FIELD_SYMBOLS,
+      SourceLineIndexDefinition.FIELD_UT_LINE_HITS,
+      SourceLineIndexDefinition.FIELD_UT_CONDITIONS,
+      SourceLineIndexDefinition.FIELD_UT_COVERED_CONDITIONS,
+      SourceLineIndexDefinition.FIELD_IT_LINE_HITS,
+      SourceLineIndexDefinition.FIELD_IT_CONDITIONS,
+      SourceLineIndexDefinition.FIELD_IT_COVERED_CONDITIONS,
+      SourceLineIndexDefinition.FIELD_OVERALL_LINE_HITS,
+      SourceLineIndexDefinition.FIELD_OVERALL_CONDITIONS,
+      SourceLineIndexDefinition.FIELD_OVERALL_COVERED_CONDITIONS
+      );
+    assertThat(doc.get(SourceLineIndexDefinition.FIELD_UT_LINE_HITS)).isNull();
+  }
+
+  @Test
+  public void buffer_is_reused_between_lines_and_files() throws Exception {
+    SourceFileResultSetIterator.Row row1 = SourceFileResultSetIterator.toRow("P1", "F1", new Date(), FileSourceTesting.newFakeData(2).build());
+    SourceFileResultSetIterator.Row row2 = SourceFileResultSetIterator.toRow("P2", "F2", new Date(), FileSourceTesting.newFakeData(1).build());
+
+    IndexRequest line1 = factory.create(row1, row1.getData().getLines(0));
+    IndexRequest line2 = factory.create(row1, row1.getData().getLines(1));
+    IndexRequest otherFile = factory.create(row2, row2.getData().getLines(0));
+
+    // documents are not altered by the next lines
+    assertThat(line1.sourceAsMap().get(SourceLineIndexDefinition.FIELD_SCM_AUTHOR)).isEqualTo("AUTHOR_1");
+    assertThat(line2.sourceAsMap().get(SourceLineIndexDefinition.FIELD_SCM_AUTHOR)).isEqualTo("AUTHOR_2");
+    assertThat(otherFile.sourceAsMap()).contains(
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_PROJECT_UUID, "P2"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_FILE_UUID, "F2"),
+      MapEntry.entry(SourceLineIndexDefinition.FIELD_SCM_AUTHOR, "AUTHOR_1"));
+    assertThat(otherFile.routing()).isEqualTo("P2");
+  }
+}
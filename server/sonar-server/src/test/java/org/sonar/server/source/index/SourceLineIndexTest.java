@@ -19,6 +19,7 @@
  */
 package org.sonar.server.source.index;
 
+import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -26,6 +27,9 @@ import org.sonar.api.config.Settings;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.NotFoundException;
 
+import java.util.Date;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SourceLineIndexTest {
@@ -57,6 +61,27 @@ public class SourceLineIndexTest {
     assertThat(index.getLines("file1")).hasSize(3);
   }
 
+  @Test
+  public void scroll_scm_lines_of_project() throws Exception {
+    es.putDocuments(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE,
+      newScmLine("P1", "F1", 1, "simon"),
+      newScmLine("P1", "F1", 2, "julien"),
+      newScmLine("P1", "F2", 1, "simon"),
+      newScmLine("P2", "F3", 1, "teryk"));
+
+    List<SourceLineDoc> lines = Lists.newArrayList(index.scrollScmLinesOfProject("P1"));
+
+    assertThat(lines).hasSize(3);
+    for (SourceLineDoc line : lines) {
+      assertThat(line.fileUuid()).isIn("F1", "F2");
+      assertThat(line.scmAuthor()).isIn("simon", "julien");
+      assertThat(line.scmDate()).isNotNull();
+      // other fields are not loaded
+      assertThat(line.getFields()).doesNotContainKey(SourceLineIndexDefinition.FIELD_SOURCE);
+    }
+    assertThat(index.scrollScmLinesOfProject("UNKNOWN").hasNext()).isFalse();
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void should_reject_from_less_than_1() {
     index.getLines("polop", 0, 0);
@@ -109,4 +134,15 @@ public class SourceLineIndexTest {
       assertThat(e).isInstanceOf(NotFoundException.class).hasMessage("No source found on line 1 for file 'file1'");
     }
   }
+
+  private static SourceLineDoc newScmLine(String projectUuid, String fileUuid, int line, String author) {
+    return new SourceLineDoc()
+      .setProjectUuid(projectUuid)
+      .setFileUuid(fileUuid)
+      .setLine(line)
+      .setScmAuthor(author)
+      .setScmRevision("REV_" + author)
+      .setScmDate(new Date(1_400_000_000_000L))
+      .setSource("source of line " + line);
+  }
 }
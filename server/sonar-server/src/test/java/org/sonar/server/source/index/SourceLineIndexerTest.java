@@ -28,13 +28,17 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.junit.Before;
 import org.junit.ClassRule;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.DateUtils;
+import org.sonar.api.utils.log.LogTester;
 import org.sonar.core.persistence.DbTester;
+import org.sonar.core.properties.PropertiesDao;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.es.PartitionedReindexer;
 import org.sonar.server.source.db.FileSourceDb;
 import org.sonar.server.source.db.FileSourceTesting;
 import org.sonar.test.DbTests;
@@ -59,13 +63,16 @@ public class SourceLineIndexerTest {
   @ClassRule
   public static DbTester db = new DbTester();
 
+  @Rule
+  public LogTester logTester = new LogTester();
+
   private SourceLineIndexer indexer;
 
   @Before
   public void setUp() {
     es.truncateIndices();
     db.truncateTables();
-    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis()), es.client());
+    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis(), new PropertiesDao(db.myBatis())), es.client(), new Settings());
     indexer.setEnabled(true);
   }
 
@@ -81,6 +88,50 @@ public class SourceLineIndexerTest {
     assertThat(countDocuments()).isEqualTo(3);
   }
 
+  @Test
+  public void reindex_projects_in_parallel() throws Exception {
+    db.prepareDbUnit(getClass(), "reindex_projects.xml");
+    updateDataColumns(2);
+
+    indexer.index();
+
+    assertThat(countDocuments()).isEqualTo(6);
+    assertThat(db.countRowsOfTable("properties")).isEqualTo(0);
+  }
+
+  @Test
+  public void reindex_projects_in_parallel_if_index_is_empty_at_startup() throws Exception {
+    db.prepareDbUnit(getClass(), "resume_interrupted_reindex.xml");
+    updateDataColumns(2);
+
+    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis(), new PropertiesDao(db.myBatis())), es.client(),
+      new Settings().setProperty(PartitionedReindexer.THREADS_PROPERTY, 2));
+    indexer.setEnabled(true);
+    indexer.start();
+    indexer.index();
+
+    assertThat(logTester.logs()).contains("Reindex sourcelines in 3 partitions, threads: 2");
+    // files of project P1 are not indexed again, as they are before the checkpoint
+    assertThat(countDocuments()).isEqualTo(4);
+    assertThat(prepareSearch().setQuery(QueryBuilders.termQuery(FIELD_PROJECT_UUID, "P1")).get().getHits().getTotalHits()).isEqualTo(0L);
+    assertThat(db.countRowsOfTable("properties")).isEqualTo(0);
+  }
+
+  @Test
+  public void resume_interrupted_reindex() throws Exception {
+    db.prepareDbUnit(getClass(), "resume_interrupted_reindex.xml");
+    updateDataColumns(2);
+
+    indexer.index();
+
+    assertThat(countDocuments()).isEqualTo(4);
+    SearchResponse projectSearch = prepareSearch()
+      .setQuery(QueryBuilders.termQuery(FIELD_PROJECT_UUID, "P1"))
+      .get();
+    assertThat(projectSearch.getHits().getTotalHits()).isEqualTo(0L);
+    assertThat(db.countRowsOfTable("properties")).isEqualTo(0);
+  }
+
   /**
    * File F1 in project P1 has one line -> to be updated
    * File F2 in project P1 has one line -> untouched
@@ -120,6 +171,24 @@ public class SourceLineIndexerTest {
       );
   }
 
+  @Test
+  public void delete_lines_greater_than_new_line_count() throws Exception {
+    indexer.index(Iterators.forArray(
+      SourceFileResultSetIterator.toRow("P1", "F1", new Date(), FileSourceTesting.newFakeData(3).build(), 0),
+      SourceFileResultSetIterator.toRow("P1", "F2", new Date(), FileSourceTesting.newFakeData(3).build(), 0)));
+    assertThat(countDocuments()).isEqualTo(6L);
+
+    indexer.index(Iterators.singletonIterator(
+      SourceFileResultSetIterator.toRow("P1", "F1", new Date(), FileSourceTesting.newFakeData(1).build(), 3)));
+
+    assertThat(countDocuments()).isEqualTo(4L);
+    SearchResponse fileSearch = prepareSearch()
+      .setQuery(QueryBuilders.termQuery(FIELD_FILE_UUID, "F1"))
+      .get();
+    assertThat(fileSearch.getHits().getTotalHits()).isEqualTo(1L);
+    assertThat(fileSearch.getHits().getHits()[0].sourceAsMap().get(FIELD_LINE)).isEqualTo(1);
+  }
+
   @Test
   public void delete_file_uuid() throws Exception {
     indexLine("P1", "F1", 1);
@@ -190,6 +259,14 @@ public class SourceLineIndexerTest {
     assertThat(document.get(FIELD_OVERALL_COVERED_CONDITIONS)).isEqualTo(bigValue);
   }
 
+  private void updateDataColumns(int numberOfLines) throws Exception {
+    Connection connection = db.openConnection();
+    for (String fileUuid : new String[] {"F1", "F2", "F3"}) {
+      FileSourceTesting.updateDataColumn(connection, fileUuid, FileSourceTesting.newFakeData(numberOfLines).build());
+    }
+    connection.close();
+  }
+
   private void indexLine(String projectUuid, String fileUuid, int line) throws IOException {
     es.client().prepareIndex(INDEX, TYPE)
       .setId(SourceLineIndexDefinition.docKey(fileUuid, line))
@@ -39,7 +39,7 @@ public class DiskCacheTest {
 
   @Test
   public void write_and_read() throws Exception {
-    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE);
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new JavaSerializationCodec<String>());
     try (CloseableIterator<String> traverse = cache.traverse()) {
       assertThat(traverse).isEmpty();
     }
@@ -51,12 +51,19 @@ public class DiskCacheTest {
     try (CloseableIterator<String> traverse = cache.traverse()) {
       assertThat(traverse).containsExactly("foo", "bar");
     }
+
+    cache.newAppender()
+      .append("baz")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
   }
 
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
-      new DiskCache<>(temp.newFolder(), System2.INSTANCE);
+      new DiskCache<>(temp.newFolder(), System2.INSTANCE, new JavaSerializationCodec<String>());
       fail();
     } catch (IllegalStateException e) {
       assertThat(e).hasMessageContaining("Fail to write into file");
@@ -70,7 +77,7 @@ public class DiskCacheTest {
         throw new UnsupportedOperationException("expected error");
       }
     }
-    DiskCache<Serializable> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE);
+    DiskCache<Serializable> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new JavaSerializationCodec<Serializable>());
     try {
       cache.newAppender().append(new Unserializable());
       fail();
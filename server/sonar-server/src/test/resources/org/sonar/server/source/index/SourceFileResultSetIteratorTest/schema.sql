@@ -5,6 +5,8 @@ CREATE TABLE "FILE_SOURCES" (
   "FILE_UUID" VARCHAR(50) NOT NULL,
   "BINARY_DATA" BINARY(167772150),
   "DATA_HASH" VARCHAR(50) NOT NULL,
+  "LINE_COUNT" INTEGER,
+  "PREVIOUS_LINE_COUNT" INTEGER,
   "CREATED_AT" BIGINT NOT NULL,
   "UPDATED_AT" BIGINT NOT NULL
 );
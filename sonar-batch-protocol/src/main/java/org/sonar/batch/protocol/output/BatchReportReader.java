@@ -19,36 +19,52 @@
  */
 package org.sonar.batch.protocol.output;
 
-import org.sonar.batch.protocol.ProtobufUtil;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import org.sonar.batch.protocol.output.BatchReport.Issues;
 
 import javax.annotation.CheckForNull;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.List;
 
-public class BatchReportReader {
+public class BatchReportReader implements Closeable {
 
+  private final ReportEntries entries;
+
+  // null if report is not extracted in a directory
   private final FileStructure fileStructure;
 
   public BatchReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
+    this.entries = new DirectoryReportEntries(dir);
+  }
+
+  /**
+   * Reads the report without extracting it, for example from {@link ZipReportEntries}
+   */
+  public BatchReportReader(ReportEntries entries) {
+    this.fileStructure = null;
+    this.entries = entries;
   }
 
   public BatchReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!doesFileExists(file)) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    String entryName = FileStructure.metadataEntryName();
+    if (!entries.exists(entryName)) {
+      throw new IllegalStateException("Metadata file is missing in analysis report: " + entryName);
     }
-    return ProtobufUtil.readFile(file, BatchReport.Metadata.PARSER);
+    return read(entryName, BatchReport.Metadata.PARSER);
   }
 
   public List<BatchReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (doesFileExists(file)) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.MEASURES, componentRef);
+    if (entries.exists(entryName)) {
       // all the measures are loaded in memory
-      BatchReport.Measures measures = ProtobufUtil.readFile(file, BatchReport.Measures.PARSER);
+      BatchReport.Measures measures = read(entryName, BatchReport.Measures.PARSER);
       return measures.getMeasureList();
     }
     return Collections.emptyList();
@@ -56,92 +72,150 @@ public class BatchReportReader {
 
   @CheckForNull
   public BatchReport.Scm readComponentScm(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SCM, componentRef);
-    if (doesFileExists(file)) {
-      return ProtobufUtil.readFile(file, BatchReport.Scm.PARSER);
+    String entryName = FileStructure.entryName(FileStructure.Domain.SCM, componentRef);
+    if (entries.exists(entryName)) {
+      return read(entryName, BatchReport.Scm.PARSER);
     }
     return null;
   }
 
   public BatchReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!doesFileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    String entryName = FileStructure.entryName(FileStructure.Domain.COMPONENT, componentRef);
+    if (!entries.exists(entryName)) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + entryName);
     }
-    return ProtobufUtil.readFile(file, BatchReport.Component.PARSER);
+    return read(entryName, BatchReport.Component.PARSER);
   }
 
   public List<BatchReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (doesFileExists(file)) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.ISSUES, componentRef);
+    if (entries.exists(entryName)) {
       // all the issues are loaded in memory
-      BatchReport.Issues issues = ProtobufUtil.readFile(file, BatchReport.Issues.PARSER);
+      BatchReport.Issues issues = read(entryName, BatchReport.Issues.PARSER);
       return issues.getIssueList();
     }
     return Collections.emptyList();
   }
 
   public Issues readDeletedComponentIssues(int deletedComponentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES_ON_DELETED, deletedComponentRef);
-    if (!doesFileExists(file)) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.ISSUES_ON_DELETED, deletedComponentRef);
+    if (!entries.exists(entryName)) {
       throw new IllegalStateException("Unable to find report for deleted component #" + deletedComponentRef);
     }
     // all the issues are loaded in memory
-    return ProtobufUtil.readFile(file, Issues.PARSER);
+    return read(entryName, Issues.PARSER);
   }
 
   public List<BatchReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (doesFileExists(file)) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.DUPLICATIONS, componentRef);
+    if (entries.exists(entryName)) {
       // all the duplications are loaded in memory
-      BatchReport.Duplications duplications = ProtobufUtil.readFile(file, BatchReport.Duplications.PARSER);
+      BatchReport.Duplications duplications = read(entryName, BatchReport.Duplications.PARSER);
       return duplications.getDuplicationList();
     }
     return Collections.emptyList();
   }
 
   public List<BatchReport.Symbols.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (doesFileExists(file)) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.SYMBOLS, componentRef);
+    if (entries.exists(entryName)) {
       // all the symbols are loaded in memory
-      BatchReport.Symbols symbols = ProtobufUtil.readFile(file, BatchReport.Symbols.PARSER);
+      BatchReport.Symbols symbols = read(entryName, BatchReport.Symbols.PARSER);
       return symbols.getSymbolList();
     }
     return Collections.emptyList();
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTING, componentRef);
-    return file.exists();
+    return entries.exists(FileStructure.entryName(FileStructure.Domain.SYNTAX_HIGHLIGHTING, componentRef));
   }
 
   public List<BatchReport.SyntaxHighlighting.HighlightingRule> readComponentSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTING, componentRef);
-    if (file.exists() && file.isFile()) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.SYNTAX_HIGHLIGHTING, componentRef);
+    if (entries.exists(entryName)) {
       // all the highlighting are loaded in memory
-      BatchReport.SyntaxHighlighting syntaxHighlighting = ProtobufUtil.readFile(file, BatchReport.SyntaxHighlighting.PARSER);
+      BatchReport.SyntaxHighlighting syntaxHighlighting = read(entryName, BatchReport.SyntaxHighlighting.PARSER);
       return syntaxHighlighting.getHighlightingRuleList();
     }
     return Collections.emptyList();
   }
 
+  /**
+   * Only available when the report is extracted in a directory. See {@link #openFileCoverage(int)}.
+   */
   @CheckForNull
   public File readFileCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE, fileRef);
+    File file = fileStructure().fileFor(FileStructure.Domain.COVERAGE, fileRef);
     if (doesFileExists(file)) {
       return file;
     }
     return null;
   }
 
+  /**
+   * Stream of delimited {@link BatchReport.Coverage} messages. It must be closed by caller.
+   *
+   * @return null if the file has no coverage
+   */
+  @CheckForNull
+  public InputStream openFileCoverage(int fileRef) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.COVERAGE, fileRef);
+    if (entries.exists(entryName)) {
+      return open(entryName);
+    }
+    return null;
+  }
+
+  /**
+   * Only available when the report is extracted in a directory. See {@link #openFileSource(int)}.
+   */
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
+    File file = fileStructure().fileFor(FileStructure.Domain.SOURCE, fileRef);
     if (!doesFileExists(file)) {
       throw new IllegalStateException("Unable to find source for file #" + fileRef + ". File does not exist: " + file);
     }
     return file;
   }
 
+  /**
+   * Stream of the source code of a file. It must be closed by caller.
+   */
+  public InputStream openFileSource(int fileRef) {
+    String entryName = FileStructure.entryName(FileStructure.Domain.SOURCE, fileRef);
+    if (!entries.exists(entryName)) {
+      throw new IllegalStateException("Unable to find source for file #" + fileRef + ". File does not exist: " + entryName);
+    }
+    return open(entryName);
+  }
+
+  @Override
+  public void close() throws IOException {
+    entries.close();
+  }
+
+  private <T extends Message> T read(String entryName, Parser<T> parser) {
+    try (InputStream input = entries.open(entryName)) {
+      return parser.parseFrom(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read file: " + entryName, e);
+    }
+  }
+
+  private InputStream open(String entryName) {
+    try {
+      return entries.open(entryName);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to open file: " + entryName, e);
+    }
+  }
+
+  private FileStructure fileStructure() {
+    if (fileStructure == null) {
+      throw new IllegalStateException("Analysis report is not extracted in a directory");
+    }
+    return fileStructure;
+  }
+
   private boolean doesFileExists(File file) {
     return file.exists() && file.isFile();
   }
@@ -23,6 +23,11 @@ import org.sonar.batch.protocol.ProtobufUtil;
 
 import java.io.File;
 
+/**
+ * Writes the files of the analysis report. Each component has its own file per domain
+ * (see {@link FileStructure}), so a writer can be shared by threads that write different
+ * components or domains.
+ */
 public class BatchReportWriter {
 
   private final FileStructure fileStructure;
@@ -0,0 +1,53 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Entries of a report extracted in a directory, one file per entry
+ */
+class DirectoryReportEntries implements ReportEntries {
+
+  private final File dir;
+
+  DirectoryReportEntries(File dir) {
+    this.dir = dir;
+  }
+
+  @Override
+  public boolean exists(String entryName) {
+    return new File(dir, entryName).isFile();
+  }
+
+  @Override
+  public InputStream open(String entryName) throws IOException {
+    return new BufferedInputStream(new FileInputStream(new File(dir, entryName)));
+  }
+
+  @Override
+  public void close() {
+    // nothing to do
+  }
+}
@@ -58,11 +58,25 @@ public class FileStructure {
   }
 
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, metadataEntryName());
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
+    return new File(dir, entryName(domain, componentRef));
+  }
+
+  /**
+   * Name of the metadata file, relative to the root of the report
+   */
+  public static String metadataEntryName() {
+    return "metadata.pb";
+  }
+
+  /**
+   * Name of the file of a component, relative to the root of the report
+   */
+  public static String entryName(Domain domain, int componentRef) {
+    return domain.filePrefix + componentRef + domain.fileSuffix;
   }
 
 }
@@ -0,0 +1,43 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Read-only access to the entries of an analysis report, whatever the storage: the directory
+ * written by batch (see {@link FileStructure}) or the zip file submitted to server.
+ * Entries are identified by their name relative to the root of the report, for example
+ * {@link FileStructure#entryName(FileStructure.Domain, int)}.
+ */
+public interface ReportEntries extends Closeable {
+
+  boolean exists(String entryName);
+
+  /**
+   * Returns a new buffered stream on the entry. It must be closed by caller.
+   *
+   * @throws java.io.FileNotFoundException if the entry does not exist
+   */
+  InputStream open(String entryName) throws IOException;
+
+}
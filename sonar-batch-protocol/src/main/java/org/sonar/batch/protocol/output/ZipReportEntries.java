@@ -0,0 +1,70 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Entries read straight from the zip file of a report, without extracting it. The central
+ * directory of the zip, loaded once when opening the file, is the table of offsets of the entries, so
+ * reaching the file of a given domain and component is a lookup followed by a seek.
+ * <p/>
+ * Entries can be read concurrently.
+ */
+public class ZipReportEntries implements ReportEntries {
+
+  private final File zip;
+  private final ZipFile zipFile;
+
+  public ZipReportEntries(File zip) {
+    this.zip = zip;
+    try {
+      this.zipFile = new ZipFile(zip);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open analysis report " + zip, e);
+    }
+  }
+
+  @Override
+  public boolean exists(String entryName) {
+    ZipEntry entry = zipFile.getEntry(entryName);
+    return entry != null && !entry.isDirectory();
+  }
+
+  @Override
+  public InputStream open(String entryName) throws IOException {
+    ZipEntry entry = zipFile.getEntry(entryName);
+    if (entry == null || entry.isDirectory()) {
+      throw new FileNotFoundException(String.format("Entry %s does not exist in %s", entryName, zip));
+    }
+    return new BufferedInputStream(zipFile.getInputStream(entry));
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+}
@@ -28,8 +28,11 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.batch.protocol.Constants;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -70,6 +73,35 @@ public class BatchReportReaderTest {
     assertThat(sut.readComponentScm(1).getChangeset(0).getDate()).isEqualTo(123_456_789L);
   }
 
+  @Test
+  public void read_report_from_zip_without_extracting_it() throws Exception {
+    File dir = temp.newFolder();
+    initFiles(dir);
+    File zip = zip(dir);
+
+    try (BatchReportReader zipReader = new BatchReportReader(new ZipReportEntries(zip))) {
+      assertThat(zipReader.readMetadata().getAnalysisDate()).isEqualTo(15000000L);
+      assertThat(zipReader.readComponentIssues(1)).hasSize(1);
+      assertThat(zipReader.readComponentIssues(200)).isEmpty();
+      assertThat(zipReader.readComponent(1).getUuid()).isEqualTo("UUID_A");
+      assertThat(zipReader.readDeletedComponentIssues(1).getIssueList()).hasSize(1);
+      assertThat(zipReader.readComponentMeasures(1).get(0).getStringValue()).isEqualTo("value_a");
+      assertThat(zipReader.readComponentScm(1).getChangesetList()).hasSize(1);
+      assertThat(zipReader.readComponentScm(2)).isNull();
+      assertThat(zipReader.openFileCoverage(1)).isNull();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void file_of_zip_entry_is_not_available() throws Exception {
+    File dir = temp.newFolder();
+    initFiles(dir);
+
+    try (BatchReportReader zipReader = new BatchReportReader(new ZipReportEntries(zip(dir)))) {
+      zipReader.readFileCoverage(1);
+    }
+  }
+
   @Test
   public void read_duplications() throws Exception {
     File dir = temp.newFolder();
@@ -217,6 +249,17 @@ public class BatchReportReaderTest {
     }
   }
 
+  @Test
+  public void open_coverage() throws Exception {
+    File dir = temp.newFolder();
+    BatchReportWriter writer = new BatchReportWriter(dir);
+    writer.writeFileCoverage(1, Arrays.asList(BatchReport.Coverage.newBuilder().setLine(1).build()));
+
+    try (InputStream inputStream = new BatchReportReader(dir).openFileCoverage(1)) {
+      assertThat(BatchReport.Coverage.PARSER.parseDelimitedFrom(inputStream).getLine()).isEqualTo(1);
+    }
+  }
+
   @Test
   public void read_source_lines() throws Exception {
     File dir = temp.newFolder();
@@ -286,6 +329,18 @@ public class BatchReportReaderTest {
     assertThat(sut.readComponentIssues(666)).isEmpty();
   }
 
+  private File zip(File dir) throws Exception {
+    File zip = temp.newFile();
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (File file : dir.listFiles()) {
+        out.putNextEntry(new ZipEntry(file.getName()));
+        FileUtils.copyFile(file, out);
+        out.closeEntry();
+      }
+    }
+    return zip;
+  }
+
   private void initFiles(File dir) {
     BatchReportWriter writer = new BatchReportWriter(dir);
 
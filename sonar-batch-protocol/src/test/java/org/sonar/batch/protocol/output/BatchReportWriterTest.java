@@ -29,6 +29,9 @@ import org.sonar.batch.protocol.output.BatchReport.Range;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -320,4 +323,38 @@ public class BatchReportWriterTest {
     assertThat(writer.hasComponentData(FileStructure.Domain.COVERAGE, 1)).isTrue();
   }
 
+  @Test
+  public void write_different_domains_concurrently() throws Exception {
+    File dir = temp.newFolder();
+    final BatchReportWriter writer = new BatchReportWriter(dir);
+    final int components = 100;
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<?> componentsWriting = executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        for (int ref = 1; ref <= components; ref++) {
+          writer.writeComponent(BatchReport.Component.newBuilder().setRef(ref).build());
+        }
+      }
+    });
+    Future<?> measuresWriting = executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        for (int ref = 1; ref <= components; ref++) {
+          writer.writeComponentMeasures(ref, Arrays.asList(BatchReport.Measure.newBuilder().setMetricKey("ncloc").setIntValue(ref).build()));
+        }
+      }
+    });
+    componentsWriting.get();
+    measuresWriting.get();
+    executor.shutdown();
+
+    BatchReportReader reader = new BatchReportReader(dir);
+    for (int ref = 1; ref <= components; ref++) {
+      assertThat(reader.readComponent(ref).getRef()).isEqualTo(ref);
+      assertThat(reader.readComponentMeasures(ref).get(0).getIntValue()).isEqualTo(ref);
+    }
+  }
+
 }
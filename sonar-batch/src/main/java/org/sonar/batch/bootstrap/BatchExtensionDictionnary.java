@@ -29,7 +29,6 @@ import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.batch.DependsUpon;
 import org.sonar.api.batch.Phase;
 import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.platform.ComponentContainer;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.AnnotationUtils;
@@ -37,6 +36,7 @@ import org.sonar.api.utils.dag.DirectAcyclicGraph;
 import org.sonar.batch.scan.SensorWrapper;
 import org.sonar.batch.sensor.AnalyzerOptimizer;
 import org.sonar.batch.sensor.DefaultSensorContext;
+import org.sonar.batch.sensor.IncrementalAnalysis;
 
 import javax.annotation.Nullable;
 
@@ -55,13 +55,16 @@ import java.util.List;
 public class BatchExtensionDictionnary {
 
   private final ComponentContainer componentContainer;
-  private final SensorContext context;
+  private final DefaultSensorContext context;
   private final AnalyzerOptimizer analyzerOptimizer;
+  private final IncrementalAnalysis incrementalAnalysis;
 
-  public BatchExtensionDictionnary(ComponentContainer componentContainer, DefaultSensorContext context, AnalyzerOptimizer analyzerOptimizer) {
+  public BatchExtensionDictionnary(ComponentContainer componentContainer, DefaultSensorContext context, AnalyzerOptimizer analyzerOptimizer,
+    IncrementalAnalysis incrementalAnalysis) {
     this.componentContainer = componentContainer;
     this.context = context;
     this.analyzerOptimizer = analyzerOptimizer;
+    this.incrementalAnalysis = incrementalAnalysis;
   }
 
   public <T> Collection<T> select(Class<T> type, @Nullable Project project, boolean sort, @Nullable ExtensionMatcher matcher) {
@@ -90,7 +93,7 @@ public class BatchExtensionDictionnary {
     List<T> result = Lists.newArrayList();
     for (Object extension : getExtensions(type)) {
       if (org.sonar.api.batch.Sensor.class.equals(type) && extension instanceof Sensor) {
-        extension = new SensorWrapper((Sensor) extension, context, analyzerOptimizer);
+        extension = new SensorWrapper((Sensor) extension, context, analyzerOptimizer, incrementalAnalysis);
       }
       if (shouldKeep(type, extension, project, matcher)) {
         result.add((T) extension);
@@ -99,7 +102,7 @@ public class BatchExtensionDictionnary {
     if (org.sonar.api.batch.Sensor.class.equals(type)) {
       // Retrieve new Sensors and wrap then in SensorWrapper
       for (Object extension : getExtensions(Sensor.class)) {
-        extension = new SensorWrapper((Sensor) extension, context, analyzerOptimizer);
+        extension = new SensorWrapper((Sensor) extension, context, analyzerOptimizer, incrementalAnalysis);
         if (shouldKeep(type, extension, project, matcher)) {
           result.add((T) extension);
         }
@@ -22,7 +22,6 @@ package org.sonar.batch.cpd;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
@@ -41,6 +40,7 @@ import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.cpd.index.IndexFactory;
 import org.sonar.batch.cpd.index.SonarDuplicationsIndex;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.BlockChunker;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
@@ -55,10 +55,6 @@ import org.sonar.duplications.token.TokenChunker;
 
 import javax.annotation.Nullable;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -90,16 +86,18 @@ public class JavaCpdEngine extends CpdEngine {
   private final FileSystem fs;
   private final Settings settings;
   private final Project project;
+  private final FileContentCache fileContentCache;
 
-  public JavaCpdEngine(@Nullable Project project, IndexFactory indexFactory, FileSystem fs, Settings settings) {
+  public JavaCpdEngine(@Nullable Project project, IndexFactory indexFactory, FileSystem fs, Settings settings, FileContentCache fileContentCache) {
     this.project = project;
     this.indexFactory = indexFactory;
     this.fs = fs;
     this.settings = settings;
+    this.fileContentCache = fileContentCache;
   }
 
-  public JavaCpdEngine(IndexFactory indexFactory, FileSystem fs, Settings settings) {
-    this(null, indexFactory, fs, settings);
+  public JavaCpdEngine(IndexFactory indexFactory, FileSystem fs, Settings settings, FileContentCache fileContentCache) {
+    this(null, indexFactory, fs, settings, fileContentCache);
   }
 
   @Override
@@ -135,17 +133,7 @@ public class JavaCpdEngine extends CpdEngine {
       LOG.debug("Populating index from {}", inputFile);
       String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
 
-      List<Statement> statements;
-
-      Reader reader = null;
-      try {
-        reader = new InputStreamReader(new FileInputStream(inputFile.file()), fs.encoding());
-        statements = statementChunker.chunk(tokenChunker.chunk(reader));
-      } catch (FileNotFoundException e) {
-        throw new SonarException("Cannot find file " + inputFile.file(), e);
-      } finally {
-        IOUtils.closeQuietly(reader);
-      }
+      List<Statement> statements = statementChunker.chunk(tokenChunker.chunk(fileContentCache.content(inputFile.file(), fs.encoding())));
 
       List<Block> blocks = blockChunker.chunk(resourceEffectiveKey, statements);
       index.insert(inputFile, blocks);
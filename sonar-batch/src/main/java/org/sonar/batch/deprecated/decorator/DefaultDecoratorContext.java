@@ -22,6 +22,7 @@ package org.sonar.batch.deprecated.decorator;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.batch.sensor.duplication.internal.DefaultDuplication;
@@ -55,6 +56,7 @@ public class DefaultDecoratorContext implements DecoratorContext {
   private MetricFinder metricFinder;
   private final DuplicationCache duplicationCache;
   private final CoverageExclusions coverageFilter;
+  private Object indexLock = this;
 
   public DefaultDecoratorContext(Resource resource,
     SonarIndex index,
@@ -69,6 +71,15 @@ public class DefaultDecoratorContext implements DecoratorContext {
     this.coverageFilter = coverageFilter;
   }
 
+  /**
+   * Lock held when reading or writing {@link SonarIndex}, which is not thread-safe. It must be shared
+   * by all the contexts of resources decorated concurrently.
+   */
+  public DefaultDecoratorContext setIndexLock(Object indexLock) {
+    this.indexLock = indexLock;
+    return this;
+  }
+
   public void init() {
     Iterable<Measure> unfiltered = measureCache.byResource(resource);
     for (Measure measure : unfiltered) {
@@ -197,22 +208,33 @@ public class DefaultDecoratorContext implements DecoratorContext {
   @Override
   public Dependency saveDependency(Dependency dependency) {
     checkReadOnly("addDependency");
-    return sonarIndex.addDependency(dependency);
+    synchronized (indexLock) {
+      return sonarIndex.addDependency(dependency);
+    }
   }
 
+  /**
+   * Dependencies are copied, so that they can be iterated while the index is updated
+   */
   @Override
   public Set<Dependency> getDependencies() {
-    return sonarIndex.getDependencies();
+    synchronized (indexLock) {
+      return Sets.newLinkedHashSet(sonarIndex.getDependencies());
+    }
   }
 
   @Override
   public Collection<Dependency> getIncomingDependencies() {
-    return sonarIndex.getIncomingEdges(resource);
+    synchronized (indexLock) {
+      return Lists.newArrayList(sonarIndex.getIncomingEdges(resource));
+    }
   }
 
   @Override
   public Collection<Dependency> getOutgoingDependencies() {
-    return sonarIndex.getOutgoingEdges(resource);
+    synchronized (indexLock) {
+      return Lists.newArrayList(sonarIndex.getOutgoingEdges(resource));
+    }
   }
 
   @Override
@@ -220,7 +242,9 @@ public class DefaultDecoratorContext implements DecoratorContext {
     if (violation.getResource() == null) {
       violation.setResource(resource);
     }
-    sonarIndex.addViolation(violation, force);
+    synchronized (indexLock) {
+      sonarIndex.addViolation(violation, force);
+    }
     return this;
   }
 
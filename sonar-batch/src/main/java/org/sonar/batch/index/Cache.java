@@ -23,6 +23,7 @@ import com.google.common.collect.Sets;
 import com.persistit.Exchange;
 import com.persistit.Key;
 import com.persistit.KeyFilter;
+import com.persistit.Value;
 import com.persistit.exception.PersistitException;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
@@ -34,40 +35,49 @@ import java.util.Set;
 
 /**
  * <p>
- * This cache is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This cache is thread-safe. A {@link com.persistit.Exchange} can't be shared between threads, so
+ * each thread gets its own exchange on the Persistit tree of the cache. Concurrent accesses
+ * to the tree are handled by Persistit.
+ * </p>
+ * <p>
+ * Iterators returned by {@link #values()} and {@link #entries()} must not be shared between threads.
  * </p>
  */
 public class Cache<V> {
 
   private final String name;
-  private final Exchange exchange;
+  private final ThreadLocal<Exchange> exchanges;
 
-  Cache(String name, Exchange exchange) {
+  Cache(String name, final Exchange exchange) {
     this.name = name;
-    this.exchange = exchange;
+    this.exchanges = new ThreadLocal<Exchange>() {
+      @Override
+      protected Exchange initialValue() {
+        // the template exchange is never used directly, so its key is not modified concurrently
+        Exchange threadExchange = new Exchange(exchange);
+        threadExchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+        return threadExchange;
+      }
+    };
   }
 
   public Cache<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(resetKey(key), value);
   }
 
   public Cache<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
+    return doPut(resetKey(firstKey, secondKey), value);
   }
 
   public Cache<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
+    return doPut(resetKey(firstKey, secondKey, thirdKey), value);
   }
 
   public Cache<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(resetKey(key), value);
   }
 
-  private Cache<V> doPut(V value) {
+  private Cache<V> doPut(Exchange exchange, V value) {
     try {
       exchange.getValue().put(value);
       exchange.store();
@@ -81,8 +91,7 @@ public class Cache<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   public V get(Object key) {
-    resetKey(key);
-    return doGet();
+    return doGet(resetKey(key));
   }
 
   /**
@@ -90,8 +99,7 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+    return doGet(resetKey(firstKey, secondKey));
   }
 
   /**
@@ -99,8 +107,7 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+    return doGet(resetKey(firstKey, secondKey, thirdKey));
   }
 
   /**
@@ -108,13 +115,12 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
+    return doGet(resetKey(key));
   }
 
   @SuppressWarnings("unchecked")
   @CheckForNull
-  private V doGet() {
+  private V doGet(Exchange exchange) {
     try {
       exchange.fetch();
       if (!exchange.getValue().isDefined()) {
@@ -128,26 +134,22 @@ public class Cache<V> {
   }
 
   public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(resetKey(key));
   }
 
   public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+    return doContainsKey(resetKey(firstKey, secondKey));
   }
 
   public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+    return doContainsKey(resetKey(firstKey, secondKey, thirdKey));
   }
 
   public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(resetKey(key));
   }
 
-  private boolean doContainsKey() {
+  private boolean doContainsKey(Exchange exchange) {
     try {
       exchange.fetch();
       return exchange.isValueDefined();
@@ -158,26 +160,22 @@ public class Cache<V> {
   }
 
   public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(resetKey(key));
   }
 
   public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
+    return doRemove(resetKey(firstKey, secondKey));
   }
 
   public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+    return doRemove(resetKey(firstKey, secondKey, thirdKey));
   }
 
   public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(resetKey(key));
   }
 
-  private boolean doRemove() {
+  private boolean doRemove(Exchange exchange) {
     try {
       return exchange.remove();
     } catch (Exception e) {
@@ -192,26 +190,22 @@ public class Cache<V> {
    * @param group The group name.
    */
   public Cache<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
+    return doClear(resetKey(key));
   }
 
   public Cache<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+    return doClear(resetKey(firstKey, secondKey));
   }
 
   public Cache<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+    return doClear(resetKey(firstKey, secondKey, thirdKey));
   }
 
   public Cache<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
+    return doClear(resetKey(key));
   }
 
-  private Cache<V> doClear() {
+  private Cache<V> doClear(Exchange exchange) {
     try {
       Key to = new Key(exchange.getKey());
       to.append(Key.AFTER);
@@ -227,6 +221,7 @@ public class Cache<V> {
    */
   public void clear() {
     try {
+      Exchange exchange = exchange();
       exchange.clear();
       exchange.removeAll();
     } catch (Exception e) {
@@ -245,6 +240,7 @@ public class Cache<V> {
   public Set keySet(Object key) {
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
+      Exchange exchange = exchange();
       exchange.clear();
       Exchange iteratorExchange = new Exchange(exchange);
       iteratorExchange.append(key);
@@ -262,6 +258,7 @@ public class Cache<V> {
   public Set keySet(Object firstKey, Object secondKey) {
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
+      Exchange exchange = exchange();
       exchange.clear();
       Exchange iteratorExchange = new Exchange(exchange);
       iteratorExchange.append(firstKey);
@@ -284,6 +281,7 @@ public class Cache<V> {
   public Set<Object> keySet() {
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
+      Exchange exchange = exchange();
       exchange.clear();
       Exchange iteratorExchange = new Exchange(exchange);
       iteratorExchange.append(Key.BEFORE);
@@ -300,51 +298,66 @@ public class Cache<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<V>(exchange, firstKey, secondKey);
+    return new ValueIterable<V>(this, firstKey, secondKey);
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<V>(exchange, firstKey);
+    return new ValueIterable<V>(this, firstKey);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<V>(exchange);
+    return new ValueIterable<V>(this);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<V>(exchange);
+    return new EntryIterable<V>(this);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<V>(exchange, firstKey);
+    return new EntryIterable<V>(this, firstKey);
   }
 
-  private void resetKey(Object key) {
+  private Exchange resetKey(Object key) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(key);
+    return exchange;
   }
 
-  private void resetKey(Object first, Object second) {
+  private Exchange resetKey(Object first, Object second) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second);
+    return exchange;
   }
 
-  private void resetKey(Object first, Object second, Object third) {
+  private Exchange resetKey(Object first, Object second, Object third) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second).append(third);
+    return exchange;
   }
 
-  private void resetKey(Object[] keys) {
+  private Exchange resetKey(Object[] keys) {
+    Exchange exchange = exchange();
     exchange.clear();
     for (Object o : keys) {
       exchange.append(o);
     }
+    return exchange;
+  }
+
+  /**
+   * Exchange of the current thread
+   */
+  Exchange exchange() {
+    return exchanges.get();
   }
 
   //
@@ -352,16 +365,17 @@ public class Cache<V> {
   //
 
   private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
+    private final Cache<?> cache;
     private final Object[] keys;
 
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private ValueIterable(Cache<?> cache, Object... keys) {
+      this.cache = cache;
       this.keys = keys;
     }
 
     @Override
     public Iterator<T> iterator() {
+      Exchange originExchange = cache.exchange();
       originExchange.clear();
       KeyFilter filter = new KeyFilter();
       for (Object key : keys) {
@@ -413,16 +427,17 @@ public class Cache<V> {
   }
 
   private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
+    private final Cache<?> cache;
     private final Object[] keys;
 
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
+    private EntryIterable(Cache<?> cache, Object... keys) {
+      this.cache = cache;
       this.keys = keys;
     }
 
     @Override
     public Iterator<Entry<T>> iterator() {
+      Exchange originExchange = cache.exchange();
       originExchange.clear();
       KeyFilter filter = new KeyFilter();
       for (Object key : keys) {
@@ -30,30 +30,52 @@ import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.batch.bootstrap.BootstrapProperties;
 
 import java.io.File;
 import java.util.Properties;
 import java.util.Set;
 
 /**
- * Factory of caches
+ * Factory of caches. All the caches share the same Persistit buffer pool, whose size
+ * depends on the maximum heap size and can be overridden by the bootstrap property {@link #MEMORY_PROPERTY}.
  *
  * @since 3.6
  */
 public class Caches implements BatchComponent, Startable {
 
+  /**
+   * Size in Mb of the Persistit buffer pool. By default it is a ratio of the maximum heap size.
+   */
+  public static final String MEMORY_PROPERTY = "sonar.batch.cache.memory";
+
+  /**
+   * Set to false to suspend the copy of journal to volumes. Data of caches is stored in a temporary
+   * volume, which is never journaled. Only the system volume, which contains metadata like the
+   * class index, is written to journal.
+   */
+  public static final String JOURNAL_PROPERTY = "sonar.batch.cache.journal";
+
+  static final int PAGE_SIZE = 8192;
+  static final long MIN_MEMORY = 4L * 1024 * 1024;
+  static final long MAX_DEFAULT_MEMORY = 128L * 1024 * 1024;
+  private static final int DEFAULT_MEMORY_RATIO_PERCENT = 5;
+
   private final Set<String> cacheNames = Sets.newHashSet();
   private File tempDir;
   private Persistit persistit;
   private Volume volume;
   private final TempFolder tempFolder;
+  private final BootstrapProperties bootstrapProps;
 
-  public Caches(TempFolder tempFolder) {
+  public Caches(TempFolder tempFolder, BootstrapProperties bootstrapProps) {
     this.tempFolder = tempFolder;
+    this.bootstrapProps = bootstrapProps;
     initPersistit();
   }
 
@@ -66,10 +88,13 @@ public class Caches implements BatchComponent, Startable {
       props.setProperty("datapath", tempDir.getAbsolutePath());
       props.setProperty("logpath", "${datapath}/log");
       props.setProperty("logfile", "${logpath}/persistit_${timestamp}.log");
-      props.setProperty("buffer.count.8192", "10");
+      props.setProperty("buffer.count." + PAGE_SIZE, String.valueOf(bufferCount()));
       props.setProperty("journalpath", "${datapath}/journal");
+      if ("false".equals(bootstrapProps.property(JOURNAL_PROPERTY))) {
+        props.setProperty("appendonly", "true");
+      }
       props.setProperty("tmpvoldir", "${datapath}");
-      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:8192,initialPages:10,extensionPages:100,maximumPages:25000");
+      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:" + PAGE_SIZE + ",initialPages:10,extensionPages:100,maximumPages:25000");
       persistit.setProperties(props);
       persistit.initialize();
       volume = persistit.createTemporaryVolume();
@@ -79,12 +104,23 @@ public class Caches implements BatchComponent, Startable {
     }
   }
 
+  int bufferCount() {
+    long memory;
+    String memoryMb = bootstrapProps.property(MEMORY_PROPERTY);
+    if (StringUtils.isNotBlank(memoryMb)) {
+      memory = Long.parseLong(memoryMb.trim()) * 1024L * 1024L;
+    } else {
+      memory = Math.min(MAX_DEFAULT_MEMORY, Runtime.getRuntime().maxMemory() / 100 * DEFAULT_MEMORY_RATIO_PERCENT);
+    }
+    return (int) (Math.max(MIN_MEMORY, memory) / PAGE_SIZE);
+  }
+
   public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
     CoderManager cm = persistit.getCoderManager();
     cm.registerValueCoder(clazz, coder);
   }
 
-  public <V> Cache<V> createCache(String cacheName) {
+  public synchronized <V> Cache<V> createCache(String cacheName) {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     Preconditions.checkState(!cacheNames.contains(cacheName), "Cache is already created: " + cacheName);
     try {
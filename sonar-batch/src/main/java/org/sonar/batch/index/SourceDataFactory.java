@@ -20,7 +20,7 @@
 package org.sonar.batch.index;
 
 import com.google.common.base.CharMatcher;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
@@ -38,6 +38,7 @@ import org.sonar.batch.protocol.output.BatchReport.SyntaxHighlighting.Highlighti
 import org.sonar.batch.protocol.output.*;
 import org.sonar.batch.report.BatchReportUtils;
 import org.sonar.batch.report.ReportPublisher;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.source.db.FileSourceDb;
@@ -59,27 +60,34 @@ public class SourceDataFactory implements BatchComponent {
   private final ReportPublisher reportPublisher;
 
   private final ResourceCache resourceCache;
+  private final FileContentCache fileContentCache;
 
-  public SourceDataFactory(MeasureCache measureCache, DuplicationCache duplicationCache, ReportPublisher reportPublisher, ResourceCache resourceCache) {
+  public SourceDataFactory(MeasureCache measureCache, DuplicationCache duplicationCache, ReportPublisher reportPublisher, ResourceCache resourceCache,
+    FileContentCache fileContentCache) {
     this.measureCache = measureCache;
     this.duplicationCache = duplicationCache;
     this.reportPublisher = reportPublisher;
     this.resourceCache = resourceCache;
+    this.fileContentCache = fileContentCache;
   }
 
   public byte[] consolidateData(DefaultInputFile inputFile) throws IOException {
+    return FileSourceDto.encodeData(consolidate(inputFile));
+  }
+
+  public FileSourceDb.Data consolidate(DefaultInputFile inputFile) throws IOException {
     FileSourceDb.Data.Builder dataBuilder = createForSource(inputFile);
     applyLineMeasures(inputFile, dataBuilder);
     applyScm(inputFile, dataBuilder);
     applyDuplications(inputFile.key(), dataBuilder);
     applyHighlighting(inputFile, dataBuilder);
     applySymbolReferences(inputFile, dataBuilder);
-    return FileSourceDto.encodeData(dataBuilder.build());
+    return dataBuilder.build();
   }
 
   FileSourceDb.Data.Builder createForSource(DefaultInputFile inputFile) throws IOException {
     FileSourceDb.Data.Builder result = FileSourceDb.Data.newBuilder();
-    List<String> lines = FileUtils.readLines(inputFile.file(), inputFile.charset());
+    List<String> lines = IOUtils.readLines(fileContentCache.reader(inputFile));
     // Missing empty last line
     if (lines.size() == inputFile.lines() - 1) {
       lines.add("");
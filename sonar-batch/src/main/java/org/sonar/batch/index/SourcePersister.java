@@ -19,9 +19,6 @@
  */
 package org.sonar.batch.index;
 
-import org.sonar.api.batch.fs.internal.FileMetadata;
-import org.sonar.api.batch.fs.internal.FileMetadata.LineHashConsumer;
-
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.ibatis.session.ResultContext;
@@ -30,14 +27,17 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.ProjectTree;
+import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.batch.scan.filesystem.InputPathCache;
+import org.sonar.batch.sensor.IncrementalAnalysis;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.core.source.db.FileSourceMapper;
+import org.sonar.server.source.db.FileSourceDb;
 
 import javax.annotation.CheckForNull;
-import javax.annotation.Nullable;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -51,15 +51,22 @@ public class SourcePersister implements ScanPersister {
   private final ResourceCache resourceCache;
   private final InputPathCache inputPathCache;
   private final SourceDataFactory dataFactory;
+  private final FileContentCache fileContentCache;
+  private final IncrementalAnalysis incrementalAnalysis;
+  private final ProjectRepositories projectRepositories;
 
   public SourcePersister(InputPathCache inputPathCache, MyBatis mybatis, System2 system2,
-    ProjectTree projectTree, ResourceCache resourceCache, SourceDataFactory dataFactory) {
+    ProjectTree projectTree, ResourceCache resourceCache, SourceDataFactory dataFactory, FileContentCache fileContentCache,
+    IncrementalAnalysis incrementalAnalysis, ProjectRepositories projectRepositories) {
     this.inputPathCache = inputPathCache;
     this.mybatis = mybatis;
     this.system2 = system2;
     this.projectTree = projectTree;
     this.resourceCache = resourceCache;
     this.dataFactory = dataFactory;
+    this.fileContentCache = fileContentCache;
+    this.incrementalAnalysis = incrementalAnalysis;
+    this.projectRepositories = projectRepositories;
   }
 
   @Override
@@ -89,9 +96,13 @@ public class SourcePersister implements ScanPersister {
   private void persist(DbSession session, FileSourceMapper mapper, DefaultInputFile inputFile, Map<String, FileSourceDto> previousDtosByUuid) {
     String fileUuid = resourceCache.get(inputFile).resource().getUuid();
 
-    byte[] data = computeData(inputFile);
-    String dataHash = DigestUtils.md5Hex(data);
+    FileSourceDb.Data sourceData = computeData(inputFile);
     FileSourceDto previousDto = previousDtosByUuid.get(fileUuid);
+    if (previousDto != null && incrementalAnalysis.isCarriedForward(inputFile)) {
+      sourceData = carryForward(mapper, fileUuid, sourceData);
+    }
+    byte[] data = FileSourceDto.encodeData(sourceData);
+    String dataHash = DigestUtils.md5Hex(data);
     if (previousDto == null) {
       FileSourceDto dto = new FileSourceDto()
         .setProjectUuid(projectTree.getRootProject().getUuid())
@@ -100,6 +111,8 @@ public class SourcePersister implements ScanPersister {
         .setDataHash(dataHash)
         .setSrcHash(inputFile.hash())
         .setLineHashes(lineHashesAsMd5Hex(inputFile))
+        .setLineCount(sourceData.getLinesCount())
+        .setPreviousLineCount(insertedPreviousLineCount())
         .setCreatedAt(system2.now())
         .setUpdatedAt(0L);
       mapper.insert(dto);
@@ -109,13 +122,19 @@ public class SourcePersister implements ScanPersister {
       boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
       boolean srcHashUpdated = !inputFile.hash().equals(previousDto.getSrcHash());
       if (binaryDataUpdated || srcHashUpdated) {
+        Integer previousLineCount = previousDto.getUpdatedAt() == 0L ? previousDto.getPreviousLineCount() : previousDto.getLineCount();
         previousDto
           .setBinaryData(data)
           .setDataHash(dataHash)
           .setSrcHash(inputFile.hash())
-          .setLineHashes(lineHashesAsMd5Hex(inputFile));
+          .setLineHashes(lineHashesAsMd5Hex(inputFile))
+          .setLineCount(sourceData.getLinesCount());
         // Optimization only change updated at when updating binary data to avoid unecessary indexation by E/S
         if (binaryDataUpdated) {
+          // Lines greater than the new line count are deleted from index by computed document ids.
+          // The data of previous analysis was not indexed yet if updated at is still zero, so
+          // the line count known by the index is kept.
+          previousDto.setPreviousLineCount(previousLineCount);
           previousDto.setUpdatedAt(0L);
         }
         mapper.update(previousDto);
@@ -124,31 +143,70 @@ public class SourcePersister implements ScanPersister {
     }
   }
 
+  /**
+   * No lines are indexed yet for the files of a project analyzed for the first time. Otherwise the file may
+   * have been analyzed before and its source removed, for example when the file was deleted then restored
+   * with the same uuid, while its lines are still indexed. The count is then reset to unknown, so that
+   * lines are searched in index when deleting the stale ones.
+   */
+  @CheckForNull
+  private Integer insertedPreviousLineCount() {
+    return projectRepositories.lastAnalysisDate() == null ? Integer.valueOf(0) : null;
+  }
+
+  /**
+   * Highlighting and symbols of an unchanged file are kept from previous analysis when
+   * they were not computed during this analysis
+   */
+  private static FileSourceDb.Data carryForward(FileSourceMapper mapper, String fileUuid, FileSourceDb.Data sourceData) {
+    boolean missingHighlighting = true;
+    boolean missingSymbols = true;
+    for (FileSourceDb.Line line : sourceData.getLinesList()) {
+      missingHighlighting &= !line.hasHighlighting();
+      missingSymbols &= !line.hasSymbols();
+    }
+    if (!missingHighlighting && !missingSymbols) {
+      return sourceData;
+    }
+    FileSourceDb.Data previousData = mapper.select(fileUuid).getData();
+    if (previousData.getLinesCount() != sourceData.getLinesCount()) {
+      return sourceData;
+    }
+    FileSourceDb.Data.Builder builder = sourceData.toBuilder();
+    for (int i = 0; i < previousData.getLinesCount(); i++) {
+      FileSourceDb.Line previousLine = previousData.getLines(i);
+      FileSourceDb.Line.Builder lineBuilder = builder.getLinesBuilder(i);
+      if (missingHighlighting && previousLine.hasHighlighting()) {
+        lineBuilder.setHighlighting(previousLine.getHighlighting());
+      }
+      if (missingSymbols && previousLine.hasSymbols()) {
+        lineBuilder.setSymbols(previousLine.getSymbols());
+      }
+    }
+    return builder.build();
+  }
+
   @CheckForNull
   private String lineHashesAsMd5Hex(DefaultInputFile f) {
     if (f.lines() == 0) {
       return null;
     }
     // A md5 string is 32 char long + '\n' = 33
-    final StringBuilder result = new StringBuilder(f.lines() * (32 + 1));
-
-    FileMetadata.computeLineHashesForIssueTracking(f, new LineHashConsumer() {
-
-      @Override
-      public void consume(int lineIdx, @Nullable byte[] hash) {
-        if (lineIdx > 1) {
-          result.append("\n");
-        }
-        result.append(hash != null ? Hex.encodeHexString(hash) : "");
+    StringBuilder result = new StringBuilder(f.lines() * (32 + 1));
+    byte[][] hashes = fileContentCache.lineHashes(f);
+    for (int i = 0; i < hashes.length; i++) {
+      if (i > 0) {
+        result.append("\n");
       }
-    });
+      result.append(hashes[i] != null ? Hex.encodeHexString(hashes[i]) : "");
+    }
 
     return result.toString();
   }
 
-  private byte[] computeData(DefaultInputFile inputFile) {
+  private FileSourceDb.Data computeData(DefaultInputFile inputFile) {
     try {
-      return dataFactory.consolidateData(inputFile);
+      return dataFactory.consolidate(inputFile);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to read file " + inputFile, e);
     }
@@ -19,16 +19,12 @@
  */
 package org.sonar.batch.issue.tracking;
 
-import org.sonar.api.batch.fs.internal.FileMetadata;
-import org.sonar.api.batch.fs.internal.FileMetadata.LineHashConsumer;
-
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.ObjectUtils;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
-
-import javax.annotation.Nullable;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 
 import java.util.Collection;
 
@@ -55,16 +51,8 @@ public final class FileHashes {
     return new FileHashes(hashes, linesByHash);
   }
 
-  public static FileHashes create(DefaultInputFile f) {
-    final byte[][] hashes = new byte[f.lines()][];
-    FileMetadata.computeLineHashesForIssueTracking(f, new LineHashConsumer() {
-
-      @Override
-      public void consume(int lineIdx, @Nullable byte[] hash) {
-        hashes[lineIdx - 1] = hash;
-      }
-    });
-
+  public static FileHashes create(DefaultInputFile f, FileContentCache fileContentCache) {
+    byte[][] hashes = fileContentCache.lineHashes(f);
     int size = hashes.length;
     Multimap<String, Integer> linesByHash = LinkedHashMultimap.create();
     String[] hexHashes = new String[size];
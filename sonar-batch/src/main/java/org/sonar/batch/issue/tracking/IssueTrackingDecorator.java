@@ -49,12 +49,16 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.Duration;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.batch.issue.IssueCache;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.batch.scan.filesystem.InputPathCache;
+import org.sonar.batch.sensor.IncrementalAnalysis;
 import org.sonar.core.issue.IssueUpdater;
 import org.sonar.core.issue.db.IssueChangeDto;
 import org.sonar.core.issue.db.IssueDto;
 import org.sonar.core.issue.workflow.IssueWorkflow;
 
+import javax.annotation.Nullable;
+
 import java.util.Collection;
 
 @DependsUpon(DecoratorBarriers.ISSUES_ADDED)
@@ -76,6 +80,8 @@ public class IssueTrackingDecorator implements Decorator {
   private final RulesProfile rulesProfile;
   private final RuleFinder ruleFinder;
   private final InputPathCache inputPathCache;
+  private final FileContentCache fileContentCache;
+  private final IncrementalAnalysis incrementalAnalysis;
   private final Project project;
 
   public IssueTrackingDecorator(IssueCache issueCache, InitialOpenIssuesStack initialOpenIssues, IssueTracking tracking,
@@ -85,7 +91,7 @@ public class IssueTrackingDecorator implements Decorator {
     Project project,
     ResourcePerspectives perspectives,
     RulesProfile rulesProfile,
-    RuleFinder ruleFinder, InputPathCache inputPathCache) {
+    RuleFinder ruleFinder, InputPathCache inputPathCache, FileContentCache fileContentCache, IncrementalAnalysis incrementalAnalysis) {
     this.issueCache = issueCache;
     this.initialOpenIssues = initialOpenIssues;
     this.tracking = tracking;
@@ -95,6 +101,8 @@ public class IssueTrackingDecorator implements Decorator {
     this.updater = updater;
     this.project = project;
     this.inputPathCache = inputPathCache;
+    this.fileContentCache = fileContentCache;
+    this.incrementalAnalysis = incrementalAnalysis;
     this.changeContext = IssueChangeContext.createScan(project.getAnalysisDate());
     this.perspectives = perspectives;
     this.rulesProfile = rulesProfile;
@@ -127,19 +135,20 @@ public class IssueTrackingDecorator implements Decorator {
     Collection<ServerIssue> dbOpenIssues = initialOpenIssues.selectAndRemoveIssues(resource.getEffectiveKey());
 
     SourceHashHolder sourceHashHolder = null;
+    InputFile file = null;
     if (ResourceUtils.isFile(resource)) {
       File sonarFile = (File) resource;
-      InputFile file = inputPathCache.getFile(project.getEffectiveKey(), sonarFile.getPath());
+      file = inputPathCache.getFile(project.getEffectiveKey(), sonarFile.getPath());
       if (file == null) {
         throw new IllegalStateException("File " + resource + " was not found in InputPath cache");
       }
-      sourceHashHolder = new SourceHashHolder((DefaultInputFile) file, lastLineHashes);
+      sourceHashHolder = new SourceHashHolder((DefaultInputFile) file, lastLineHashes, fileContentCache);
     }
 
     IssueTrackingResult trackingResult = tracking.track(sourceHashHolder, dbOpenIssues, issues);
 
     // unmatched = issues that have been resolved + issues on disabled/removed rules + manual issues
-    addUnmatched(trackingResult.unmatched(), sourceHashHolder, issues);
+    addUnmatched(trackingResult.unmatched(), sourceHashHolder, file, issues);
 
     mergeMatched(trackingResult);
 
@@ -207,7 +216,7 @@ public class IssueTrackingDecorator implements Decorator {
     }
   }
 
-  private void addUnmatched(Collection<ServerIssue> unmatchedIssues, SourceHashHolder sourceHashHolder, Collection<DefaultIssue> issues) {
+  private void addUnmatched(Collection<ServerIssue> unmatchedIssues, SourceHashHolder sourceHashHolder, @Nullable InputFile file, Collection<DefaultIssue> issues) {
     for (ServerIssue unmatchedIssue : unmatchedIssues) {
       IssueDto unmatchedDto = ((ServerIssueFromDb) unmatchedIssue).getDto();
       DefaultIssue unmatched = unmatchedDto.toDefaultIssue();
@@ -215,6 +224,10 @@ public class IssueTrackingDecorator implements Decorator {
         relocateManualIssue(unmatched, unmatchedDto, sourceHashHolder);
       }
       updateUnmatchedIssue(unmatched, false /* manual issues can be kept open */);
+      if (!unmatched.isOnDisabledRule() && incrementalAnalysis.isCarriedForward(file, unmatched.ruleKey())) {
+        // file was not given to the sensor which raised the issue
+        unmatched.setEndOfLife(false);
+      }
       issues.add(unmatched);
     }
   }
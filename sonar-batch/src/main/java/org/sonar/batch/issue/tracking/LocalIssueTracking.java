@@ -25,6 +25,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.AnalysisMode;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.InputPath;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.rule.ActiveRule;
 import org.sonar.api.batch.rule.ActiveRules;
@@ -38,12 +40,15 @@ import org.sonar.batch.index.BatchResource;
 import org.sonar.batch.index.ResourceCache;
 import org.sonar.batch.issue.IssueCache;
 import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.batch.scan.filesystem.InputPathCache;
+import org.sonar.batch.sensor.IncrementalAnalysis;
 import org.sonar.core.component.ComponentKeys;
 import org.sonar.core.issue.IssueUpdater;
 import org.sonar.core.issue.workflow.IssueWorkflow;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -61,6 +66,8 @@ public class LocalIssueTracking implements BatchComponent {
   private final IssueChangeContext changeContext;
   private final ActiveRules activeRules;
   private final InputPathCache inputPathCache;
+  private final FileContentCache fileContentCache;
+  private final IncrementalAnalysis incrementalAnalysis;
   private final ResourceCache resourceCache;
   private final ServerIssueRepository serverIssueRepository;
   private final ProjectRepositories projectRepositories;
@@ -69,7 +76,8 @@ public class LocalIssueTracking implements BatchComponent {
   public LocalIssueTracking(ResourceCache resourceCache, IssueCache issueCache, IssueTracking tracking,
     ServerLineHashesLoader lastLineHashes, IssueWorkflow workflow, IssueUpdater updater,
     ActiveRules activeRules, InputPathCache inputPathCache, ServerIssueRepository serverIssueRepository,
-    ProjectRepositories projectRepositories, AnalysisMode analysisMode) {
+    ProjectRepositories projectRepositories, AnalysisMode analysisMode, FileContentCache fileContentCache,
+    IncrementalAnalysis incrementalAnalysis) {
     this.resourceCache = resourceCache;
     this.issueCache = issueCache;
     this.tracking = tracking;
@@ -77,6 +85,8 @@ public class LocalIssueTracking implements BatchComponent {
     this.workflow = workflow;
     this.updater = updater;
     this.inputPathCache = inputPathCache;
+    this.fileContentCache = fileContentCache;
+    this.incrementalAnalysis = incrementalAnalysis;
     this.serverIssueRepository = serverIssueRepository;
     this.projectRepositories = projectRepositories;
     this.analysisMode = analysisMode;
@@ -119,7 +129,7 @@ public class LocalIssueTracking implements BatchComponent {
     IssueTrackingResult trackingResult = tracking.track(sourceHashHolder, serverIssues, issues);
 
     // unmatched = issues that have been resolved + issues on disabled/removed rules + manual issues
-    addUnmatched(trackingResult.unmatched(), sourceHashHolder, issues);
+    addUnmatched(trackingResult.unmatched(), sourceHashHolder, component.inputPath(), issues);
 
     mergeMatched(trackingResult);
 
@@ -142,7 +152,7 @@ public class LocalIssueTracking implements BatchComponent {
       if (file == null) {
         throw new IllegalStateException("Resource " + component.resource() + " was not found in InputPath cache");
       }
-      sourceHashHolder = new SourceHashHolder((DefaultInputFile) file, lastLineHashes);
+      sourceHashHolder = new SourceHashHolder((DefaultInputFile) file, lastLineHashes, fileContentCache);
     }
     return sourceHashHolder;
   }
@@ -181,7 +191,9 @@ public class LocalIssueTracking implements BatchComponent {
     }
   }
 
-  private void addUnmatched(Collection<ServerIssue> unmatchedIssues, SourceHashHolder sourceHashHolder, Collection<DefaultIssue> issues) {
+  private void addUnmatched(Collection<ServerIssue> unmatchedIssues, SourceHashHolder sourceHashHolder, @Nullable InputPath inputPath,
+    Collection<DefaultIssue> issues) {
+    InputFile file = inputPath instanceof InputFile ? (InputFile) inputPath : null;
     for (ServerIssue unmatchedIssue : unmatchedIssues) {
       org.sonar.batch.protocol.input.BatchInput.ServerIssue unmatchedPreviousIssue = ((ServerIssueFromWs) unmatchedIssue).getDto();
       DefaultIssue unmatched = toUnmatchedIssue(unmatchedPreviousIssue);
@@ -189,6 +201,10 @@ public class LocalIssueTracking implements BatchComponent {
         relocateManualIssue(unmatched, unmatchedIssue, sourceHashHolder);
       }
       updateUnmatchedIssue(unmatched, false /* manual issues can be kept open */);
+      if (!unmatched.isOnDisabledRule() && incrementalAnalysis.isCarriedForward(file, unmatched.ruleKey())) {
+        // file was not given to the sensor which raised the issue
+        unmatched.setEndOfLife(false);
+      }
       issues.add(unmatched);
     }
   }
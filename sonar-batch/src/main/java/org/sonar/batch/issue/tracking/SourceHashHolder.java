@@ -22,6 +22,7 @@ package org.sonar.batch.issue.tracking;
 import com.google.common.collect.ImmutableSet;
 import org.sonar.api.batch.fs.InputFile.Status;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 
 import javax.annotation.CheckForNull;
 
@@ -34,15 +35,17 @@ public class SourceHashHolder {
   private FileHashes hashedReference;
   private FileHashes hashedSource;
   private DefaultInputFile inputFile;
+  private final FileContentCache fileContentCache;
 
-  public SourceHashHolder(DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots) {
+  public SourceHashHolder(DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots, FileContentCache fileContentCache) {
     this.inputFile = inputFile;
     this.lastSnapshots = lastSnapshots;
+    this.fileContentCache = fileContentCache;
   }
 
   private void initHashes() {
     if (hashedSource == null) {
-      hashedSource = FileHashes.create(inputFile);
+      hashedSource = FileHashes.create(inputFile, fileContentCache);
       Status status = inputFile.status();
       if (status == Status.ADDED) {
         hashedReference = null;
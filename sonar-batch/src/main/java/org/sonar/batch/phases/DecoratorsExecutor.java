@@ -23,13 +23,17 @@ import org.sonar.batch.deprecated.decorator.DefaultDecoratorContext;
 
 import org.sonar.batch.deprecated.decorator.DecoratorsSelector;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeDecorator;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.AnnotationUtils;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
@@ -40,9 +44,19 @@ import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads used to decorate sibling resources concurrently. Default value is 1, so
+   * resources are decorated sequentially. Decorators which are not annotated with {@link ThreadSafeDecorator}
+   * are never executed concurrently.
+   */
+  public static final String THREADS_PROPERTY = "sonar.batch.decorators.threads";
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
@@ -51,10 +65,12 @@ public class DecoratorsExecutor implements BatchComponent {
   private MeasureCache measureCache;
   private MetricFinder metricFinder;
   private final DuplicationCache duplicationCache;
+  private final int threads;
+  private final Object serialDecoratorsLock = new Object();
 
   public DecoratorsExecutor(BatchExtensionDictionnary batchExtDictionnary,
     Project project, SonarIndex index, EventBus eventBus, CoverageExclusions coverageFilter, MeasureCache measureCache, MetricFinder metricFinder,
-    DuplicationCache duplicationCache) {
+    DuplicationCache duplicationCache, Settings settings) {
     this.measureCache = measureCache;
     this.metricFinder = metricFinder;
     this.duplicationCache = duplicationCache;
@@ -63,12 +79,17 @@ public class DecoratorsExecutor implements BatchComponent {
     this.eventBus = eventBus;
     this.project = project;
     this.coverageFilter = coverageFilter;
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
   }
 
   public void execute() {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    ((DefaultDecoratorContext) decorateResource(project, decorators, true)).end();
+    if (threads > 1) {
+      decorateInParallel(decorators).end();
+    } else {
+      ((DefaultDecoratorContext) decorateResource(project, decorators, true)).end();
+    }
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
@@ -80,8 +101,7 @@ public class DecoratorsExecutor implements BatchComponent {
       childrenContexts.add(childContext.end());
     }
 
-    DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measureCache, metricFinder, duplicationCache, coverageFilter);
-    context.init();
+    DefaultDecoratorContext context = newContext(resource, childrenContexts);
     if (executeDecorators) {
       for (Decorator decorator : decorators) {
         executeDecorator(decorator, context, resource);
@@ -90,6 +110,62 @@ public class DecoratorsExecutor implements BatchComponent {
     return context;
   }
 
+  private DefaultDecoratorContext newContext(Resource resource, List<DecoratorContext> childrenContexts) {
+    DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measureCache, metricFinder, duplicationCache, coverageFilter);
+    context.init();
+    return context;
+  }
+
+  /**
+   * The tree of resources is loaded before decorating. Each resource is decorated after its children,
+   * which are decorated concurrently. {@link SonarIndex} is not thread-safe, so it is accessed only under
+   * the lock of the decorators which are executed sequentially, including from the contexts given to
+   * {@link ThreadSafeDecorator}s.
+   */
+  DefaultDecoratorContext decorateInParallel(Collection<Decorator> decorators) {
+    ResourceNode root = loadTree(project, true);
+    Set<Decorator> threadSafeDecorators = Sets.newHashSet();
+    for (Decorator decorator : decorators) {
+      if (AnnotationUtils.getAnnotation(decorator, ThreadSafeDecorator.class) != null) {
+        threadSafeDecorators.add(decorator);
+      }
+    }
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      return pool.invoke(new DecorateTask(root, decorators, threadSafeDecorators));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private ResourceNode loadTree(Resource resource, boolean executeDecorators) {
+    ResourceNode node = new ResourceNode(resource, executeDecorators);
+    for (Resource child : index.getChildren(resource)) {
+      boolean isModule = child instanceof Project;
+      node.children.add(loadTree(child, !isModule));
+    }
+    return node;
+  }
+
+  /**
+   * Events are fired only by decorators which are executed sequentially, as listeners are not thread-safe.
+   */
+  private void executeDecoratorInParallel(Decorator decorator, boolean threadSafe, DefaultDecoratorContext context, Resource resource) {
+    if (threadSafe) {
+      try {
+        decorator.decorate(resource, context);
+      } catch (MessageException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new SonarException("Fail to decorate '" + resource + "'", e);
+      }
+    } else {
+      synchronized (serialDecoratorsLock) {
+        executeDecorator(decorator, context, resource);
+      }
+    }
+  }
+
   void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
     try {
       eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
@@ -105,4 +181,48 @@ public class DecoratorsExecutor implements BatchComponent {
     }
   }
 
+  private static class ResourceNode {
+    private final Resource resource;
+    private final boolean executeDecorators;
+    private final List<ResourceNode> children = Lists.newArrayList();
+
+    ResourceNode(Resource resource, boolean executeDecorators) {
+      this.resource = resource;
+      this.executeDecorators = executeDecorators;
+    }
+  }
+
+  private class DecorateTask extends RecursiveTask<DefaultDecoratorContext> {
+    private final ResourceNode node;
+    private final Collection<Decorator> decorators;
+    private final Set<Decorator> threadSafeDecorators;
+
+    DecorateTask(ResourceNode node, Collection<Decorator> decorators, Set<Decorator> threadSafeDecorators) {
+      this.node = node;
+      this.decorators = decorators;
+      this.threadSafeDecorators = threadSafeDecorators;
+    }
+
+    @Override
+    protected DefaultDecoratorContext compute() {
+      List<DecorateTask> childrenTasks = Lists.newArrayList();
+      for (ResourceNode child : node.children) {
+        childrenTasks.add(new DecorateTask(child, decorators, threadSafeDecorators));
+      }
+      invokeAll(childrenTasks);
+
+      List<DecoratorContext> childrenContexts = Lists.newArrayList();
+      for (DecorateTask childTask : childrenTasks) {
+        childrenContexts.add(childTask.join().end());
+      }
+
+      DefaultDecoratorContext context = newContext(node.resource, childrenContexts).setIndexLock(serialDecoratorsLock);
+      if (node.executeDecorators) {
+        for (Decorator decorator : decorators) {
+          executeDecoratorInParallel(decorator, threadSafeDecorators.contains(decorator), context, node.resource);
+        }
+      }
+      return context;
+    }
+  }
 }
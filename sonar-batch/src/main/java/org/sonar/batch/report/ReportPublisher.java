@@ -20,8 +20,12 @@
 package org.sonar.batch.report;
 
 import com.github.kevinsawicki.http.HttpRequest;
+import com.github.kevinsawicki.http.HttpRequest.HttpRequestException;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Startable;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.StartingException;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.StoppingException;
@@ -40,14 +44,44 @@ import org.sonar.batch.protocol.output.BatchReportWriter;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class ReportPublisher implements BatchComponent, Startable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ReportPublisher.class);
   public static final String KEEP_REPORT_PROP_KEY = "sonar.batch.keepReport";
 
+  /**
+   * When enabled, the report is compressed and uploaded while it is generated, without
+   * intermediary zip file
+   */
+  public static final String STREAM_REPORT_PROP_KEY = "sonar.batch.streamReport";
+
+  /**
+   * Number of threads running the report publishers. Publishers write distinct files of the report,
+   * so they can run concurrently.
+   */
+  public static final String PUBLISHER_THREADS_PROP_KEY = "sonar.batch.report.threads";
+
+  private static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+  private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
   private final ServerClient serverClient;
   private final Server server;
   private final Settings settings;
@@ -97,9 +131,13 @@ public class ReportPublisher implements BatchComponent, Startable {
   public void execute() {
     // If this is a preview analysis then we should not upload reports
     if (!analysisMode.isPreview()) {
-      File report = prepareReport();
-      if (!analysisMode.isMediumTest()) {
-        uploadMultiPartReport(report);
+      if (settings.getBoolean(STREAM_REPORT_PROP_KEY) && !analysisMode.isMediumTest()) {
+        publishStreamedReport();
+      } else {
+        File report = prepareReport();
+        if (!analysisMode.isMediumTest()) {
+          uploadMultiPartReport(report);
+        }
       }
     }
     logSuccess(LoggerFactory.getLogger(getClass()));
@@ -108,8 +146,17 @@ public class ReportPublisher implements BatchComponent, Startable {
   private File prepareReport() {
     try {
       long startTime = System.currentTimeMillis();
-      for (ReportPublisherStep publisher : publishers) {
-        publisher.publish(writer);
+      if (publisherThreads() > 1) {
+        ExecutorService executor = newPublisherExecutor();
+        try {
+          waitForPublishers(submitPublishers(executor));
+        } finally {
+          executor.shutdownNow();
+        }
+      } else {
+        for (ReportPublisherStep publisher : publishers) {
+          publisher.publish(writer);
+        }
       }
       long stopTime = System.currentTimeMillis();
       LOG.info("Analysis reports generated in " + (stopTime - startTime) + "ms, dir size=" + FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
@@ -125,10 +172,195 @@ public class ReportPublisher implements BatchComponent, Startable {
     }
   }
 
+  /**
+   * Publishers write into the report directory, as usual. Files are compressed as soon as the publisher
+   * which wrote them is done, into the body of the upload request, which is sent by chunks on another thread.
+   */
+  private void publishStreamedReport() {
+    LOG.debug("Publish results");
+    long startTime = System.currentTimeMillis();
+    PipedOutputStream out = new PipedOutputStream();
+    final PipedInputStream in;
+    try {
+      in = new PipedInputStream(out, STREAM_BUFFER_SIZE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to prepare batch report", e);
+    }
+    ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+      .setNameFormat("report-upload-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      Future<Void> upload = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          uploadStreamedReport(in);
+          return null;
+        }
+      });
+      CountingOutputStream counter = new CountingOutputStream(out);
+      try {
+        publishAndZip(counter);
+        out.close();
+      } catch (IOException | RuntimeException e) {
+        throw abortUpload(upload, e);
+      }
+      waitFor(upload);
+      long stopTime = System.currentTimeMillis();
+      LOG.info("Analysis reports generated and sent to server in " + (stopTime - startTime) + "ms, zip size="
+        + FileUtils.byteCountToDisplaySize(counter.getByteCount()));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void publishAndZip(OutputStream out) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(out);
+    Set<String> zippedFiles = new HashSet<>();
+    // files written by sensors during analysis
+    File[] sensorFiles = listReportFiles();
+    if (publisherThreads() > 1) {
+      ExecutorService executor = newPublisherExecutor();
+      try {
+        List<Future<Void>> publications = submitPublishers(executor);
+        // files of publishers may be incomplete until all of them are done
+        zipFiles(zip, zippedFiles, sensorFiles);
+        waitForPublishers(publications);
+        zipFiles(zip, zippedFiles, listReportFiles());
+      } finally {
+        executor.shutdownNow();
+      }
+    } else {
+      zipFiles(zip, zippedFiles, sensorFiles);
+      for (ReportPublisherStep publisher : publishers) {
+        publisher.publish(writer);
+        zipFiles(zip, zippedFiles, listReportFiles());
+      }
+    }
+    zip.finish();
+  }
+
+  private int publisherThreads() {
+    return Math.min(settings.getInt(PUBLISHER_THREADS_PROP_KEY), publishers.length);
+  }
+
+  private ExecutorService newPublisherExecutor() {
+    return Executors.newFixedThreadPool(publisherThreads(), new ThreadFactoryBuilder()
+      .setNameFormat("report-publisher-%d")
+      .setDaemon(true)
+      .build());
+  }
+
+  private List<Future<Void>> submitPublishers(ExecutorService executor) {
+    List<Future<Void>> publications = new ArrayList<>();
+    for (final ReportPublisherStep publisher : publishers) {
+      publications.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          publisher.publish(writer);
+          return null;
+        }
+      }));
+    }
+    return publications;
+  }
+
+  private static void waitForPublishers(List<Future<Void>> publications) {
+    try {
+      for (Future<Void> publication : publications) {
+        publication.get();
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException("Unable to prepare batch report", cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while preparing batch report", e);
+    }
+  }
+
+  private File[] listReportFiles() throws IOException {
+    File[] files = reportDir.listFiles();
+    if (files == null) {
+      throw new IOException("Unable to list files of " + reportDir);
+    }
+    return files;
+  }
+
+  private static void zipFiles(ZipOutputStream zip, Set<String> zippedFiles, File[] files) throws IOException {
+    for (File file : files) {
+      if (file.isFile() && zippedFiles.add(file.getName())) {
+        zip.putNextEntry(new ZipEntry(file.getName()));
+        FileUtils.copyFile(file, zip);
+        zip.closeEntry();
+      }
+    }
+  }
+
+  /**
+   * Interrupt the upload, so that the server does not receive a truncated report, and return the
+   * exception to be thrown. The failure of the upload, for example when server is not reachable, is the root cause
+   * if the upload stopped before.
+   */
+  private static RuntimeException abortUpload(Future<Void> upload, Exception cause) {
+    if (!upload.cancel(true)) {
+      try {
+        upload.get();
+      } catch (ExecutionException e) {
+        return uploadFailure(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException("Unable to prepare batch report", cause);
+  }
+
+  private static void waitFor(Future<Void> upload) {
+    try {
+      upload.get();
+    } catch (ExecutionException e) {
+      throw uploadFailure(e);
+    } catch (InterruptedException e) {
+      upload.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while sending report to server", e);
+    }
+  }
+
+  private static RuntimeException uploadFailure(ExecutionException e) {
+    Throwable cause = e.getCause();
+    return cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException("Fail to send report to server", cause);
+  }
+
+  private void uploadStreamedReport(InputStream report) {
+    HttpRequest request = newSubmitRequest();
+    request.chunk(STREAM_CHUNK_SIZE);
+    try {
+      request.part("report", null, "application/octet-stream", report);
+    } catch (HttpRequestException e) {
+      // the body is not terminated, so the server drops the partial report
+      request.disconnect();
+      throw e;
+    } finally {
+      // the report may not have been read at all, for example when server is not reachable. Closing the pipe
+      // makes the writer fail instead of waiting forever for free space in the buffer.
+      IOUtils.closeQuietly(report);
+    }
+    checkResponse(request);
+  }
+
   @VisibleForTesting
   void uploadMultiPartReport(File report) {
     LOG.debug("Publish results");
     long startTime = System.currentTimeMillis();
+    HttpRequest request = newSubmitRequest();
+    request.part("report", null, "application/octet-stream", report);
+    checkResponse(request);
+    long stopTime = System.currentTimeMillis();
+    LOG.info("Analysis reports sent to server in " + (stopTime - startTime) + "ms");
+  }
+
+  private HttpRequest newSubmitRequest() {
     URL url;
     try {
       String effectiveKey = projectReactor.getRoot().getKeyWithBranch();
@@ -141,7 +373,10 @@ public class ReportPublisher implements BatchComponent, Startable {
     request.trustAllHosts();
     request.header("User-Agent", String.format("SonarQube %s", server.getVersion()));
     request.basic(serverClient.getLogin(), serverClient.getPassword());
-    request.part("report", null, "application/octet-stream", report);
+    return request;
+  }
+
+  private void checkResponse(HttpRequest request) {
     if (!request.ok()) {
       int responseCode = request.code();
       if (responseCode == 401) {
@@ -151,10 +386,8 @@ public class ReportPublisher implements BatchComponent, Startable {
         // SONAR-4397 Details are in response content
         throw new IllegalStateException(request.body());
       }
-      throw new IllegalStateException(String.format("Fail to execute request [code=%s, url=%s]: %s", responseCode, url, request.body()));
+      throw new IllegalStateException(String.format("Fail to execute request [code=%s, url=%s]: %s", responseCode, request.url(), request.body()));
     }
-    long stopTime = System.currentTimeMillis();
-    LOG.info("Analysis reports sent to server in " + (stopTime - startTime) + "ms");
   }
 
   @VisibleForTesting
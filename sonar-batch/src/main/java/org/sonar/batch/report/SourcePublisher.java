@@ -20,22 +20,23 @@
 package org.sonar.batch.report;
 
 import com.google.common.base.Charsets;
-import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.BOMInputStream;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.batch.index.BatchResource;
 import org.sonar.batch.index.ResourceCache;
 import org.sonar.batch.protocol.output.BatchReportWriter;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 
 import java.io.*;
 
 public class SourcePublisher implements ReportPublisherStep {
 
   private final ResourceCache resourceCache;
+  private final FileContentCache fileContentCache;
 
-  public SourcePublisher(ResourceCache resourceCache) {
+  public SourcePublisher(ResourceCache resourceCache, FileContentCache fileContentCache) {
     this.resourceCache = resourceCache;
+    this.fileContentCache = fileContentCache;
   }
 
   @Override
@@ -48,9 +49,8 @@ public class SourcePublisher implements ReportPublisherStep {
       DefaultInputFile inputFile = (DefaultInputFile) resource.inputPath();
       File iofile = writer.getSourceFile(resource.batchId());
       int line = 0;
-      try (FileOutputStream output = new FileOutputStream(iofile); BOMInputStream bomIn = new BOMInputStream(new FileInputStream(inputFile.file()),
-        ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(bomIn, inputFile.charset()))) {
+      try (FileOutputStream output = new FileOutputStream(iofile);
+        BufferedReader reader = new BufferedReader(fileContentCache.reader(inputFile))) {
         String lineStr = reader.readLine();
         while (lineStr != null) {
           IOUtils.write(lineStr, output, Charsets.UTF_8);
@@ -21,24 +21,135 @@ package org.sonar.batch.repository;
 
 import com.google.common.base.Function;
 import com.google.common.io.InputSupplier;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.issue.Issue;
 import org.sonar.api.utils.HttpDownloader;
+import org.sonar.api.utils.System2;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.protocol.input.BatchInput.ServerIssue;
+import org.sonar.home.cache.FileCache;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Issues of modules are kept in the user cache and only the issues changed on server since
+ * the previous analysis are downloaded. Issues of files, requested in incremental mode, are not cached.
+ */
 public class DefaultServerIssuesLoader implements ServerIssuesLoader {
 
+  private static final Logger LOG = LoggerFactory.getLogger(DefaultServerIssuesLoader.class);
+
+  private static final String ISSUES_URL = "/batch/issues?key=";
+  private static final String VERSION_URL = "/batch/issues_version";
+
+  /**
+   * All the issues are downloaded again after this delay, so that the issues which are not visible
+   * anymore (purged, permissions removed, ...) do not stay in the local copy
+   */
+  static final long SNAPSHOT_MAX_AGE_MS = 24L * 60L * 60L * 1000L;
+
   private final ServerClient serverClient;
+  private final FileCache fileCache;
+  private final System2 system;
 
-  public DefaultServerIssuesLoader(ServerClient serverClient) {
+  public DefaultServerIssuesLoader(ServerClient serverClient, FileCache fileCache, System2 system) {
     this.serverClient = serverClient;
+    this.fileCache = fileCache;
+    this.system = system;
   }
 
   @Override
   public void load(String componentKey, Function<ServerIssue, Void> consumer, boolean incremental) {
-    InputSupplier<InputStream> request = serverClient.doRequest("/batch/issues?key=" + ServerClient.encodeForUrl(componentKey), "GET", null);
+    Long version = incremental ? null : serverVersion();
+    if (version == null) {
+      loadFromWs(componentKey, null, consumer);
+    } else {
+      loadWithSnapshot(componentKey, version, consumer);
+    }
+  }
+
+  /**
+   * @return null if server does not support versions of issues
+   */
+  @CheckForNull
+  private Long serverVersion() {
+    try {
+      return Long.parseLong(StringUtils.trim(serverClient.request(VERSION_URL, false)));
+    } catch (HttpDownloader.HttpException | NumberFormatException e) {
+      LOG.debug("Issues are not versioned by server", e);
+      return null;
+    }
+  }
+
+  private void loadWithSnapshot(String componentKey, long version, Function<ServerIssue, Void> consumer) {
+    File file = snapshotFile(componentKey);
+    ServerIssuesSnapshot snapshot = ServerIssuesSnapshot.read(file);
+    long now = system.now();
+    if (snapshot != null && (now - snapshot.createdAt() > SNAPSHOT_MAX_AGE_MS || snapshot.changesSince() > version)) {
+      snapshot = null;
+    }
+    try {
+      // the version is the stamp of the last indexing of issues on server. Changes since this version include the issues of
+      // this indexing, which may not be all searchable yet, so they are downloaded again next time and merged by key.
+      try (ServerIssuesSnapshot.Writer writer = new ServerIssuesSnapshot.Writer(file, version, snapshot == null ? now : snapshot.createdAt())) {
+        if (snapshot == null) {
+          loadFromWs(componentKey, null, new WriteAndConsume(writer, consumer));
+        } else {
+          merge(componentKey, snapshot, new WriteAndConsume(writer, consumer));
+        }
+        writer.commit();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to load issues from " + file, e);
+    }
+  }
+
+  /**
+   * Issues of the snapshot are replaced by their new version, closed issues are dropped
+   */
+  private void merge(String componentKey, ServerIssuesSnapshot snapshot, final Function<ServerIssue, Void> consumer) throws IOException {
+    final Map<String, ServerIssue> changedIssues = new LinkedHashMap<>();
+    loadFromWs(componentKey, snapshot.changesSince(), new Function<ServerIssue, Void>() {
+      @Override
+      public Void apply(ServerIssue issue) {
+        changedIssues.put(issue.getKey(), issue);
+        return null;
+      }
+    });
+    LOG.debug("{} issues changed since previous analysis", changedIssues.size());
+
+    snapshot.readIssues(new Function<ServerIssue, Void>() {
+      @Override
+      public Void apply(ServerIssue issue) {
+        if (!changedIssues.containsKey(issue.getKey())) {
+          consumer.apply(issue);
+        }
+        return null;
+      }
+    });
+    for (ServerIssue issue : changedIssues.values()) {
+      if (!Issue.STATUS_CLOSED.equals(issue.getStatus())) {
+        consumer.apply(issue);
+      }
+    }
+  }
+
+  private void loadFromWs(String componentKey, @Nullable Long changedSince, Function<ServerIssue, Void> consumer) {
+    String url = ISSUES_URL + ServerClient.encodeForUrl(componentKey);
+    if (changedSince != null) {
+      url += "&changedSince=" + changedSince;
+    }
+    InputSupplier<InputStream> request = serverClient.doRequest(url, "GET", null);
     try (InputStream is = request.getInput()) {
       ServerIssue previousIssue = ServerIssue.parseDelimitedFrom(is);
       while (previousIssue != null) {
@@ -52,4 +163,31 @@ public class DefaultServerIssuesLoader implements ServerIssuesLoader {
     }
   }
 
+  /**
+   * Issues depend on the server and on the permissions of the user
+   */
+  private File snapshotFile(String componentKey) {
+    String id = DigestUtils.md5Hex(serverClient.getURL() + "|" + StringUtils.defaultString(serverClient.getLogin()) + "|" + componentKey);
+    return new File(new File(fileCache.getDir(), "_issues"), id);
+  }
+
+  private static class WriteAndConsume implements Function<ServerIssue, Void> {
+    private final ServerIssuesSnapshot.Writer writer;
+    private final Function<ServerIssue, Void> consumer;
+
+    WriteAndConsume(ServerIssuesSnapshot.Writer writer, Function<ServerIssue, Void> consumer) {
+      this.writer = writer;
+      this.consumer = consumer;
+    }
+
+    @Override
+    public Void apply(ServerIssue issue) {
+      try {
+        writer.write(issue);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to write issue " + issue.getKey(), e);
+      }
+      return consumer.apply(issue);
+    }
+  }
 }
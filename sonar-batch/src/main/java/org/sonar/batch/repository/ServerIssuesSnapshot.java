@@ -0,0 +1,146 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.repository;
+
+import com.google.common.base.Function;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.batch.protocol.input.BatchInput.ServerIssue;
+
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Local copy of the issues of a module, as returned by the web service /batch/issues. The file starts with
+ * a header (format, version of issues since which changes must be requested to server, date of the last full download) followed by delimited
+ * {@link ServerIssue} messages.
+ */
+class ServerIssuesSnapshot {
+
+  private static final int FORMAT = 3;
+
+  private final File file;
+  private final long changesSince;
+  private final long createdAt;
+
+  private ServerIssuesSnapshot(File file, long changesSince, long createdAt) {
+    this.file = file;
+    this.changesSince = changesSince;
+    this.createdAt = createdAt;
+  }
+
+  /**
+   * @return null if the file does not exist or has an unknown format
+   */
+  @CheckForNull
+  static ServerIssuesSnapshot read(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (input.readInt() != FORMAT) {
+        return null;
+      }
+      return new ServerIssuesSnapshot(file, input.readLong(), input.readLong());
+    } catch (IOException e) {
+      return null;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Issues indexed on server since this version may be missing from the snapshot
+   */
+  long changesSince() {
+    return changesSince;
+  }
+
+  /**
+   * Date of the download of all the issues, deltas being merged afterwards
+   */
+  long createdAt() {
+    return createdAt;
+  }
+
+  void readIssues(Function<ServerIssue, Void> consumer) throws IOException {
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      input.readInt();
+      input.readLong();
+      input.readLong();
+      ServerIssue issue = ServerIssue.parseDelimitedFrom(input);
+      while (issue != null) {
+        consumer.apply(issue);
+        issue = ServerIssue.parseDelimitedFrom(input);
+      }
+    }
+  }
+
+  /**
+   * Issues are written to a temporary file, which replaces the snapshot on {@link #commit()}.
+   */
+  static class Writer implements Closeable {
+    private final File target;
+    private final File tempFile;
+    private final DataOutputStream output;
+    private boolean committed = false;
+
+    Writer(File target, long changesSince, long createdAt) throws IOException {
+      this.target = target;
+      FileUtils.forceMkdir(target.getParentFile());
+      this.tempFile = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+      this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      output.writeInt(FORMAT);
+      output.writeLong(changesSince);
+      output.writeLong(createdAt);
+    }
+
+    void write(ServerIssue issue) throws IOException {
+      issue.writeDelimitedTo(output);
+    }
+
+    void commit() throws IOException {
+      output.close();
+      Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      committed = true;
+    }
+
+    @Override
+    public void close() {
+      if (!committed) {
+        IOUtils.closeQuietly(output);
+        FileUtils.deleteQuietly(tempFile);
+      }
+    }
+  }
+}
@@ -61,6 +61,7 @@ import org.sonar.batch.rule.*;
 import org.sonar.batch.scan.filesystem.*;
 import org.sonar.batch.scan.report.IssuesReports;
 import org.sonar.batch.sensor.AnalyzerOptimizer;
+import org.sonar.batch.sensor.CarryForwardMeasuresSensor;
 import org.sonar.batch.sensor.DefaultSensorContext;
 import org.sonar.batch.sensor.DefaultSensorStorage;
 import org.sonar.batch.sensor.coverage.CoverageExclusions;
@@ -197,6 +198,9 @@ public class ModuleScanContainer extends ComponentContainer {
       IssueHandlers.class,
       InitialOpenIssuesSensor.class,
 
+      // Incremental analysis
+      CarryForwardMeasuresSensor.class,
+
       QProfileEventsDecorator.class,
 
       TimeMachineConfiguration.class);
@@ -56,8 +56,10 @@ import org.sonar.batch.repository.ProjectRepositoriesProvider;
 import org.sonar.batch.repository.language.DefaultLanguagesRepository;
 import org.sonar.batch.rule.ActiveRulesProvider;
 import org.sonar.batch.rule.RulesProvider;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.batch.scan.filesystem.InputPathCache;
 import org.sonar.batch.scan.measure.MeasureCache;
+import org.sonar.batch.sensor.IncrementalAnalysis;
 import org.sonar.batch.source.CodeColorizers;
 import org.sonar.core.component.ScanGraph;
 import org.sonar.core.issue.IssueUpdater;
@@ -133,7 +135,9 @@ public class ProjectScanContainer extends ComponentContainer {
 
       // file system
       InputPathCache.class,
+      FileContentCache.class,
       PathResolver.class,
+      IncrementalAnalysis.class,
 
       // rules
       new ActiveRulesProvider(),
@@ -20,11 +20,12 @@
 package org.sonar.batch.scan;
 
 import org.sonar.batch.sensor.AnalyzerOptimizer;
+import org.sonar.batch.sensor.DefaultSensorContext;
+import org.sonar.batch.sensor.IncrementalAnalysis;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.sensor.Sensor;
-import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
 import org.sonar.api.resources.Project;
 
@@ -33,13 +34,15 @@ public class SensorWrapper implements org.sonar.api.batch.Sensor {
   private static final Logger LOG = LoggerFactory.getLogger(SensorWrapper.class);
 
   private Sensor wrappedSensor;
-  private SensorContext adaptor;
+  private DefaultSensorContext adaptor;
   private DefaultSensorDescriptor descriptor;
   private AnalyzerOptimizer optimizer;
+  private IncrementalAnalysis incrementalAnalysis;
 
-  public SensorWrapper(Sensor newSensor, SensorContext adaptor, AnalyzerOptimizer optimizer) {
+  public SensorWrapper(Sensor newSensor, DefaultSensorContext adaptor, AnalyzerOptimizer optimizer, IncrementalAnalysis incrementalAnalysis) {
     this.wrappedSensor = newSensor;
     this.optimizer = optimizer;
+    this.incrementalAnalysis = incrementalAnalysis;
     descriptor = new DefaultSensorDescriptor();
     newSensor.describe(descriptor);
     this.adaptor = adaptor;
@@ -56,7 +59,7 @@ public class SensorWrapper implements org.sonar.api.batch.Sensor {
 
   @Override
   public void analyse(Project module, org.sonar.api.batch.SensorContext context) {
-    wrappedSensor.execute(adaptor);
+    wrappedSensor.execute(incrementalAnalysis.contextFor(descriptor, adaptor));
   }
 
   @Override
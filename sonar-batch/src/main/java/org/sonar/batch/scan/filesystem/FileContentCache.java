@@ -0,0 +1,166 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.commons.io.ByteOrderMark;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BOMInputStream;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+import org.sonar.api.batch.fs.internal.FileMetadata.LineHashConsumer;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoded content of the source files of the analysis. A file is read from disk and decoded only once,
+ * then its content is shared by the components that need it: file metadata, CPD, colorizers, issue tracking
+ * and persistence/publication of sources. Byte order marks are removed. The line hashes used by issue tracking
+ * are computed once too and kept with the content.
+ * <p/>
+ * Contents are kept in a LRU cache whose size is bounded by the property {@link #MEMORY_PROPERTY}.
+ * Evicted files are read again from disk when requested.
+ *
+ * @since 5.2
+ */
+public class FileContentCache implements BatchComponent {
+
+  /**
+   * Maximum size in Mb of the cached contents. By default it is a ratio of the maximum heap size.
+   */
+  public static final String MEMORY_PROPERTY = "sonar.batch.fileContent.memory";
+
+  static final long MAX_DEFAULT_MEMORY = 256L * 1024 * 1024;
+  private static final int DEFAULT_MEMORY_RATIO_PERCENT = 10;
+
+  private final Cache<File, Content> contents;
+
+  public FileContentCache(Settings settings) {
+    this.contents = CacheBuilder.newBuilder()
+      .maximumWeight(maxMemory(settings))
+      .weigher(new Weigher<File, Content>() {
+        @Override
+        public int weigh(File file, Content content) {
+          // two bytes per char, and about 32 bytes per md5 hash of line
+          return 2 * content.text.length() + (content.lineHashes == null ? 0 : 32 * content.lineHashes.length);
+        }
+      })
+      .build();
+  }
+
+  static long maxMemory(Settings settings) {
+    long memoryMb = settings.getLong(MEMORY_PROPERTY);
+    if (memoryMb > 0L) {
+      return memoryMb * 1024 * 1024;
+    }
+    return Math.min(MAX_DEFAULT_MEMORY, Runtime.getRuntime().maxMemory() / 100 * DEFAULT_MEMORY_RATIO_PERCENT);
+  }
+
+  public String content(File file, Charset charset) {
+    Content content = contents.getIfPresent(file);
+    if (content == null || !content.charset.equals(charset)) {
+      content = new Content(charset, decode(file, charset), null);
+      contents.put(file, content);
+    }
+    return content.text;
+  }
+
+  public String content(DefaultInputFile inputFile) {
+    return content(inputFile.file(), inputFile.charset());
+  }
+
+  public Reader reader(File file, Charset charset) {
+    return new StringReader(content(file, charset));
+  }
+
+  public Reader reader(DefaultInputFile inputFile) {
+    return reader(inputFile.file(), inputFile.charset());
+  }
+
+  /**
+   * Hashes of lines used by issue tracking, see {@link FileMetadata#computeLineHashesForIssueTracking(Reader, LineHashConsumer)}.
+   * The element at index i is the hash of line i + 1, null if the line is blank. The array is shared, so
+   * it must not be modified.
+   */
+  public byte[][] lineHashes(DefaultInputFile inputFile) {
+    File file = inputFile.file();
+    Charset charset = inputFile.charset();
+    String text = content(file, charset);
+    Content content = contents.getIfPresent(file);
+    if (content != null && content.lineHashes != null && content.charset.equals(charset)) {
+      return content.lineHashes;
+    }
+    byte[][] lineHashes = computeLineHashes(text);
+    // replaced, so that the hashes are weighed
+    contents.put(file, new Content(charset, text, lineHashes));
+    return lineHashes;
+  }
+
+  private static byte[][] computeLineHashes(String text) {
+    final List<byte[]> hashes = new ArrayList<>();
+    FileMetadata.computeLineHashesForIssueTracking(new StringReader(text), new LineHashConsumer() {
+      @Override
+      public void consume(int lineIdx, @Nullable byte[] hash) {
+        while (hashes.size() < lineIdx) {
+          hashes.add(null);
+        }
+        hashes.set(lineIdx - 1, hash);
+      }
+    });
+    return hashes.toArray(new byte[hashes.size()][]);
+  }
+
+  private static String decode(File file, Charset charset) {
+    // the file is loaded in a single read, then decoded in memory
+    try (Reader reader = new InputStreamReader(new BOMInputStream(new ByteArrayInputStream(FileUtils.readFileToByteArray(file)),
+      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE), charset)) {
+      return IOUtils.toString(reader);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), charset), e);
+    }
+  }
+
+  private static class Content {
+    private final Charset charset;
+    private final String text;
+    private final byte[][] lineHashes;
+
+    private Content(Charset charset, String text, @Nullable byte[][] lineHashes) {
+      this.charset = charset;
+      this.text = text;
+      this.lineHashes = lineHashes;
+    }
+  }
+}
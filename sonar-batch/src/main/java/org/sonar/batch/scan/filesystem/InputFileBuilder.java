@@ -46,9 +46,11 @@ class InputFileBuilder {
   private final DefaultAnalysisMode analysisMode;
   private final Settings settings;
   private final FileMetadata fileMetadata;
+  private final FileContentCache fileContentCache;
 
   InputFileBuilder(String moduleKey, PathResolver pathResolver, LanguageDetection langDetection,
-    StatusDetection statusDetection, DefaultModuleFileSystem fs, DefaultAnalysisMode analysisMode, Settings settings, FileMetadata fileMetadata) {
+    StatusDetection statusDetection, DefaultModuleFileSystem fs, DefaultAnalysisMode analysisMode, Settings settings, FileMetadata fileMetadata,
+    FileContentCache fileContentCache) {
     this.moduleKey = moduleKey;
     this.pathResolver = pathResolver;
     this.langDetection = langDetection;
@@ -57,6 +59,7 @@ class InputFileBuilder {
     this.analysisMode = analysisMode;
     this.settings = settings;
     this.fileMetadata = fileMetadata;
+    this.fileContentCache = fileContentCache;
   }
 
   String moduleKey() {
@@ -104,7 +107,7 @@ class InputFileBuilder {
     }
     inputFile.setLanguage(lang);
 
-    inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), fs.encoding()));
+    inputFile.initMetadata(fileMetadata.readMetadata(fileContentCache.reader(inputFile), inputFile.file(), fs.encoding()));
 
     inputFile.setStatus(statusDetection.status(inputFile.moduleKey(), inputFile.relativePath(), inputFile.hash()));
     if (analysisMode.isIncremental() && inputFile.status() == InputFile.Status.SAME) {
@@ -0,0 +1,168 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.sensor;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.batch.Phase;
+import org.sonar.api.batch.RequiresDB;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.model.MeasureModel;
+import org.sonar.api.database.model.ResourceModel;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
+import org.sonar.batch.components.PastSnapshot;
+import org.sonar.batch.deprecated.components.PastSnapshotFinderByPreviousAnalysis;
+import org.sonar.batch.index.BatchResource;
+import org.sonar.batch.index.ResourceCache;
+
+import javax.persistence.Query;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copy from previous analysis the measures of the files that did not change, when their metrics are
+ * declared by sensors that skip unchanged files and they were not computed again. See {@link IncrementalAnalysis}.
+ * @since 5.2
+ */
+@RequiresDB
+@Phase(name = Phase.Name.POST)
+public class CarryForwardMeasuresSensor implements Sensor {
+
+  private final IncrementalAnalysis incrementalAnalysis;
+  private final FileSystem fs;
+  private final ResourceCache resourceCache;
+  private final PastSnapshotFinderByPreviousAnalysis pastSnapshotFinder;
+  private final DatabaseSession session;
+  private final MetricFinder metricFinder;
+
+  public CarryForwardMeasuresSensor(IncrementalAnalysis incrementalAnalysis, FileSystem fs, ResourceCache resourceCache,
+    PastSnapshotFinderByPreviousAnalysis pastSnapshotFinder, DatabaseSession session, MetricFinder metricFinder) {
+    this.incrementalAnalysis = incrementalAnalysis;
+    this.fs = fs;
+    this.resourceCache = resourceCache;
+    this.pastSnapshotFinder = pastSnapshotFinder;
+    this.session = session;
+    this.metricFinder = metricFinder;
+  }
+
+  @Override
+  public boolean shouldExecuteOnProject(Project project) {
+    return incrementalAnalysis.isEnabled();
+  }
+
+  @Override
+  public void analyse(Project module, SensorContext context) {
+    BatchResource batchModule = resourceCache.get(module);
+    Snapshot moduleSnapshot = batchModule != null ? batchModule.snapshot() : null;
+    if (moduleSnapshot == null) {
+      return;
+    }
+    PastSnapshot previousAnalysis = pastSnapshotFinder.findByPreviousAnalysis(moduleSnapshot);
+    if (previousAnalysis.getProjectSnapshot() == null) {
+      return;
+    }
+    Map<Integer, Metric> metricsById = carriedForwardMetrics();
+    if (metricsById.isEmpty()) {
+      return;
+    }
+    Map<String, InputFile> unchangedFilesByKey = new HashMap<>();
+    for (InputFile inputFile : fs.inputFiles(fs.predicates().hasStatus(InputFile.Status.SAME))) {
+      if (incrementalAnalysis.isCarriedForward(inputFile)) {
+        unchangedFilesByKey.put(context.getResource(inputFile).getEffectiveKey(), inputFile);
+      }
+    }
+    if (unchangedFilesByKey.isEmpty()) {
+      return;
+    }
+    for (Object[] row : selectPastFileMeasures(previousAnalysis.getProjectSnapshot(), metricsById)) {
+      InputFile inputFile = unchangedFilesByKey.get((String) row[0]);
+      if (inputFile != null) {
+        MeasureModel model = (MeasureModel) row[1];
+        carryForward(context, inputFile, model, metricsById.get(model.getMetricId()));
+      }
+    }
+  }
+
+  private Map<Integer, Metric> carriedForwardMetrics() {
+    Map<Integer, Metric> metricsById = new HashMap<>();
+    for (Metric metric : metricFinder.findAll()) {
+      if (incrementalAnalysis.isCarriedForward(metric.getKey())) {
+        metricsById.put(metric.getId(), metric);
+      }
+    }
+    return metricsById;
+  }
+
+  /**
+   * Measures of all the files of the module in previous analysis, in a single query rather than one per file.
+   * @return rows of file key and measure
+   */
+  private List<Object[]> selectPastFileMeasures(Snapshot previousSnapshot, Map<Integer, Metric> metricsById) {
+    Query query = session.createQuery("SELECT r.key, m FROM " + MeasureModel.class.getSimpleName() + " m, "
+      + Snapshot.class.getSimpleName() + " s, " + ResourceModel.class.getSimpleName() + " r"
+      + " WHERE m.snapshotId=s.id AND s.resourceId=r.id AND s.rootId=:rootId AND s.path LIKE :path"
+      + " AND s.scope=:scope AND s.status=:status AND m.metricId IN (:metricIds)"
+      + " AND m.characteristicId IS NULL AND m.personId IS NULL AND m.ruleId IS NULL");
+    query.setParameter("rootId", ObjectUtils.defaultIfNull(previousSnapshot.getRootId(), previousSnapshot.getId()));
+    query.setParameter("path", StringUtils.defaultString(previousSnapshot.getPath()) + previousSnapshot.getId() + ".%");
+    query.setParameter("scope", Scopes.FILE);
+    query.setParameter("status", Snapshot.STATUS_PROCESSED);
+    query.setParameter("metricIds", metricsById.keySet());
+    return query.getResultList();
+  }
+
+  private static void carryForward(SensorContext context, InputFile inputFile, MeasureModel model, Metric metric) {
+    Resource file = context.getResource(inputFile);
+    if (context.getMeasure(file, metric) != null) {
+      return;
+    }
+    Measure measure = new Measure(metric);
+    if (metric.isNumericType()) {
+      if (model.getValue() == null) {
+        return;
+      }
+      measure.setValue(model.getValue());
+    } else {
+      String data = model.getData(metric);
+      if (data == null) {
+        return;
+      }
+      measure.setData(data);
+    }
+    context.saveMeasure(inputFile, measure);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.sensor;
+
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+
+import javax.annotation.CheckForNull;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.SortedSet;
+
+/**
+ * View of the module file system that hides the files which did not change since previous analysis.
+ * Given to the sensors that declare {@link org.sonar.api.batch.sensor.SensorDescriptor#onlyOnChangedFiles()}.
+ */
+class ChangedFilesFileSystem implements FileSystem {
+
+  private final FileSystem fs;
+  private final FilePredicate changed;
+
+  ChangedFilesFileSystem(FileSystem fs) {
+    this.fs = fs;
+    this.changed = fs.predicates().not(fs.predicates().hasStatus(InputFile.Status.SAME));
+  }
+
+  @Override
+  public File baseDir() {
+    return fs.baseDir();
+  }
+
+  @Override
+  public Charset encoding() {
+    return fs.encoding();
+  }
+
+  @Override
+  public File workDir() {
+    return fs.workDir();
+  }
+
+  @Override
+  public FilePredicates predicates() {
+    return fs.predicates();
+  }
+
+  @Override
+  @CheckForNull
+  public InputFile inputFile(FilePredicate predicate) {
+    return fs.inputFile(onlyChanged(predicate));
+  }
+
+  @Override
+  @CheckForNull
+  public InputDir inputDir(File dir) {
+    return fs.inputDir(dir);
+  }
+
+  @Override
+  public Iterable<InputFile> inputFiles(FilePredicate predicate) {
+    return fs.inputFiles(onlyChanged(predicate));
+  }
+
+  @Override
+  public boolean hasFiles(FilePredicate predicate) {
+    return fs.hasFiles(onlyChanged(predicate));
+  }
+
+  @Override
+  public Iterable<File> files(FilePredicate predicate) {
+    return fs.files(onlyChanged(predicate));
+  }
+
+  @Override
+  public SortedSet<String> languages() {
+    return fs.languages();
+  }
+
+  @Override
+  public File resolvePath(String path) {
+    return fs.resolvePath(path);
+  }
+
+  private FilePredicate onlyChanged(FilePredicate predicate) {
+    return fs.predicates().and(changed, predicate);
+  }
+}
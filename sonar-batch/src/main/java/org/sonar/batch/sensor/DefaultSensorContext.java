@@ -74,6 +74,10 @@ public class DefaultSensorContext implements SensorContext {
     return analysisMode;
   }
 
+  SensorStorage sensorStorage() {
+    return sensorStorage;
+  }
+
   @Override
   public <G extends Serializable> NewMeasure<G> newMeasure() {
     return new DefaultMeasure(sensorStorage);
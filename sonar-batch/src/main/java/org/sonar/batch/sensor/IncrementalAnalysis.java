@@ -0,0 +1,180 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.sensor;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.AnalysisMode;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.dependency.Dependency;
+import org.sonar.api.batch.sensor.duplication.Duplication;
+import org.sonar.api.batch.sensor.highlighting.internal.DefaultHighlighting;
+import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
+import org.sonar.api.batch.sensor.internal.SensorStorage;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.measure.Measure;
+import org.sonar.api.config.Settings;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.batch.protocol.input.QProfile;
+
+import javax.annotation.Nullable;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Incremental analysis: the sensors that declare {@link org.sonar.api.batch.sensor.SensorDescriptor#onlyOnChangedFiles()}
+ * only see the files that changed since previous analysis, and the data they computed on the other files
+ * during previous analysis is kept. Issues and measures are kept for the rule repositories and metrics that these
+ * sensors declare, whatever they save during current analysis, so that nothing is lost when none of their files changed.
+ * <p/>
+ * It is disabled when there is no previous analysis or when a quality profile changed since previous analysis,
+ * because issues of unchanged files would then be wrong.
+ * @since 5.2
+ */
+public class IncrementalAnalysis implements BatchComponent {
+
+  public static final String ENABLED_PROPERTY = "sonar.analysis.skipUnchangedFiles";
+
+  private static final Logger LOG = LoggerFactory.getLogger(IncrementalAnalysis.class);
+
+  private final boolean enabled;
+  private final Set<String> ruleRepositories = new HashSet<>();
+  private final Set<String> metricKeys = new HashSet<>();
+  private boolean used = false;
+
+  public IncrementalAnalysis(Settings settings, AnalysisMode analysisMode, ProjectRepositories projectRepositories) {
+    this.enabled = settings.getBoolean(ENABLED_PROPERTY) && !analysisMode.isIncremental() && isPreviousAnalysisReusable(projectRepositories);
+  }
+
+  private static boolean isPreviousAnalysisReusable(ProjectRepositories projectRepositories) {
+    Date lastAnalysisDate = projectRepositories.lastAnalysisDate();
+    if (lastAnalysisDate == null) {
+      LOG.info("No previous analysis, all files are analyzed");
+      return false;
+    }
+    for (QProfile qProfile : projectRepositories.qProfiles()) {
+      if (qProfile.rulesUpdatedAt() != null && qProfile.rulesUpdatedAt().after(lastAnalysisDate)) {
+        LOG.info("Quality profile '{}' changed since previous analysis, all files are analyzed", qProfile.name());
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Context to be given to the sensor: the module context itself, or a view of it restricted to changed files
+   * if the sensor supports incremental analysis. The data saved by such sensors is checked against their
+   * declarations even when incremental analysis is disabled, so that they do not fail only when it is enabled.
+   */
+  public SensorContext contextFor(DefaultSensorDescriptor descriptor, DefaultSensorContext context) {
+    if (!descriptor.isOnlyOnChangedFiles()) {
+      return context;
+    }
+    Preconditions.checkState(!descriptor.ruleRepositories().isEmpty() || !descriptor.metrics().isEmpty(),
+      "Sensor '%s' only processes changed files but does not declare the rule repositories or metrics it saves data for", descriptor.name());
+    DeclaredDataStorage storage = new DeclaredDataStorage(descriptor, context.sensorStorage());
+    if (!enabled) {
+      return new DefaultSensorContext(context.settings(), context.fileSystem(), context.activeRules(), context.analysisMode(), storage);
+    }
+    used = true;
+    ruleRepositories.addAll(descriptor.ruleRepositories());
+    metricKeys.addAll(descriptor.metrics());
+    return new DefaultSensorContext(context.settings(), new ChangedFilesFileSystem(context.fileSystem()), context.activeRules(),
+      context.analysisMode(), storage);
+  }
+
+  /**
+   * Data of previous analysis is kept on files that did not change, as soon as at least one sensor
+   * skipped them.
+   */
+  public boolean isCarriedForward(@Nullable InputFile inputFile) {
+    return used && inputFile != null && inputFile.status() == InputFile.Status.SAME;
+  }
+
+  /**
+   * Issues of previous analysis are kept on files that did not change when they were raised by
+   * a sensor that skipped them.
+   */
+  public boolean isCarriedForward(@Nullable InputFile inputFile, RuleKey ruleKey) {
+    return isCarriedForward(inputFile) && ruleRepositories.contains(ruleKey.repository());
+  }
+
+  /**
+   * Measures of previous analysis are kept on files that did not change when their metric
+   * is declared by a sensor that skipped them.
+   */
+  public boolean isCarriedForward(String metricKey) {
+    return used && metricKeys.contains(metricKey);
+  }
+
+  /**
+   * Fails when a sensor saves data that would not be kept on unchanged files, as it is not declared.
+   */
+  private static class DeclaredDataStorage implements SensorStorage {
+    private final DefaultSensorDescriptor descriptor;
+    private final SensorStorage storage;
+
+    DeclaredDataStorage(DefaultSensorDescriptor descriptor, SensorStorage storage) {
+      this.descriptor = descriptor;
+      this.storage = storage;
+    }
+
+    @Override
+    public void store(Measure measure) {
+      String metricKey = measure.metric().key();
+      Preconditions.checkState(measure.inputFile() == null || descriptor.metrics().contains(metricKey),
+        "Sensor '%s' saves measures of metric '%s' on files but does not declare it", descriptor.name(), metricKey);
+      storage.store(measure);
+    }
+
+    @Override
+    public void store(Issue issue) {
+      String repository = issue.ruleKey().repository();
+      Preconditions.checkState(descriptor.ruleRepositories().contains(repository),
+        "Sensor '%s' creates issues of rule repository '%s' but does not declare it", descriptor.name(), repository);
+      storage.store(issue);
+    }
+
+    @Override
+    public void store(Duplication duplication) {
+      storage.store(duplication);
+    }
+
+    @Override
+    public void store(Dependency dependency) {
+      storage.store(dependency);
+    }
+
+    @Override
+    public void store(DefaultHighlighting highlighting) {
+      storage.store(highlighting);
+    }
+  }
+}
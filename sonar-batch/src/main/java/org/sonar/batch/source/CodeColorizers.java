@@ -20,13 +20,13 @@
 package org.sonar.batch.source;
 
 import com.google.common.collect.Lists;
-import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
 import org.sonar.api.web.CodeColorizerFormat;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.colorizer.CodeColorizer;
 import org.sonar.colorizer.Tokenizer;
 
@@ -46,8 +46,10 @@ public class CodeColorizers implements BatchComponent {
   private static final Logger LOG = LoggerFactory.getLogger(CodeColorizers.class);
 
   private final Map<String, CodeColorizerFormat> byLang;
+  private final FileContentCache fileContentCache;
 
-  public CodeColorizers(List<CodeColorizerFormat> formats) {
+  public CodeColorizers(List<CodeColorizerFormat> formats, FileContentCache fileContentCache) {
+    this.fileContentCache = fileContentCache;
     byLang = new HashMap<String, CodeColorizerFormat>();
     for (CodeColorizerFormat format : formats) {
       byLang.put(format.getLanguageKey(), format);
@@ -59,8 +61,8 @@ public class CodeColorizers implements BatchComponent {
   /**
    * Used when no plugin is defining some CodeColorizerFormat
    */
-  public CodeColorizers() {
-    this(Lists.<CodeColorizerFormat>newArrayList());
+  public CodeColorizers(FileContentCache fileContentCache) {
+    this(Lists.<CodeColorizerFormat>newArrayList(), fileContentCache);
   }
 
   @CheckForNull
@@ -79,7 +81,7 @@ public class CodeColorizers implements BatchComponent {
     } else {
       tokenizers = format.getTokenizers();
     }
-    try (Reader reader = new BufferedReader(new InputStreamReader(new BOMInputStream(new FileInputStream(file)), charset))) {
+    try (Reader reader = fileContentCache.reader(file, charset)) {
       new HighlightingRenderer().render(reader, tokenizers, highlighting);
     } catch (Exception e) {
       LOG.warn("Unable to perform colorization of file " + file, e);
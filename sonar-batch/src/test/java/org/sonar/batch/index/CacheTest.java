@@ -20,6 +20,7 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -27,6 +28,12 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.batch.index.Cache.Entry;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class CacheTest {
@@ -267,4 +274,38 @@ public class CacheTest {
     cache.clear("foo", "bar", "baz");
     cache.clear();
   }
+
+  @Test
+  public void concurrent_access() throws Exception {
+    final Cache<String> cache = caches.createCache("concurrent");
+    final int nbThreads = 4;
+    final int nbKeys = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+    List<Future<Integer>> futures = Lists.newArrayList();
+    for (int t = 0; t < nbThreads; t++) {
+      final String component = "component" + t;
+      futures.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          for (int i = 0; i < nbKeys; i++) {
+            cache.put(component, i, component + "_" + i);
+          }
+          int found = 0;
+          for (int i = 0; i < nbKeys; i++) {
+            if ((component + "_" + i).equals(cache.get(component, i))) {
+              found++;
+            }
+          }
+          return found + Iterables.size(cache.values(component));
+        }
+      }));
+    }
+    for (Future<Integer> future : futures) {
+      assertThat(future.get()).isEqualTo(2 * nbKeys);
+    }
+    executor.shutdown();
+
+    assertThat(cache.keySet()).hasSize(nbThreads);
+    assertThat(cache.values()).hasSize(nbThreads * nbKeys);
+  }
 }
@@ -20,6 +20,7 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
@@ -32,6 +33,7 @@ import org.sonar.batch.bootstrap.TempFolderProvider;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -44,7 +46,7 @@ public class CachesTest {
   public static Caches createCacheOnTemp(TemporaryFolder temp) {
     try {
       BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath()));
-      return new Caches(new TempFolderProvider().provide(bootstrapProps));
+      return new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -95,6 +97,42 @@ public class CachesTest {
     }
   }
 
+  @Test
+  public void buffer_pool_is_sized_from_heap_by_default() throws Exception {
+    long expected = Math.max(Caches.MIN_MEMORY, Math.min(Caches.MAX_DEFAULT_MEMORY, Runtime.getRuntime().maxMemory() / 100 * 5)) / Caches.PAGE_SIZE;
+    assertThat(caches.bufferCount()).isEqualTo((int) expected);
+  }
+
+  @Test
+  public void buffer_pool_size_can_be_set() throws Exception {
+    Caches customCaches = createCaches(ImmutableMap.of(Caches.MEMORY_PROPERTY, "16", Caches.JOURNAL_PROPERTY, "false"));
+    try {
+      assertThat(customCaches.bufferCount()).isEqualTo(16 * 1024 * 1024 / Caches.PAGE_SIZE);
+      Cache<String> cache = customCaches.createCache("foo");
+      cache.put("key", "value");
+      assertThat(cache.get("key")).isEqualTo("value");
+    } finally {
+      customCaches.stop();
+    }
+  }
+
+  @Test
+  public void buffer_pool_has_minimum_size() throws Exception {
+    Caches customCaches = createCaches(ImmutableMap.of(Caches.MEMORY_PROPERTY, "0"));
+    try {
+      assertThat(customCaches.bufferCount()).isEqualTo((int) (Caches.MIN_MEMORY / Caches.PAGE_SIZE));
+    } finally {
+      customCaches.stop();
+    }
+  }
+
+  private static Caches createCaches(Map<String, String> props) throws IOException {
+    Map<String, String> allProps = Maps.newHashMap(props);
+    allProps.put(CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath());
+    BootstrapProperties bootstrapProps = new BootstrapProperties(allProps);
+    return new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps);
+  }
+
   static class Element implements Serializable {
 
   }
@@ -30,6 +30,7 @@ import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.sensor.duplication.Duplication;
 import org.sonar.api.batch.sensor.duplication.internal.DefaultDuplication;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
@@ -41,6 +42,7 @@ import org.sonar.batch.protocol.output.BatchReport.Scm;
 import org.sonar.batch.protocol.output.BatchReport.Scm.Changeset;
 import org.sonar.batch.protocol.output.BatchReport.SyntaxHighlighting.HighlightingRule;
 import org.sonar.batch.report.ReportPublisher;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.server.source.db.FileSourceDb;
 
@@ -75,7 +77,7 @@ public class SourceDataFactoryTest {
     ResourceCache resourceCache = new ResourceCache();
     resourceCache.add(org.sonar.api.resources.File.create("src/Foo.java").setEffectiveKey("module_key:src/Foo.java"), null);
     when(measureCache.byMetric(anyString(), anyString())).thenReturn(Collections.<Measure>emptyList());
-    sut = new SourceDataFactory(measureCache, duplicationCache, reportPublisher, resourceCache);
+    sut = new SourceDataFactory(measureCache, duplicationCache, reportPublisher, resourceCache, new FileContentCache(new Settings()));
     // generate a file with 3 lines
     File baseDir = temp.newFolder();
     DefaultFileSystem fs = new DefaultFileSystem(baseDir.toPath());
@@ -31,6 +31,7 @@ import org.mockito.ArgumentMatcher;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.IssueChangeContext;
@@ -39,12 +40,15 @@ import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.Duration;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.issue.IssueCache;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.batch.scan.filesystem.InputPathCache;
+import org.sonar.batch.sensor.IncrementalAnalysis;
 import org.sonar.core.issue.IssueUpdater;
 import org.sonar.core.issue.db.IssueChangeDto;
 import org.sonar.core.issue.db.IssueDto;
@@ -79,6 +83,7 @@ public class IssueTrackingDecoratorTest {
   RulesProfile profile = mock(RulesProfile.class);
   RuleFinder ruleFinder = mock(RuleFinder.class);
   InputPathCache inputPathCache = mock(InputPathCache.class);
+  IncrementalAnalysis incrementalAnalysis = mock(IncrementalAnalysis.class);
 
   @Before
   public void init() {
@@ -94,7 +99,9 @@ public class IssueTrackingDecoratorTest {
       perspectives,
       profile,
       ruleFinder,
-      inputPathCache);
+      inputPathCache,
+      new FileContentCache(new Settings()),
+      incrementalAnalysis);
   }
 
   @Test
@@ -163,6 +170,33 @@ public class IssueTrackingDecoratorTest {
     assertThat(issue.isEndOfLife()).isTrue();
   }
 
+  @Test
+  public void should_keep_unmatched_issues_of_unchanged_files_in_incremental_analysis() throws Exception {
+    Resource file = File.create("Action.java").setEffectiveKey("struts:Action.java").setId(123);
+    ServerIssue unmatchedIssue = new ServerIssueFromDb(new IssueDto().setKee("ABCDE").setResolution(null).setStatus("OPEN").setRuleKey("squid", "AvoidCycle"));
+
+    IssueTrackingResult trackingResult = new IssueTrackingResult();
+    trackingResult.addUnmatched(unmatchedIssue);
+
+    when(tracking.track(isA(SourceHashHolder.class), anyCollection(), anyCollection())).thenReturn(trackingResult);
+    DefaultInputFile inputFile = mock(DefaultInputFile.class);
+    when(inputPathCache.getFile("foo", "Action.java")).thenReturn(inputFile);
+    when(ruleFinder.findByKey(RuleKey.of("squid", "AvoidCycle"))).thenReturn(new Rule("squid", "AvoidCycle"));
+    when(profile.getActiveRule("squid", "AvoidCycle")).thenReturn(new ActiveRule());
+    when(incrementalAnalysis.isCarriedForward(inputFile, RuleKey.of("squid", "AvoidCycle"))).thenReturn(true);
+
+    decorator.doDecorate(file);
+
+    ArgumentCaptor<DefaultIssue> argument = ArgumentCaptor.forClass(DefaultIssue.class);
+    verify(issueCache).put(argument.capture());
+
+    DefaultIssue issue = argument.getValue();
+    assertThat(issue.key()).isEqualTo("ABCDE");
+    assertThat(issue.isNew()).isFalse();
+    assertThat(issue.isEndOfLife()).isFalse();
+    assertThat(issue.isOnDisabledRule()).isFalse();
+  }
+
   @Test
   public void manual_issues_should_be_moved_if_matching_line_found() throws Exception {
     // INPUT : one issue existing during previous scan
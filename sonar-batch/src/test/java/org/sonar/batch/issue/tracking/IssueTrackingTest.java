@@ -32,11 +32,13 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.core.issue.db.IssueDto;
 
 import java.io.File;
@@ -377,7 +379,7 @@ public class IssueTrackingTest {
     FileUtils.write(f, data, Charsets.UTF_8);
     when(inputFile.key()).thenReturn("foo:Action.java");
     when(lastSnapshots.getLineHashes("foo:Action.java")).thenReturn(computeHexHashes(load(reference)));
-    sourceHashHolder = new SourceHashHolder(inputFile, lastSnapshots);
+    sourceHashHolder = new SourceHashHolder(inputFile, lastSnapshots, new FileContentCache(new Settings()));
   }
 
   private String[] computeHexHashes(String source) {
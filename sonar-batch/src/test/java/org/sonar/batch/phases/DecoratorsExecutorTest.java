@@ -19,14 +19,23 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Lists;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeDecorator;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
 import org.sonar.batch.deprecated.decorator.DefaultDecoratorContext;
@@ -35,11 +44,22 @@ import org.sonar.batch.events.EventBus;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
@@ -67,7 +87,7 @@ public class DecoratorsExecutorTest {
     doThrow(new SonarException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
 
     DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class),
-      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class));
+      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class), new Settings());
     try {
       executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), File.create("src/org/foo/Bar.java", null, false));
       fail("Exception has not been thrown");
@@ -77,6 +97,117 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void decorate_sibling_resources_in_parallel() {
+    Project project = new Project("key");
+    Directory dir = Directory.create("src/org/foo");
+    List<Resource> files = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      files.add(File.create("src/org/foo/Bar" + i + ".java"));
+    }
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(any(Resource.class))).thenReturn(Collections.<Resource>emptyList());
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(dir));
+    when(index.getChildren(dir)).thenReturn(files);
+    MeasureCache measureCache = mock(MeasureCache.class);
+    when(measureCache.byResource(any(Resource.class))).thenReturn(Collections.<Measure>emptyList());
+
+    ThreadSafeCountingDecorator threadSafeDecorator = new ThreadSafeCountingDecorator();
+    SerialDecorator serialDecorator = new SerialDecorator();
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), project, index,
+      mock(EventBus.class), mock(CoverageExclusions.class), measureCache, mock(MetricFinder.class), mock(DuplicationCache.class),
+      new Settings().setProperty(DecoratorsExecutor.THREADS_PROPERTY, 4));
+    DefaultDecoratorContext context = executor.decorateInParallel(Arrays.<Decorator>asList(threadSafeDecorator, serialDecorator));
+
+    // project, directory and files
+    assertThat(threadSafeDecorator.count.get()).isEqualTo(102);
+    assertThat(serialDecorator.count).isEqualTo(102);
+    assertThat(serialDecorator.concurrentExecutions).isFalse();
+    assertThat(context.getResource()).isEqualTo(project);
+    assertThat(context.getChildren()).hasSize(1);
+  }
+
+  @Test
+  public void index_is_not_accessed_concurrently_by_thread_safe_decorators() {
+    Project project = new Project("key");
+    List<Resource> files = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      files.add(File.create("src/org/foo/Bar" + i + ".java"));
+    }
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(any(Resource.class))).thenReturn(Collections.<Resource>emptyList());
+    when(index.getChildren(project)).thenReturn(files);
+    final AtomicBoolean running = new AtomicBoolean(false);
+    final AtomicBoolean concurrentAccesses = new AtomicBoolean(false);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        if (!running.compareAndSet(false, true)) {
+          concurrentAccesses.set(true);
+        }
+        Thread.yield();
+        running.set(false);
+        return null;
+      }
+    }).when(index).addViolation(any(Violation.class), anyBoolean());
+    MeasureCache measureCache = mock(MeasureCache.class);
+    when(measureCache.byResource(any(Resource.class))).thenReturn(Collections.<Measure>emptyList());
+
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), project, index,
+      mock(EventBus.class), mock(CoverageExclusions.class), measureCache, mock(MetricFinder.class), mock(DuplicationCache.class),
+      new Settings().setProperty(DecoratorsExecutor.THREADS_PROPERTY, 4));
+    executor.decorateInParallel(Arrays.<Decorator>asList(new ThreadSafeViolationDecorator()));
+
+    verify(index, times(101)).addViolation(any(Violation.class), anyBoolean());
+    assertThat(concurrentAccesses.get()).isFalse();
+  }
+
+  @ThreadSafeDecorator
+  static class ThreadSafeViolationDecorator implements Decorator {
+    public void decorate(Resource resource, DecoratorContext context) {
+      context.saveViolation(Violation.create((Rule) null, resource));
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  @ThreadSafeDecorator
+  static class ThreadSafeCountingDecorator implements Decorator {
+    final AtomicInteger count = new AtomicInteger(0);
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      if (!(resource instanceof File)) {
+        // children are decorated before parents
+        assertThat(context.getChildren()).isNotEmpty();
+      }
+      count.incrementAndGet();
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  static class SerialDecorator implements Decorator {
+    final AtomicBoolean running = new AtomicBoolean(false);
+    boolean concurrentExecutions = false;
+    int count = 0;
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      if (!running.compareAndSet(false, true)) {
+        concurrentExecutions = true;
+      }
+      count++;
+      running.set(false);
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
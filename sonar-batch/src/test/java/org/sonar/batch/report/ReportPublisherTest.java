@@ -19,8 +19,16 @@
  */
 package org.sonar.batch.report;
 
+import com.github.kevinsawicki.http.HttpRequest.HttpRequestException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
@@ -28,11 +36,27 @@ import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.batch.bootstrap.DefaultAnalysisMode;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.index.ResourceCache;
+import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.batch.protocol.output.BatchReportWriter;
+import org.sonar.batch.protocol.output.FileStructure;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -45,6 +69,15 @@ public class ReportPublisherTest extends AbstractDbUnitTestCase {
 
   private ProjectReactor reactor;
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  org.eclipse.jetty.server.Server httpServer;
+  final CountDownLatch requestHandled = new CountDownLatch(1);
+  volatile String requestTransferEncoding;
+  // set only when the request body is completely received
+  volatile String requestBody;
+
   @Before
   public void setUp() {
     mode = mock(DefaultAnalysisMode.class);
@@ -52,6 +85,13 @@ public class ReportPublisherTest extends AbstractDbUnitTestCase {
     when(reactor.getRoot()).thenReturn(ProjectDefinition.create().setKey("struts"));
   }
 
+  @After
+  public void stopServer() throws Exception {
+    if (httpServer != null) {
+      httpServer.stop();
+    }
+  }
+
   @Test
   public void should_log_successful_analysis() throws Exception {
     Settings settings = new Settings();
@@ -77,4 +117,191 @@ public class ReportPublisherTest extends AbstractDbUnitTestCase {
     verify(logger).info("ANALYSIS SUCCESSFUL");
   }
 
+  @Test
+  public void should_compress_and_upload_report_while_it_is_generated() throws Exception {
+    ReportPublisher job = newStreamingPublisher(new ReportPublisherStep() {
+      @Override
+      public void publish(BatchReportWriter writer) {
+        writer.writeComponent(BatchReport.Component.newBuilder().setRef(1).build());
+      }
+    }, new ReportPublisherStep() {
+      @Override
+      public void publish(BatchReportWriter writer) {
+        writer.writeComponent(BatchReport.Component.newBuilder().setRef(2).build());
+      }
+    });
+
+    job.execute();
+    job.stop();
+
+    assertThat(requestTransferEncoding).isEqualTo("chunked");
+    assertThat(requestBody).contains("component-1.pb", "component-2.pb");
+  }
+
+  @Test
+  public void should_fail_upload_if_report_generation_fails() throws Exception {
+    ReportPublisher job = newStreamingPublisher(new ReportPublisherStep() {
+      @Override
+      public void publish(BatchReportWriter writer) {
+        writer.writeComponent(BatchReport.Component.newBuilder().setRef(1).build());
+      }
+    }, new ReportPublisherStep() {
+      @Override
+      public void publish(BatchReportWriter writer) {
+        throw new IllegalStateException("Fail to publish");
+      }
+    });
+
+    try {
+      job.execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to publish");
+    } finally {
+      job.stop();
+    }
+
+    // the upload may be interrupted before sending the request
+    requestHandled.await(5, TimeUnit.SECONDS);
+    assertThat(requestBody).isNull();
+  }
+
+  @Test(timeout = 60000)
+  public void should_fail_without_hanging_if_server_is_not_reachable() throws Exception {
+    when(reactor.getRoot()).thenReturn(ProjectDefinition.create().setKey("struts").setWorkDir(temp.newFolder()));
+    ServerClient serverClient = mock(ServerClient.class);
+    when(serverClient.getURL()).thenReturn("http://localhost:" + unusedPort());
+    Settings settings = new Settings();
+    settings.setProperty(ReportPublisher.STREAM_REPORT_PROP_KEY, true);
+    ReportPublisher job = new ReportPublisher(settings, serverClient, mock(Server.class), reactor, mode, mock(TempFolder.class),
+      new ReportPublisherStep[] {new ReportPublisherStep() {
+        @Override
+        public void publish(BatchReportWriter writer) {
+          // random content is not compressed, so it does not fit into the buffer of the upload pipe
+          byte[] content = new byte[3 * 1024 * 1024];
+          new Random().nextBytes(content);
+          try {
+            FileUtils.writeByteArrayToFile(writer.getSourceFile(1), content);
+          } catch (IOException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      }});
+    job.start();
+
+    try {
+      job.execute();
+      fail();
+    } catch (RuntimeException e) {
+      // failure of the upload, or closed pipe if the writer notices it before the upload is done
+      if (e instanceof HttpRequestException) {
+        assertThat(e.getCause()).isInstanceOf(ConnectException.class);
+      } else {
+        assertThat(e.getCause()).isInstanceOf(IOException.class).hasMessage("Pipe closed");
+      }
+    } finally {
+      job.stop();
+    }
+  }
+
+  @Test
+  public void should_run_publishers_concurrently() throws Exception {
+    final CountDownLatch allStarted = new CountDownLatch(3);
+    ReportPublisherStep[] steps = new ReportPublisherStep[3];
+    for (int i = 0; i < steps.length; i++) {
+      final int ref = i + 1;
+      steps[i] = new ReportPublisherStep() {
+        @Override
+        public void publish(BatchReportWriter writer) {
+          allStarted.countDown();
+          try {
+            // fails if publishers are executed one after another
+            assertThat(allStarted.await(10, TimeUnit.SECONDS)).isTrue();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          writer.writeComponent(BatchReport.Component.newBuilder().setRef(ref).build());
+        }
+      };
+    }
+    when(mode.isMediumTest()).thenReturn(true);
+    when(reactor.getRoot()).thenReturn(ProjectDefinition.create().setKey("struts").setWorkDir(temp.newFolder()));
+    Settings settings = new Settings();
+    settings.setProperty(ReportPublisher.PUBLISHER_THREADS_PROP_KEY, 3);
+    settings.setProperty(ReportPublisher.KEEP_REPORT_PROP_KEY, true);
+    ReportPublisher job = new ReportPublisher(settings, mock(ServerClient.class), mock(Server.class), reactor, mode,
+      new DefaultTempFolder(temp.newFolder()), steps);
+    job.start();
+
+    job.execute();
+
+    for (int ref = 1; ref <= 3; ref++) {
+      assertThat(job.getWriter().hasComponentData(FileStructure.Domain.COMPONENT, ref)).isTrue();
+    }
+  }
+
+  @Test
+  public void should_fail_if_a_concurrent_publisher_fails() throws Exception {
+    when(mode.isMediumTest()).thenReturn(true);
+    when(reactor.getRoot()).thenReturn(ProjectDefinition.create().setKey("struts").setWorkDir(temp.newFolder()));
+    Settings settings = new Settings();
+    settings.setProperty(ReportPublisher.PUBLISHER_THREADS_PROP_KEY, 2);
+    ReportPublisher job = new ReportPublisher(settings, mock(ServerClient.class), mock(Server.class), reactor, mode,
+      new DefaultTempFolder(temp.newFolder()), new ReportPublisherStep[] {new ReportPublisherStep() {
+        @Override
+        public void publish(BatchReportWriter writer) {
+          writer.writeComponent(BatchReport.Component.newBuilder().setRef(1).build());
+        }
+      }, new ReportPublisherStep() {
+        @Override
+        public void publish(BatchReportWriter writer) {
+          throw new IllegalStateException("Fail to publish");
+        }
+      }});
+    job.start();
+
+    try {
+      job.execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to publish");
+    } finally {
+      job.stop();
+    }
+  }
+
+  private static int unusedPort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private ReportPublisher newStreamingPublisher(ReportPublisherStep... steps) throws Exception {
+    httpServer = new org.eclipse.jetty.server.Server(0);
+    httpServer.setHandler(new AbstractHandler() {
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try {
+          requestTransferEncoding = request.getHeader("Transfer-Encoding");
+          requestBody = IOUtils.toString(baseRequest.getInputStream(), "ISO-8859-1");
+          response.setStatus(HttpServletResponse.SC_OK);
+          baseRequest.setHandled(true);
+        } finally {
+          requestHandled.countDown();
+        }
+      }
+    });
+    httpServer.start();
+
+    when(reactor.getRoot()).thenReturn(ProjectDefinition.create().setKey("struts").setWorkDir(temp.newFolder()));
+    ServerClient serverClient = mock(ServerClient.class);
+    when(serverClient.getURL()).thenReturn("http://localhost:" + httpServer.getConnectors()[0].getLocalPort());
+    Settings settings = new Settings();
+    settings.setProperty(ReportPublisher.STREAM_REPORT_PROP_KEY, true);
+    settings.setProperty(CoreProperties.SERVER_BASE_URL, "http://myserver/");
+    ReportPublisher job = new ReportPublisher(settings, serverClient, mock(Server.class), reactor, mode, mock(TempFolder.class), steps);
+    job.start();
+    return job;
+  }
+
 }
@@ -26,10 +26,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.index.ResourceCache;
 import org.sonar.batch.protocol.output.BatchReportWriter;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -57,7 +59,7 @@ public class SourcePublisherTest {
     File baseDir = temp.newFolder();
     sourceFile = new File(baseDir, "src/Foo.php");
     resourceCache.add(sampleFile, null).setInputPath(new DefaultInputFile("foo", "src/Foo.php").setLines(5).setModuleBaseDir(baseDir.toPath()).setCharset(Charsets.ISO_8859_1));
-    publisher = new SourcePublisher(resourceCache);
+    publisher = new SourcePublisher(resourceCache, new FileContentCache(new Settings()));
     File outputDir = temp.newFolder();
     writer = new BatchReportWriter(outputDir);
   }
@@ -22,29 +22,50 @@ package org.sonar.batch.repository;
 import com.google.common.base.Function;
 import com.google.common.io.InputSupplier;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.utils.System2;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.protocol.input.BatchInput;
 import org.sonar.batch.protocol.input.BatchInput.ServerIssue;
+import org.sonar.home.cache.FileCache;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultServerIssuesLoaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DefaultServerIssuesLoader loader;
   private ServerClient serverClient;
+  private System2 system;
 
   @Before
-  public void prepare() {
+  public void prepare() throws Exception {
     serverClient = mock(ServerClient.class);
-    loader = new DefaultServerIssuesLoader(serverClient);
+    when(serverClient.getURL()).thenReturn("http://localhost:9000");
+    FileCache fileCache = mock(FileCache.class);
+    when(fileCache.getDir()).thenReturn(temp.newFolder());
+    system = mock(System2.class);
+    when(system.now()).thenReturn(1000L);
+    loader = new DefaultServerIssuesLoader(serverClient, fileCache, system);
   }
 
   @Test
@@ -73,4 +94,93 @@ public class DefaultServerIssuesLoaderTest {
 
     assertThat(result).extracting("key").containsExactly("ab1", "ab2");
   }
+
+  @Test
+  public void download_only_issues_changed_since_previous_load() throws Exception {
+    mockVersion(10_000_000L);
+    mockIssues("/batch/issues?key=foo", issue("ab1", "OPEN"), issue("ab2", "OPEN"));
+    assertThat(load("foo")).containsExactly("ab1", "ab2");
+
+    mockVersion(20_000_000L);
+    mockIssues("/batch/issues?key=foo&changedSince=10000000", issue("ab2", Issue.STATUS_CLOSED), issue("ab3", "OPEN"));
+    assertThat(load("foo")).containsExactly("ab1", "ab3");
+
+    // local copy has been updated
+    mockVersion(30_000_000L);
+    mockIssues("/batch/issues?key=foo&changedSince=20000000", issue("ab1", "RESOLVED"));
+    assertThat(load("foo")).containsExactly("ab3", "ab1");
+
+    verify(serverClient, times(1)).doRequest("/batch/issues?key=foo", "GET", null);
+  }
+
+  @Test
+  public void download_again_issues_of_last_indexing_on_server() throws Exception {
+    mockVersion(10_000_000L);
+    mockIssues("/batch/issues?key=foo", issue("ab1", "OPEN"));
+    assertThat(load("foo")).containsExactly("ab1");
+
+    // ab2 is indexed with ab1 but was not searchable yet when issues were downloaded.
+    // Version of issues on server did not change.
+    mockIssues("/batch/issues?key=foo&changedSince=10000000", issue("ab1", "OPEN"), issue("ab2", "OPEN"));
+    assertThat(load("foo")).containsExactly("ab1", "ab2");
+
+    verify(serverClient, times(1)).doRequest("/batch/issues?key=foo", "GET", null);
+  }
+
+  @Test
+  public void download_all_issues_when_local_copy_is_too_old() throws Exception {
+    when(serverClient.request("/batch/issues_version", false)).thenReturn("100");
+    mockIssues("/batch/issues?key=foo", issue("ab1", "OPEN"));
+    assertThat(load("foo")).containsExactly("ab1");
+
+    when(system.now()).thenReturn(1000L + DefaultServerIssuesLoader.SNAPSHOT_MAX_AGE_MS + 1L);
+    when(serverClient.request("/batch/issues_version", false)).thenReturn("200");
+    mockIssues("/batch/issues?key=foo", issue("ab2", "OPEN"));
+    assertThat(load("foo")).containsExactly("ab2");
+  }
+
+  @Test
+  public void do_not_keep_local_copy_of_issues_of_files() throws Exception {
+    mockIssues("/batch/issues?key=foo%3ABar.java", issue("ab1", "OPEN"));
+
+    final List<String> keys = new ArrayList<>();
+    loader.load("foo:Bar.java", collect(keys), true);
+
+    assertThat(keys).containsExactly("ab1");
+    verify(serverClient, never()).request(anyString(), eq(false));
+  }
+
+  private void mockVersion(long version) {
+    when(serverClient.request("/batch/issues_version", false)).thenReturn(String.valueOf(version));
+  }
+
+  private List<String> load(String componentKey) {
+    List<String> keys = new ArrayList<>();
+    loader.load(componentKey, collect(keys), false);
+    return keys;
+  }
+
+  private static Function<ServerIssue, Void> collect(final List<String> keys) {
+    return new Function<ServerIssue, Void>() {
+      @Override
+      public Void apply(ServerIssue issue) {
+        keys.add(issue.getKey());
+        return null;
+      }
+    };
+  }
+
+  private void mockIssues(String url, ServerIssue... issues) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for (ServerIssue issue : issues) {
+      issue.writeDelimitedTo(bos);
+    }
+    InputSupplier<InputStream> is = mock(InputSupplier.class);
+    when(is.getInput()).thenReturn(new ByteArrayInputStream(bos.toByteArray()));
+    when(serverClient.doRequest(url, "GET", null)).thenReturn(is);
+  }
+
+  private static ServerIssue issue(String key, String status) {
+    return ServerIssue.newBuilder().setKey(key).setStatus(status).build();
+  }
 }
@@ -0,0 +1,118 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FileContentCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_file_only_once() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "foo\nbar", Charsets.UTF_8);
+    FileContentCache cache = new FileContentCache(new Settings());
+
+    assertThat(cache.content(file, Charsets.UTF_8)).isEqualTo("foo\nbar");
+
+    // content is not read again from disk
+    FileUtils.forceDelete(file);
+    assertThat(cache.content(file, Charsets.UTF_8)).isEqualTo("foo\nbar");
+  }
+
+  @Test
+  public void remove_byte_order_mark() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "\uFEFFfoo", Charsets.UTF_8);
+    FileContentCache cache = new FileContentCache(new Settings());
+
+    assertThat(cache.content(file, Charsets.UTF_8)).isEqualTo("foo");
+  }
+
+  @Test
+  public void decode_again_if_charset_changes() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "\u00e9", Charsets.UTF_8);
+    FileContentCache cache = new FileContentCache(new Settings());
+
+    assertThat(cache.content(file, Charsets.UTF_8)).isEqualTo("\u00e9");
+    assertThat(cache.content(file, Charsets.ISO_8859_1)).isEqualTo("\u00c3\u00a9");
+  }
+
+  @Test
+  public void do_not_keep_contents_bigger_than_max_memory() throws Exception {
+    File file = temp.newFile();
+    // one million of chars, so two Mb in memory
+    FileUtils.write(file, StringUtils.repeat("a", 1000000), Charsets.UTF_8);
+    FileContentCache cache = new FileContentCache(new Settings().setProperty(FileContentCache.MEMORY_PROPERTY, "1"));
+
+    assertThat(cache.content(file, Charsets.UTF_8)).hasSize(1000000);
+
+    FileUtils.forceDelete(file);
+    try {
+      cache.content(file, Charsets.UTF_8);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to read file");
+    }
+  }
+
+  @Test
+  public void compute_line_hashes_only_once() throws Exception {
+    File baseDir = temp.newFolder();
+    File file = new File(baseDir, "Foo.java");
+    FileUtils.write(file, "foo\n\n  bar ", Charsets.UTF_8);
+    DefaultInputFile inputFile = new DefaultInputFile("foo", "Foo.java").setModuleBaseDir(baseDir.toPath()).setCharset(Charsets.UTF_8);
+    FileContentCache cache = new FileContentCache(new Settings());
+
+    byte[][] hashes = cache.lineHashes(inputFile);
+    assertThat(hashes).hasSize(3);
+    assertThat(Hex.encodeHexString(hashes[0])).isEqualTo(DigestUtils.md5Hex("foo"));
+    assertThat(hashes[1]).isNull();
+    assertThat(Hex.encodeHexString(hashes[2])).isEqualTo(DigestUtils.md5Hex("bar"));
+
+    assertThat(cache.lineHashes(inputFile)).isSameAs(hashes);
+    // content is kept with hashes
+    FileUtils.forceDelete(file);
+    assertThat(cache.content(inputFile)).isEqualTo("foo\n\n  bar ");
+  }
+
+  @Test
+  public void max_memory_is_a_ratio_of_heap_by_default() {
+    assertThat(FileContentCache.maxMemory(new Settings())).isGreaterThan(0L).isLessThanOrEqualTo(FileContentCache.MAX_DEFAULT_MEMORY);
+    assertThat(FileContentCache.maxMemory(new Settings().setProperty(FileContentCache.MEMORY_PROPERTY, "64"))).isEqualTo(64L * 1024 * 1024);
+  }
+}
@@ -40,7 +40,7 @@ public class InputFileBuilderFactoryTest {
     DefaultAnalysisMode analysisMode = mock(DefaultAnalysisMode.class);
 
     InputFileBuilderFactory factory = new InputFileBuilderFactory(ProjectDefinition.create().setKey("struts"), pathResolver, langDetectionFactory,
-      statusDetectionFactory, analysisMode, new Settings(), new FileMetadata());
+      statusDetectionFactory, analysisMode, new Settings(), new FileMetadata(), new FileContentCache(new Settings()));
     InputFileBuilder builder = factory.create(fs);
 
     assertThat(builder.langDetection()).isNotNull();
@@ -0,0 +1,151 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.sensor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Project;
+import org.sonar.batch.components.PastSnapshot;
+import org.sonar.batch.deprecated.components.PastSnapshotFinderByPreviousAnalysis;
+import org.sonar.batch.index.BatchResource;
+import org.sonar.batch.index.ResourceCache;
+import org.sonar.jpa.test.AbstractDbUnitTestCase;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CarryForwardMeasuresSensorTest extends AbstractDbUnitTestCase {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  Metric ncloc = new Metric.Builder("ncloc", "Lines of code", Metric.ValueType.INT).create().setId(1);
+  Metric nclocData = new Metric.Builder("ncloc_data", "ncloc_data", Metric.ValueType.DATA).create().setId(2);
+  Metric coverage = new Metric.Builder("coverage", "Coverage", Metric.ValueType.PERCENT).create().setId(3);
+
+  IncrementalAnalysis incrementalAnalysis = mock(IncrementalAnalysis.class);
+  ResourceCache resourceCache = mock(ResourceCache.class);
+  PastSnapshotFinderByPreviousAnalysis pastSnapshotFinder = mock(PastSnapshotFinderByPreviousAnalysis.class);
+  MetricFinder metricFinder = mock(MetricFinder.class);
+  SensorContext context = mock(SensorContext.class);
+  Project module = new Project("foo");
+  DefaultFileSystem fs;
+  DefaultInputFile sameFile;
+  DefaultInputFile recomputedFile;
+  DefaultInputFile changedFile;
+  CarryForwardMeasuresSensor sensor;
+
+  @Before
+  public void prepare() throws Exception {
+    setupData("shared");
+
+    fs = new DefaultFileSystem(temp.newFolder().toPath());
+    sameFile = new DefaultInputFile("foo", "src/Same.java").setStatus(InputFile.Status.SAME);
+    recomputedFile = new DefaultInputFile("foo", "src/Recomputed.java").setStatus(InputFile.Status.SAME);
+    changedFile = new DefaultInputFile("foo", "src/Changed.java").setStatus(InputFile.Status.CHANGED);
+    fs.add(sameFile);
+    fs.add(recomputedFile);
+    fs.add(changedFile);
+    for (DefaultInputFile inputFile : Arrays.asList(sameFile, recomputedFile, changedFile)) {
+      File file = File.create(inputFile.relativePath());
+      file.setEffectiveKey(inputFile.key());
+      when(context.getResource(inputFile)).thenReturn(file);
+      when(incrementalAnalysis.isCarriedForward(inputFile)).thenReturn(inputFile.status() == InputFile.Status.SAME);
+      if (inputFile == recomputedFile) {
+        when(context.getMeasure(file, ncloc)).thenReturn(new Measure(ncloc, 25.0));
+      }
+    }
+
+    when(incrementalAnalysis.isEnabled()).thenReturn(true);
+    when(incrementalAnalysis.isCarriedForward("ncloc")).thenReturn(true);
+    when(incrementalAnalysis.isCarriedForward("ncloc_data")).thenReturn(true);
+    when(metricFinder.findAll()).thenReturn(Arrays.asList(ncloc, nclocData, coverage));
+
+    Snapshot moduleSnapshot = new Snapshot();
+    when(resourceCache.get(module)).thenReturn(new BatchResource(1, module, null).setSnapshot(moduleSnapshot));
+    Snapshot previousSnapshot = getSession().getSingleResult(Snapshot.class, "id", 1000);
+    when(pastSnapshotFinder.findByPreviousAnalysis(moduleSnapshot)).thenReturn(new PastSnapshot("previous_analysis", new Date(), previousSnapshot));
+
+    sensor = new CarryForwardMeasuresSensor(incrementalAnalysis, fs, resourceCache, pastSnapshotFinder, getSession(), metricFinder);
+  }
+
+  @Test
+  public void execute_only_if_incremental_analysis_is_enabled() {
+    assertThat(sensor.shouldExecuteOnProject(module)).isTrue();
+
+    when(incrementalAnalysis.isEnabled()).thenReturn(false);
+    assertThat(sensor.shouldExecuteOnProject(module)).isFalse();
+  }
+
+  @Test
+  public void carry_forward_numeric_and_data_measures_of_unchanged_files() {
+    sensor.analyse(module, context);
+
+    ArgumentCaptor<Measure> measures = ArgumentCaptor.forClass(Measure.class);
+    verify(context, times(2)).saveMeasure(eq(sameFile), measures.capture());
+    Map<String, Measure> savedByMetric = new HashMap<>();
+    for (Measure measure : measures.getAllValues()) {
+      savedByMetric.put(measure.getMetricKey(), measure);
+    }
+    assertThat(savedByMetric.keySet()).containsOnly("ncloc", "ncloc_data");
+    assertThat(savedByMetric.get("ncloc").getValue()).isEqualTo(10.0);
+    assertThat(savedByMetric.get("ncloc_data").getData()).isEqualTo("1=1;2=0;3=1");
+  }
+
+  @Test
+  public void do_not_override_measures_computed_again() {
+    sensor.analyse(module, context);
+
+    verify(context, never()).saveMeasure(eq(recomputedFile), any(Measure.class));
+    verify(context, never()).saveMeasure(eq(changedFile), any(Measure.class));
+  }
+
+  @Test
+  public void do_nothing_without_previous_analysis() {
+    when(pastSnapshotFinder.findByPreviousAnalysis(any(Snapshot.class))).thenReturn(new PastSnapshot("previous_analysis"));
+
+    sensor.analyse(module, context);
+
+    verify(context, never()).saveMeasure(any(InputFile.class), any(Measure.class));
+  }
+}
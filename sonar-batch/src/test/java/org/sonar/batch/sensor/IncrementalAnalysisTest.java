@@ -0,0 +1,235 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.sensor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.AnalysisMode;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
+import org.sonar.api.batch.sensor.internal.SensorStorage;
+import org.sonar.api.batch.sensor.measure.Measure;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.batch.protocol.input.QProfile;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class IncrementalAnalysisTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  Settings settings = new Settings();
+  AnalysisMode analysisMode = mock(AnalysisMode.class);
+  ProjectRepositories projectRepositories = new ProjectRepositories();
+  SensorStorage storage = mock(SensorStorage.class);
+  DefaultFileSystem fs;
+  DefaultInputFile changedFile;
+  DefaultInputFile sameFile;
+  DefaultSensorContext context;
+
+  @Before
+  public void prepare() throws Exception {
+    settings.setProperty(IncrementalAnalysis.ENABLED_PROPERTY, true);
+    projectRepositories.setLastAnalysisDate(new Date(1000L));
+    projectRepositories.addQProfile(new QProfile("java-way", "Sonar Way", "java", new Date(500L)));
+
+    fs = new DefaultFileSystem(temp.newFolder().toPath());
+    changedFile = new DefaultInputFile("foo", "src/Changed.java").setStatus(InputFile.Status.CHANGED);
+    sameFile = new DefaultInputFile("foo", "src/Same.java").setStatus(InputFile.Status.SAME);
+    fs.add(changedFile);
+    fs.add(sameFile);
+    context = new DefaultSensorContext(settings, fs, new ActiveRulesBuilder().build(), analysisMode, storage);
+  }
+
+  @Test
+  public void give_only_changed_files_to_incremental_sensors() {
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(settings, analysisMode, projectRepositories);
+    assertThat(incrementalAnalysis.isEnabled()).isTrue();
+
+    SensorContext sensorContext = incrementalAnalysis.contextFor(incrementalSensor().createIssuesForRuleRepository("squid"), context);
+
+    assertThat(sensorContext.fileSystem().inputFiles(fs.predicates().all())).containsOnly(changedFile);
+    assertThat(sensorContext.fileSystem().hasFiles(fs.predicates().hasRelativePath("src/Same.java"))).isFalse();
+    assertThat(incrementalAnalysis.isCarriedForward(sameFile)).isTrue();
+    assertThat(incrementalAnalysis.isCarriedForward(changedFile)).isFalse();
+  }
+
+  @Test
+  public void give_all_files_to_other_sensors() {
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(settings, analysisMode, projectRepositories);
+
+    assertThat(incrementalAnalysis.contextFor(new DefaultSensorDescriptor(), context)).isSameAs(context);
+    // no sensor skipped unchanged files
+    assertThat(incrementalAnalysis.isCarriedForward(sameFile)).isFalse();
+  }
+
+  @Test
+  public void carry_forward_declared_rule_repositories_and_metrics_of_incremental_sensors() {
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(settings, analysisMode, projectRepositories);
+    SensorContext sensorContext = incrementalAnalysis.contextFor(
+      incrementalSensor().createIssuesForRuleRepository("squid").saveMeasuresForMetrics(CoreMetrics.NCLOC_KEY), context);
+
+    sensorContext.<Integer>newMeasure().onFile(changedFile).forMetric(CoreMetrics.NCLOC).withValue(10).save();
+
+    verify(storage).store(any(Measure.class));
+    assertThat(incrementalAnalysis.isCarriedForward(CoreMetrics.NCLOC_KEY)).isTrue();
+    assertThat(incrementalAnalysis.isCarriedForward(CoreMetrics.COMPLEXITY_KEY)).isFalse();
+    assertThat(incrementalAnalysis.isCarriedForward(sameFile, RuleKey.of("squid", "S123"))).isTrue();
+    assertThat(incrementalAnalysis.isCarriedForward(changedFile, RuleKey.of("squid", "S123"))).isFalse();
+    assertThat(incrementalAnalysis.isCarriedForward(sameFile, RuleKey.of("other", "S123"))).isFalse();
+  }
+
+  @Test
+  public void carry_forward_when_no_file_changed() throws Exception {
+    fs = new DefaultFileSystem(temp.newFolder().toPath());
+    fs.add(sameFile);
+    context = new DefaultSensorContext(settings, fs, new ActiveRulesBuilder().build(), analysisMode, storage);
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(settings, analysisMode, projectRepositories);
+
+    SensorContext sensorContext = incrementalAnalysis.contextFor(
+      incrementalSensor().createIssuesForRuleRepository("squid").saveMeasuresForMetrics(CoreMetrics.NCLOC_KEY), context);
+
+    // sensor has nothing to analyze, so it does not save anything
+    assertThat(sensorContext.fileSystem().inputFiles(fs.predicates().all())).isEmpty();
+    verifyZeroInteractions(storage);
+    assertThat(incrementalAnalysis.isCarriedForward(CoreMetrics.NCLOC_KEY)).isTrue();
+    assertThat(incrementalAnalysis.isCarriedForward(sameFile, RuleKey.of("squid", "S123"))).isTrue();
+  }
+
+  @Test
+  public void carry_forward_when_only_files_of_another_language_changed() throws Exception {
+    fs = new DefaultFileSystem(temp.newFolder().toPath());
+    DefaultInputFile changedPhpFile = new DefaultInputFile("foo", "src/changed.php").setLanguage("php").setStatus(InputFile.Status.CHANGED);
+    sameFile.setLanguage("java");
+    fs.add(changedPhpFile);
+    fs.add(sameFile);
+    context = new DefaultSensorContext(settings, fs, new ActiveRulesBuilder().build(), analysisMode, storage);
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(settings, analysisMode, projectRepositories);
+
+    SensorContext sensorContext = incrementalAnalysis.contextFor(
+      incrementalSensor().onlyOnLanguage("java").createIssuesForRuleRepository("squid").saveMeasuresForMetrics(CoreMetrics.NCLOC_KEY), context);
+
+    assertThat(sensorContext.fileSystem().inputFiles(fs.predicates().hasLanguage("java"))).isEmpty();
+    verifyZeroInteractions(storage);
+    assertThat(incrementalAnalysis.isCarriedForward(CoreMetrics.NCLOC_KEY)).isTrue();
+    assertThat(incrementalAnalysis.isCarriedForward(sameFile, RuleKey.of("squid", "S123"))).isTrue();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_if_incremental_sensor_declares_neither_rule_repositories_nor_metrics() {
+    new IncrementalAnalysis(settings, analysisMode, projectRepositories).contextFor(incrementalSensor(), context);
+  }
+
+  @Test
+  public void fail_if_incremental_sensor_saves_measures_of_undeclared_metric() {
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(settings, analysisMode, projectRepositories);
+    SensorContext sensorContext = incrementalAnalysis.contextFor(incrementalSensor().saveMeasuresForMetrics(CoreMetrics.NCLOC_KEY), context);
+
+    try {
+      sensorContext.<Integer>newMeasure().onFile(changedFile).forMetric(CoreMetrics.COMPLEXITY).withValue(3).save();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Sensor 'Incremental' saves measures of metric 'complexity' on files but does not declare it");
+    }
+    verifyZeroInteractions(storage);
+  }
+
+  @Test
+  public void fail_if_incremental_sensor_creates_issues_of_undeclared_rule_repository() {
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(settings, analysisMode, projectRepositories);
+    SensorContext sensorContext = incrementalAnalysis.contextFor(incrementalSensor().createIssuesForRuleRepository("squid"), context);
+
+    try {
+      sensorContext.newIssue().onFile(changedFile).forRule(RuleKey.of("other", "S123")).save();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Sensor 'Incremental' creates issues of rule repository 'other' but does not declare it");
+    }
+    verifyZeroInteractions(storage);
+  }
+
+  @Test
+  public void disabled_by_default() {
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(new Settings(), analysisMode, projectRepositories);
+
+    assertThat(incrementalAnalysis.isEnabled()).isFalse();
+    SensorContext sensorContext = incrementalAnalysis.contextFor(incrementalSensor().saveMeasuresForMetrics(CoreMetrics.NCLOC_KEY), context);
+    assertThat(sensorContext.fileSystem()).isSameAs(fs);
+    assertThat(incrementalAnalysis.isCarriedForward(sameFile)).isFalse();
+    assertThat(incrementalAnalysis.isCarriedForward(CoreMetrics.NCLOC_KEY)).isFalse();
+  }
+
+  @Test
+  public void fail_if_incremental_sensor_saves_undeclared_data_when_disabled() {
+    IncrementalAnalysis incrementalAnalysis = new IncrementalAnalysis(new Settings(), analysisMode, projectRepositories);
+    SensorContext sensorContext = incrementalAnalysis.contextFor(incrementalSensor().saveMeasuresForMetrics(CoreMetrics.NCLOC_KEY), context);
+
+    try {
+      sensorContext.<Integer>newMeasure().onFile(changedFile).forMetric(CoreMetrics.COMPLEXITY).withValue(3).save();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Sensor 'Incremental' saves measures of metric 'complexity' on files but does not declare it");
+    }
+    verifyZeroInteractions(storage);
+  }
+
+  @Test
+  public void disabled_without_previous_analysis() {
+    projectRepositories.setLastAnalysisDate(null);
+
+    assertThat(new IncrementalAnalysis(settings, analysisMode, projectRepositories).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void disabled_when_quality_profile_changed_since_previous_analysis() {
+    projectRepositories.addQProfile(new QProfile("js-way", "Sonar Way", "js", new Date(2000L)));
+
+    assertThat(new IncrementalAnalysis(settings, analysisMode, projectRepositories).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void disabled_in_preview_incremental_mode() {
+    when(analysisMode.isIncremental()).thenReturn(true);
+
+    assertThat(new IncrementalAnalysis(settings, analysisMode, projectRepositories).isEnabled()).isFalse();
+  }
+
+  private static DefaultSensorDescriptor incrementalSensor() {
+    return new DefaultSensorDescriptor().name("Incremental").onlyOnChangedFiles();
+  }
+}
@@ -27,7 +27,9 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
 import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.config.Settings;
 import org.sonar.api.web.CodeColorizerFormat;
+import org.sonar.batch.scan.filesystem.FileContentCache;
 import org.sonar.colorizer.*;
 
 import java.io.File;
@@ -44,7 +46,7 @@ public class CodeColorizersTest {
 
   @Test
   public void testConvertToHighlighting() throws Exception {
-    CodeColorizers codeColorizers = new CodeColorizers(Arrays.<CodeColorizerFormat>asList(new JavaScriptColorizerFormat()));
+    CodeColorizers codeColorizers = new CodeColorizers(Arrays.<CodeColorizerFormat>asList(new JavaScriptColorizerFormat()), new FileContentCache(new Settings()));
     File jsFile = new File(this.getClass().getResource("CodeColorizersTest/Person.js").toURI());
     NewHighlighting highlighting = mock(NewHighlighting.class);
 
@@ -68,7 +70,7 @@ public class CodeColorizersTest {
 
   @Test
   public void testConvertToHighlightingIgnoreBOM() throws Exception {
-    CodeColorizers codeColorizers = new CodeColorizers(Arrays.<CodeColorizerFormat>asList(new JavaScriptColorizerFormat()));
+    CodeColorizers codeColorizers = new CodeColorizers(Arrays.<CodeColorizerFormat>asList(new JavaScriptColorizerFormat()), new FileContentCache(new Settings()));
 
     File fileWithBom = temp.newFile();
     FileUtils.write(fileWithBom, "\uFEFF", "UTF-8");
@@ -83,7 +85,7 @@ public class CodeColorizersTest {
 
   @Test
   public void shouldSupportJavaIfNotProvidedByJavaPluginForBackwardCompatibility() throws Exception {
-    CodeColorizers codeColorizers = new CodeColorizers(Arrays.<CodeColorizerFormat>asList());
+    CodeColorizers codeColorizers = new CodeColorizers(Arrays.<CodeColorizerFormat>asList(), new FileContentCache(new Settings()));
 
     File javaFile = new File(this.getClass().getResource("CodeColorizersTest/Person.java").toURI());
 
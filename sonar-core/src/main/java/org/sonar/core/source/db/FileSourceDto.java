@@ -43,6 +43,8 @@ public class FileSourceDto {
   private String srcHash;
   private byte[] binaryData;
   private String dataHash;
+  private Integer lineCount;
+  private Integer previousLineCount;
 
   public Long getId() {
     return id;
@@ -171,6 +173,33 @@ public class FileSourceDto {
     return this;
   }
 
+  /**
+   * Number of lines of {@link #getData()}. Null on rows which were not updated since the column was added.
+   */
+  @CheckForNull
+  public Integer getLineCount() {
+    return lineCount;
+  }
+
+  public FileSourceDto setLineCount(@Nullable Integer lineCount) {
+    this.lineCount = lineCount;
+    return this;
+  }
+
+  /**
+   * Number of lines of the version of the file which is currently indexed in Elasticsearch, so
+   * that the lines which do not exist anymore can be deleted from index. Null if unknown.
+   */
+  @CheckForNull
+  public Integer getPreviousLineCount() {
+    return previousLineCount;
+  }
+
+  public FileSourceDto setPreviousLineCount(@Nullable Integer previousLineCount) {
+    this.previousLineCount = previousLineCount;
+    return this;
+  }
+
   public long getCreatedAt() {
     return createdAt;
   }
@@ -63,6 +63,8 @@ public class FileSourceDaoTest extends AbstractDaoTestCase {
     assertThat(fileSourceDto.getFileUuid()).isEqualTo("FILE1_UUID");
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(1500000000000L);
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(1500000000000L);
+    assertThat(fileSourceDto.getLineCount()).isEqualTo(3);
+    assertThat(fileSourceDto.getPreviousLineCount()).isNull();
   }
 
   @Test
@@ -106,10 +108,12 @@ public class FileSourceDaoTest extends AbstractDaoTestCase {
       .setDataHash("FILE2_DATA_HASH")
       .setLineHashes("LINE1_HASH\\nLINE2_HASH")
       .setSrcHash("FILE2_HASH")
+      .setLineCount(2)
+      .setPreviousLineCount(0)
       .setCreatedAt(1500000000000L)
       .setUpdatedAt(1500000000001L));
 
-    checkTable("insert", "file_sources", "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at");
+    checkTable("insert", "file_sources", "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "line_count", "previous_line_count", "created_at", "updated_at");
   }
 
   @Test
@@ -123,9 +127,11 @@ public class FileSourceDaoTest extends AbstractDaoTestCase {
       .setDataHash("NEW_DATA_HASH")
       .setSrcHash("NEW_FILE_HASH")
       .setLineHashes("NEW_LINE_HASHES")
+      .setLineCount(1)
+      .setPreviousLineCount(3)
       .setUpdatedAt(1500000000002L));
 
-    checkTable("update", "file_sources", "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at");
+    checkTable("update", "file_sources", "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "line_count", "previous_line_count", "created_at", "updated_at");
   }
 
   @Test
@@ -0,0 +1,45 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The presence of this annotation on a {@link Decorator} indicates that it can decorate
+ * different resources at the same time, from different threads. Such decorators must only
+ * use the {@link DecoratorContext} given to the method {@link Decorator#decorate(org.sonar.api.resources.Resource, DecoratorContext)}
+ * to read and save measures, and must not have mutable state.
+ * <p/>
+ * The methods of the context which read or write dependencies and violations are serialized with the
+ * decorators which are not thread-safe. Other components, for example {@link SonarIndex}, must not
+ * be used directly.
+ * <p/>
+ * Decorators without this annotation are never executed concurrently, even when
+ * the parallel decoration of resources is enabled.
+ *
+ * @since 5.2
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ThreadSafeDecorator {
+}
@@ -61,4 +61,9 @@ class AbsolutePathPredicate extends AbstractFilePredicate {
   public int priority() {
     return USE_INDEX;
   }
+
+  @Override
+  int estimatedSize(Index index) {
+    return 1;
+  }
 }
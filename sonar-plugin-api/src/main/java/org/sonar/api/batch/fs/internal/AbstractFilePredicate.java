@@ -34,6 +34,11 @@ public abstract class AbstractFilePredicate implements OptimizedFilePredicate {
   protected static final int DEFAULT_PRIORITY = 10;
   protected static final int USE_INDEX = 20;
 
+  /**
+   * See {@link #estimatedSize(Index)}
+   */
+  static final int UNKNOWN_SIZE = -1;
+
   @Override
   public Iterable<InputFile> filter(Iterable<InputFile> target) {
     return Iterables.filter(target, new Predicate<InputFile>() {
@@ -54,6 +59,22 @@ public abstract class AbstractFilePredicate implements OptimizedFilePredicate {
     return DEFAULT_PRIORITY;
   }
 
+  /**
+   * Number of files returned by {@link #get(Index)} when they are looked up in an index of
+   * {@link DefaultFileSystem.Cache}, or {@link #UNKNOWN_SIZE} when all the files are scanned. It is used
+   * by {@link AndPredicate} and {@link OrPredicate} to select the cheapest way to get files.
+   */
+  int estimatedSize(Index index) {
+    return UNKNOWN_SIZE;
+  }
+
+  static int estimatedSize(FilePredicate predicate, Index index) {
+    if (predicate instanceof AbstractFilePredicate) {
+      return ((AbstractFilePredicate) predicate).estimatedSize(index);
+    }
+    return UNKNOWN_SIZE;
+  }
+
   @Override
   public final int compareTo(OptimizedFilePredicate o) {
     return o.priority() - priority();
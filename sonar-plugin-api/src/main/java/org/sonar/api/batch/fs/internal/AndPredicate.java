@@ -83,10 +83,34 @@ class AndPredicate extends AbstractFilePredicate {
     if (predicates.isEmpty()) {
       return index.inputFiles();
     }
-    // Optimization, use get on first predicate then filter with next predicates
-    Iterable<InputFile> result = predicates.get(0).get(index);
+    // Optimization, use get on the predicate that returns the fewest files from index then filter
+    // with the other predicates. By default it's the predicate with highest priority.
+    OptimizedFilePredicate driver = predicates.get(0);
+    int driverSize = estimatedSize(driver, index);
     for (int i = 1; i < predicates.size(); i++) {
-      result = predicates.get(i).filter(result);
+      int size = estimatedSize(predicates.get(i), index);
+      if (size != UNKNOWN_SIZE && (driverSize == UNKNOWN_SIZE || size < driverSize)) {
+        driver = predicates.get(i);
+        driverSize = size;
+      }
+    }
+    Iterable<InputFile> result = driver.get(index);
+    for (OptimizedFilePredicate predicate : predicates) {
+      if (predicate != driver) {
+        result = predicate.filter(result);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  int estimatedSize(Index index) {
+    int result = UNKNOWN_SIZE;
+    for (OptimizedFilePredicate predicate : predicates) {
+      int size = estimatedSize(predicate, index);
+      if (size != UNKNOWN_SIZE && (result == UNKNOWN_SIZE || size < result)) {
+        result = size;
+      }
     }
     return result;
   }
@@ -37,11 +37,14 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 /**
@@ -226,7 +229,24 @@ public class DefaultFileSystem implements FileSystem {
     // nothing to do by default
   }
 
+  /**
+   * Besides the storage provided by implementations, files are indexed in memory by relative path, language, type
+   * and status, so that the common {@link org.sonar.api.batch.fs.FilePredicate}s do not scan all the files.
+   * Files are re-indexed when their language, type or status is changed through {@link DefaultInputFile} after
+   * being added, as unit tests of plugins commonly do. Other implementations of {@link InputFile} must not
+   * change these attributes once added, else the predicates on these attributes would not match them.
+   */
   public abstract static class Cache implements Index {
+    private final TreeMap<String, InputFile> filesByPath = new TreeMap<String, InputFile>();
+    private final InputFileAttributeIndex<String> filesByLanguage = new InputFileAttributeIndex<String>();
+    private final InputFileAttributeIndex<InputFile.Type> filesByType = new InputFileAttributeIndex<InputFile.Type>();
+    private final InputFileAttributeIndex<InputFile.Status> filesByStatus = new InputFileAttributeIndex<InputFile.Status>();
+
+    /**
+     * Files sorted by relative path, lazily loaded for the lookups by path prefix
+     */
+    private InputFile[] sortedFiles;
+
     @Override
     public abstract Iterable<InputFile> inputFiles();
 
@@ -242,8 +262,97 @@ public class DefaultFileSystem implements FileSystem {
 
     protected abstract void doAdd(InputDir inputDir);
 
-    final void add(InputFile inputFile) {
+    final void add(DefaultInputFile inputFile) {
       doAdd(inputFile);
+      index(inputFile);
+      inputFile.addIndex(this);
+    }
+
+    private synchronized void index(InputFile inputFile) {
+      filesByPath.put(inputFile.relativePath(), inputFile);
+      indexAttributes(inputFile);
+      sortedFiles = null;
+    }
+
+    /**
+     * Called by {@link DefaultInputFile} when its language, type or status changed
+     */
+    synchronized void reindex(InputFile inputFile) {
+      // the file may have been replaced by another one with the same path
+      if (filesByPath.get(inputFile.relativePath()) == inputFile) {
+        indexAttributes(inputFile);
+      }
+    }
+
+    private void indexAttributes(InputFile inputFile) {
+      filesByLanguage.add(inputFile.language(), inputFile);
+      filesByType.add(inputFile.type(), inputFile);
+      filesByStatus.add(inputFile.status(), inputFile);
+    }
+
+    synchronized int fileCount() {
+      return filesByPath.size();
+    }
+
+    synchronized int countByLanguage(String language) {
+      return filesByLanguage.count(language);
+    }
+
+    synchronized List<InputFile> filesByLanguage(String language) {
+      return filesByLanguage.get(language);
+    }
+
+    synchronized int countByType(InputFile.Type type) {
+      return filesByType.count(type);
+    }
+
+    synchronized List<InputFile> filesByType(InputFile.Type type) {
+      return filesByType.get(type);
+    }
+
+    synchronized int countByStatus(InputFile.Status status) {
+      return filesByStatus.count(status);
+    }
+
+    synchronized List<InputFile> filesByStatus(InputFile.Status status) {
+      return filesByStatus.get(status);
+    }
+
+    /**
+     * Number of files whose relative path starts with the given prefix, computed in logarithmic time
+     */
+    synchronized int countByPathPrefix(String prefix) {
+      InputFile[] files = sortedFiles();
+      return lowerBound(files, prefix + Character.MAX_VALUE) - lowerBound(files, prefix);
+    }
+
+    synchronized List<InputFile> filesByPathPrefix(String prefix) {
+      InputFile[] files = sortedFiles();
+      return Arrays.asList(Arrays.copyOfRange(files, lowerBound(files, prefix), lowerBound(files, prefix + Character.MAX_VALUE)));
+    }
+
+    private InputFile[] sortedFiles() {
+      if (sortedFiles == null) {
+        sortedFiles = filesByPath.values().toArray(new InputFile[filesByPath.size()]);
+      }
+      return sortedFiles;
+    }
+
+    /**
+     * Index of the first file whose relative path is greater than or equal to the given path
+     */
+    private static int lowerBound(InputFile[] files, String relativePath) {
+      int low = 0;
+      int high = files.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (files[middle].relativePath().compareTo(relativePath) < 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
     }
 
     public void add(InputDir inputDir) {
@@ -32,7 +32,10 @@ import javax.annotation.Nullable;
 import java.io.File;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @since 4.2
@@ -52,6 +55,11 @@ public class DefaultInputFile implements InputFile {
   private int nonBlankLines;
   private int[] originalLineOffsets;
 
+  /**
+   * Indices of the file systems this file was added to, to be updated when language, type or status change
+   */
+  private volatile List<DefaultFileSystem.Cache> indices = Collections.emptyList();
+
   public DefaultInputFile(String moduleKey, String relativePath) {
     this.moduleKey = moduleKey;
     this.relativePath = PathUtils.sanitize(relativePath);
@@ -129,19 +137,36 @@ public class DefaultInputFile implements InputFile {
 
   public DefaultInputFile setLanguage(@Nullable String language) {
     this.language = language;
+    reindex();
     return this;
   }
 
   public DefaultInputFile setType(Type type) {
     this.type = type;
+    reindex();
     return this;
   }
 
   public DefaultInputFile setStatus(Status status) {
     this.status = status;
+    reindex();
     return this;
   }
 
+  synchronized void addIndex(DefaultFileSystem.Cache index) {
+    if (!indices.contains(index)) {
+      List<DefaultFileSystem.Cache> copy = new ArrayList<>(indices);
+      copy.add(index);
+      indices = copy;
+    }
+  }
+
+  private void reindex() {
+    for (DefaultFileSystem.Cache index : indices) {
+      index.reindex(this);
+    }
+  }
+
   public DefaultInputFile setLines(int lines) {
     this.lines = lines;
     return this;
@@ -43,4 +43,9 @@ class FalsePredicate extends AbstractFilePredicate {
   public Iterable<InputFile> get(Index index) {
     return Collections.emptyList();
   }
+
+  @Override
+  int estimatedSize(Index index) {
+    return 0;
+  }
 }
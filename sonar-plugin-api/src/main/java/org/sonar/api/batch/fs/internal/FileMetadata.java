@@ -49,6 +49,7 @@ public class FileMetadata implements BatchComponent {
 
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int READ_BUFFER_SIZE = 8192;
 
   public abstract static class CharHandler {
 
@@ -65,7 +66,7 @@ public class FileMetadata implements BatchComponent {
     }
   }
 
-  private static class LineCounter extends CharHandler {
+  private static final class LineCounter extends CharHandler {
     private int lines = 0;
     private int nonBlankLines = 0;
     private boolean blankLine = true;
@@ -101,7 +102,7 @@ public class FileMetadata implements BatchComponent {
 
     @Override
     protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
+      if (blankLine && !isWhitespace(c)) {
         blankLine = false;
       }
     }
@@ -123,27 +124,18 @@ public class FileMetadata implements BatchComponent {
 
   }
 
-  private static class FileHashComputer extends CharHandler {
-    private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-    private StringBuilder sb = new StringBuilder();
+  private static final class FileHashComputer extends CharHandler {
+    // lines are hashed one after the other, so the whole file can be streamed to the digest
+    private final Utf8Digest globalMd5Digest = new Utf8Digest(DigestUtils.getMd5Digest());
 
     @Override
     protected void handleIgnoreEoL(char c) {
-      sb.append(c);
+      globalMd5Digest.append(c);
     }
 
     @Override
     protected void newLine() {
-      sb.append(LINE_FEED);
-      globalMd5Digest.update(sb.toString().getBytes(Charsets.UTF_8));
-      sb.setLength(0);
-    }
-
-    @Override
-    protected void eof() {
-      if (sb.length() > 0) {
-        globalMd5Digest.update(sb.toString().getBytes(Charsets.UTF_8));
-      }
+      globalMd5Digest.append(LINE_FEED);
     }
 
     @CheckForNull
@@ -152,9 +144,8 @@ public class FileMetadata implements BatchComponent {
     }
   }
 
-  private static class LineHashComputer extends CharHandler {
-    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-    private final StringBuilder sb = new StringBuilder();
+  private static final class LineHashComputer extends CharHandler {
+    private final Utf8Digest lineMd5Digest = new Utf8Digest(DigestUtils.getMd5Digest());
     private final LineHashConsumer consumer;
     private int line = 1;
 
@@ -164,26 +155,25 @@ public class FileMetadata implements BatchComponent {
 
     @Override
     protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        sb.append(c);
+      if (!isWhitespace(c)) {
+        lineMd5Digest.append(c);
       }
     }
 
     @Override
     protected void newLine() {
-      consumer.consume(line, sb.length() > 0 ? lineMd5Digest.digest(sb.toString().getBytes(Charsets.UTF_8)) : null);
-      sb.setLength(0);
+      consumer.consume(line, lineMd5Digest.isEmpty() ? null : lineMd5Digest.digest());
       line++;
     }
 
     @Override
     protected void eof() {
-      consumer.consume(line, sb.length() > 0 ? lineMd5Digest.digest(sb.toString().getBytes(Charsets.UTF_8)) : null);
+      consumer.consume(line, lineMd5Digest.isEmpty() ? null : lineMd5Digest.digest());
     }
 
   }
 
-  private static class LineOffsetCounter extends CharHandler {
+  private static final class LineOffsetCounter extends CharHandler {
     private int currentOriginalOffset = 0;
     private List<Integer> originalLineOffsets = new ArrayList<Integer>();
     private int lastValidOffset = 0;
@@ -217,33 +207,168 @@ public class FileMetadata implements BatchComponent {
 
   }
 
+  /**
+   * Computes all the metadata in a single pass. Calls to the underlying handlers are not virtual,
+   * so they can be inlined by the JIT.
+   */
+  private static final class MetadataComputer extends CharHandler {
+    private final LineCounter lineCounter;
+    private final FileHashComputer fileHashComputer = new FileHashComputer();
+    private final LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+
+    MetadataComputer(File file, Charset encoding) {
+      this.lineCounter = new LineCounter(file, encoding);
+    }
+
+    @Override
+    protected void handleAll(char c) {
+      lineCounter.handleAll(c);
+      lineOffsetCounter.handleAll(c);
+    }
+
+    @Override
+    protected void handleIgnoreEoL(char c) {
+      lineCounter.handleIgnoreEoL(c);
+      fileHashComputer.handleIgnoreEoL(c);
+    }
+
+    @Override
+    protected void newLine() {
+      lineCounter.newLine();
+      fileHashComputer.newLine();
+      lineOffsetCounter.newLine();
+    }
+
+    @Override
+    protected void eof() {
+      lineCounter.eof();
+      lineOffsetCounter.eof();
+    }
+
+    Metadata metadata() {
+      return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
+        lineOffsetCounter.getLastValidOffset());
+    }
+  }
+
+  /**
+   * Encodes chars to UTF-8 into a reused buffer that is flushed into the digest, so that no
+   * temporary String nor byte array is created per line. Encoding is the same as
+   * {@link String#getBytes(Charset)}: unpaired surrogates are replaced by '?'.
+   */
+  private static final class Utf8Digest {
+    private static final int BUFFER_SIZE = 4096;
+    private static final byte REPLACEMENT = (byte) '?';
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int length = 0;
+    private char highSurrogate = 0;
+    private boolean empty = true;
+
+    Utf8Digest(MessageDigest digest) {
+      this.digest = digest;
+    }
+
+    void append(char c) {
+      empty = false;
+      if (length > BUFFER_SIZE - 4) {
+        flush();
+      }
+      if (highSurrogate != 0) {
+        char high = highSurrogate;
+        highSurrogate = 0;
+        if (Character.isLowSurrogate(c)) {
+          int codePoint = Character.toCodePoint(high, c);
+          buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+          buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+          buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+          buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+          return;
+        }
+        buffer[length++] = REPLACEMENT;
+      }
+      if (c < 0x80) {
+        buffer[length++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[length++] = (byte) (0xc0 | (c >> 6));
+        buffer[length++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c)) {
+        highSurrogate = c;
+      } else if (Character.isLowSurrogate(c)) {
+        buffer[length++] = REPLACEMENT;
+      } else {
+        buffer[length++] = (byte) (0xe0 | (c >> 12));
+        buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[length++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+
+    boolean isEmpty() {
+      return empty;
+    }
+
+    /**
+     * Completes the hash computation and resets the digest
+     */
+    byte[] digest() {
+      if (highSurrogate != 0) {
+        highSurrogate = 0;
+        if (length == BUFFER_SIZE) {
+          flush();
+        }
+        buffer[length++] = REPLACEMENT;
+      }
+      flush();
+      empty = true;
+      return digest.digest();
+    }
+
+    private void flush() {
+      digest.update(buffer, 0, length);
+      length = 0;
+    }
+  }
+
+  /**
+   * Faster than {@link Character#isWhitespace(char)} on ASCII chars, which are the most common
+   */
+  private static boolean isWhitespace(char c) {
+    if (c > ' ' && c < 0x7f) {
+      return false;
+    }
+    return Character.isWhitespace(c);
+  }
+
   /**
    * Compute hash of a file ignoring line ends differences.
    * Maximum performance is needed.
    */
   public Metadata readMetadata(File file, Charset encoding) {
-    LineCounter lineCounter = new LineCounter(file, encoding);
-    FileHashComputer fileHashComputer = new FileHashComputer();
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    MetadataComputer computer = new MetadataComputer(file, encoding);
+    readFile(file, encoding, computer);
+    return computer.metadata();
   }
 
   /**
    * For testing purpose
    */
   public Metadata readMetadata(Reader reader) {
-    LineCounter lineCounter = new LineCounter(new File("fromString"), Charsets.UTF_16);
-    FileHashComputer fileHashComputer = new FileHashComputer();
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+    return readMetadata(reader, new File("fromString"), Charsets.UTF_16);
+  }
+
+  /**
+   * Same as {@link #readMetadata(File, Charset)} but on content that is already decoded, for example
+   * when it is shared with other consumers. File and encoding are used only for logging.
+   */
+  public Metadata readMetadata(Reader reader, File file, Charset encoding) {
+    MetadataComputer computer = new MetadataComputer(file, encoding);
     try {
-      read(reader, lineCounter, fileHashComputer, lineOffsetCounter);
+      read(reader, computer);
     } catch (IOException e) {
-      throw new IllegalStateException("Should never occurs", e);
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
     }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    return computer.metadata();
   }
 
   public static void readFile(File file, Charset encoding, CharHandler... handlers) {
@@ -257,43 +382,51 @@ public class FileMetadata implements BatchComponent {
   }
 
   private static void read(Reader reader, CharHandler... handlers) throws IOException {
-    char c = (char) 0;
-    int i = reader.read();
+    // chars are read by blocks, as Reader#read() is synchronized
+    char[] chars = new char[READ_BUFFER_SIZE];
     boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
-      if (afterCR) {
-        for (CharHandler handler : handlers) {
-          if (c != CARRIAGE_RETURN && c != LINE_FEED) {
-            handler.handleIgnoreEoL(c);
-          }
-          handler.handleAll(c);
-          handler.newLine();
-        }
-        afterCR = c == CARRIAGE_RETURN;
-      } else if (c == LINE_FEED) {
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-          handler.newLine();
-        }
-      } else if (c == CARRIAGE_RETURN) {
-        afterCR = true;
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-        }
-      } else {
-        for (CharHandler handler : handlers) {
-          handler.handleIgnoreEoL(c);
-          handler.handleAll(c);
-        }
+    int count = reader.read(chars);
+    while (count != -1) {
+      for (int i = 0; i < count; i++) {
+        afterCR = handle(chars[i], afterCR, handlers);
       }
-      i = reader.read();
+      count = reader.read(chars);
     }
     for (CharHandler handler : handlers) {
       handler.eof();
     }
   }
 
+  private static boolean handle(char c, boolean afterCR, CharHandler... handlers) {
+    if (afterCR) {
+      for (CharHandler handler : handlers) {
+        if (c != CARRIAGE_RETURN && c != LINE_FEED) {
+          handler.handleIgnoreEoL(c);
+        }
+        handler.handleAll(c);
+        handler.newLine();
+      }
+      return c == CARRIAGE_RETURN;
+    }
+    if (c == LINE_FEED) {
+      for (CharHandler handler : handlers) {
+        handler.handleAll(c);
+        handler.newLine();
+      }
+    } else if (c == CARRIAGE_RETURN) {
+      for (CharHandler handler : handlers) {
+        handler.handleAll(c);
+      }
+      return true;
+    } else {
+      for (CharHandler handler : handlers) {
+        handler.handleIgnoreEoL(c);
+        handler.handleAll(c);
+      }
+    }
+    return false;
+  }
+
   public static class Metadata {
     final int lines;
     final int nonBlankLines;
@@ -322,4 +455,15 @@ public class FileMetadata implements BatchComponent {
   public static void computeLineHashesForIssueTracking(DefaultInputFile f, LineHashConsumer consumer) {
     readFile(f.file(), f.charset(), new LineHashComputer(consumer));
   }
+
+  /**
+   * Same as {@link #computeLineHashesForIssueTracking(DefaultInputFile, LineHashConsumer)} but on content that is already decoded
+   */
+  public static void computeLineHashesForIssueTracking(Reader reader, LineHashConsumer consumer) {
+    try {
+      read(reader, new LineHashComputer(consumer));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compute line hashes", e);
+    }
+  }
 }
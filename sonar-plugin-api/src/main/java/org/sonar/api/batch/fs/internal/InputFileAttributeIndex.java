@@ -0,0 +1,84 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import org.sonar.api.batch.fs.InputFile;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Input files grouped by the value of one of their attributes, for example the language.
+ * Files of a group are sorted by relative path. Not thread-safe.
+ *
+ * @since 5.2
+ */
+class InputFileAttributeIndex<K> {
+
+  private final Map<K, SortedMap<String, InputFile>> filesByKey = new HashMap<>();
+
+  /**
+   * Value under which each file is indexed, so that it can be removed even when its attribute changed
+   */
+  private final Map<String, K> keysByPath = new HashMap<>();
+
+  /**
+   * Replaces the file previously indexed with the same relative path, if any
+   */
+  void add(@Nullable K key, InputFile inputFile) {
+    remove(inputFile);
+    keysByPath.put(inputFile.relativePath(), key);
+    SortedMap<String, InputFile> files = filesByKey.get(key);
+    if (files == null) {
+      files = new TreeMap<>();
+      filesByKey.put(key, files);
+    }
+    files.put(inputFile.relativePath(), inputFile);
+  }
+
+  void remove(InputFile inputFile) {
+    if (keysByPath.containsKey(inputFile.relativePath())) {
+      SortedMap<String, InputFile> files = filesByKey.get(keysByPath.remove(inputFile.relativePath()));
+      if (files != null) {
+        files.remove(inputFile.relativePath());
+      }
+    }
+  }
+
+  int count(@Nullable K key) {
+    SortedMap<String, InputFile> files = filesByKey.get(key);
+    return files == null ? 0 : files.size();
+  }
+
+  /**
+   * Copy of the files, so that the index can be updated while the result is iterated
+   */
+  List<InputFile> get(@Nullable K key) {
+    SortedMap<String, InputFile> files = filesByKey.get(key);
+    return files == null ? Collections.<InputFile>emptyList() : new ArrayList<>(files.values());
+  }
+}
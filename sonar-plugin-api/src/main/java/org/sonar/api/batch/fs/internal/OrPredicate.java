@@ -21,10 +21,13 @@ package org.sonar.api.batch.fs.internal;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem.Index;
 import org.sonar.api.batch.fs.InputFile;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * @since 4.2
@@ -65,6 +68,38 @@ class OrPredicate extends AbstractFilePredicate {
     return false;
   }
 
+  /**
+   * When all the predicates use an index, the union of their files is returned instead
+   * of scanning all the files
+   */
+  @Override
+  public Iterable<InputFile> get(Index index) {
+    if (estimatedSize(index) == UNKNOWN_SIZE) {
+      return super.get(index);
+    }
+    // sorted by relative path, as files of index
+    Map<String, InputFile> result = new TreeMap<>();
+    for (FilePredicate predicate : predicates) {
+      for (InputFile inputFile : OptimizedFilePredicateAdapter.create(predicate).get(index)) {
+        result.put(inputFile.relativePath(), inputFile);
+      }
+    }
+    return result.values();
+  }
+
+  @Override
+  int estimatedSize(Index index) {
+    int result = 0;
+    for (FilePredicate predicate : predicates) {
+      int size = estimatedSize(predicate, index);
+      if (size == UNKNOWN_SIZE) {
+        return UNKNOWN_SIZE;
+      }
+      result += size;
+    }
+    return result;
+  }
+
   @VisibleForTesting
   Collection<FilePredicate> predicates() {
     return predicates;
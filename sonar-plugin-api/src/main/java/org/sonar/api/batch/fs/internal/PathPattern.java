@@ -24,6 +24,8 @@ import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.utils.WildcardPattern;
 
+import javax.annotation.CheckForNull;
+
 public abstract class PathPattern {
 
   final WildcardPattern pattern;
@@ -36,6 +38,15 @@ public abstract class PathPattern {
 
   public abstract boolean match(InputFile inputFile, boolean caseSensitiveFileExtension);
 
+  /**
+   * Start of the relative paths that can match this pattern, empty if any relative path can match.
+   * Null if the pattern applies to absolute paths.
+   */
+  @CheckForNull
+  String relativePathPrefix() {
+    return null;
+  }
+
   public static PathPattern create(String s) {
     String trimmed = StringUtils.trim(s);
     if (StringUtils.startsWithIgnoreCase(trimmed, "file:")) {
@@ -107,6 +118,22 @@ public abstract class PathPattern {
       return path != null && pattern.match(path);
     }
 
+    @Override
+    String relativePathPrefix() {
+      String s = pattern.toString();
+      StringBuilder prefix = new StringBuilder();
+      // leading slash is ignored by WildcardPattern
+      int start = s.startsWith("/") || s.startsWith("\\") ? 1 : 0;
+      for (int i = start; i < s.length(); i++) {
+        char ch = s.charAt(i);
+        if (ch == '*' || ch == '?') {
+          break;
+        }
+        prefix.append(ch == '\\' ? '/' : ch);
+      }
+      return prefix.toString();
+    }
+
     @Override
     public String toString() {
       return pattern.toString();
@@ -19,8 +19,11 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import org.sonar.api.batch.fs.FileSystem.Index;
 import org.sonar.api.batch.fs.InputFile;
 
+import javax.annotation.CheckForNull;
+
 /**
  * @since 4.2
  */
@@ -37,4 +40,34 @@ class PathPatternPredicate extends AbstractFilePredicate {
     return pattern.match(f);
   }
 
+  /**
+   * Only the files starting with the literal prefix of the pattern are matched
+   */
+  @Override
+  public Iterable<InputFile> get(Index index) {
+    String prefix = indexedPrefix(index);
+    if (prefix != null) {
+      return filter(((DefaultFileSystem.Cache) index).filesByPathPrefix(prefix));
+    }
+    return super.get(index);
+  }
+
+  @Override
+  int estimatedSize(Index index) {
+    String prefix = indexedPrefix(index);
+    if (prefix != null) {
+      return ((DefaultFileSystem.Cache) index).countByPathPrefix(prefix);
+    }
+    return UNKNOWN_SIZE;
+  }
+
+  @CheckForNull
+  private String indexedPrefix(Index index) {
+    String prefix = pattern.relativePathPrefix();
+    if (index instanceof DefaultFileSystem.Cache && prefix != null && !prefix.isEmpty()) {
+      return prefix;
+    }
+    return null;
+  }
+
 }
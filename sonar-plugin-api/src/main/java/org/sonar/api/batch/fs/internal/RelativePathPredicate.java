@@ -57,4 +57,9 @@ public class RelativePathPredicate extends AbstractFilePredicate {
     return USE_INDEX;
   }
 
+  @Override
+  int estimatedSize(Index index) {
+    return 1;
+  }
+
 }
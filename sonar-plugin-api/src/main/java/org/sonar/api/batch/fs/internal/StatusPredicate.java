@@ -19,6 +19,7 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import org.sonar.api.batch.fs.FileSystem.Index;
 import org.sonar.api.batch.fs.InputFile;
 
 /**
@@ -37,4 +38,20 @@ class StatusPredicate extends AbstractFilePredicate {
     return status == f.status();
   }
 
+  @Override
+  public Iterable<InputFile> get(Index index) {
+    if (index instanceof DefaultFileSystem.Cache) {
+      return ((DefaultFileSystem.Cache) index).filesByStatus(status);
+    }
+    return super.get(index);
+  }
+
+  @Override
+  int estimatedSize(Index index) {
+    if (index instanceof DefaultFileSystem.Cache) {
+      return ((DefaultFileSystem.Cache) index).countByStatus(status);
+    }
+    return UNKNOWN_SIZE;
+  }
+
 }
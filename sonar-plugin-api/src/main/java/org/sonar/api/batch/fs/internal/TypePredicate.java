@@ -19,6 +19,7 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import org.sonar.api.batch.fs.FileSystem.Index;
 import org.sonar.api.batch.fs.InputFile;
 
 /**
@@ -37,4 +38,20 @@ class TypePredicate extends AbstractFilePredicate {
     return type == f.type();
   }
 
+  @Override
+  public Iterable<InputFile> get(Index index) {
+    if (index instanceof DefaultFileSystem.Cache) {
+      return ((DefaultFileSystem.Cache) index).filesByType(type);
+    }
+    return super.get(index);
+  }
+
+  @Override
+  int estimatedSize(Index index) {
+    if (index instanceof DefaultFileSystem.Cache) {
+      return ((DefaultFileSystem.Cache) index).countByType(type);
+    }
+    return UNKNOWN_SIZE;
+  }
+
 }
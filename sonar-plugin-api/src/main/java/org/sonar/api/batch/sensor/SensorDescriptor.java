@@ -86,4 +86,22 @@ public interface SensorDescriptor {
    */
   SensorDescriptor disabledInPreview();
 
+  /**
+   * Should this sensor only process the files changed since previous analysis when incremental analysis is enabled.
+   * Highlighting, measures of the metrics declared with {@link #saveMeasuresForMetrics(String...)} and issues of the
+   * rule repositories declared with {@link #createIssuesForRuleRepositories(String...)} are then kept from previous
+   * analysis on unchanged files. Such a sensor must declare at least one rule repository or metric, and must not
+   * save issues or file measures that it did not declare.
+   * Default is to process all files.
+   * @since 5.2
+   */
+  SensorDescriptor onlyOnChangedFiles();
+
+  /**
+   * List metrics this {@link Sensor} save file measures for. Used by the platform to keep the measures
+   * of previous analysis on unchanged files, see {@link #onlyOnChangedFiles()}.
+   * @since 5.2
+   */
+  SensorDescriptor saveMeasuresForMetrics(String... metricKeys);
+
 }
@@ -34,7 +34,9 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
   private InputFile.Type type = null;
   private String[] ruleRepositories = new String[0];
   private String[] properties = new String[0];
+  private String[] metrics = new String[0];
   private boolean disabledInPreview = false;
+  private boolean onlyOnChangedFiles = false;
 
   public String name() {
     return name;
@@ -57,10 +59,18 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return Arrays.asList(properties);
   }
 
+  public Collection<String> metrics() {
+    return Arrays.asList(metrics);
+  }
+
   public boolean isDisabledInPreview() {
     return disabledInPreview;
   }
 
+  public boolean isOnlyOnChangedFiles() {
+    return onlyOnChangedFiles;
+  }
+
   @Override
   public DefaultSensorDescriptor name(String name) {
     this.name = name;
@@ -112,4 +122,16 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return this;
   }
 
+  @Override
+  public DefaultSensorDescriptor onlyOnChangedFiles() {
+    this.onlyOnChangedFiles = true;
+    return this;
+  }
+
+  @Override
+  public DefaultSensorDescriptor saveMeasuresForMetrics(String... metricKeys) {
+    this.metrics = metricKeys;
+    return this;
+  }
+
 }
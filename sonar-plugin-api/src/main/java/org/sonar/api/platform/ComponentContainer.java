@@ -65,8 +65,10 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
    */
   protected ComponentContainer(ComponentContainer parent) {
     this.parent = parent;
-    this.pico = parent.pico.makeChildContainer();
-    this.parent.child = this;
+    synchronized (parent) {
+      this.pico = parent.pico.makeChildContainer();
+      this.parent.child = this;
+    }
     this.propertyDefinitions = parent.propertyDefinitions;
     this.componentKeys = new ComponentKeys();
     addSingleton(this);
@@ -121,8 +123,7 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
 
   public ComponentContainer stopComponents(boolean swallowException) {
     try {
-      pico.stop();
-      pico.dispose();
+      stopPico();
 
     } catch (RuntimeException e) {
       if (!swallowException) {
@@ -137,6 +138,15 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
     return this;
   }
 
+  /**
+   * Pico stops the child containers by iterating on them. The iteration is synchronized with the
+   * creation and the removal of children, which may be done by other threads.
+   */
+  private synchronized void stopPico() {
+    pico.stop();
+    pico.dispose();
+  }
+
   /**
    * @since 3.5
    */
@@ -222,7 +232,7 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
     return pico.getComponents(tClass);
   }
 
-  public ComponentContainer removeChild() {
+  public synchronized ComponentContainer removeChild() {
     if (child != null) {
       pico.removeChildContainer(child.pico);
       child = null;
@@ -24,9 +24,13 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.InputFile;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -107,6 +111,63 @@ public class DefaultFileSystemTest {
     assertThat(fs.languages()).containsOnly("java", "php");
   }
 
+  @Test
+  public void indexed_predicates() throws Exception {
+    fs.add(new DefaultInputFile("foo", "src/main/Foo.java").setLanguage("java").setStatus(InputFile.Status.ADDED));
+    fs.add(new DefaultInputFile("foo", "src/main/Bar.java").setLanguage("java").setStatus(InputFile.Status.SAME));
+    fs.add(new DefaultInputFile("foo", "src/main/Foo.php").setLanguage("php").setStatus(InputFile.Status.SAME));
+    fs.add(new DefaultInputFile("foo", "src/test/FooTest.java").setLanguage("java").setType(InputFile.Type.TEST).setStatus(InputFile.Status.CHANGED));
+    fs.add(new DefaultInputFile("foo", "src/mainframe/readme.txt"));
+
+    assertThat(relativePaths(fs.predicates().hasLanguage("java"))).containsExactly("src/main/Bar.java", "src/main/Foo.java", "src/test/FooTest.java");
+    assertThat(relativePaths(fs.predicates().hasType(InputFile.Type.TEST))).containsExactly("src/test/FooTest.java");
+    assertThat(relativePaths(fs.predicates().hasStatus(InputFile.Status.SAME))).containsExactly("src/main/Bar.java", "src/main/Foo.php");
+    assertThat(relativePaths(fs.predicates().matchesPathPattern("src/main/**"))).containsExactly("src/main/Bar.java", "src/main/Foo.java", "src/main/Foo.php");
+    assertThat(relativePaths(fs.predicates().matchesPathPattern("/src/main*/*.txt"))).containsExactly("src/mainframe/readme.txt");
+    assertThat(relativePaths(fs.predicates().matchesPathPattern("**/Foo*"))).containsOnly("src/main/Foo.java", "src/main/Foo.php", "src/test/FooTest.java");
+    assertThat(relativePaths(fs.predicates().matchesPathPattern("does/not/exist/**"))).isEmpty();
+
+    assertThat(relativePaths(fs.predicates().and(
+      fs.predicates().hasLanguage("java"),
+      fs.predicates().hasType(InputFile.Type.MAIN),
+      fs.predicates().hasStatus(InputFile.Status.ADDED)))).containsExactly("src/main/Foo.java");
+    assertThat(relativePaths(fs.predicates().or(
+      fs.predicates().hasLanguage("php"),
+      fs.predicates().hasType(InputFile.Type.TEST),
+      fs.predicates().matchesPathPattern("src/test/**")))).containsExactly("src/main/Foo.php", "src/test/FooTest.java");
+    assertThat(relativePaths(fs.predicates().or(
+      fs.predicates().hasLanguage("php"),
+      fs.predicates().matchesPathPattern("**/*.txt")))).containsOnly("src/main/Foo.php", "src/mainframe/readme.txt");
+  }
+
+  @Test
+  public void indices_are_updated_when_file_is_replaced() throws Exception {
+    fs.add(new DefaultInputFile("foo", "src/Foo.java").setLanguage("java"));
+    fs.add(new DefaultInputFile("foo", "src/Foo.java").setLanguage("java").setType(InputFile.Type.TEST));
+
+    assertThat(relativePaths(fs.predicates().hasType(InputFile.Type.MAIN))).isEmpty();
+    assertThat(relativePaths(fs.predicates().hasType(InputFile.Type.TEST))).containsExactly("src/Foo.java");
+    assertThat(relativePaths(fs.predicates().hasLanguage("java"))).containsExactly("src/Foo.java");
+  }
+
+  @Test
+  public void indices_are_updated_when_attributes_change_after_file_is_added() throws Exception {
+    DefaultInputFile file = new DefaultInputFile("foo", "src/Foo.java");
+    fs.add(file);
+    file.setLanguage("java").setType(InputFile.Type.TEST).setStatus(InputFile.Status.CHANGED);
+
+    assertThat(relativePaths(fs.predicates().hasLanguage("java"))).containsExactly("src/Foo.java");
+    assertThat(relativePaths(fs.predicates().hasType(InputFile.Type.TEST))).containsExactly("src/Foo.java");
+    assertThat(relativePaths(fs.predicates().hasType(InputFile.Type.MAIN))).isEmpty();
+    assertThat(relativePaths(fs.predicates().hasStatus(InputFile.Status.CHANGED))).containsExactly("src/Foo.java");
+
+    // replaced file is not indexed anymore
+    fs.add(new DefaultInputFile("foo", "src/Foo.java").setLanguage("php"));
+    file.setLanguage("java");
+    assertThat(relativePaths(fs.predicates().hasLanguage("java"))).isEmpty();
+    assertThat(relativePaths(fs.predicates().hasLanguage("php"))).containsExactly("src/Foo.java");
+  }
+
   @Test
   public void input_file_returns_null_if_file_not_found() throws Exception {
     assertThat(fs.inputFile(fs.predicates().hasRelativePath("src/Bar.java"))).isNull();
@@ -131,4 +192,12 @@ public class DefaultFileSystemTest {
     // it would fail if more than one java file
     assertThat(fs.inputFile(fs.predicates().hasLanguage("java"))).isNotNull();
   }
+
+  private List<String> relativePaths(FilePredicate predicate) {
+    List<String> result = new ArrayList<>();
+    for (InputFile inputFile : fs.inputFiles(predicate)) {
+      result.add(inputFile.relativePath());
+    }
+    return result;
+  }
 }
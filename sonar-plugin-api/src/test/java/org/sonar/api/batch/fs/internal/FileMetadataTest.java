@@ -22,6 +22,7 @@ package org.sonar.api.batch.fs.internal;
 import com.google.common.base.Charsets;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -33,7 +34,10 @@ import org.sonar.api.utils.log.LoggerLevel;
 import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.StringReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -253,6 +257,30 @@ public class FileMetadataTest {
     assertThat(hash1).isNotEqualTo(hash2);
   }
 
+  @Test
+  public void hash_is_computed_on_utf_8_bytes() throws Exception {
+    // supplementary char, unpaired surrogates and a line bigger than internal buffers
+    String longLine = StringUtils.repeat("\u00e9a\u1D11E", 5000);
+    String source = "\uD834\uDD1E foo\n\uD834\nbar\uDD1E\n" + longLine + "\n\uD834";
+
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(new StringReader(source));
+    assertThat(metadata.hash).isEqualTo(md5Hex(source.getBytes(Charsets.UTF_8)));
+
+    final List<String> lineHashes = new ArrayList<>();
+    FileMetadata.computeLineHashesForIssueTracking(new StringReader(source), new LineHashConsumer() {
+      @Override
+      public void consume(int lineIdx, @Nullable byte[] hash) {
+        lineHashes.add(Hex.encodeHexString(hash));
+      }
+    });
+    assertThat(lineHashes).containsExactly(
+      md5Hex("\uD834\uDD1Efoo".getBytes(Charsets.UTF_8)),
+      md5Hex("\uD834".getBytes(Charsets.UTF_8)),
+      md5Hex("bar\uDD1E".getBytes(Charsets.UTF_8)),
+      md5Hex(longLine.getBytes(Charsets.UTF_8)),
+      md5Hex("\uD834".getBytes(Charsets.UTF_8)));
+  }
+
   @Test
   public void binary_file_with_unmappable_character() throws Exception {
     File woff = new File(this.getClass().getResource("glyphicons-halflings-regular.woff").toURI());
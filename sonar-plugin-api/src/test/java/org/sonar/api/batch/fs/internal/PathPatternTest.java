@@ -60,6 +60,17 @@ public class PathPatternTest {
     assertThat(pattern.match(inputFile, false)).isFalse();
   }
 
+  @Test
+  public void relative_path_prefix() throws Exception {
+    assertThat(PathPattern.create("src/main/**/*.java").relativePathPrefix()).isEqualTo("src/main/");
+    assertThat(PathPattern.create("/src/main/Foo?.java").relativePathPrefix()).isEqualTo("src/main/Foo");
+    assertThat(PathPattern.create("src\\main\\Foo.java").relativePathPrefix()).isEqualTo("src/main/Foo.java");
+    assertThat(PathPattern.create("**/*Foo.java").relativePathPrefix()).isEmpty();
+
+    // absolute paths are not indexed
+    assertThat(PathPattern.create("file:**/*Foo.java").relativePathPrefix()).isNull();
+  }
+
   @Test
   public void match_absolute_path() throws Exception {
     PathPattern pattern = PathPattern.create("file:**/src/main/**Foo.java");
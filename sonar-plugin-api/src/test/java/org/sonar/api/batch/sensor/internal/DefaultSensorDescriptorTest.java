@@ -41,6 +41,17 @@ public class DefaultSensorDescriptorTest {
     assertThat(descriptor.type()).isEqualTo(InputFile.Type.MAIN);
     assertThat(descriptor.properties()).containsOnly("sonar.foo.reportPath");
     assertThat(descriptor.ruleRepositories()).containsOnly("squid-java");
+    assertThat(descriptor.metrics()).isEmpty();
+    assertThat(descriptor.isOnlyOnChangedFiles()).isFalse();
+  }
+
+  @Test
+  public void only_on_changed_files() {
+    DefaultSensorDescriptor descriptor = new DefaultSensorDescriptor();
+    descriptor.name("Foo").onlyOnChangedFiles().saveMeasuresForMetrics("ncloc", "complexity");
+
+    assertThat(descriptor.isOnlyOnChangedFiles()).isTrue();
+    assertThat(descriptor.metrics()).containsOnly("ncloc", "complexity");
   }
 
 }